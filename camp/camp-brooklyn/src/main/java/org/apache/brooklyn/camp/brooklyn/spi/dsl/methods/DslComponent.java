@@ -21,15 +21,19 @@ package org.apache.brooklyn.camp.brooklyn.spi.dsl.methods;
 import static org.apache.brooklyn.camp.brooklyn.spi.dsl.DslUtils.resolved;
 
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
+import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
 import org.apache.brooklyn.api.mgmt.ExecutionContext;
 import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.api.mgmt.TaskAdaptable;
 import org.apache.brooklyn.api.objs.BrooklynObject;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Sensor;
@@ -38,6 +42,7 @@ import org.apache.brooklyn.camp.brooklyn.spi.dsl.BrooklynDslDeferredSupplier;
 import org.apache.brooklyn.camp.brooklyn.spi.dsl.DslAccessible;
 import org.apache.brooklyn.camp.brooklyn.spi.dsl.DslFunctionSource;
 import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityInternal;
@@ -66,6 +71,8 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
@@ -256,8 +263,13 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
                 case PARENT:
                     return Maybe.<Entity>of(entity.getParent());
                 case GLOBAL:
-                    entitiesToSearch = ((EntityManagerInternal)entity.getManagementContext().getEntityManager())
-                        .getAllEntitiesInApplication( entity().getApplication() );
+                    // only fetched if we need to scan, i.e. not if the index answers
+                    final EntityManagerInternal entityManager = (EntityManagerInternal)entity.getManagementContext().getEntityManager();
+                    final Application application = entity().getApplication();
+                    entitiesToSearch = lazily(new Supplier<Iterable<Entity>>() {
+                        @Override public Iterable<Entity> get() {
+                            return entityManager.getAllEntitiesInApplication(application);
+                        }});
                     break;
                 case ROOT:
                     return Maybe.<Entity>of(entity.getApplication());
@@ -286,12 +298,15 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
                     throw new IllegalArgumentException("No component-id or component-id supplier, when resolving entity in scope '" + scope + "' wrt " + entity);
                 }
                 
-                Maybe<Object> maybeComponentId = Tasks.resolving(componentIdSupplier)
-                        .as(Object.class)
-                        .context(getExecutionContext())
-                        .immediately(immediate)
-                        .description("Resolving component-id from " + componentIdSupplier)
-                        .getMaybe();
+                Maybe<Object> maybeComponentId = immediate ? Maybe.absent() : resolveComponentIdWithoutTask();
+                if (maybeComponentId.isAbsent()) {
+                    maybeComponentId = Tasks.resolving(componentIdSupplier)
+                            .as(Object.class)
+                            .context(getExecutionContext())
+                            .immediately(immediate)
+                            .description("Resolving component-id from " + componentIdSupplier)
+                            .getMaybe();
+                }
                 
                 if (immediate) {
                     if (maybeComponentId.isAbsent()) {
@@ -318,13 +333,30 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
                 desiredComponentId = componentId;
             }
             
-            Optional<Entity> result = Iterables.tryFind(entitiesToSearch, EntityPredicates.configEqualTo(BrooklynCampConstants.PLAN_ID, desiredComponentId));
-            if (result.isPresent()) {
-                return Maybe.of(result.get());
+            boolean indexed = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_DSL_COMPONENT_INDEX);
+            if (indexed) {
+                Maybe<Entity> result = findIndexed(entity, desiredComponentId);
+                if (result.isPresent()) {
+                    return result;
+                }
             }
             
-            result = Iterables.tryFind(entitiesToSearch, EntityPredicates.idEqualTo(desiredComponentId));
+            Optional<Entity> result = Iterables.tryFind(entitiesToSearch, EntityPredicates.configEqualTo(BrooklynCampConstants.PLAN_ID, desiredComponentId));
+            if (!result.isPresent()) {
+                result = Iterables.tryFind(entitiesToSearch, EntityPredicates.idEqualTo(desiredComponentId));
+            }
             if (result.isPresent()) {
+                if (indexed) {
+                    // if the index missed it (rather than finding several in scope), don't trust it until it is rebuilt
+                    Application application = result.get().getApplication();
+                    if (application != null) {
+                        DslComponentIndex index = DslComponentIndex.get(entity.getManagementContext());
+                        EntityManagerInternal entityManager = (EntityManagerInternal) ((EntityInternal)entity).getManagementContext().getEntityManager();
+                        if (!index.isMatch(entityManager, application, desiredComponentId, result.get())) {
+                            index.invalidate(application);
+                        }
+                    }
+                }
                 return Maybe.of(result.get());
             }
             
@@ -335,11 +367,81 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
                 (scopeComponent!=null ? " ("+scopeComponent+" from "+entity()+")" : ""))));
         }
         
+        /**
+         * Where the component-id supplier can give a plain value immediately (e.g. a {@code $brooklyn:config} already set),
+         * returns that value without the cost of a task; otherwise absent, including on error, for the caller to resolve
+         * the usual way.
+         */
+        private Maybe<Object> resolveComponentIdWithoutTask() {
+            if (!(componentIdSupplier instanceof ImmediateSupplier)) {
+                return Maybe.absent();
+            }
+            try {
+                Maybe<?> result = ((ImmediateSupplier<?>)componentIdSupplier).getImmediately();
+                if (result.isPresent() && resolved(result.get()) && !(result.get() instanceof TaskAdaptable)) {
+                    return Maybe.<Object>of(result.get());
+                }
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+            }
+            return Maybe.absent();
+        }
+        
+        
+        /**
+         * Looks up the component in the {@link DslComponentIndex} of the application being searched. Absent if not found,
+         * or if several candidates are in scope, in which case the caller scans so as to pick the same one as it always has.
+         */
+        protected Maybe<Entity> findIndexed(Entity entity, String desiredComponentId) {
+            Application application = (scope == Scope.GLOBAL ? entity() : entity).getApplication();
+            if (application == null) {
+                return Maybe.absent();
+            }
+            EntityManagerInternal entityManager = (EntityManagerInternal) ((EntityInternal)entity).getManagementContext().getEntityManager();
+            List<Entity> candidates = DslComponentIndex.get(((EntityInternal)entity).getManagementContext())
+                    .getMatches(entityManager, application, desiredComponentId);
+            Entity result = null;
+            for (Entity candidate : candidates) {
+                if (isInScope(candidate, entity)) {
+                    if (scope == Scope.GLOBAL) return Maybe.of(candidate);
+                    if (result != null) return Maybe.absent();
+                    result = candidate;
+                }
+            }
+            return Maybe.ofDisallowingNull(result);
+        }
+        
+        protected boolean isInScope(Entity candidate, Entity entity) {
+            switch (scope) {
+                case GLOBAL:
+                    return true;
+                case DESCENDANT:
+                    return Entities.isAncestor(candidate, entity);
+                case ANCESTOR:
+                    return Entities.isAncestor(entity, candidate);
+                case SIBLING:
+                    return !candidate.equals(entity) && Objects.equal(candidate.getParent(), entity.getParent());
+                case CHILD:
+                    return entity.equals(candidate.getParent());
+                default:
+                    return false;
+            }
+        }
+        
         private ExecutionContext getExecutionContext() {
             return findExecutionContext(this);
         }
     }
 
+    /** an iterable over the entities from the given supplier, which is only called when first iterated */
+    private static Iterable<Entity> lazily(Supplier<Iterable<Entity>> supplier) {
+        final Supplier<Iterable<Entity>> memoized = Suppliers.memoize(supplier);
+        return new Iterable<Entity>() {
+            @Override public Iterator<Entity> iterator() {
+                return memoized.get().iterator();
+            }};
+    }
+
     static ExecutionContext findExecutionContext(Object callerContext) {
         ExecutionContext execContext = BrooklynTaskTags.getCurrentExecutionContext();
         if (execContext == null) {
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.camp.brooklyn.spi.dsl.methods;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.brooklyn.api.entity.Application;
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.camp.brooklyn.BrooklynCampConstants;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.mgmt.internal.EntityManagerInternal;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+/**
+ * Per-application index of entities by {@link BrooklynCampConstants#PLAN_ID plan id} and by entity id,
+ * used by {@link DslComponent} when {@link BrooklynFeatureEnablement#FEATURE_DSL_COMPONENT_INDEX} is enabled.
+ * <p>
+ * An application's index is built from {@link EntityManagerInternal#getAllEntitiesInApplication(Application)}
+ * and rebuilt on the next lookup after the entity manager's {@link EntityManagerInternal#getMembershipChangeCount(String)}
+ * for that application changes, so repeated lookups in a stable application are map hits rather than scans,
+ * however other applications change.
+ */
+class DslComponentIndex {
+
+    private static final ConfigKey<DslComponentIndex> SCRATCHPAD_KEY = ConfigKeys.newConfigKey(DslComponentIndex.class,
+            "brooklyn.camp.dsl.componentIndex.instance");
+
+    /** Returns the index for the given management context, creating it on first use. */
+    static DslComponentIndex get(ManagementContext mgmt) {
+        synchronized (mgmt.getScratchpad()) {
+            DslComponentIndex result = mgmt.getScratchpad().get(SCRATCHPAD_KEY);
+            if (result==null) {
+                result = new DslComponentIndex();
+                mgmt.getScratchpad().put(SCRATCHPAD_KEY, result);
+            }
+            return result;
+        }
+    }
+
+    private static class ApplicationIndex {
+        final long membershipChangeCount;
+        final Map<String,List<Entity>> byPlanId;
+        final Map<String,Entity> byId;
+
+        ApplicationIndex(long membershipChangeCount, Iterable<Entity> entities) {
+            this.membershipChangeCount = membershipChangeCount;
+            Map<String,ImmutableList.Builder<Entity>> planIdBuilders = Maps.newLinkedHashMap();
+            Map<String,Entity> ids = Maps.newHashMap();
+            for (Entity entity : entities) {
+                String planId = entity.getConfig(BrooklynCampConstants.PLAN_ID);
+                if (planId != null) {
+                    ImmutableList.Builder<Entity> builder = planIdBuilders.get(planId);
+                    if (builder == null) {
+                        builder = ImmutableList.builder();
+                        planIdBuilders.put(planId, builder);
+                    }
+                    builder.add(entity);
+                }
+                ids.put(entity.getId(), entity);
+            }
+            Map<String,List<Entity>> planIds = Maps.newHashMap();
+            for (Map.Entry<String,ImmutableList.Builder<Entity>> entry : planIdBuilders.entrySet()) {
+                planIds.put(entry.getKey(), entry.getValue().build());
+            }
+            this.byPlanId = planIds;
+            this.byId = ids;
+        }
+    }
+
+    private final ConcurrentMap<String,ApplicationIndex> byApplicationId = Maps.newConcurrentMap();
+
+    /**
+     * Returns the entities of the given application whose plan id is the given component id, or if there are none
+     * the entity with that id, in the order given by {@link EntityManagerInternal#getAllEntitiesInApplication(Application)}.
+     */
+    List<Entity> getMatches(EntityManagerInternal entityManager, Application application, String componentId) {
+        ApplicationIndex index = getIndex(entityManager, application);
+        List<Entity> result = index.byPlanId.get(componentId);
+        if (result != null) return result;
+        Entity entity = index.byId.get(componentId);
+        return (entity == null) ? ImmutableList.<Entity>of() : ImmutableList.of(entity);
+    }
+
+    /** Whether the given entity is one of the {@link #getMatches(EntityManagerInternal, Application, String) matches}. */
+    boolean isMatch(EntityManagerInternal entityManager, Application application, String componentId, Entity entity) {
+        return getMatches(entityManager, application, componentId).contains(entity);
+    }
+
+    /**
+     * Discards the index of the given application, e.g. when a scan has found an entity that the index did not;
+     * this can happen if an entity joins the application (e.g. its parent is set) without a membership change.
+     */
+    void invalidate(Application application) {
+        byApplicationId.remove(application.getId());
+    }
+
+    private ApplicationIndex getIndex(EntityManagerInternal entityManager, Application application) {
+        // read the count before the entities, so any change part-way through causes a rebuild next time
+        long count = entityManager.getMembershipChangeCount(application.getId());
+        ApplicationIndex result = byApplicationId.get(application.getId());
+        if (result == null || result.membershipChangeCount != count) {
+            result = new ApplicationIndex(count, entityManager.getAllEntitiesInApplication(application));
+            byApplicationId.put(application.getId(), result);
+
+            // forget indexes of applications no longer known, rather than holding on to their entities
+            for (String applicationId : byApplicationId.keySet()) {
+                if (entityManager.getEntity(applicationId) == null && !applicationId.equals(application.getId())) {
+                    byApplicationId.remove(applicationId);
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.camp.brooklyn.spi.dsl;
+
+import static org.apache.brooklyn.camp.brooklyn.spi.dsl.DslTest.execDslEventually;
+import static org.apache.brooklyn.camp.brooklyn.spi.dsl.DslTest.execDslImmediately;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.camp.brooklyn.BrooklynCampConstants;
+import org.apache.brooklyn.camp.brooklyn.spi.dsl.methods.BrooklynDslCommon;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.test.Asserts;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DslComponentIndexTest extends BrooklynAppUnitTestSupport {
+
+    private boolean oldEnablement;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        oldEnablement = BrooklynFeatureEnablement.enable(BrooklynFeatureEnablement.FEATURE_DSL_COMPONENT_INDEX);
+        super.setUp();
+    }
+
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() throws Exception {
+        try {
+            super.tearDown();
+        } finally {
+            BrooklynFeatureEnablement.setEnablement(BrooklynFeatureEnablement.FEATURE_DSL_COMPONENT_INDEX, oldEnablement);
+        }
+    }
+
+    @Test
+    public void testEntityFoundAfterMembershipChanges() throws Exception {
+        TestEntity entity1 = app.createAndManageChild(EntitySpec.create(TestEntity.class).configure(BrooklynCampConstants.PLAN_ID, "id1"));
+        assertEquals(resolve(BrooklynDslCommon.entity("id1"), app), entity1);
+        assertEquals(resolve(BrooklynDslCommon.entity("id1"), app), entity1);
+        assertEquals(resolve(BrooklynDslCommon.entity(entity1.getId()), app), entity1);
+
+        TestEntity entity2 = app.createAndManageChild(EntitySpec.create(TestEntity.class).configure(BrooklynCampConstants.PLAN_ID, "id2"));
+        assertEquals(resolve(BrooklynDslCommon.entity("id2"), app), entity2);
+
+        Entities.unmanage(entity1);
+        assertTrue(execDslImmediately(BrooklynDslCommon.entity("id1"), Entity.class, app, true).isAbsent());
+        assertEquals(resolve(BrooklynDslCommon.entity("id2"), app), entity2);
+    }
+
+    @Test
+    public void testScopedLookups() throws Exception {
+        TestEntity parent = app.createAndManageChild(EntitySpec.create(TestEntity.class).configure(BrooklynCampConstants.PLAN_ID, "parent"));
+        TestEntity child = parent.addChild(EntitySpec.create(TestEntity.class).configure(BrooklynCampConstants.PLAN_ID, "child"));
+        TestEntity grandchild = child.addChild(EntitySpec.create(TestEntity.class).configure(BrooklynCampConstants.PLAN_ID, "grandchild"));
+        TestEntity sibling = app.createAndManageChild(EntitySpec.create(TestEntity.class).configure(BrooklynCampConstants.PLAN_ID, "sibling"));
+
+        assertEquals(resolve(BrooklynDslCommon.child("child"), parent), child);
+        assertEquals(resolve(BrooklynDslCommon.descendant("grandchild"), parent), grandchild);
+        assertEquals(resolve(BrooklynDslCommon.ancestor("parent"), grandchild), parent);
+        assertEquals(resolve(BrooklynDslCommon.sibling("sibling"), parent), sibling);
+
+        // in the application, but not in scope
+        assertTrue(execDslImmediately(BrooklynDslCommon.child("grandchild"), Entity.class, parent, true).isAbsent());
+        assertTrue(execDslImmediately(BrooklynDslCommon.sibling("child"), Entity.class, parent, true).isAbsent());
+    }
+
+    @Test
+    public void testSeveralWithSamePlanId() throws Exception {
+        TestEntity parent1 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        TestEntity parent2 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        TestEntity child1 = parent1.addChild(EntitySpec.create(TestEntity.class).configure(BrooklynCampConstants.PLAN_ID, "member"));
+        TestEntity child2 = parent2.addChild(EntitySpec.create(TestEntity.class).configure(BrooklynCampConstants.PLAN_ID, "member"));
+
+        assertEquals(resolve(BrooklynDslCommon.child("member"), parent1), child1);
+        assertEquals(resolve(BrooklynDslCommon.child("member"), parent2), child2);
+    }
+
+    @Test
+    public void testComponentIdFromSupplier() throws Exception {
+        ConfigKey<String> refKey = ConfigKeys.newStringConfigKey("test.ref");
+        TestEntity target = app.createAndManageChild(EntitySpec.create(TestEntity.class).configure(BrooklynCampConstants.PLAN_ID, "target"));
+        app.config().set(refKey, "target");
+
+        BrooklynDslDeferredSupplier<?> dsl = BrooklynDslCommon.entity(BrooklynDslCommon.config(refKey.getName()));
+        assertEquals(resolve(dsl, app), target);
+        assertEquals(execDslEventually(dsl, Entity.class, app, Asserts.DEFAULT_LONG_TIMEOUT).get(), target);
+    }
+
+    private Object resolve(BrooklynDslDeferredSupplier<?> dsl, Entity context) throws Exception {
+        return execDslImmediately(dsl, Entity.class, context, true).get();
+    }
+}
@@ -104,6 +104,13 @@ public class BrooklynFeatureEnablement {
      */
     public static final String FEATURE_JITTER_THREADS = "brooklyn.executionManager.jitterThreads";
 
+    /**
+     * Deliver sensor events to each subscriber in batches: events are queued per subscriber (preserving order)
+     * and a single task delivers everything queued, rather than a task being submitted for every event.
+     * Reduces task overhead when many events are published, at the cost of less detail in the activity view.
+     */
+    public static final String FEATURE_SUBSCRIPTION_BATCH_DELIVERY = "brooklyn.subscriptionManager.batchDelivery";
+
     /**
      * When rebinding to state created from very old versions, the catalogItemId properties will be missing which
      * results in errors when OSGi bundles are used. When enabled the code tries to infer the catalogItemId from
@@ -132,6 +139,29 @@ public class BrooklynFeatureEnablement {
 
     public static final String FEATURE_VALIDATE_LOCATION_SSH_KEYS = "brooklyn.validate.locationSshKeys";
 
+    /**
+     * Whether entity config maps cache resolved values which need no further evaluation
+     * (i.e. not tasks, suppliers or collections), so that repeated lookups of inherited config
+     * do not walk the ancestry each time. The cache is cleared when config changes on the entity
+     * or any ancestor. Read when each entity's config map is created.
+     */
+    public static final String FEATURE_CONFIG_RESOLVED_VALUE_CACHE = FEATURE_PROPERTY_PREFIX+".configMap.resolvedValueCache";
+
+    /**
+     * Whether {@code $brooklyn:entity(...)} and related DSL component lookups use a per-application index
+     * of entities by plan id and entity id, rebuilt when entities are added to or removed from management,
+     * rather than scanning the candidate entities on every resolution.
+     */
+    public static final String FEATURE_DSL_COMPONENT_INDEX = FEATURE_PROPERTY_PREFIX+".dsl.componentIndex";
+
+    /**
+     * Whether map-valued service state sensors (e.g. {@code service.notUp.indicators} and {@code service.problems})
+     * are updated as {@link org.apache.brooklyn.util.collections.PersistentMap}s, which share structure between
+     * versions, rather than by copying the whole map on each change. Iteration order is then by hash rather than
+     * insertion order.
+     */
+    public static final String FEATURE_PERSISTENT_MAP_SENSORS = FEATURE_PROPERTY_PREFIX+".persistentMapSensors";
+
     /**
      * Values explicitly set by Java calls.
      */
@@ -166,10 +196,14 @@ public class BrooklynFeatureEnablement {
         setDefault(FEATURE_PERSIST_ENTITY_SPEC_AS_SUPPLIER, true);
         setDefault(FEATURE_RENAME_THREADS, false);
         setDefault(FEATURE_JITTER_THREADS, false);
+        setDefault(FEATURE_SUBSCRIPTION_BATCH_DELIVERY, false);
         setDefault(FEATURE_BACKWARDS_COMPATIBILITY_INFER_CATALOG_ITEM_ON_REBIND, false);
         setDefault(FEATURE_AUTO_FIX_CATALOG_REF_ON_REBIND, false);
         setDefault(FEATURE_SSH_ASYNC_EXEC, false);
         setDefault(FEATURE_VALIDATE_LOCATION_SSH_KEYS, true);
+        setDefault(FEATURE_CONFIG_RESOLVED_VALUE_CACHE, false);
+        setDefault(FEATURE_DSL_COMPONENT_INDEX, false);
+        setDefault(FEATURE_PERSISTENT_MAP_SENSORS, false);
     }
     
     static {
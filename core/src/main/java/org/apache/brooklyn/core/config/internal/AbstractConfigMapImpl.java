@@ -24,12 +24,15 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.apache.brooklyn.api.mgmt.ExecutionContext;
+import org.apache.brooklyn.api.mgmt.TaskAdaptable;
 import org.apache.brooklyn.api.mgmt.TaskFactory;
 import org.apache.brooklyn.api.objs.BrooklynObject;
 import org.apache.brooklyn.config.ConfigInheritance;
@@ -40,10 +43,12 @@ import org.apache.brooklyn.config.ConfigKey.HasConfigKey;
 import org.apache.brooklyn.config.ConfigMap.ConfigMapWithInheritance;
 import org.apache.brooklyn.config.ConfigValueAtContainer;
 import org.apache.brooklyn.core.config.BasicConfigInheritance;
+import org.apache.brooklyn.core.config.BasicConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.config.ConfigKeys.InheritanceContext;
 import org.apache.brooklyn.core.config.Sanitizer;
 import org.apache.brooklyn.core.config.StructuredConfigKey;
+import org.apache.brooklyn.core.config.SubElementConfigKey;
 import org.apache.brooklyn.core.objs.BrooklynObjectInternal;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
@@ -52,6 +57,7 @@ import org.apache.brooklyn.util.core.config.ConfigBag;
 import org.apache.brooklyn.util.core.flags.TypeCoercions;
 import org.apache.brooklyn.util.core.internal.ConfigKeySelfExtracting;
 import org.apache.brooklyn.util.core.task.DeferredSupplier;
+import org.apache.brooklyn.util.core.task.ImmediateSupplier;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.core.task.ValueResolver;
 import org.apache.brooklyn.util.exceptions.Exceptions;
@@ -63,6 +69,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.base.Supplier;
 import com.google.common.collect.Iterables;
 import com.google.common.reflect.TypeToken;
 
@@ -91,6 +98,33 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
      */
     protected final Map<ConfigKey<?>,Object> ownConfig;
 
+    /**
+     * Resolved values (or {@link #UNCACHEABLE}) for keys looked up by {@link #getConfig(ConfigKey)}, keyed by key name,
+     * if {@link #isResolvedValueCacheEnabled()}. Only values which need no further resolution or evaluation
+     * are cached (see {@link #isResolvedValueCacheable(ConfigKey)}); the cache is cleared whenever config here,
+     * or (via {@link #clearResolvedValueCache()}) at an ancestor, changes.
+     */
+    private final transient Map<String, CachedResolvedValue> resolvedValueCache = new ConcurrentHashMap<>();
+    /** incremented when {@link #resolvedValueCache} is cleared, so that values computed concurrently aren't left in the cache */
+    private final transient AtomicLong resolvedValueCacheGeneration = new AtomicLong();
+
+    /** incremented to invalidate all caches, e.g. when the keys declared by a type change */
+    private static final AtomicLong GLOBAL_RESOLVED_VALUE_CACHE_GENERATION = new AtomicLong();
+    private static final AtomicLong RESOLVED_VALUE_CACHE_HITS = new AtomicLong();
+    private static final AtomicLong RESOLVED_VALUE_CACHE_MISSES = new AtomicLong();
+    private static final Object UNCACHEABLE = new Object();
+
+    private static class CachedResolvedValue {
+        final ConfigKey<?> key;
+        final Object value;
+        final long globalGeneration;
+        CachedResolvedValue(ConfigKey<?> key, Object value, long globalGeneration) {
+            this.key = key;
+            this.value = value;
+            this.globalGeneration = globalGeneration;
+        }
+    }
+
     protected AbstractConfigMapImpl(TContainer bo) {
         // Not using ConcurrentMap, because want to (continue to) allow null values.
         // Could use ConcurrentMapAcceptingNullVals (with the associated performance hit on entrySet() etc).
@@ -111,12 +145,92 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
 
     @Override
     public <T> T getConfig(ConfigKey<T> key) {
-        return getConfigImpl(key, false).getWithoutError().get();
+        if (key==null || !isResolvedValueCacheEnabled()) {
+            return getConfigImpl(key, false).getWithoutError().get();
+        }
+        
+        CachedResolvedValue cached = resolvedValueCache.get(key.getName());
+        long globalGeneration = GLOBAL_RESOLVED_VALUE_CACHE_GENERATION.get();
+        // same name can be used by keys with different types or defaults, so require the same key instance
+        if (cached!=null && cached.key==key && cached.globalGeneration==globalGeneration && cached.value!=UNCACHEABLE) {
+            RESOLVED_VALUE_CACHE_HITS.incrementAndGet();
+            @SuppressWarnings("unchecked")
+            T result = (T) cached.value;
+            return result;
+        }
+        RESOLVED_VALUE_CACHE_MISSES.incrementAndGet();
+        
+        long generation = resolvedValueCacheGeneration.get();
+        T result = getConfigImpl(key, false).getWithoutError().get();
+        boolean cacheable = (cached!=null && cached.key==key && cached.globalGeneration==globalGeneration) ? false : isResolvedValueCacheable(key);
+        CachedResolvedValue entry = new CachedResolvedValue(key, cacheable ? result : UNCACHEABLE, globalGeneration);
+        resolvedValueCache.put(key.getName(), entry);
+        if (resolvedValueCacheGeneration.get()!=generation) {
+            // cleared while we were computing; our value may be stale
+            resolvedValueCache.remove(key.getName(), entry);
+        }
+        return result;
     }
     
     @Override
     public <T> T getConfig(HasConfigKey<T> key) {
-        return getConfigImpl(key.getConfigKey(), false).getWithoutError().get();
+        return getConfig(key.getConfigKey());
+    }
+
+    /** whether {@link #getConfig(ConfigKey)} should cache resolved values; false by default, as subclasses must
+     * ensure {@link #clearResolvedValueCache()} is called when config inherited from ancestors may have changed */
+    protected boolean isResolvedValueCacheEnabled() {
+        return false;
+    }
+
+    /** discards all cached resolved values; to be called by the container whenever config inherited from ancestors may have changed */
+    public void clearResolvedValueCache() {
+        resolvedValueCacheGeneration.incrementAndGet();
+        resolvedValueCache.clear();
+    }
+
+    /** discards the cached resolved values of all config maps, e.g. because the keys declared on a type have changed */
+    public static void clearAllResolvedValueCaches() {
+        GLOBAL_RESOLVED_VALUE_CACHE_GENERATION.incrementAndGet();
+    }
+
+    /** number of {@link #getConfig(ConfigKey)} calls (in all config maps) answered from the resolved value cache */
+    public static long getResolvedValueCacheHitCount() {
+        return RESOLVED_VALUE_CACHE_HITS.get();
+    }
+
+    /** number of {@link #getConfig(ConfigKey)} calls (in all config maps with the cache enabled) which had to look up and resolve the value */
+    public static long getResolvedValueCacheMissCount() {
+        return RESOLVED_VALUE_CACHE_MISSES.get();
+    }
+
+    /**
+     * Whether the value for the given key can be cached: the key must be a simple (not structured) key,
+     * and the raw value found (or the default, if there is none) must not be a task, supplier, future
+     * or collection, as these are re-evaluated (or deeply resolved) on every lookup.
+     */
+    protected boolean isResolvedValueCacheable(ConfigKey<?> queryKey) {
+        ConfigKey<?> ownKey = getKeyAtContainer(getContainer(), queryKey);
+        if (!isResolvedValueCacheableKey(queryKey) || (ownKey!=null && !isResolvedValueCacheableKey(ownKey))) return false;
+        
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        ReferenceWithError<ConfigValueAtContainer<TContainer,Object>> raw = getConfigImpl((ConfigKey)queryKey, true);
+        if (raw.hasError()) return false;
+        Maybe<?> rawValue = raw.getWithoutError().asMaybe();
+        if (rawValue.isPresent()) return isResolvedValueCacheableValue(rawValue.get());
+        
+        ConfigKey<?> defaultKey = (ownKey!=null && ownKey.hasDefaultValue()) ? ownKey : queryKey;
+        return !defaultKey.hasDefaultValue() || isResolvedValueCacheableValue(defaultKey.getDefaultValue());
+    }
+
+    private static boolean isResolvedValueCacheableKey(ConfigKey<?> key) {
+        return (key instanceof BasicConfigKey) && !(key instanceof StructuredConfigKey) && !(key instanceof SubElementConfigKey);
+    }
+
+    private static boolean isResolvedValueCacheableValue(Object v) {
+        return !(v instanceof DeferredSupplier || v instanceof ImmediateSupplier || v instanceof TaskFactory || v instanceof TaskAdaptable
+            || v instanceof Future || v instanceof Supplier || ValueResolver.supportsDeepResolution(v) || v instanceof Iterable
+            || (v!=null && v.getClass().isArray()));
     }
 
     @Override
@@ -184,6 +298,7 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
         } else {
             oldVal = ownConfig.put(ownKey, val);
         }
+        clearResolvedValueCache();
         postSetConfig();
         return oldVal;
     }
@@ -195,6 +310,8 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
             ownConfig.clear();
             ownConfig.putAll(vals);
         }
+        clearResolvedValueCache();
+        postSetConfig();
     }
 
     @SuppressWarnings("unchecked")
@@ -213,11 +330,13 @@ public abstract class AbstractConfigMapImpl<TContainer extends BrooklynObject> i
     }
 
     public void removeKey(String key) {
-        ownConfig.remove(ConfigKeys.newConfigKey(Object.class, key));
+        removeKey(ConfigKeys.newConfigKey(Object.class, key));
     }
 
     public void removeKey(ConfigKey<?> key) {
         ownConfig.remove(key);
+        clearResolvedValueCache();
+        postSetConfig();
     }
 
     protected final TContainer getParent() {
@@ -34,6 +34,7 @@ import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.mgmt.rebind.BasicEnricherRebindSupport;
 import org.apache.brooklyn.core.objs.AbstractEntityAdjunct;
+import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.flags.TypeCoercions;
 import org.apache.brooklyn.util.guava.Maybe;
 
@@ -50,6 +51,12 @@ public abstract class AbstractEnricher extends AbstractEntityAdjunct implements
             "enricher.suppressDuplicates",
             "Whether duplicate values published by this enricher should be suppressed");
 
+    public static final ConfigKey<Boolean> COALESCE_EVENTS = ConfigKeys.newBooleanConfigKey(
+            "enricher.coalesceEvents",
+            "Whether, if a producer's attribute changes faster than this enricher processes the changes, "
+            + "to skip intermediate values and process only the most recent (where supported by the enricher)",
+            false);
+
     private static class DeduplicatingAttributeModifier<T> implements Function<T, Maybe<T>> {
         public static <T> DeduplicatingAttributeModifier<T> create(T newVal) {
             return new DeduplicatingAttributeModifier<T>(newVal);
@@ -122,6 +129,19 @@ public abstract class AbstractEnricher extends AbstractEntityAdjunct implements
         requestPersist();
     }
 
+    /**
+     * Flags for subscribing to attribute sensors where only the latest value matters,
+     * requesting events be coalesced if {@link #COALESCE_EVENTS} is set. 
+     * Returns a new mutable map on each call, so callers can add flags.
+     */
+    protected MutableMap<String, Object> getValueSubscriptionFlags() {
+        MutableMap<String, Object> result = MutableMap.of();
+        if (Boolean.TRUE.equals(getConfig(COALESCE_EVENTS))) {
+            result.put("coalesceEvents", true);
+        }
+        return result;
+    }
+
     protected <T> void emit(Sensor<T> sensor, Object val) {
         checkState(entity != null, "entity must first be set");
         if (val == Entities.UNCHANGED) {
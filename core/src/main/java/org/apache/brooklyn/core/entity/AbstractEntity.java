@@ -80,6 +80,7 @@ import org.apache.brooklyn.core.mgmt.BrooklynTags;
 import org.apache.brooklyn.core.mgmt.BrooklynTags.NamedStringTag;
 import org.apache.brooklyn.core.mgmt.internal.EffectorUtils;
 import org.apache.brooklyn.core.mgmt.internal.EntityManagementSupport;
+import org.apache.brooklyn.core.mgmt.internal.EntityManagerInternal;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.core.mgmt.internal.SubscriptionTracker;
 import org.apache.brooklyn.core.mgmt.rebind.BasicEntityRebindSupport;
@@ -519,9 +520,22 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
     public void setDisplayName(String newDisplayName) {
         displayName.set(newDisplayName);
         displayNameAutoGenerated = false;
+        ManagementContext mgmt = getManagementContext();
+        if (mgmt != null && mgmt.getEntityManager() instanceof EntityManagerInternal) {
+            ((EntityManagerInternal)mgmt.getEntityManager()).onDisplayNameChanged(getProxyIfAvailable());
+        }
         getManagementSupport().getEntityChangeListener().onChanged();
     }
     
+    @Override
+    public void setCatalogItemId(String id) {
+        super.setCatalogItemId(id);
+        ManagementContext mgmt = getManagementContext();
+        if (mgmt != null && mgmt.getEntityManager() instanceof EntityManagerInternal) {
+            ((EntityManagerInternal)mgmt.getEntityManager()).onCatalogItemIdChanged(getProxyIfAvailable());
+        }
+    }
+    
     /** allows subclasses to set the default display name to use if none is provided */
     protected void setDefaultDisplayName(String displayNameIfDefault) {
         if (displayNameAutoGenerated) {
@@ -592,6 +606,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
             if (!Entities.isNoLongerManaged(oldParent)) 
                 oldParent.removeChild(getProxyIfAvailable());
         }
+        config().refreshInheritedConfig();
     }
     
     /**
@@ -1107,8 +1122,8 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
 
         @Override
         public void refreshInheritedConfig() {
-            // no-op, for now, because the impl always looks at ancestors
-            // but in a distributed impl it will need to clear any local cache
+            // the impl always looks at ancestors, but may have cached resolved values
+            configsInternal.clearResolvedValueCache();
             refreshInheritedConfigOfChildren();
         }
         
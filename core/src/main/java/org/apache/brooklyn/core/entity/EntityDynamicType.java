@@ -32,6 +32,7 @@ import org.apache.brooklyn.api.entity.EntityType;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.config.ConfigKey.HasConfigKey;
+import org.apache.brooklyn.core.config.internal.AbstractConfigMapImpl;
 import org.apache.brooklyn.core.effector.EffectorAndBody;
 import org.apache.brooklyn.core.effector.EffectorBody;
 import org.apache.brooklyn.core.effector.EffectorTasks.EffectorBodyTaskFactory;
@@ -234,6 +235,7 @@ public class EntityDynamicType extends BrooklynDynamicType<Entity, AbstractEntit
     public void addConfigKey(ConfigKey<?> newKey) {
         configKeys.put(newKey.getName(), new FieldAndValue<ConfigKey<?>>(null, newKey));
         invalidateSnapshot();
+        AbstractConfigMapImpl.clearAllResolvedValueCaches();
         instance.sensors().emit(AbstractEntity.CONFIG_KEY_ADDED, newKey);
     }
     
@@ -253,6 +255,7 @@ public class EntityDynamicType extends BrooklynDynamicType<Entity, AbstractEntit
         FieldAndValue<ConfigKey<?>> result = configKeys.remove(key.getName());
         if (result != null) {
             invalidateSnapshot();
+            AbstractConfigMapImpl.clearAllResolvedValueCaches();
             ConfigKey<?> removedKey = result.value;
             instance.sensors().emit(AbstractEntity.CONFIG_KEY_REMOVED, removedKey);
             return true;
@@ -265,6 +268,7 @@ public class EntityDynamicType extends BrooklynDynamicType<Entity, AbstractEntit
         Map<String, FieldAndValue<ConfigKey<?>>> oldKeys = MutableMap.copyOf(configKeys);
         configKeys.clear();
         invalidateSnapshot();
+        AbstractConfigMapImpl.clearAllResolvedValueCaches();
         for (FieldAndValue<ConfigKey<?>> k: oldKeys.values()) {
             instance.sensors().emit(AbstractEntity.CONFIG_KEY_REMOVED, k.value);
         }
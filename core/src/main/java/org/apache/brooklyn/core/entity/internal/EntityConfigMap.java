@@ -28,6 +28,7 @@ import org.apache.brooklyn.api.mgmt.ExecutionContext;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.objs.BrooklynObject;
 import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.config.internal.AbstractConfigMapImpl;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.objs.BrooklynObjectInternal.ConfigurationSupportInternal;
@@ -43,6 +44,8 @@ public class EntityConfigMap extends AbstractConfigMapImpl<Entity> {
     @SuppressWarnings("unused")
     private static final Logger LOG = LoggerFactory.getLogger(EntityConfigMap.class);
 
+    private final boolean resolvedValueCacheEnabled = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_CONFIG_RESOLVED_VALUE_CACHE);
+
     public EntityConfigMap(EntityInternal entity) {
         super(checkNotNull(entity, "entity must be specified"));
     }
@@ -51,6 +54,11 @@ public class EntityConfigMap extends AbstractConfigMapImpl<Entity> {
         super(checkNotNull(entity, "entity must be specified"), checkNotNull(storage, "storage map must be specified"));
     }
 
+    @Override
+    protected boolean isResolvedValueCacheEnabled() {
+        return resolvedValueCacheEnabled;
+    }
+
     /** entity against which config resolution / task execution will occur
      * @deprecated since 0.10.0 kept for serialization */ @Deprecated
     private EntityInternal entity;
@@ -39,6 +39,7 @@ import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
 import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.BrooklynLogging.LoggingLevel;
 import org.apache.brooklyn.core.config.BasicConfigInheritance;
@@ -58,6 +59,7 @@ import org.apache.brooklyn.util.collections.CollectionFunctionals;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.collections.PersistentMap;
 import org.apache.brooklyn.util.collections.QuorumCheck;
 import org.apache.brooklyn.util.collections.QuorumCheck.QuorumChecks;
 import org.apache.brooklyn.util.core.task.ValueResolver;
@@ -106,7 +108,10 @@ public class ServiceStateLogic {
         updateMapSensorEntry(entity, sensor, key, (TVal)Entities.REMOVE);
     }
 
-    /** update the given key in the given map sensor */
+    /**
+     * update the given key in the given map sensor;
+     * see {@link BrooklynFeatureEnablement#FEATURE_PERSISTENT_MAP_SENSORS} for updating without copying the map
+     */
     public static <TKey,TVal> void updateMapSensorEntry(Entity entity, AttributeSensor<Map<TKey,TVal>> sensor, final TKey key, final TVal v) {
         /*
          * Important to *not* modify the existing attribute value; must make a copy, modify that, and publish.
@@ -117,18 +122,26 @@ public class ServiceStateLogic {
          * Need to do this update atomically (i.e. sequentially) because there is no threading control for
          * what is calling updateMapSensorEntity. It is called directly on start, on initialising enrichers,
          * and in event listeners. These calls could be concurrent.
+         * 
+         * A PersistentMap is immutable, so it can be shared that way, and its plus/minus give a new
+         * version sharing most of the structure instead of a full copy.
          */
+        final boolean persistent = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_PERSISTENT_MAP_SENSORS);
         Function<Map<TKey,TVal>, Maybe<Map<TKey,TVal>>> modifier = new Function<Map<TKey,TVal>, Maybe<Map<TKey,TVal>>>() {
             @Override public Maybe<Map<TKey, TVal>> apply(Map<TKey, TVal> map) {
                 boolean created = (map==null);
-                if (created) map = MutableMap.of();
+                if (created) map = persistent ? PersistentMap.<TKey,TVal>of() : MutableMap.<TKey,TVal>of();
 
                 boolean changed;
                 if (v == Entities.REMOVE) {
                     changed = map.containsKey(key);
                     if (changed) {
-                        map = MutableMap.copyOf(map);
-                        map.remove(key);
+                        if (persistent) {
+                            map = PersistentMap.copyOf(map).minus(key);
+                        } else {
+                            map = MutableMap.copyOf(map);
+                            map.remove(key);
+                        }
                     }
                 } else {
                     TVal oldV = map.get(key);
@@ -138,8 +151,12 @@ public class ServiceStateLogic {
                         changed = !oldV.equals(v);
                     }
                     if (changed) {
-                        map = MutableMap.copyOf(map);
-                        map.put(key, v);
+                        if (persistent) {
+                            map = PersistentMap.copyOf(map).plus(key, v);
+                        } else {
+                            map = MutableMap.copyOf(map);
+                            map.put(key, v);
+                        }
                     }
                 }
                 if (changed || created) {
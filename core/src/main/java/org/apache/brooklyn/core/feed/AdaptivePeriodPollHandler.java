@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.feed;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Implemented by a {@link PollHandler} whose poll may back off (see {@link PollConfig#maxPeriod(long)})
+ * while the values it receives are unchanged.
+ */
+@Beta
+public interface AdaptivePeriodPollHandler {
+
+    /** The longest period (in millis) the poll may back off to, or a non-positive value if it should not back off. */
+    long getMaxPeriod();
+
+    /** The factor by which the period is multiplied after each unchanged poll. */
+    double getPeriodBackoffFactor();
+
+    /** Whether the most recent poll succeeded with the same value as the poll before it. */
+    boolean isLastPollUnchanged();
+}
@@ -44,7 +44,7 @@ import com.google.common.base.Objects;
  * 
  * @author aled
  */
-public class AttributePollHandler<V> implements PollHandler<V> {
+public class AttributePollHandler<V> implements PollHandler<V>, AdaptivePeriodPollHandler {
 
     public static final Logger log = LoggerFactory.getLogger(AttributePollHandler.class);
 
@@ -60,6 +60,11 @@ public class AttributePollHandler<V> implements PollHandler<V> {
     private volatile Long currentProblemStartTime = null;
     private volatile boolean currentProblemLoggedAsWarning = false;
     private volatile boolean lastWasProblem = false;
+    
+    // internal state for adaptive poll periods
+    private static final Object NO_VALUE = new Object();
+    private volatile Object lastPolledValue = NO_VALUE;
+    private volatile boolean lastPollUnchanged = false;
 
     
     public AttributePollHandler(FeedConfig<V,?,?> config, Entity entity, AbstractFeed feed) {
@@ -79,7 +84,10 @@ public class AttributePollHandler<V> implements PollHandler<V> {
     @Override
     public void onSuccess(V val) {
         if (log.isTraceEnabled()) log.trace("poll for "+getBriefDescription()+" got: "+val);
-        setSensor(transformValueOnSuccess(val));
+        Object v = transformValueOnSuccess(val);
+        lastPollUnchanged = (lastPolledValue != NO_VALUE) && Objects.equal(v, lastPolledValue);
+        lastPolledValue = v;
+        setSensor(v);
         
         if (lastWasProblem) {
             if (currentProblemLoggedAsWarning) { 
@@ -102,6 +110,7 @@ public class AttributePollHandler<V> implements PollHandler<V> {
 
     @Override
     public void onFailure(V val) {
+        resetLastPolledValue();
         if (!config.hasFailureHandler()) {
             onException(new Exception("checkSuccess of "+this+" for "+getBriefDescription()+" was false but poller has no failure handler"));
         } else {
@@ -122,6 +131,7 @@ public class AttributePollHandler<V> implements PollHandler<V> {
 
     @Override
     public void onException(Exception exception) {
+        resetLastPolledValue();
         if (!feed.isConnected()) {
             if (log.isTraceEnabled()) log.trace("Read of "+this+" in "+getBriefDescription()+" gave exception (while not connected or not yet connected): "+ exception);
         } else {
@@ -231,6 +241,26 @@ public class AttributePollHandler<V> implements PollHandler<V> {
         return sensor.getName()+" @ "+entity.getId()+" <- "+config;
     }
     
+    private void resetLastPolledValue() {
+        lastPolledValue = NO_VALUE;
+        lastPollUnchanged = false;
+    }
+
+    @Override
+    public long getMaxPeriod() {
+        return (config instanceof PollConfig) ? ((PollConfig<?,?,?>)config).getMaxPeriod() : -1;
+    }
+
+    @Override
+    public double getPeriodBackoffFactor() {
+        return (config instanceof PollConfig) ? ((PollConfig<?,?,?>)config).getPeriodBackoffFactor() : 1;
+    }
+
+    @Override
+    public boolean isLastPollUnchanged() {
+        return lastPollUnchanged;
+    }
+
     protected String getBriefDescription() {
         return ""+entity+"->"+(sensor==FeedConfig.NO_SENSOR ? "(dynamic sensors)" : ""+sensor);
     }
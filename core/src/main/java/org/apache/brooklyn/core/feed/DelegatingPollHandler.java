@@ -27,7 +27,7 @@ import com.google.common.collect.ImmutableList;
  * 
  * @author aled
  */
-public class DelegatingPollHandler<V> implements PollHandler<V> {
+public class DelegatingPollHandler<V> implements PollHandler<V>, AdaptivePeriodPollHandler {
 
     private final List<AttributePollHandler<? super V>> delegates;
 
@@ -66,6 +66,35 @@ public class DelegatingPollHandler<V> implements PollHandler<V> {
         }
     }
     
+    /** the smallest max period of the delegates, or -1 if any of them should not back off */
+    @Override
+    public long getMaxPeriod() {
+        long result = -1;
+        for (AttributePollHandler<? super V> delegate : delegates) {
+            long maxPeriod = delegate.getMaxPeriod();
+            if (maxPeriod <= 0) return -1;
+            result = (result < 0) ? maxPeriod : Math.min(result, maxPeriod);
+        }
+        return result;
+    }
+
+    @Override
+    public double getPeriodBackoffFactor() {
+        double result = Double.MAX_VALUE;
+        for (AttributePollHandler<? super V> delegate : delegates) {
+            result = Math.min(result, delegate.getPeriodBackoffFactor());
+        }
+        return delegates.isEmpty() ? 1 : result;
+    }
+
+    @Override
+    public boolean isLastPollUnchanged() {
+        for (AttributePollHandler<? super V> delegate : delegates) {
+            if (!delegate.isLastPollUnchanged()) return false;
+        }
+        return !delegates.isEmpty();
+    }
+
     @Override
     public String toString() {
         return super.toString()+"["+getDescription()+"]";
@@ -26,6 +26,8 @@ import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.time.Duration;
 
+import com.google.common.annotations.Beta;
+
 /**
  * Configuration for polling, which is being added to a feed (e.g. to poll a given URL over http).
  * 
@@ -34,6 +36,8 @@ import org.apache.brooklyn.util.time.Duration;
 public class PollConfig<V, T, F extends PollConfig<V, T, F>> extends FeedConfig<V, T, F> {
 
     private long period = -1;
+    private long maxPeriod = -1;
+    private double periodBackoffFactor = 2;
     private String description;
 
     public PollConfig(AttributeSensor<T> sensor) {
@@ -43,6 +47,8 @@ public class PollConfig<V, T, F extends PollConfig<V, T, F>> extends FeedConfig<
     public PollConfig(PollConfig<V,T,F> other) {
         super(other);
         this.period = other.period;
+        this.maxPeriod = other.maxPeriod;
+        this.periodBackoffFactor = other.periodBackoffFactor;
     }
 
     public long getPeriod() {
@@ -65,6 +71,40 @@ public class PollConfig<V, T, F extends PollConfig<V, T, F>> extends FeedConfig<
         return period(units.toMillis(val));
     }
     
+    public long getMaxPeriod() {
+        return maxPeriod;
+    }
+    
+    public double getPeriodBackoffFactor() {
+        return periodBackoffFactor;
+    }
+    
+    /**
+     * Makes the period adaptive: while successive polls give an unchanged value, the period is multiplied by
+     * the {@link #periodBackoffFactor(double) backoff factor} after each poll, up to this maximum; it returns to the
+     * {@link #period(long) period} as soon as the value changes or a poll fails.
+     */
+    @Beta
+    public F maxPeriod(Duration val) {
+        return maxPeriod(val.toMilliseconds());
+    }
+    
+    /** @see #maxPeriod(Duration) */
+    @Beta
+    public F maxPeriod(long millis) {
+        checkArgument(millis >= 0, "maxPeriod must be greater than or equal to zero");
+        this.maxPeriod = millis;
+        return self();
+    }
+    
+    /** The factor by which an adaptive period (see {@link #maxPeriod(Duration)}) grows after each unchanged poll; defaults to 2. */
+    @Beta
+    public F periodBackoffFactor(double val) {
+        checkArgument(val >= 1, "periodBackoffFactor must be at least 1");
+        this.periodBackoffFactor = val;
+        return self();
+    }
+    
     public F description(String description) {
         this.description = description;
         return self();
@@ -80,6 +120,6 @@ public class PollConfig<V, T, F extends PollConfig<V, T, F>> extends FeedConfig<
 
     @Override
     protected MutableList<Object> equalsFields() {
-        return super.equalsFields().appendIfNotNull(period);
+        return super.equalsFields().appendIfNotNull(period).appendIfNotNull(maxPeriod).appendIfNotNull(periodBackoffFactor);
     }
 }
@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.feed;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.util.time.Duration;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+
+/**
+ * Timing policy shared by all {@link Poller}s in a management context, used to avoid feeds polling in lockstep
+ * (e.g. when many entities start or rebind at once), and to record how promptly polls run.
+ * <p>
+ * With {@link #PHASE_SPREAD}, the first run of each poll job is offset by a stable amount (derived from the
+ * entity and job) within the spread, capped at the poll period. With {@link #JITTER}, each subsequent period is
+ * randomly lengthened or shortened by up to the given fraction. Both default to off.
+ * <p>
+ * A poll job is never run while its previous run is still in progress: the next run is scheduled once the
+ * previous one completes, so a slow poll skips what would have been overlapping runs. Such runs, taking longer
+ * than the period, are counted as overruns in {@link #getMetrics()}, along with how late runs start compared
+ * to when they were scheduled.
+ */
+@Beta
+public class PollScheduler {
+
+    public static final ConfigKey<Duration> PHASE_SPREAD = ConfigKeys.newConfigKey(Duration.class,
+            "brooklyn.feed.poll.phaseSpread",
+            "Maximum offset by which the first run of each poll is delayed, to spread polls out "
+            + "(capped at the poll's period); zero means all polls start immediately", Duration.ZERO);
+
+    public static final ConfigKey<Double> JITTER = ConfigKeys.newDoubleConfigKey(
+            "brooklyn.feed.poll.jitter",
+            "Fraction (between 0 and 1) by which each poll period is randomly varied, e.g. 0.1 for +/- 10%", 0.0);
+
+    private static final ConfigKey<PollScheduler> SCRATCHPAD_KEY = ConfigKeys.newConfigKey(PollScheduler.class,
+            "brooklyn.feed.poll.scheduler.instance");
+
+    /** periods longer than this (e.g. {@link Duration#PRACTICALLY_FOREVER}) are never jittered */
+    private static final long MAX_JITTERED_PERIOD_MILLIS = Long.MAX_VALUE / 4;
+
+    /** Returns the scheduler for the given management context, creating it on first use. */
+    public static PollScheduler get(ManagementContext mgmt) {
+        if (mgmt==null) return new PollScheduler(Duration.ZERO, 0);
+        synchronized (mgmt.getScratchpad()) {
+            PollScheduler result = mgmt.getScratchpad().get(SCRATCHPAD_KEY);
+            if (result==null) {
+                result = new PollScheduler(mgmt.getConfig().getConfig(PHASE_SPREAD), mgmt.getConfig().getConfig(JITTER));
+                mgmt.getScratchpad().put(SCRATCHPAD_KEY, result);
+            }
+            return result;
+        }
+    }
+
+    private final Duration phaseSpread;
+    private final double jitter;
+    private final Random random = new Random();
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong totalLatenessMillis = new AtomicLong();
+    private final AtomicLong maxLatenessMillis = new AtomicLong();
+
+    public PollScheduler(Duration phaseSpread, double jitter) {
+        if (jitter < 0 || jitter > 1) throw new IllegalArgumentException("Poll jitter must be between 0 and 1, but was "+jitter);
+        this.phaseSpread = (phaseSpread != null) ? phaseSpread : Duration.ZERO;
+        this.jitter = jitter;
+    }
+
+    /** The delay before the first run of the given job; the same for a given job id, spread evenly across job ids. */
+    public Duration getInitialDelay(String jobId, Duration period) {
+        if (!phaseSpread.isPositive() || period == null || !period.isPositive()) return Duration.ZERO;
+        long window = Duration.min(phaseSpread, period).toMilliseconds();
+        if (window <= 0) return Duration.ZERO;
+        long hash = Hashing.murmur3_32().hashString(jobId, StandardCharsets.UTF_8).asInt() & 0x7fffffffL;
+        return Duration.millis(hash % window);
+    }
+
+    /** The delay before the next run, i.e. the given period with any jitter applied. */
+    public Duration getNextPeriod(Duration period) {
+        if (jitter <= 0 || period == null) return period;
+        long millis = period.toMilliseconds();
+        if (millis <= 0 || millis > MAX_JITTERED_PERIOD_MILLIS) return period;
+        double factor;
+        synchronized (random) {
+            factor = 1 + jitter * (2*random.nextDouble() - 1);
+        }
+        return Duration.millis(Math.max(1, Math.round(millis * factor)));
+    }
+
+    /** Records a run which was due at the expected time, and ran between the given start and end times. */
+    public void recordRun(long expectedStartTime, long startTime, long endTime, Duration period) {
+        runs.incrementAndGet();
+        long lateness = Math.max(0, startTime - expectedStartTime);
+        totalLatenessMillis.addAndGet(lateness);
+        long max;
+        while (lateness > (max = maxLatenessMillis.get())) {
+            if (maxLatenessMillis.compareAndSet(max, lateness)) break;
+        }
+        if (period != null && endTime - startTime > period.toMilliseconds()) {
+            overruns.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns counts of the poll runs recorded: {@code runs}, {@code overruns} (runs taking longer than their period),
+     * and {@code totalLatenessMillis} and {@code maxLatenessMillis} (how long after their scheduled time runs started).
+     */
+    public Map<String, Long> getMetrics() {
+        return ImmutableMap.of(
+                "runs", runs.get(),
+                "overruns", overruns.get(),
+                "totalLatenessMillis", totalLatenessMillis.get(),
+                "maxLatenessMillis", maxLatenessMillis.get());
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"[phaseSpread="+phaseSpread+", jitter="+jitter+"]";
+    }
+}
@@ -22,6 +22,7 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.mgmt.Task;
@@ -64,10 +65,15 @@ public class Poller<V> {
         final Duration pollPeriod;
         final Runnable wrappedJob;
         private boolean loggedPreviousException = false;
+        /** when the next run is due, for recording lateness */
+        volatile long expectedStartTime;
+        /** the period until the next run; longer than {@link #pollPeriod} if an {@link AdaptivePeriodPollHandler} is backing off */
+        volatile Duration currentPeriod;
         
         PollJob(final Callable<V> job, final PollHandler<? super V> handler, Duration period) {
             this.handler = handler;
             this.pollPeriod = period;
+            this.currentPeriod = period;
             
             wrappedJob = new Runnable() {
                 @Override
@@ -80,7 +86,9 @@ public class Poller<V> {
                         } else {
                             handler.onFailure(val);
                         }
+                        updateCurrentPeriod();
                     } catch (Exception e) {
+                        currentPeriod = pollPeriod;
                         if (loggedPreviousException) {
                             if (log.isTraceEnabled()) log.trace("PollJob for {}, repeated consecutive failures, handling {} using {}", new Object[] {job, e, handler});
                         } else {
@@ -92,6 +100,19 @@ public class Poller<V> {
                 }
             };
         }
+        
+        /** backs off while the handler reports unchanged values, and returns to the configured period otherwise */
+        private void updateCurrentPeriod() {
+            if (!(handler instanceof AdaptivePeriodPollHandler)) return;
+            AdaptivePeriodPollHandler adaptive = (AdaptivePeriodPollHandler) handler;
+            long maxPeriod = adaptive.getMaxPeriod();
+            if (maxPeriod <= pollPeriod.toMilliseconds() || !adaptive.isLastPollUnchanged()) {
+                currentPeriod = pollPeriod;
+            } else {
+                long next = (long) (currentPeriod.toMilliseconds() * adaptive.getPeriodBackoffFactor());
+                currentPeriod = Duration.millis(Math.min(next, maxPeriod));
+            }
+        }
     }
 
     /** @deprecated since 0.12.0 pass in feed */
@@ -142,29 +163,44 @@ public class Poller<V> {
             oneOffTasks.add(feed.getExecutionContext().submit(task));
         }
         
+        final PollScheduler scheduler = PollScheduler.get(((EntityInternal)entity).getManagementContext());
         Duration minPeriod = null;
         for (final PollJob<V> pollJob : pollJobs) {
             final String scheduleName = pollJob.handler.getDescription();
             if (pollJob.pollPeriod.compareTo(Duration.ZERO) > 0) {
+                final AtomicReference<ScheduledTask> scheduled = new AtomicReference<ScheduledTask>();
+                Duration initialDelay = scheduler.getInitialDelay(entity.getId()+":"+scheduleName, pollJob.pollPeriod);
+                pollJob.expectedStartTime = System.currentTimeMillis() + initialDelay.toMilliseconds();
                 ScheduledTask t = ScheduledTask.builder(() -> {
                             DynamicSequentialTask<Void> task = new DynamicSequentialTask<Void>(MutableMap.of("displayName", scheduleName, "entity", entity), 
                                 new Callable<Void>() { @Override public Void call() {
-                                    if (!Entities.isManaged(entity)) {
-                                        return null;
-                                    }
-                                    if (onlyIfServiceUp && !Boolean.TRUE.equals(entity.getAttribute(Attributes.SERVICE_UP))) {
+                                    long startTime = System.currentTimeMillis();
+                                    try {
+                                        if (!Entities.isManaged(entity)) {
+                                            return null;
+                                        }
+                                        if (onlyIfServiceUp && !Boolean.TRUE.equals(entity.getAttribute(Attributes.SERVICE_UP))) {
+                                            return null;
+                                        }
+                                        pollJob.wrappedJob.run();
+                                        scheduler.recordRun(pollJob.expectedStartTime, startTime, System.currentTimeMillis(), pollJob.pollPeriod);
                                         return null;
+                                    } finally {
+                                        // the scheduled task resubmits with its (possibly adaptive and jittered) period once this run completes
+                                        Duration nextPeriod = scheduler.getNextPeriod(pollJob.currentPeriod);
+                                        if (scheduled.get() != null) scheduled.get().period(nextPeriod);
+                                        pollJob.expectedStartTime = System.currentTimeMillis() + nextPeriod.toMilliseconds();
                                     }
-                                    pollJob.wrappedJob.run();
-                                    return null; 
                                 } } );
                             BrooklynTaskTags.setTransient(task);
                             return task;
                         })
                         .displayName("scheduled:" + scheduleName)
+                        .delay(initialDelay.isPositive() ? initialDelay : null)
                         .period(pollJob.pollPeriod)
                         .cancelOnException(false)
                         .build();
+                scheduled.set(t);
                 tasks.add(Entities.submit(entity, t));
                 if (minPeriod==null || (pollJob.pollPeriod.isShorterThan(minPeriod))) {
                     minPeriod = pollJob.pollPeriod;
@@ -97,6 +97,8 @@ public abstract class AbstractSubscriptionManager implements SubscriptionManager
      * <li>subscriberExecutionManagerTag - a tag to pass to execution manager (without setting any execution semantics / TaskPreprocessor);
      *      if not supplied and there is a subscriber, this will be inferred from the subscriber and set up with SingleThreadedScheduler
      * <li>eventFilter - a Predicate&lt;SensorEvent&gt; instance to filter what events are delivered
+     * <li>coalesceEvents - if true, then where attribute change events for a given producer and sensor are published
+     *      faster than they are delivered, only the most recent is delivered (intermediate values are skipped)
      * </ul>
      * 
      * @see SubscriptionManager#subscribe(Map, Entity, Sensor, SensorEventListener)
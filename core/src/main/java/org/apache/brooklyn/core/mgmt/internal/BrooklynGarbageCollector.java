@@ -18,22 +18,27 @@
  */
 package org.apache.brooklyn.core.mgmt.internal;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.ConcurrentModificationException;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
@@ -64,6 +69,8 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 
 /**
@@ -147,6 +154,14 @@ public class BrooklynGarbageCollector {
             "the duration after which a completed task will be automatically deleted", 
             Duration.days(30));
     
+    @Beta
+    public static final ConfigKey<Boolean> INCREMENTAL = ConfigKeys.newBooleanConfigKey(
+            "brooklyn.gc.incremental", 
+            "whether to record completed tasks in age-ordered queues (overall and per tag) as they finish, "
+            + "so that aged and over-capacity tasks are expired from the oldest end without scanning and sorting all tasks; "
+            + "only read at startup", 
+            false);
+    
     protected final static Comparator<Task<?>> TASKS_OLDEST_FIRST_COMPARATOR = new Comparator<Task<?>>() {
         @Override public int compare(Task<?> t1, Task<?> t2) {
             long end1 = t1.getEndTimeUtc();
@@ -163,6 +178,22 @@ public class BrooklynGarbageCollector {
     private ScheduledFuture<?> activeCollector;
     private Map<Entity,Task<?>> unmanagedEntitiesNeedingGc = new LinkedHashMap<Entity, Task<?>>();
     
+    /** completed tasks in order of completion (so oldest first, apart from tasks kept by a previous pass, which are
+     * moved to the end), or null if not {@link #INCREMENTAL}; may contain tasks which have since been deleted,
+     * which are pruned lazily */
+    private final Deque<Task<?>> completedTasks;
+    /** as {@link #completedTasks}, for each tag not {@link #isTagIgnoredForGc(Object) ignored}; 
+     * each queue is modified only when synchronized on it */
+    private final ConcurrentMap<Object,Deque<Task<?>>> completedTasksByTag;
+    /** max number of tasks taken from {@link #completedTasks} at a time, to be deleted without holding its monitor
+     * (which blocks tasks completing) */
+    private static final int COMPLETED_TASKS_BATCH_SIZE = 1000;
+    
+    private final AtomicLong gcIterations = new AtomicLong();
+    private final AtomicLong gcTasksDeleted = new AtomicLong();
+    private volatile long lastGcDurationMillis = 0;
+    private volatile long maxGcDurationMillis = 0;
+    
     private Duration gcPeriod;
     private volatile boolean running = true;
     
@@ -174,6 +205,14 @@ public class BrooklynGarbageCollector {
         if (brooklynProperties.getConfig(TRACK_SOFT_MAYBE_USAGE))
             SoftlyPresent.getUsageTracker().enable();
         
+        if (Boolean.TRUE.equals(brooklynProperties.getConfig(INCREMENTAL))) {
+            completedTasks = new ArrayDeque<Task<?>>();
+            completedTasksByTag = new ConcurrentHashMap<Object, Deque<Task<?>>>();
+        } else {
+            completedTasks = null;
+            completedTasksByTag = null;
+        }
+        
         executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
                 @Override public Thread newThread(Runnable r) {
                     return new Thread(r, "brooklyn-gc");
@@ -208,7 +247,13 @@ public class BrooklynGarbageCollector {
     public void gcIteration() {
         try {
             logUsage("brooklyn gc (before)");
-            gcTasks();
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            int deleted = gcTasks();
+            long duration = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            gcIterations.incrementAndGet();
+            gcTasksDeleted.addAndGet(deleted);
+            lastGcDurationMillis = duration;
+            if (duration > maxGcDurationMillis) maxGcDurationMillis = duration;
             logUsage("brooklyn gc (after)");
             
             double memUsage = 1.0 - 1.0*Runtime.getRuntime().freeMemory() / Runtime.getRuntime().maxMemory();
@@ -257,7 +302,24 @@ public class BrooklynGarbageCollector {
             executionManager.getNumActiveTasks()+" active, "+
             executionManager.getNumIncompleteTasks()+" unfinished; "+
             executionManager.getNumInMemoryTasks()+" remembered, "+
-            executionManager.getTotalTasksSubmitted()+" total submitted)";
+            executionManager.getTotalTasksSubmitted()+" total submitted; "+
+            executionManager.getNumPoolThreads()+" pool threads"+
+            (executionManager.isBounded() ? ", "+executionManager.getNumQueuedTasks()+" queued" : "")+
+            (executionManager.getNumRejectedTasks()>0 ? ", "+executionManager.getNumRejectedTasks()+" rejected" : "")+
+            "); "+
+            "gc: "+gcIterations.get()+" iterations"+(completedTasks!=null ? " (incremental)" : "")+", "+
+            gcTasksDeleted.get()+" tasks expired, "+
+            lastGcDurationMillis+"ms last, "+maxGcDurationMillis+"ms max";
+    }
+    
+    /** counts of GC iterations and of tasks they expired, and durations of iterations */
+    @Beta
+    public Map<String, Long> getMetrics() {
+        return ImmutableMap.of(
+                "iterations", gcIterations.get(),
+                "tasksDeleted", gcTasksDeleted.get(),
+                "lastDurationMillis", lastGcDurationMillis,
+                "maxDurationMillis", maxGcDurationMillis);
     }
     
     public void shutdownNow() {
@@ -289,9 +351,34 @@ public class BrooklynGarbageCollector {
     public void onTaskDone(Task<?> task) {
         if (shouldDeleteTaskImmediately(task)) {
             executionManager.deleteTask(task);
+        } else if (completedTasks != null) {
+            recordCompletedTask(task);
+        }
+    }
+    
+    private void recordCompletedTask(Task<?> completedTask) {
+        // record the instance the execution manager now holds, which may be a compact summary of the completed task
+        final Task<?> task = executionManager.getTask(completedTask.getId());
+        if (task == null) return;
+        synchronized (completedTasks) {
+            completedTasks.addLast(task);
+        }
+        for (Object tag : TaskTags.getTagsFast(task)) {
+            if (isTagIgnoredForGc(tag)) continue;
+            completedTasksByTag.compute(tag, (k, queue) -> {
+                if (queue == null) queue = new ArrayDeque<Task<?>>();
+                synchronized (queue) {
+                    queue.addLast(task);
+                }
+                return queue;
+            });
         }
     }
     
+    private boolean isDeleted(Task<?> task) {
+        return executionManager.getTask(task.getId()) == null;
+    }
+    
     /** whether this task should be deleted on completion,
      * because it is transient, or because it is submitted background without much context information */
     protected boolean shouldDeleteTaskImmediately(Task<?> task) {
@@ -348,6 +435,9 @@ public class BrooklynGarbageCollector {
         }
     
         expireUnmanagedEntityTasks();
+        if (completedTasks != null) {
+            return gcTasksIncrementally();
+        }
         expireAgedTasks();
         expireTransientTasks();
         
@@ -409,6 +499,223 @@ public class BrooklynGarbageCollector {
         return deletedCount;
     }
 
+    /**
+     * As the rest of {@link #gcTasks()}, but expiring from the oldest end of the queues kept by {@link #onTaskDone(Task)}, 
+     * so the work done is proportional to the number of tasks expired (plus any which have since been deleted by other means)
+     * rather than to the total number of tasks.
+     */
+    protected int gcTasksIncrementally() {
+        int deletedCount = 0;
+        deletedCount += expireAgedTasksIncrementally();
+        expireTransientTasks();
+        
+        pruneCompletedTaskQueues();
+        
+        int maxTasksPerEntity = brooklynProperties.getConfig(MAX_TASKS_PER_ENTITY);
+        int maxTasksPerTag = brooklynProperties.getConfig(MAX_TASKS_PER_TAG);
+        deletedCount += expireOverCapacityTagsIncrementally(TagCategory.NON_ENTITY_NORMAL, maxTasksPerTag, maxTasksPerEntity);
+        deletedCount += expireOverCapacityTagsIncrementally(TagCategory.ENTITY, maxTasksPerTag, maxTasksPerEntity);
+        
+        int deletedHere = 0;
+        while ((deletedHere = expireHistoricTasksNowReadyForImmediateDeletion()) > 0) {
+            deletedCount += deletedHere; 
+        }
+        
+        deletedHere = expireIfOverCapacityGloballyIncrementally();
+        deletedCount += deletedHere;
+        while (deletedHere > 0) {
+            deletedCount += (deletedHere = expireHistoricTasksNowReadyForImmediateDeletion()); 
+        }
+        
+        return deletedCount;
+    }
+    
+    /** drops queues for tags no longer in use, and deleted tasks from queues which have grown to more than double the live count */
+    protected void pruneCompletedTaskQueues() {
+        for (Object tag : completedTasksByTag.keySet()) {
+            completedTasksByTag.computeIfPresent(tag, (k, queue) -> {
+                Set<Task<?>> tasksWithTag = executionManager.tasksWithTagLiveOrNull(tag);
+                if (tasksWithTag == null) return null;
+                synchronized (queue) {
+                    if (queue.size() > 2*tasksWithTag.size() + 16) {
+                        queue.removeIf(this::isDeleted);
+                    }
+                    return queue.isEmpty() ? null : queue;
+                }
+            });
+        }
+        synchronized (completedTasks) {
+            if (completedTasks.size() > 2*executionManager.getNumInMemoryTasks() + 16) {
+                completedTasks.removeIf(this::isDeleted);
+            }
+        }
+    }
+    
+    protected int expireAgedTasksIncrementally() {
+        long maxTaskAge = brooklynProperties.getConfig(MAX_TASK_AGE).toMilliseconds();
+        long now = System.currentTimeMillis();
+        int deleted = 0;
+        // don't revisit the tasks we keep, which are moved to the end
+        int remaining;
+        synchronized (completedTasks) {
+            remaining = completedTasks.size();
+        }
+        while (remaining > 0) {
+            List<Task<?>> batch = MutableList.of();
+            synchronized (completedTasks) {
+                while (remaining > 0 && batch.size() < COMPLETED_TASKS_BATCH_SIZE) {
+                    Task<?> task = completedTasks.peekFirst();
+                    // tasks are queued as they complete, so the first one young enough means the rest are too
+                    if (task == null || now - task.getEndTimeUtc() <= maxTaskAge) {
+                        remaining = 0;
+                        break;
+                    }
+                    batch.add(completedTasks.removeFirst());
+                    remaining--;
+                }
+            }
+            List<Task<?>> kept = MutableList.of();
+            for (Task<?> task : batch) {
+                if (isDeleted(task)) continue;
+                if (BrooklynTaskTags.isSubTask(task)) {
+                    kept.add(task);
+                    continue;
+                }
+                executionManager.deleteTask(task);
+                deleted++;
+            }
+            requeueCompletedTasks(kept);
+        }
+        return deleted;
+    }
+    
+    /** puts tasks taken from {@link #completedTasks} but not deleted at the end, so that they are not rescanned first next time */
+    private void requeueCompletedTasks(List<Task<?>> tasks) {
+        if (tasks.isEmpty()) return;
+        synchronized (completedTasks) {
+            completedTasks.addAll(tasks);
+        }
+    }
+    
+    /**
+     * Expires the oldest tasks in each over-capacity tag of the given category, as {@link #expireOverCapacityTagsInCategory(Map, Map, TagCategory, boolean)}:
+     * a task is only expired if all its tags in the category are over capacity, and tasks kept because of another tag 
+     * count against the excess of this tag. Only the queues of over-capacity tags are walked.
+     */
+    protected int expireOverCapacityTagsIncrementally(TagCategory category, int maxTasksPerTag, int maxTasksPerEntity) {
+        int deleted = 0;
+        for (Map.Entry<Object, Deque<Task<?>>> entry : completedTasksByTag.entrySet()) {
+            Object tag = entry.getKey();
+            if (!category.acceptsTag(tag)) continue;
+            int over = getExcessTaskCount(tag, maxTasksPerTag, maxTasksPerEntity);
+            if (over <= 0) continue;
+            
+            Deque<Task<?>> queue = entry.getValue();
+            List<Task<?>> victims = MutableList.of();
+            synchronized (queue) {
+                // first give grace to tasks which must be kept for the sake of their other tags
+                Iterator<Task<?>> ti = queue.iterator();
+                while (over > 0 && ti.hasNext()) {
+                    Task<?> task = ti.next();
+                    if (isDeleted(task)) {
+                        ti.remove();
+                    } else if (task.isDone(true) && !isOverCapacityInOtherTags(task, tag, category, maxTasksPerTag, maxTasksPerEntity)) {
+                        over--;
+                    }
+                }
+                
+                // then take the oldest of the rest, to delete outside the lock
+                ti = queue.iterator();
+                while (over > 0 && ti.hasNext()) {
+                    Task<?> task = ti.next();
+                    if (!task.isDone(true) || !isOverCapacityInOtherTags(task, tag, category, maxTasksPerTag, maxTasksPerEntity)) continue;
+                    victims.add(task);
+                    ti.remove();
+                    over--;
+                }
+            }
+            
+            List<Task<?>> kept = MutableList.of();
+            for (Task<?> task : victims) {
+                // re-check, as deleting the earlier victims may have brought one of this task's other tags within capacity
+                if (!isOverCapacityInOtherTags(task, tag, category, maxTasksPerTag, maxTasksPerEntity)) {
+                    kept.add(task);
+                    continue;
+                }
+                executionManager.deleteTask(task);
+                deleted++;
+                if (LOG.isTraceEnabled())
+                    LOG.trace("brooklyn-gc deleted "+task+", as over capacity in "+tag);
+            }
+            if (!kept.isEmpty()) {
+                // back at the front, as they are still the oldest
+                completedTasksByTag.compute(tag, (k, q) -> {
+                    if (q == null) q = new ArrayDeque<Task<?>>();
+                    synchronized (q) {
+                        for (int i = kept.size()-1; i >= 0; i--) q.addFirst(kept.get(i));
+                    }
+                    return q;
+                });
+            }
+        }
+        if (deleted > 0 && LOG.isDebugEnabled())
+            LOG.debug("brooklyn-gc deleted "+deleted+" tasks in over-capacity "+category+" tag categories");
+        return deleted;
+    }
+    
+    private boolean isOverCapacityInOtherTags(Task<?> task, Object tag, TagCategory category, int maxTasksPerTag, int maxTasksPerEntity) {
+        for (Object otherTag : TaskTags.getTagsFast(task)) {
+            if (!otherTag.equals(tag) && category.acceptsTag(otherTag) && getExcessTaskCount(otherTag, maxTasksPerTag, maxTasksPerEntity) <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private int getExcessTaskCount(Object tag, int maxTasksPerTag, int maxTasksPerEntity) {
+        Set<Task<?>> tasksWithTag = executionManager.tasksWithTagLiveOrNull(tag);
+        if (tasksWithTag == null) return 0;
+        return tasksWithTag.size() - (tag instanceof WrappedEntity ? maxTasksPerEntity : maxTasksPerTag);
+    }
+    
+    protected int expireIfOverCapacityGloballyIncrementally() {
+        long numToDelete = executionManager.getNumInMemoryTasks() - executionManager.getNumIncompleteTasks() - brooklynProperties.getConfig(MAX_TASKS_GLOBAL);
+        if (numToDelete <= 0) return 0;
+        
+        int numDeleted = 0;
+        // don't revisit the tasks we keep, which are moved to the end
+        int remaining;
+        synchronized (completedTasks) {
+            remaining = completedTasks.size();
+        }
+        while (numDeleted < numToDelete && remaining > 0) {
+            // take no more than we could delete, so none need to be put back at the front
+            long batchSize = Math.min(COMPLETED_TASKS_BATCH_SIZE, numToDelete - numDeleted);
+            List<Task<?>> batch = MutableList.of();
+            synchronized (completedTasks) {
+                while (remaining > 0 && batch.size() < batchSize && !completedTasks.isEmpty()) {
+                    batch.add(completedTasks.removeFirst());
+                    remaining--;
+                }
+                if (completedTasks.isEmpty()) remaining = 0;
+            }
+            List<Task<?>> kept = MutableList.of();
+            for (Task<?> task : batch) {
+                if (isDeleted(task)) continue;
+                if (!task.isDone()) {
+                    kept.add(task);
+                    continue;
+                }
+                executionManager.deleteTask(task);
+                numDeleted++;
+            }
+            requeueCompletedTasks(kept);
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("brooklyn-gc deleted "+numDeleted+" tasks as was over global limit, now have "+executionManager.getNumInMemoryTasks());
+        return numDeleted;
+    }
+
     protected static boolean isTagIgnoredForGc(Object tag) {
         if (tag == null) return true;
         if (tag.equals(ManagementContextInternal.EFFECTOR_TAG)) return true;
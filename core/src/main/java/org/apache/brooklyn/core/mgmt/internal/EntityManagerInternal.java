@@ -18,6 +18,8 @@
  */
 package org.apache.brooklyn.core.mgmt.internal;
 
+import java.util.Collection;
+
 import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.EntitySpec;
@@ -47,4 +49,38 @@ public interface EntityManagerInternal extends EntityManager, BrooklynObjectMana
      */
     @Beta
     void discardPremanaged(Entity e);
+
+    /** managed entities whose {@link Entity#getEntityType() type} has the given name (normally the entity's interface) */
+    @Beta
+    Collection<Entity> getEntitiesByType(String typeName);
+
+    /** managed entities with the given {@link Entity#getCatalogItemId() catalog item id} */
+    @Beta
+    Collection<Entity> getEntitiesByCatalogItemId(String catalogItemId);
+
+    /** managed entities with the given display name */
+    @Beta
+    Collection<Entity> getEntitiesByDisplayName(String displayName);
+
+    /** invoked by an entity when its display name changes, to keep the lookup by display name current */
+    @Beta
+    void onDisplayNameChanged(Entity entity);
+
+    /** invoked by an entity when its catalog item id changes, to keep the lookup by catalog item id current */
+    @Beta
+    void onCatalogItemIdChanged(Entity entity);
+
+    /**
+     * A count incremented whenever an entity is pre-registered, pre-managed, managed, unmanaged or discarded,
+     * so that callers caching lookups over the known entities can tell when those may be out of date.
+     */
+    @Beta
+    long getMembershipChangeCount();
+
+    /**
+     * As {@link #getMembershipChangeCount()}, but only changing when an entity in the given application changes
+     * (though not necessarily by one); 0 if there have been no such changes.
+     */
+    @Beta
+    long getMembershipChangeCount(String applicationId);
 }
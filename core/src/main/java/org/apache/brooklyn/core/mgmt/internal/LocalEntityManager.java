@@ -30,6 +30,7 @@ import java.util.Set;
 import java.util.Stack;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
@@ -71,13 +72,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.annotations.Beta;
-import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
-import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -124,6 +123,14 @@ public class LocalEntityManager implements EntityManagerInternal {
     
     /** Proxies of the managed entities that are applications */
     private final Set<Application> applications = Sets.newConcurrentHashSet();
+    
+    /** Proxies of the managed entities by application, type, catalog item and display name */
+    private final ManagedEntityIndex index = new ManagedEntityIndex();
+    
+    /** Incremented whenever an entity is pre-registered, pre-managed, managed, unmanaged or discarded */
+    private final AtomicLong membershipChangeCount = new AtomicLong();
+    /** The {@link #membershipChangeCount} at the latest such change to an entity in each application */
+    private final ConcurrentMap<String,Long> membershipChangeCountByApplicationId = Maps.newConcurrentMap();
 
     private final BrooklynStorage storage;
     private final Map<String,String> entityTypes;
@@ -222,8 +229,7 @@ public class LocalEntityManager implements EntityManagerInternal {
     
     @Override
     public Collection<Entity> getEntitiesInApplication(Application application) {
-        Predicate<Entity> predicate = EntityPredicates.applicationIdEqualTo(application.getId());
-        return ImmutableList.copyOf(Iterables.filter(entityProxiesById.values(), predicate));
+        return index.getByApplicationId(application.getId());
     }
 
     @Override
@@ -233,8 +239,53 @@ public class LocalEntityManager implements EntityManagerInternal {
     
     @Override
     public Collection<Entity> findEntitiesInApplication(Application application, Predicate<? super Entity> filter) {
-        Predicate<Entity> predicate = Predicates.and(EntityPredicates.applicationIdEqualTo(application.getId()), filter);
-        return ImmutableList.copyOf(Iterables.filter(entityProxiesById.values(), predicate));
+        return ImmutableList.copyOf(Iterables.filter(index.getByApplicationId(application.getId()), filter));
+    }
+
+    @Override
+    public Collection<Entity> getEntitiesByType(String typeName) {
+        return index.getByType(typeName);
+    }
+
+    @Override
+    public Collection<Entity> getEntitiesByCatalogItemId(String catalogItemId) {
+        return index.getByCatalogItemId(catalogItemId);
+    }
+
+    @Override
+    public Collection<Entity> getEntitiesByDisplayName(String displayName) {
+        return index.getByDisplayName(displayName);
+    }
+
+    @Override
+    public void onDisplayNameChanged(Entity entity) {
+        // the index ignores entities not (or no longer) managed
+        index.onChanged(entity);
+    }
+
+    @Override
+    public void onCatalogItemIdChanged(Entity entity) {
+        index.onChanged(entity);
+    }
+
+    @Override
+    public long getMembershipChangeCount() {
+        return membershipChangeCount.get();
+    }
+
+    @Override
+    public long getMembershipChangeCount(String applicationId) {
+        Long result = membershipChangeCountByApplicationId.get(applicationId);
+        return (result == null) ? 0 : result;
+    }
+
+    private void onMembershipChanged(Entity e) {
+        long count = membershipChangeCount.incrementAndGet();
+        String applicationId = e.getApplicationId();
+        if (applicationId != null) {
+            // never decrease, in case changes in the same application race
+            membershipChangeCountByApplicationId.merge(applicationId, count, Math::max);
+        }
     }
 
     @Override
@@ -244,6 +295,8 @@ public class LocalEntityManager implements EntityManagerInternal {
         // they are synchronizedMaps). entityProxiesById is a ConcurrentMap, so no need to 
         // synchronize on that.
         // Only synchronize on one at a time, to avoid the risk of deadlock.
+        // The managed entities come from the index, already as proxies; the pre-managed ones
+        // are normally few, only those part-way through being created.
         
         Predicate<Entity> predicate = EntityPredicates.applicationIdEqualTo(application.getId());
         Set<Entity> result = Sets.newLinkedHashSet();
@@ -251,29 +304,20 @@ public class LocalEntityManager implements EntityManagerInternal {
         synchronized (preRegisteredEntitiesById) {
             for (Entity entity : preRegisteredEntitiesById.values()) {
                 if (predicate.apply(entity)) {
-                    result.add(entity);
+                    result.add(Entities.proxy(entity));
                 }
             }
         }
         synchronized (preManagedEntitiesById) {
             for (Entity entity : preManagedEntitiesById.values()) {
                 if (predicate.apply(entity)) {
-                    result.add(entity);
+                    result.add(Entities.proxy(entity));
                 }
             }
         }
-        for (Entity entity : entityProxiesById.values()) {
-            if (predicate.apply(entity)) {
-                result.add(entity);
-            }
-        }
+        result.addAll(index.getByApplicationId(application.getId()));
         
-        return FluentIterable.from(result)
-                .transform(new Function<Entity, Entity>() {
-                    @Override public Entity apply(Entity input) {
-                        return Entities.proxy(input);
-                    }})
-                .toSet();
+        return ImmutableSet.copyOf(result);
     }
 
     @Override
@@ -303,6 +347,7 @@ public class LocalEntityManager implements EntityManagerInternal {
             return;
         }
         preRegisteredEntitiesById.put(entity.getId(), entity);
+        onMembershipChanged(entity);
     }
     
     @Override
@@ -502,6 +547,7 @@ public class LocalEntityManager implements EntityManagerInternal {
             preRegisteredEntitiesById.remove(id);
             preManagedEntitiesById.remove(id);
         }
+        onMembershipChanged(e);
     }
 
     private void unmanage(final Entity e, ManagementTransitionMode mode, boolean hasBeenReplaced) {
@@ -573,8 +619,13 @@ public class LocalEntityManager implements EntityManagerInternal {
         preRegisteredEntitiesById.remove(e.getId());
         preManagedEntitiesById.remove(e.getId());
         entityProxiesById.remove(e.getId());
+        index.remove(e.getId());
         entitiesById.remove(e.getId());
         entityModesById.remove(e.getId());
+        onMembershipChanged(e);
+        if (e instanceof Application) {
+            membershipChangeCountByApplicationId.remove(e.getId());
+        }
     }
     
     private void stopTasks(Entity entity) {
@@ -714,6 +765,7 @@ public class LocalEntityManager implements EntityManagerInternal {
         
         Object old = preManagedEntitiesById.put(e.getId(), realE);
         preRegisteredEntitiesById.remove(e.getId());
+        onMembershipChanged(e);
         
         if (old!=null && mode.wasNotLoaded()) {
             if (old.equals(e)) {
@@ -768,8 +820,10 @@ public class LocalEntityManager implements EntityManagerInternal {
         entityProxiesById.put(e.getId(), proxyE);
         entityTypes.put(e.getId(), realE.getClass().getName());
         entitiesById.put(e.getId(), realE);
+        index.add(proxyE, realE);
         
         preManagedEntitiesById.remove(e.getId());
+        onMembershipChanged(e);
         if ((e instanceof Application) && (e.getParent()==null)) {
             applications.add((Application)proxyE);
             applicationIds.add(e.getId());
@@ -833,7 +887,9 @@ public class LocalEntityManager implements EntityManagerInternal {
 
             entities.remove(proxyE);
             entityProxiesById.remove(e.getId());
+            index.remove(e.getId());
             entityModesById.remove(e.getId());
+            onMembershipChanged(e);
             
             Object old = entitiesById.remove(e.getId());
 
@@ -55,12 +55,14 @@ import org.apache.brooklyn.core.mgmt.ha.OsgiManager;
 import org.apache.brooklyn.core.objs.proxy.InternalEntityFactory;
 import org.apache.brooklyn.core.objs.proxy.InternalLocationFactory;
 import org.apache.brooklyn.core.objs.proxy.InternalPolicyFactory;
+import org.apache.brooklyn.location.ssh.SshConnectionManager;
 import org.apache.brooklyn.util.core.task.BasicExecutionContext;
 import org.apache.brooklyn.util.core.task.BasicExecutionManager;
 import org.apache.brooklyn.util.core.task.DynamicTasks;
 import org.apache.brooklyn.util.core.task.TaskTags;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.executor.SharedHttpExecutor;
 import org.apache.brooklyn.util.guava.Maybe;
 import org.apache.brooklyn.util.text.Strings;
 import org.slf4j.Logger;
@@ -314,7 +316,7 @@ public class LocalManagementContext extends AbstractManagementContext {
         if (!isRunning()) throw new IllegalStateException("Management context no longer running");
 
         if (execution == null) {
-            execution = new BasicExecutionManager(getManagementNodeId());
+            execution = new BasicExecutionManager(getManagementNodeId(), configMap);
             gc = new BrooklynGarbageCollector(configMap, execution, getStorage());
         }
         return execution;
@@ -331,6 +333,8 @@ public class LocalManagementContext extends AbstractManagementContext {
 
         INSTANCES.remove(this);
         super.terminate();
+        SshConnectionManager.closeIfPresent(this);
+        SharedHttpExecutor.closeIfPresent(this);
         if (usageManager != null) usageManager.terminate();
         if (execution != null) execution.shutdownNow();
         if (gc != null) gc.shutdownNow();
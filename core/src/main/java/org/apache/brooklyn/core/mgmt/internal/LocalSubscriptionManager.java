@@ -22,15 +22,17 @@ import static org.apache.brooklyn.util.JavaGroovyEquivalents.elvis;
 import static org.apache.brooklyn.util.JavaGroovyEquivalents.groovyTruth;
 import static org.apache.brooklyn.util.JavaGroovyEquivalents.join;
 
-import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.brooklyn.api.entity.Entity;
@@ -42,6 +44,7 @@ import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
@@ -58,18 +61,20 @@ import org.apache.brooklyn.util.text.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Multimaps;
 
 /**
  * A {@link SubscriptionManager} that stores subscription details locally.
  * 
- * Synchronization model:  methods in this class synch on this object to ensure
- * subscription order and delivery order on publish.
+ * Synchronization model:  subscribe and unsubscribe synch on this object to ensure
+ * subscription order; the subscription indexes are copy-on-write sets, so lookups 
+ * (including on publish) take no locks.  Delivery order is preserved per subscriber
+ * by a {@link SingleThreadedScheduler} on the subscriber's execution manager tag, 
+ * and optionally (see {@link BrooklynFeatureEnablement#FEATURE_SUBSCRIPTION_BATCH_DELIVERY})
+ * by queueing events per subscriber and delivering them in batches.
  * <p>
  * Frequently it will be called by a thread holding a lock on a value
  * (eg {@link AttributeMap}, this synchronized methods here should not
@@ -86,6 +91,7 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
 
     private final AtomicLong totalEventsPublishedCount = new AtomicLong();
     private final AtomicLong totalEventsDeliveredCount = new AtomicLong();
+    private final AtomicLong totalEventsCoalescedCount = new AtomicLong();
     
     @SuppressWarnings("rawtypes")
     protected final ConcurrentMap<String, Subscription> allSubscriptions = new ConcurrentHashMap<String, Subscription>();
@@ -94,9 +100,27 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     @SuppressWarnings("rawtypes")
     protected final ConcurrentMap<Object, Set<Subscription>> subscriptionsByToken = new ConcurrentHashMap<Object, Set<Subscription>>();
     
+    /** the most events delivered by a single task in batch mode, before it resubmits to give other work a chance */
+    private static final int MAX_BATCH_SIZE = 1000;
+    
+    private volatile boolean batchDelivery = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_SUBSCRIPTION_BATCH_DELIVERY);
+    
+    /** pending deliveries keyed by subscriber execution manager tag, used in batch mode */
+    private final ConcurrentMap<Object, DeliveryQueue> deliveryQueues = new ConcurrentHashMap<Object, DeliveryQueue>();
+    
     public LocalSubscriptionManager(ExecutionManager m) {
         this.em = m;
     }
+    
+    /** whether events are queued per subscriber and delivered in batches, rather than as a task per event */
+    public boolean isBatchDelivery() {
+        return batchDelivery;
+    }
+    
+    @VisibleForTesting
+    public void setBatchDelivery(boolean batchDelivery) {
+        this.batchDelivery = batchDelivery;
+    }
         
     public long getNumSubscriptions() {
         return allSubscriptions.size();
@@ -113,6 +137,11 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         return totalEventsDeliveredCount.get();
     }
     
+    /** The total number of events not delivered because a more recent event superseded them, on subscriptions which coalesce events */
+    public long getTotalEventsCoalesced() {
+        return totalEventsCoalescedCount.get();
+    }
+    
     @Override
     @SuppressWarnings("unchecked")
     protected synchronized <T> SubscriptionHandle subscribe(Map<String, Object> flags, final Subscription<T> s) {
@@ -138,6 +167,9 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         }
         s.eventFilter = (Predicate<SensorEvent<T>>) flags.remove("eventFilter");
         boolean notifyOfInitialValue = Boolean.TRUE.equals(flags.remove("notifyOfInitialValue"));
+        if (Boolean.TRUE.equals(flags.remove("coalesceEvents"))) {
+            s.undeliveredEvents = new ConcurrentHashMap<Object, SensorEvent<?>>();
+        }
         s.flags = flags;
         
         if (LOG.isDebugEnabled()) LOG.debug("Creating subscription {} for {} on {} {} in {}", new Object[] {s.id, s.subscriber, producer, sensor, this});
@@ -215,7 +247,7 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     }
 
     @Override
-    public synchronized Set<SubscriptionHandle> getSubscriptionsForEntitySensor(Entity source, Sensor<?> sensor) {
+    public Set<SubscriptionHandle> getSubscriptionsForEntitySensor(Entity source, Sensor<?> sensor) {
         Set<SubscriptionHandle> subscriptions = new LinkedHashSet<SubscriptionHandle>();
         subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(source, sensor)), Collections.emptySet()));
         subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(null, sensor)), Collections.emptySet()));
@@ -264,7 +296,24 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         if (LOG.isTraceEnabled()) LOG.trace("{} got event {}", this, event);
         totalEventsPublishedCount.incrementAndGet();
         
-        Set<Subscription> subs = (Set<Subscription>) ((Set<?>) getSubscriptionsForEntitySensor(event.getSource(), event.getSensor()));
+        // each subscription is indexed under exactly one token, so no need to dedupe (or copy) these live sets,
+        // provided we skip the wildcard tokens which are the same as another when the source or sensor is null
+        Entity source = event.getSource();
+        Sensor<T> sensor = event.getSensor();
+        publishToSubscriptions(subscriptionsByToken.get(makeEntitySensorToken(source, sensor)), event);
+        if (source!=null) {
+            publishToSubscriptions(subscriptionsByToken.get(makeEntitySensorToken(null, sensor)), event);
+        }
+        if (sensor!=null) {
+            publishToSubscriptions(subscriptionsByToken.get(makeEntitySensorToken(source, null)), event);
+        }
+        if (source!=null && sensor!=null) {
+            publishToSubscriptions(subscriptionsByToken.get(makeEntitySensorToken(null, null)), event);
+        }
+    }
+    
+    @SuppressWarnings("rawtypes")
+    private void publishToSubscriptions(Set<Subscription> subs, SensorEvent<?> event) {
         if (groovyTruth(subs)) {
             if (LOG.isTraceEnabled()) LOG.trace("sending {}, {} to {}", new Object[] {event.getSensor().getName(), event, join(subs, ",")});
             for (Subscription s : subs) {
@@ -280,6 +329,21 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         if (s.eventFilter!=null && !s.eventFilter.apply(event))
             return;
         
+        final boolean coalescing = s.undeliveredEvents!=null && event.getSensor() instanceof AttributeSensor 
+            && !isInitialPublicationOfOldValueInCorrectScheduledThread;
+        if (coalescing) {
+            if (s.undeliveredEvents.put(makeEntitySensorToken(event), event)!=null) {
+                // a delivery is already pending, and will pick up this (newer) event instead
+                totalEventsCoalescedCount.incrementAndGet();
+                return;
+            }
+        }
+        
+        if (batchDelivery && !isInitialPublicationOfOldValueInCorrectScheduledThread) {
+            queueForDelivery(s, event, coalescing);
+            return;
+        }
+        
         List<Object> tags = getPublishTags(s, event.getSource()).asUnmodifiable();
         
         StringBuilder name = new StringBuilder("sensor ");
@@ -326,38 +390,9 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
             }
             @Override
             public void run() {
-                BasicExecutionContext oldEC = ec instanceof BasicExecutionContext ? BasicExecutionContext.setPerThreadExecutionContext((BasicExecutionContext)ec) : null;
-                try {
-                    
-                    if (isEntityStarting) {
-                        /* don't let sub deliveries start until this is completed;
-                         * this is a pragmatic way to ensure the publish events 
-                         * if submitted during management starting, aren't executed
-                         * until after management is starting.
-                         *   without this we can get deadlocks as this goes to publish,
-                         * has the attribute sensors lock, and waits on the publish lock
-                         * (any of management support, local subs, queueing subs).
-                         * meanwhile the management startup has those three locks,
-                         * then goes to publish and in the process looks up a sensor value.
-                         *   usually this is not an issue because some other task
-                         * does something (eg entity.getExecutionContext()) which
-                         * also has a wait-on-management-support semantics.
-                         */
-                        synchronized (((EntityInternal)s.subscriber).getManagementSupport()) {}
-                    }
-                    int count = s.eventCount.incrementAndGet();
-                    if (count > 0 && count % 1000 == 0) LOG.debug("{} events for subscriber {}", count, s);
-                    
-                    s.listener.onEvent(event);
-                } catch (Throwable t) {
-                    Exceptions.propagateIfFatal(t);
-                    if (event!=null && event.getSource()!=null && Entities.isNoLongerManaged(event.getSource())) {
-                        LOG.debug("Error processing subscriptions to "+this+", after entity unmanaged: "+t, t);
-                    } else {
-                        LOG.warn("Error processing subscriptions to "+this+": "+t, t);
-                    }
-                } finally {
-                    BasicExecutionContext.setPerThreadExecutionContext(oldEC);
+                SensorEvent<?> eventToDeliver = coalescing ? takeLatestUndeliveredEvent(s, event) : event;
+                if (eventToDeliver!=null) {
+                    deliver(s, eventToDeliver, ec, isEntityStarting, this);
                 }
             }};
         if (!isInitialPublicationOfOldValueInCorrectScheduledThread) {
@@ -371,6 +406,147 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         }
     }
 
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static void deliver(Subscription s, SensorEvent<?> event, ExecutionContext ec, boolean isEntityStarting, Object deliverer) {
+        BasicExecutionContext oldEC = ec instanceof BasicExecutionContext ? BasicExecutionContext.setPerThreadExecutionContext((BasicExecutionContext)ec) : null;
+        try {
+            
+            if (isEntityStarting) {
+                /* don't let sub deliveries start until this is completed;
+                 * this is a pragmatic way to ensure the publish events 
+                 * if submitted during management starting, aren't executed
+                 * until after management is starting.
+                 *   without this we can get deadlocks as this goes to publish,
+                 * has the attribute sensors lock, and waits on the publish lock
+                 * (any of management support, local subs, queueing subs).
+                 * meanwhile the management startup has those three locks,
+                 * then goes to publish and in the process looks up a sensor value.
+                 *   usually this is not an issue because some other task
+                 * does something (eg entity.getExecutionContext()) which
+                 * also has a wait-on-management-support semantics.
+                 */
+                synchronized (((EntityInternal)s.subscriber).getManagementSupport()) {}
+            }
+            int count = s.eventCount.incrementAndGet();
+            if (count > 0 && count % 1000 == 0) LOG.debug("{} events for subscriber {}", count, s);
+            
+            s.listener.onEvent(event);
+        } catch (Throwable t) {
+            Exceptions.propagateIfFatal(t);
+            if (event!=null && event.getSource()!=null && Entities.isNoLongerManaged(event.getSource())) {
+                LOG.debug("Error processing subscriptions to "+deliverer+", after entity unmanaged: "+t, t);
+            } else {
+                LOG.warn("Error processing subscriptions to "+deliverer+": "+t, t);
+            }
+        } finally {
+            BasicExecutionContext.setPerThreadExecutionContext(oldEC);
+        }
+    }
+    
+    /** claims for delivery the most recent event with the same producer and sensor as the given event, removing it from those pending */
+    @SuppressWarnings("rawtypes")
+    private static SensorEvent<?> takeLatestUndeliveredEvent(Subscription s, SensorEvent<?> event) {
+        return (SensorEvent<?>) s.undeliveredEvents.remove(makeEntitySensorToken(event));
+    }
+    
+    @SuppressWarnings("rawtypes")
+    private void queueForDelivery(Subscription s, SensorEvent<?> event, boolean coalescing) {
+        Object tag = s.subscriberExecutionManagerTag;
+        while (true) {
+            DeliveryQueue queue = deliveryQueues.get(tag);
+            if (queue==null) {
+                DeliveryQueue newQueue = new DeliveryQueue(tag);
+                queue = deliveryQueues.putIfAbsent(tag, newQueue);
+                if (queue==null) queue = newQueue;
+            }
+            if (queue.add(s, event, coalescing)) return;
+            // queue was retired as we added to it; drop it and retry
+            deliveryQueues.remove(tag, queue);
+        }
+    }
+    
+    @SuppressWarnings("rawtypes")
+    private static class PendingDelivery {
+        final Subscription subscription;
+        final SensorEvent<?> event;
+        final boolean coalescing;
+        PendingDelivery(Subscription subscription, SensorEvent<?> event, boolean coalescing) {
+            this.subscription = subscription;
+            this.event = event;
+            this.coalescing = coalescing;
+        }
+    }
+    
+    /**
+     * Events waiting to be delivered to one subscriber (strictly, one subscriber execution manager tag).
+     * At most one task is draining a queue at any time, so delivery is in the order events were queued.
+     */
+    private class DeliveryQueue {
+        private final Object tag;
+        private final Queue<PendingDelivery> pending = new ConcurrentLinkedQueue<PendingDelivery>();
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+        private boolean retired = false;
+        
+        DeliveryQueue(Object tag) {
+            this.tag = tag;
+        }
+        
+        /** @return false if this queue has been retired, in which case a new queue should be used */
+        @SuppressWarnings("rawtypes")
+        boolean add(Subscription s, SensorEvent<?> event, boolean coalescing) {
+            synchronized (this) {
+                if (retired) return false;
+                pending.add(new PendingDelivery(s, event, coalescing));
+            }
+            if (drainScheduled.compareAndSet(false, true)) {
+                submitDrain(s);
+            }
+            return true;
+        }
+        
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private void submitDrain(Subscription s) {
+            List<Object> tags = getPublishTags(s, null).asUnmodifiable();
+            em.submit(MutableMap.of("tags", tags,
+                    "displayName", "sensor deliveries",
+                    "description", "Sensor events publishing to "+(s.subscriber instanceof Entity ? ((Entity)s.subscriber).getId() : s.subscriber)),
+                new Runnable() {
+                    @Override public void run() { drain(); }
+                    @Override public String toString() { return "LSM.publishBatch("+tag+")"; }
+                });
+        }
+        
+        @SuppressWarnings("rawtypes")
+        private void drain() {
+            int count = 0;
+            PendingDelivery next = null;
+            while (count < MAX_BATCH_SIZE && (next = pending.poll())!=null) {
+                Subscription s = next.subscription;
+                SensorEvent<?> event = next.coalescing ? takeLatestUndeliveredEvent(s, next.event) : next.event;
+                if (event!=null) {
+                    ExecutionContext ec = BrooklynTaskTags.getExecutionContext(getPublishTags(s, null));
+                    deliver(s, event, ec, false, "LSM.publish("+event+")");
+                }
+                count++;
+            }
+            drainScheduled.set(false);
+            
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    // nothing more to do; retire so the queue is not kept for subscribers which are no longer active
+                    retired = true;
+                    deliveryQueues.remove(tag, this);
+                    return;
+                }
+            }
+            // more arrived, or batch limit reached; resubmit (unless someone else just did)
+            PendingDelivery head = pending.peek();
+            if (head!=null && drainScheduled.compareAndSet(false, true)) {
+                submitDrain(head.subscription);
+            }
+        }
+    }
+
     private MutableList<Object> getPublishTags(final Subscription<?> s, final Entity source) {
         return MutableList.builder()
             .addAll(s.subscriberExtraExecTags == null ? ImmutableList.of() : s.subscriberExtraExecTags)
@@ -397,76 +573,29 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     }
     
     /**
-     * Copied from LanguageUtils.groovy, to remove dependency.
-     * 
-     * Adds the given value to a collection in the map under the key.
-     * 
-     * A collection (as {@link LinkedHashMap}) will be created if necessary,
-     * synchronized on map for map access/change and set for addition there
-     *
-     * @return the updated set (instance, not copy)
-     * 
-     * @deprecated since 0.5; use {@link HashMultimap}, and {@link Multimaps#synchronizedSetMultimap(com.google.common.collect.SetMultimap)}
+     * Adds the given value to a copy-on-write set in the map under the key,
+     * creating the set if necessary.
      */
-    @Deprecated
-    private static <K,V> Set<V> addToMapOfSets(Map<K,Set<V>> map, K key, V valueInCollection) {
-        Set<V> coll;
-        synchronized (map) {
-            coll = map.get(key);
-            if (coll==null) {
-                coll = new LinkedHashSet<V>();
-                map.put(key, coll);
-            }
-            if (coll.isEmpty()) {
-                synchronized (coll) {
-                    coll.add(valueInCollection);
-                }
-                //if collection was empty then add to the collection while holding the map lock, to prevent removal
-                return coll;
-            }
-        }
-        synchronized (coll) {
-            if (!coll.isEmpty()) {
-                coll.add(valueInCollection);
-                return coll;
-            }
-        }
-        //if was empty, recurse, because someone else might be removing the collection
-        return addToMapOfSets(map, key, valueInCollection);
+    private static <K,V> void addToMapOfSets(ConcurrentMap<K,Set<V>> map, K key, final V valueInCollection) {
+        map.compute(key, (k, coll) -> {
+            if (coll==null) coll = new CopyOnWriteArraySet<V>();
+            coll.add(valueInCollection);
+            return coll;
+        });
     }
 
     /**
-     * Copied from LanguageUtils.groovy, to remove dependency.
-     * 
-     * Removes the given value from a collection in the map under the key.
+     * Removes the given value from a set in the map under the key,
+     * removing the set from the map if it becomes empty.
      *
-     * @return the updated set (instance, not copy)
-     * 
-     * @deprecated since 0.5; use {@link ArrayListMultimap} or {@link HashMultimap}, and {@link Multimaps#synchronizedListMultimap(com.google.common.collect.ListMultimap)} etc
+     * @return whether the value was removed
      */
-    @Deprecated
-    private static <K,V> boolean removeFromMapOfCollections(Map<K,? extends Collection<V>> map, K key, V valueInCollection) {
-        Collection<V> coll;
-        synchronized (map) {
-            coll = map.get(key);
-            if (coll==null) return false;
-        }
-        boolean result;
-        synchronized (coll) {
-            result = coll.remove(valueInCollection);
-        }
-        if (coll.isEmpty()) {
-            synchronized (map) {
-                synchronized (coll) {
-                    if (coll.isEmpty()) {
-                        //only remove from the map if no one is adding to the collection or to the map, and the collection is still in the map
-                        if (map.get(key)==coll) {
-                            map.remove(key);
-                        }
-                    }
-                }
-            }
-        }
-        return result;
+    private static <K,V> boolean removeFromMapOfCollections(ConcurrentMap<K,Set<V>> map, K key, final V valueInCollection) {
+        final AtomicBoolean result = new AtomicBoolean();
+        map.computeIfPresent(key, (k, coll) -> {
+            result.set(coll.remove(valueInCollection));
+            return coll.isEmpty() ? null : coll;
+        });
+        return result.get();
     }
 }
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.brooklyn.api.entity.Entity;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Live secondary indexes of managed entity proxies, by application id, entity type name, catalog item id and display name,
+ * maintained by {@link LocalEntityManager} as entities are managed and unmanaged.
+ * <p>
+ * Lookups are lock-free; updates are synchronized on the index, so that an entity changed while it is
+ * being unmanaged is not left behind in an index.
+ */
+class ManagedEntityIndex {
+
+    /** the keys under which an entity was indexed, so it can be removed even if the entity has changed since */
+    private static class Keys {
+        final Entity proxy;
+        final String applicationId;
+        final String type;
+        final String catalogItemId;
+        final String displayName;
+        
+        Keys(Entity proxy, String applicationId, String type, String catalogItemId, String displayName) {
+            this.proxy = proxy;
+            this.applicationId = applicationId;
+            this.type = type;
+            this.catalogItemId = catalogItemId;
+            this.displayName = displayName;
+        }
+    }
+    
+    private final ConcurrentMap<String,Keys> keysById = Maps.newConcurrentMap();
+    private final ConcurrentMap<String,Set<Entity>> byApplicationId = Maps.newConcurrentMap();
+    private final ConcurrentMap<String,Set<Entity>> byType = Maps.newConcurrentMap();
+    private final ConcurrentMap<String,Set<Entity>> byCatalogItemId = Maps.newConcurrentMap();
+    private final ConcurrentMap<String,Set<Entity>> byDisplayName = Maps.newConcurrentMap();
+
+    /** indexes the given proxy under the current values of the given (real) entity, replacing any previous entry for its id */
+    synchronized void add(Entity proxy, Entity realEntity) {
+        Keys keys = new Keys(proxy, realEntity.getApplicationId(), realEntity.getEntityType().getName(), 
+                realEntity.getCatalogItemId(), realEntity.getDisplayName());
+        Keys old = keysById.put(realEntity.getId(), keys);
+        if (old != null) removeKeys(old);
+        put(byApplicationId, keys.applicationId, proxy);
+        put(byType, keys.type, proxy);
+        put(byCatalogItemId, keys.catalogItemId, proxy);
+        put(byDisplayName, keys.displayName, proxy);
+    }
+    
+    synchronized void remove(String entityId) {
+        Keys old = keysById.remove(entityId);
+        if (old != null) removeKeys(old);
+    }
+    
+    /** re-indexes the given entity under its current display name and catalog item id, if it is still indexed (i.e. managed) */
+    synchronized void onChanged(Entity entity) {
+        Keys old = keysById.get(entity.getId());
+        if (old == null) return;
+        Keys keys = new Keys(old.proxy, old.applicationId, old.type, entity.getCatalogItemId(), entity.getDisplayName());
+        keysById.put(entity.getId(), keys);
+        if (!Objects.equal(old.catalogItemId, keys.catalogItemId)) {
+            remove(byCatalogItemId, old.catalogItemId, old.proxy);
+            put(byCatalogItemId, keys.catalogItemId, old.proxy);
+        }
+        if (!Objects.equal(old.displayName, keys.displayName)) {
+            remove(byDisplayName, old.displayName, old.proxy);
+            put(byDisplayName, keys.displayName, old.proxy);
+        }
+    }
+    
+    Collection<Entity> getByApplicationId(String applicationId) {
+        return get(byApplicationId, applicationId);
+    }
+    
+    Collection<Entity> getByType(String type) {
+        return get(byType, type);
+    }
+    
+    Collection<Entity> getByCatalogItemId(String catalogItemId) {
+        return get(byCatalogItemId, catalogItemId);
+    }
+    
+    Collection<Entity> getByDisplayName(String displayName) {
+        return get(byDisplayName, displayName);
+    }
+    
+    private void removeKeys(Keys keys) {
+        remove(byApplicationId, keys.applicationId, keys.proxy);
+        remove(byType, keys.type, keys.proxy);
+        remove(byCatalogItemId, keys.catalogItemId, keys.proxy);
+        remove(byDisplayName, keys.displayName, keys.proxy);
+    }
+    
+    private static void put(ConcurrentMap<String,Set<Entity>> index, String key, Entity proxy) {
+        if (key == null) return;
+        index.compute(key, (k, entities) -> {
+            if (entities == null) entities = Sets.newConcurrentHashSet();
+            entities.add(proxy);
+            return entities;
+        });
+    }
+    
+    private static void remove(ConcurrentMap<String,Set<Entity>> index, String key, Entity proxy) {
+        if (key == null) return;
+        index.computeIfPresent(key, (k, entities) -> {
+            entities.remove(proxy);
+            return entities.isEmpty() ? null : entities;
+        });
+    }
+    
+    private static Collection<Entity> get(ConcurrentMap<String,Set<Entity>> index, String key) {
+        Set<Entity> entities = (key == null) ? null : index.get(key);
+        return (entities == null) ? ImmutableList.<Entity>of() : ImmutableList.copyOf(entities);
+    }
+}
@@ -129,6 +129,65 @@ public class NonDeploymentEntityManager implements EntityManagerInternal {
         }
     }
 
+    @Override
+    public Collection<Entity> getEntitiesByType(String typeName) {
+        if (isInitialManagementContextReal()) {
+            return ((EntityManagerInternal)initialManagementContext.getEntityManager()).getEntitiesByType(typeName);
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public Collection<Entity> getEntitiesByCatalogItemId(String catalogItemId) {
+        if (isInitialManagementContextReal()) {
+            return ((EntityManagerInternal)initialManagementContext.getEntityManager()).getEntitiesByCatalogItemId(catalogItemId);
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public Collection<Entity> getEntitiesByDisplayName(String displayName) {
+        if (isInitialManagementContextReal()) {
+            return ((EntityManagerInternal)initialManagementContext.getEntityManager()).getEntitiesByDisplayName(displayName);
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public void onDisplayNameChanged(Entity entity) {
+        if (isInitialManagementContextReal()) {
+            ((EntityManagerInternal)initialManagementContext.getEntityManager()).onDisplayNameChanged(entity);
+        }
+    }
+
+    @Override
+    public void onCatalogItemIdChanged(Entity entity) {
+        if (isInitialManagementContextReal()) {
+            ((EntityManagerInternal)initialManagementContext.getEntityManager()).onCatalogItemIdChanged(entity);
+        }
+    }
+
+    @Override
+    public long getMembershipChangeCount() {
+        if (isInitialManagementContextReal()) {
+            return ((EntityManagerInternal)initialManagementContext.getEntityManager()).getMembershipChangeCount();
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public long getMembershipChangeCount(String applicationId) {
+        if (isInitialManagementContextReal()) {
+            return ((EntityManagerInternal)initialManagementContext.getEntityManager()).getMembershipChangeCount(applicationId);
+        } else {
+            return 0;
+        }
+    }
+
     @Override
     public Entity getEntity(String id) {
         if (isInitialManagementContextReal()) {
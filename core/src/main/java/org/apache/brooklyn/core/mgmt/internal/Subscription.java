@@ -19,6 +19,7 @@
 package org.apache.brooklyn.core.mgmt.internal;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.brooklyn.api.entity.Entity;
@@ -45,6 +46,8 @@ class Subscription<T> implements SubscriptionHandle {
     public final AtomicInteger eventCount = new AtomicInteger();
     public Map<String,Object> flags;
     public Predicate<SensorEvent<T>> eventFilter;
+    /** if coalescing, the most recent event not yet delivered, for each producer and attribute sensor; otherwise null */
+    public ConcurrentMap<Object, SensorEvent<?>> undeliveredEvents;
 
     public Subscription(Entity producer, Sensor<T> sensor, SensorEventListener<? super T> listener) {
         this.producer = producer;
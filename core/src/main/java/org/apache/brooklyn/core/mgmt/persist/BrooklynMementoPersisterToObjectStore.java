@@ -25,6 +25,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
@@ -35,7 +36,6 @@ import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.annotation.Nullable;
-import javax.xml.xpath.XPathConstants;
 
 import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.api.mgmt.rebind.PersistenceExceptionHandler;
@@ -64,10 +64,9 @@ import org.apache.brooklyn.core.mgmt.rebind.PeriodicDeltaChangeListener;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BrooklynMementoImpl;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BrooklynMementoManifestImpl;
 import org.apache.brooklyn.core.typereg.BasicManagedBundle;
-import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
-import org.apache.brooklyn.util.core.xstream.XmlUtil;
+import org.apache.brooklyn.util.core.xstream.XmlFieldsExtractor;
 import org.apache.brooklyn.util.exceptions.CompoundRuntimeException;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.text.Strings;
@@ -75,7 +74,6 @@ import org.apache.brooklyn.util.time.Duration;
 import org.apache.brooklyn.util.time.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.NodeList;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
@@ -99,6 +97,9 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     
     private static final Logger LOG = LoggerFactory.getLogger(BrooklynMementoPersisterToObjectStore.class);
     public static final String PLANE_ID_FILE_NAME = "planeId";
+    public static final String DELTA_LOG_FILE_NAME = "deltaLog";
+    /** the delta log being compacted in the background; records in {@link #DELTA_LOG_FILE_NAME} supersede it */
+    public static final String DELTA_LOG_COMPACTING_FILE_NAME = "deltaLog.compacting";
 
 
     public static final ConfigKey<Integer> PERSISTER_MAX_THREAD_POOL_SIZE = ConfigKeys.newIntegerConfigKey(
@@ -111,7 +112,39 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             "Maximum number of attempts to serialize a memento (e.g. if first attempts fail because of concurrent modifications of an entity)", 
             5);
 
+    public static final ConfigKey<Boolean> PERSISTER_COMPRESS = ConfigKeys.newBooleanConfigKey(
+            "persister.compress",
+            "Whether to write persisted state in compressed form (gzip); state is read correctly whether or not it is compressed, "
+            + "so this can be changed for an existing store", 
+            false);
+
+    public static final ConfigKey<Boolean> PERSISTER_DELTA_LOG = ConfigKeys.newBooleanConfigKey(
+            "persister.deltaLog",
+            "Whether to record changed entities, locations, policies, enrichers and feeds by appending to a single delta log, "
+            + "periodically compacted into the individual memento files, rather than rewriting each file on every change; "
+            + "intended for file-based stores (where appends are cheap)", 
+            false);
+
+    public static final ConfigKey<Integer> PERSISTER_DELTA_LOG_COMPACT_THRESHOLD = ConfigKeys.newIntegerConfigKey(
+            "persister.deltaLog.compactThreshold",
+            "Number of records appended to the delta log after which it is compacted into the memento files (in the background)", 
+            1000);
+
+    /** types which are recorded in the delta log, when enabled; other types are always written individually */
+    private static final Set<BrooklynObjectType> DELTA_LOG_TYPES = ImmutableSet.of(
+            BrooklynObjectType.ENTITY, BrooklynObjectType.LOCATION, BrooklynObjectType.POLICY, 
+            BrooklynObjectType.ENRICHER, BrooklynObjectType.FEED);
+
     private final PersistenceObjectStore objectStore;
+    private final boolean compress;
+    private final boolean deltaLog;
+    private final int deltaLogCompactThreshold;
+    /** records appended since the log was last compacted; only accessed with the write {@link #lock} */
+    private int deltaLogRecordCount = 0;
+    /** whether there may be a delta log from a previous run, to compact before our first write */
+    private boolean deltaLogUnchecked = true;
+    /** compaction of {@link #DELTA_LOG_COMPACTING_FILE_NAME} running on the {@link #executor}, if any; set with the write {@link #lock} */
+    private volatile ListenableFuture<?> deltaLogCompaction;
     private final MementoSerializer<Object> serializerWithStandardClassLoader;
 
     private final Map<String, StoreObjectAccessorWithLock> writers = new LinkedHashMap<String, PersistenceObjectStore.StoreObjectAccessorWithLock>();
@@ -149,6 +182,9 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         int maxSerializationAttempts = brooklynProperties.getConfig(PERSISTER_MAX_SERIALIZATION_ATTEMPTS);
         MementoSerializer<Object> rawSerializer = new XmlMementoSerializer<Object>(classLoader);
         this.serializerWithStandardClassLoader = new RetryingMementoSerializer<Object>(rawSerializer, maxSerializationAttempts);
+        this.compress = Boolean.TRUE.equals(brooklynProperties.getConfig(PERSISTER_COMPRESS));
+        this.deltaLog = Boolean.TRUE.equals(brooklynProperties.getConfig(PERSISTER_DELTA_LOG));
+        this.deltaLogCompactThreshold = brooklynProperties.getConfig(PERSISTER_DELTA_LOG_COMPACT_THRESHOLD);
 
         int maxThreadPoolSize = brooklynProperties.getConfig(PERSISTER_MAX_THREAD_POOL_SIZE);
 
@@ -314,6 +350,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         BrooklynMementoRawData subPathData = listMementoSubPathsAsData(exceptionHandler);
         
         final BrooklynMementoRawData.Builder builder = BrooklynMementoRawData.builder();
+        final Map<BrooklynObjectType, Map<String, String>> loggedDeltas = readDeltaLogs();
         
         Visitor loaderVisitor = new Visitor() {
             @Override
@@ -331,11 +368,17 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                     exceptionHandler.onLoadMementoFailed(type, "memento "+id+" read error", e);
                 }
                 
-                String xmlId = (String) XmlUtil.xpathHandlingIllegalChars(contents, "/"+type.toCamelCase()+"/id");
+                String xmlId = XmlFieldsExtractor.forRoot(type.toCamelCase()).fields("id").extract(contents).get("id");
                 String safeXmlId = Strings.makeValidFilename(xmlId);
                 if (!Objects.equal(id, safeXmlId))
                     LOG.warn("ID mismatch on "+type.toCamelCase()+", "+id+" from path, "+safeXmlId+" from xml");
                 
+                Map<String, String> loggedOfType = loggedDeltas.get(type);
+                if (loggedOfType!=null && loggedOfType.containsKey(xmlId)) {
+                    // superseded by the delta log, applied below
+                    return;
+                }
+                
                 if (type == BrooklynObjectType.MANAGED_BUNDLE) {
                     // TODO could R/W to cache space directly, rather than memory copy then extra file copy
                     byte[] jarData = readBytes(contentsSubpath+".jar");
@@ -352,6 +395,11 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
 
         builder.planeId(Strings.emptyToNull(read(PLANE_ID_FILE_NAME)));
         visitMemento("loading raw", subPathData, loaderVisitor, exceptionHandler);
+        for (Map.Entry<BrooklynObjectType, Map<String, String>> loggedOfType : loggedDeltas.entrySet()) {
+            for (Map.Entry<String, String> logged : loggedOfType.getValue().entrySet()) {
+                if (logged.getValue()!=null) builder.put(loggedOfType.getKey(), logged.getKey(), logged.getValue());
+            }
+        }
         
         BrooklynMementoRawData result = builder.build();
 
@@ -366,29 +414,8 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         return result;
     }
 
-    private static class XPathHelper {
-        private String contents;
-        private String prefix;
-
-        public XPathHelper(String contents, String prefix) {
-            this.contents = contents;
-            this.prefix = prefix;
-        }
-
-        private String get(String innerPath) {
-            return (String) XmlUtil.xpathHandlingIllegalChars(contents, prefix+innerPath);
-        }
-        private List<String> getStringList(String innerPath) {
-            List<String> result = MutableList.of();
-            final NodeList nodeList =
-                (NodeList) XmlUtil.xpathHandlingIllegalChars(contents, prefix + innerPath + "//string", XPathConstants.NODESET);
-            for(int c = 0 ; c < nodeList.getLength() ; c++) {
-                result.add(nodeList.item(c).getFirstChild().getNodeValue());
-            }
-            return result;
-        }
-    }
-
+    private static final XmlFieldsExtractor ENTITY_MANIFEST_FIELDS = XmlFieldsExtractor.forRoot(BrooklynObjectType.ENTITY.toCamelCase())
+            .fields("id", "type", "parent", "catalogItemId").stringListFields("searchPath");
 
     @Override
     public BrooklynMementoManifest loadMementoManifest(BrooklynMementoRawData mementoDataR,
@@ -402,9 +429,9 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         Visitor visitor = new Visitor() {
             @Override
             public void visit(BrooklynObjectType type, String objectId, final String contents) throws Exception {
-                XPathHelper x = new XPathHelper(contents, "/"+type.toCamelCase()+"/");
                 switch (type) {
                     case ENTITY:
+                        XmlFieldsExtractor.Fields x = ENTITY_MANIFEST_FIELDS.extract(contents);
                         builder.entity(x.get("id"), x.get("type"), Strings.emptyToNull(x.get("parent")),
                             Strings.emptyToNull(x.get("catalogItemId")),
                             x.getStringList("searchPath"));
@@ -413,7 +440,8 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                     case POLICY:
                     case ENRICHER:
                     case FEED:
-                        builder.putType(type, x.get("id"), x.get("type"));
+                        XmlFieldsExtractor.Fields f = XmlFieldsExtractor.forRoot(type.toCamelCase()).fields("id", "type").extract(contents);
+                        builder.putType(type, f.get("id"), f.get("type"));
                         break;
                     case CATALOG_ITEM:
                         try {
@@ -598,6 +626,8 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             objectStore.prepareForMasterUse();
             
             Stopwatch stopwatch = Stopwatch.createStarted();
+            // a compaction running in the background must not overwrite what we write now
+            awaitDeltaLogCompaction();
             List<ListenableFuture<?>> futures = Lists.newArrayList();
             
             futures.add(asyncUpdatePlaneId(newMemento.getPlaneId(), exceptionHandler));
@@ -616,6 +646,8 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             } catch (Exception e) {
                 throw Exceptions.propagate(e);
             }
+            // logged records for what we have just written are superseded; compact any others
+            startDeltaLogCompaction(newMemento, exceptionHandler);
             if (LOG.isDebugEnabled()) LOG.debug("Checkpointed entire memento in {}", Time.makeTimeStringRounded(stopwatch));
         } finally {
             lock.writeLock().unlock();
@@ -667,7 +699,18 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             objectStore.prepareForMasterUse();
             
             Stopwatch stopwatch = Stopwatch.createStarted();
+            if (deltaLogUnchecked) {
+                // a log left by a previous run must not supersede what we write; if we are no longer logging
+                // we will write the files directly, so must compact it now rather than in the background
+                if (deltaLog) {
+                    startDeltaLogCompaction(null, exceptionHandler);
+                } else {
+                    deltaLogUnchecked = false;
+                    if (rollDeltaLog(null)) compactRolledDeltaLog(exceptionHandler);
+                }
+            }
             List<ListenableFuture<?>> futures = Lists.newArrayList();
+            Map<BrooklynObjectType, Map<String, ListenableFuture<String>>> loggedPuts = MutableMap.of();
             
             Set<String> deletedIds = MutableSet.of();
             for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
@@ -678,15 +721,46 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                 futures.add(asyncUpdatePlaneId(delta.planeId(), exceptionHandler));
             }
             for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+                boolean logged = deltaLog && DELTA_LOG_TYPES.contains(type);
                 for (Memento item : delta.getObjectsOfType(type)) {
                     if (!deletedIds.contains(item.getId())) {
-                        addPersistContentIfManagedBundle(type, item.getId(), futures, exceptionHandler);
-                        futures.add(asyncPersist(type.getSubPathName(), item, exceptionHandler));
+                        if (logged) {
+                            Map<String, ListenableFuture<String>> loggedPutsOfType = loggedPuts.get(type);
+                            if (loggedPutsOfType==null) {
+                                loggedPutsOfType = MutableMap.of();
+                                loggedPuts.put(type, loggedPutsOfType);
+                            }
+                            loggedPutsOfType.put(item.getId(), asyncSerialize(item, exceptionHandler));
+                        } else {
+                            addPersistContentIfManagedBundle(type, item.getId(), futures, exceptionHandler);
+                            futures.add(asyncPersist(type.getSubPathName(), item, exceptionHandler));
+                        }
+                    }
+                }
+            }
+            StringBuilder logRecords = new StringBuilder();
+            int logRecordCount = 0;
+            for (Map.Entry<BrooklynObjectType, Map<String, ListenableFuture<String>>> loggedPutsOfType : loggedPuts.entrySet()) {
+                for (Map.Entry<String, ListenableFuture<String>> loggedPut : loggedPutsOfType.getValue().entrySet()) {
+                    String contents;
+                    try {
+                        contents = loggedPut.getValue().get();
+                    } catch (Exception e) {
+                        throw Exceptions.propagate(e);
+                    }
+                    if (contents!=null) {
+                        PersistenceDeltaLog.appendPut(logRecords, loggedPutsOfType.getKey(), loggedPut.getKey(), contents);
+                        logRecordCount++;
                     }
                 }
             }
             for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
                 for (String id : delta.getRemovedIdsOfType(type)) {
+                    if (deltaLog && DELTA_LOG_TYPES.contains(type)) {
+                        PersistenceDeltaLog.appendDelete(logRecords, type, id);
+                        logRecordCount++;
+                        continue;
+                    }
                     futures.add(asyncDelete(type.getSubPathName(), id, exceptionHandler));
                     if (type==BrooklynObjectType.MANAGED_BUNDLE) {
                         futures.add(asyncDelete(type.getSubPathName(), id+".jar", exceptionHandler));
@@ -703,12 +777,178 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                 throw Exceptions.propagate(e);
             }
             
+            if (logRecordCount > 0) {
+                try {
+                    getWriter(DELTA_LOG_FILE_NAME).append(logRecords.toString());
+                    deltaLogRecordCount += logRecordCount;
+                } catch (Exception e) {
+                    exceptionHandler.onPersistRawMementoFailed(BrooklynObjectType.UNKNOWN, DELTA_LOG_FILE_NAME, e);
+                }
+                if (deltaLogRecordCount >= deltaLogCompactThreshold) {
+                    startDeltaLogCompaction(null, exceptionHandler);
+                }
+            }
+            
             return stopwatch;
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    /**
+     * Returns the latest logged state of each object, from the log being compacted (if any) 
+     * overlaid with the current log; see {@link PersistenceDeltaLog#replay(String)}.
+     */
+    private Map<BrooklynObjectType, Map<String, String>> readDeltaLogs() {
+        // read the current log first, so that a concurrent roll cannot hide its records from us
+        String log = read(DELTA_LOG_FILE_NAME);
+        return mergeDeltaLogs(read(DELTA_LOG_COMPACTING_FILE_NAME), log);
+    }
+
+    private static Map<BrooklynObjectType, Map<String, String>> mergeDeltaLogs(String older, String newer) {
+        Map<BrooklynObjectType, Map<String, String>> result = PersistenceDeltaLog.replay(older);
+        for (Map.Entry<BrooklynObjectType, Map<String, String>> loggedOfType : PersistenceDeltaLog.replay(newer).entrySet()) {
+            Map<String, String> resultOfType = result.get(loggedOfType.getKey());
+            if (resultOfType == null) {
+                result.put(loggedOfType.getKey(), loggedOfType.getValue());
+            } else {
+                resultOfType.putAll(loggedOfType.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Moves the records of the current delta log into the log being compacted, and compacts that on the
+     * {@link #executor}, so that persisting is not held up. If a compaction is already running this does
+     * nothing; the records will be compacted next time. Caller must hold the write {@link #lock}.
+     * 
+     * @param supersededBy if non-null, objects in this memento have been written, so their records are discarded
+     */
+    private void startDeltaLogCompaction(@Nullable BrooklynMementoRawData supersededBy, final PersistenceExceptionHandler exceptionHandler) {
+        deltaLogUnchecked = false;
+        ListenableFuture<?> compaction = deltaLogCompaction;
+        if (compaction!=null && !compaction.isDone()) return;
+        
+        if (rollDeltaLog(supersededBy)) {
+            deltaLogCompaction = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    compactRolledDeltaLog(exceptionHandler);
+                }});
+        }
+    }
+
+    /**
+     * Merges the current delta log into {@link #DELTA_LOG_COMPACTING_FILE_NAME} and removes it; there must not be
+     * a compaction running. Caller must hold the write {@link #lock}.
+     * 
+     * @return whether there is then a log to compact
+     */
+    private boolean rollDeltaLog(@Nullable BrooklynMementoRawData supersededBy) {
+        String log = read(DELTA_LOG_FILE_NAME);
+        String rolled = read(DELTA_LOG_COMPACTING_FILE_NAME);
+        deltaLogRecordCount = 0;
+        if (log==null && supersededBy==null) return rolled!=null;
+        if (log==null && rolled==null) return false;
+        
+        StringBuilder records = new StringBuilder();
+        for (Map.Entry<BrooklynObjectType, Map<String, String>> loggedOfType : mergeDeltaLogs(rolled, log).entrySet()) {
+            BrooklynObjectType type = loggedOfType.getKey();
+            for (Map.Entry<String, String> logged : loggedOfType.getValue().entrySet()) {
+                if (supersededBy!=null && supersededBy.getObjectsOfType(type).containsKey(logged.getKey())) continue;
+                if (logged.getValue()!=null) {
+                    PersistenceDeltaLog.appendPut(records, type, logged.getKey(), logged.getValue());
+                } else {
+                    PersistenceDeltaLog.appendDelete(records, type, logged.getKey());
+                }
+            }
+        }
+        // write the merged log before deleting the current one, so a concurrent reader sees the records in one or the other
+        if (records.length() > 0) {
+            getWriter(DELTA_LOG_COMPACTING_FILE_NAME).put(records.toString());
+        } else if (rolled!=null) {
+            getWriter(DELTA_LOG_COMPACTING_FILE_NAME).delete();
+        }
+        if (log!=null) {
+            getWriter(DELTA_LOG_FILE_NAME).delete();
+        }
+        return records.length() > 0;
+    }
+
+    /**
+     * Writes the latest state of each object in {@link #DELTA_LOG_COMPACTING_FILE_NAME} to its memento file
+     * (or deletes it), then removes that log. Does not need the {@link #lock}, as the objects in the log are
+     * written only by compaction (and by checkpoints, which wait for it). Failures are reported to the
+     * exception handler, keeping the log so that nothing is lost; the next compaction will try again.
+     */
+    private void compactRolledDeltaLog(PersistenceExceptionHandler exceptionHandler) {
+        try {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            Map<BrooklynObjectType, Map<String, String>> loggedDeltas = PersistenceDeltaLog.replay(read(DELTA_LOG_COMPACTING_FILE_NAME));
+            int count = 0;
+            int failures = 0;
+            for (Map.Entry<BrooklynObjectType, Map<String, String>> loggedOfType : loggedDeltas.entrySet()) {
+                BrooklynObjectType type = loggedOfType.getKey();
+                for (Map.Entry<String, String> logged : loggedOfType.getValue().entrySet()) {
+                    String id = logged.getKey();
+                    try {
+                        if (logged.getValue()!=null) {
+                            put(getWriter(getPath(type.getSubPathName(), id)), logged.getValue());
+                        } else {
+                            getWriter(getPath(type.getSubPathName(), id)).delete();
+                            synchronized (writers) {
+                                writers.remove(id);
+                            }
+                        }
+                        count++;
+                    } catch (Exception e) {
+                        Exceptions.propagateIfFatal(e);
+                        failures++;
+                        exceptionHandler.onPersistRawMementoFailed(type, id, e);
+                    }
+                }
+            }
+            if (failures > 0) {
+                LOG.warn("Failed to compact "+failures+" object(s) from persistence delta log; keeping the log, to retry at the next compaction");
+                return;
+            }
+            getWriter(DELTA_LOG_COMPACTING_FILE_NAME).delete();
+            
+            if (LOG.isDebugEnabled()) LOG.debug("Compacted persistence delta log ({} objects) in {}", count, Time.makeTimeStringRounded(stopwatch));
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            LOG.warn("Failed to compact persistence delta log; keeping the log, to retry at the next compaction", e);
+            exceptionHandler.onPersistRawMementoFailed(BrooklynObjectType.UNKNOWN, DELTA_LOG_COMPACTING_FILE_NAME, e);
+        }
+    }
+
+    private void awaitDeltaLogCompaction() {
+        ListenableFuture<?> compaction = deltaLogCompaction;
+        if (compaction!=null) {
+            try {
+                compaction.get();
+            } catch (ExecutionException e) {
+                // failures are reported by the compaction itself
+            } catch (Exception e) {
+                throw Exceptions.propagate(e);
+            }
+        }
+    }
+
+    private ListenableFuture<String> asyncSerialize(final Memento memento, final PersistenceExceptionHandler exceptionHandler) {
+        return executor.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                try {
+                    return getSerializerWithStandardClassLoader().toString(memento);
+                } catch (Exception e) {
+                    exceptionHandler.onPersistMementoFailed(memento, e);
+                    return null;
+                }
+            }});
+    }
+
     private void addPersistContentIfManagedBundle(final BrooklynObjectType type, final String id, List<ListenableFuture<?>> futures, final PersistenceExceptionHandler exceptionHandler) {
         if (type==BrooklynObjectType.MANAGED_BUNDLE) {
             if (mgmt==null) {
@@ -748,6 +988,15 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             }
             lock.readLock().unlock();
             
+            ListenableFuture<?> compaction = deltaLogCompaction;
+            if (compaction!=null) {
+                try {
+                    compaction.get(timeout.toMillisecondsRoundingUp(), TimeUnit.MILLISECONDS);
+                } catch (ExecutionException e) {
+                    // failures are reported by the compaction itself
+                }
+            }
+            
             // Belt-and-braces: the lock above should be enough to ensure no outstanding writes, because
             // each writer is now synchronous.
             for (StoreObjectAccessorWithLock writer : wc) {
@@ -787,7 +1036,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
 
     private String read(String subPath) {
         StoreObjectAccessor objectAccessor = objectStore.newAccessor(subPath);
-        return objectAccessor.get();
+        return PersistenceCompression.decompress(objectAccessor.getBytes());
     }
 
     private byte[] readBytes(String subPath) {
@@ -797,7 +1046,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
 
     private void persist(String subPath, Memento memento, PersistenceExceptionHandler exceptionHandler) {
         try {
-            getWriter(getPath(subPath, memento.getId())).put(getSerializerWithStandardClassLoader().toString(memento));
+            put(getWriter(getPath(subPath, memento.getId())), getSerializerWithStandardClassLoader().toString(memento));
         } catch (Exception e) {
             exceptionHandler.onPersistMementoFailed(memento, e);
         }
@@ -808,12 +1057,20 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             if (content==null) {
                 LOG.warn("Null content for "+type+" "+id);
             }
-            getWriter(getPath(subPath, id)).put(content);
+            put(getWriter(getPath(subPath, id)), content);
         } catch (Exception e) {
             exceptionHandler.onPersistRawMementoFailed(type, id, e);
         }
     }
     
+    private void put(StoreObjectAccessorWithLock writer, String content) {
+        if (compress && content!=null) {
+            writer.put(ByteSource.wrap(PersistenceCompression.compress(content)));
+        } else {
+            writer.put(content);
+        }
+    }
+    
     private void persist(String subPath, BrooklynObjectType type, String id, ByteSource content, PersistenceExceptionHandler exceptionHandler) {
         try {
             getWriter(getPath(subPath, id)).put(content);
@@ -128,12 +128,24 @@ public class FileBasedStoreObjectAccessor implements PersistenceObjectStore.Stor
     }
 
     // TODO Should this write to the temporary file? Otherwise we'll risk getting a partial view of the write.
+    /**
+     * Appends and forces the data (and file metadata) to disk before returning,
+     * so that callers appending a batch at a time (e.g. the persistence delta log)
+     * pay for a single sync per batch.
+     */
     @Override
     public void append(String val) {
         try {
             if (val==null) val = "";
             FileUtil.setFilePermissionsTo600(file);
-            Files.append(val, file, Charsets.UTF_8);
+            FileOutputStream out = new FileOutputStream(file, true);
+            try {
+                out.write(val.getBytes(Charsets.UTF_8));
+                out.flush();
+                out.getChannel().force(true);
+            } finally {
+                Streams.closeQuietly(out);
+            }
             
         } catch (IOException e) {
             throw Exceptions.propagateAnnotated("Problem appending to file "+file, e);
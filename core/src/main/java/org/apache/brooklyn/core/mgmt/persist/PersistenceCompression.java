@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.brooklyn.util.exceptions.Exceptions;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Encodes persisted state in a compact (gzip-compressed) form, and decodes it again.
+ * <p>
+ * Decoding detects the gzip header, so stores written uncompressed (including all state written
+ * before compression was available) can always be read, and compression can be switched on or off
+ * for an existing store; objects are converted as they are next written.
+ * The decoded contents are the usual XML, so transformers and other raw-data tooling are unaffected.
+ */
+@Beta
+public class PersistenceCompression {
+
+    private PersistenceCompression() {}
+
+    /** returns the gzip-compressed UTF-8 bytes of the given contents */
+    public static byte[] compress(String contents) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, contents.length() / 8));
+            try (OutputStream out = new GZIPOutputStream(bytes)) {
+                out.write(contents.getBytes(Charsets.UTF_8));
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    /** whether the given bytes start with the gzip header */
+    public static boolean isCompressed(byte[] data) {
+        return data != null && data.length >= 2 
+                && (data[0] & 0xff) == (GZIPInputStream.GZIP_MAGIC & 0xff)
+                && (data[1] & 0xff) == (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+
+    /** returns the contents as a string, decompressing if they were written by {@link #compress(String)};
+     * otherwise treating them as plain UTF-8. Returns null if the data is null. */
+    public static String decompress(byte[] data) {
+        if (data == null) return null;
+        if (!isCompressed(data)) return new String(data, Charsets.UTF_8);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+        } catch (IOException e) {
+            throw Exceptions.propagateAnnotated("Problem decompressing persisted state", e);
+        }
+    }
+
+}
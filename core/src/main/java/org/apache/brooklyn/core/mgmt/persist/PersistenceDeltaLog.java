@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import java.util.Map;
+
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Encoding of the append-only delta log used by {@link BrooklynMementoPersisterToObjectStore}
+ * when {@link BrooklynMementoPersisterToObjectStore#PERSISTER_DELTA_LOG} is enabled.
+ * <p>
+ * Each record is a header line <code>#delta put|delete TYPE length id</code>, followed for puts by
+ * <code>length</code> characters of memento contents and a newline. Later records for the same object
+ * supersede earlier ones. A truncated or otherwise malformed record (e.g. from a crash or failure
+ * part way through an append) is ignored, and replay resumes at the next record header.
+ */
+@Beta
+public class PersistenceDeltaLog {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PersistenceDeltaLog.class);
+
+    private static final String PREFIX = "#delta ";
+    private static final String PUT = "put";
+    private static final String DELETE = "delete";
+
+    private PersistenceDeltaLog() {}
+
+    public static void appendPut(StringBuilder log, BrooklynObjectType type, String id, String contents) {
+        log.append(PREFIX).append(PUT).append(' ').append(type.name()).append(' ').append(contents.length()).append(' ').append(id).append('\n');
+        log.append(contents).append('\n');
+    }
+
+    public static void appendDelete(StringBuilder log, BrooklynObjectType type, String id) {
+        log.append(PREFIX).append(DELETE).append(' ').append(type.name()).append(" 0 ").append(id).append('\n');
+    }
+
+    /**
+     * Returns the latest state of each object recorded in the log, keyed by type then id;
+     * the value is the memento contents, or null if the object was deleted.
+     * <p>
+     * A malformed record (e.g. one torn by a failed append, with later appends after it)
+     * is skipped by resynchronising at the next record header.
+     */
+    public static Map<BrooklynObjectType, Map<String, String>> replay(String log) {
+        Map<BrooklynObjectType, Map<String, String>> result = MutableMap.of();
+        if (log == null) return result;
+        
+        int pos = 0;
+        while (pos < log.length()) {
+            int headerEnd = log.indexOf('\n', pos);
+            if (headerEnd < 0) {
+                LOG.warn("Ignoring truncated record at end of persistence delta log");
+                break;
+            }
+            String header = log.substring(pos, headerEnd);
+            String[] parts = header.startsWith(PREFIX) ? header.substring(PREFIX.length()).split(" ", 4) : null;
+            BrooklynObjectType type = null;
+            int length = -1;
+            if (parts != null && parts.length == 4) {
+                try {
+                    type = BrooklynObjectType.valueOf(parts[1]);
+                    length = Integer.parseInt(parts[2]);
+                } catch (IllegalArgumentException e) {
+                    type = null;
+                }
+            }
+            if (type == null || length < 0 || !(PUT.equals(parts[0]) || DELETE.equals(parts[0]))) {
+                pos = skipMalformedRecord(log, pos, "malformed record header: "+header);
+                continue;
+            }
+            String id = parts[3];
+            
+            Map<String, String> objs = result.get(type);
+            if (objs == null) {
+                objs = MutableMap.of();
+                result.put(type, objs);
+            }
+            if (PUT.equals(parts[0])) {
+                int contentsEnd = headerEnd + 1 + length;
+                if (contentsEnd >= log.length() || log.charAt(contentsEnd) != '\n') {
+                    pos = skipMalformedRecord(log, pos, "truncated or mismatched contents for "+type+" "+id);
+                    continue;
+                }
+                objs.put(id, log.substring(headerEnd + 1, contentsEnd));
+                pos = contentsEnd + 1;
+            } else {
+                objs.put(id, null);
+                pos = headerEnd + 1;
+            }
+        }
+        return result;
+    }
+
+    /** returns the start of the next record header after the malformed one at the given position, or the end of the log */
+    private static int skipMalformedRecord(String log, int pos, String problem) {
+        int next = log.indexOf(PREFIX, pos + 1);
+        if (next < 0) {
+            LOG.warn("Ignoring malformed record at end of persistence delta log; "+problem);
+            return log.length();
+        }
+        LOG.warn("Skipping malformed record in persistence delta log (resuming at offset "+next+"); "+problem);
+        return next;
+    }
+}
@@ -32,6 +32,11 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -127,6 +132,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
 Multi-phase deserialization:
@@ -189,6 +195,9 @@ public abstract class RebindIteration {
     protected final Reflections reflections;
     protected final BrooklynObjectInstantiator instantiator;
     
+    /** set for the duration of {@link #run()} if {@link RebindManagerImpl#REBIND_PARALLEL} is enabled */
+    protected ExecutorService parallelExecutor;
+    
     // populated in the course of a run
     
     // set on run start
@@ -283,6 +292,10 @@ public abstract class RebindIteration {
 
             timer = Stopwatch.createStarted();
             exceptionHandler.onStart(rebindContext);
+            if (rebindManager.rebindParallel) {
+                parallelExecutor = Executors.newFixedThreadPool(Math.max(1, rebindManager.rebindParallelMaxThreads),
+                    new ThreadFactoryBuilder().setNameFormat("brooklyn-rebind-%d").setDaemon(true).build());
+            }
 
             doRun();
             
@@ -299,6 +312,10 @@ public abstract class RebindIteration {
             throw exceptionHandler.onFailed(e);
             
         } finally {
+            if (parallelExecutor != null) {
+                parallelExecutor.shutdownNow();
+                parallelExecutor = null;
+            }
             rebindActive.release();
             RebindTracker.reset();
         }
@@ -428,36 +445,25 @@ public abstract class RebindIteration {
         
         // Instantiate locations
         logRebindingDebug("RebindManager instantiating locations: {}", mementoManifest.getLocationIdToType().keySet());
-        for (Map.Entry<String, String> entry : mementoManifest.getLocationIdToType().entrySet()) {
-            String locId = entry.getKey();
-            String locType = entry.getValue();
-            if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating location {}", locId);
-            
-            try {
-                Location location = instantiator.newLocation(locId, locType);
-                rebindContext.registerLocation(locId, location);
-            } catch (Exception e) {
-                exceptionHandler.onCreateFailed(BrooklynObjectType.LOCATION, locId, locType, e);
-            }
-        }
+        forEachPossiblyInParallel(mementoManifest.getLocationIdToType().entrySet(),
+            entry -> {
+                if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating location {}", entry.getKey());
+                return instantiator.newLocation(entry.getKey(), entry.getValue());
+            },
+            (entry, location) -> rebindContext.registerLocation(entry.getKey(), location),
+            (entry, e) -> exceptionHandler.onCreateFailed(BrooklynObjectType.LOCATION, entry.getKey(), entry.getValue(), e));
         
         // Instantiate entities
         logRebindingDebug("RebindManager instantiating entities: {}", mementoManifest.getEntityIdToManifest().keySet());
-        for (Map.Entry<String, EntityMementoManifest> entry : mementoManifest.getEntityIdToManifest().entrySet()) {
-            String entityId = entry.getKey();
-            EntityMementoManifest entityManifest = entry.getValue();
-            
-            if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating entity {}", entityId);
-            
-            try {
-                Entity entity = instantiator.newEntity(entityManifest);
+        forEachPossiblyInParallel(mementoManifest.getEntityIdToManifest().entrySet(),
+            entry -> {
+                if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating entity {}", entry.getKey());
+                Entity entity = instantiator.newEntity(entry.getValue());
                 ((EntityInternal)entity).getManagementSupport().setReadOnly( rebindContext.isReadOnly(entity) );
-                rebindContext.registerEntity(entityId, entity);
-
-            } catch (Exception e) {
-                exceptionHandler.onCreateFailed(BrooklynObjectType.ENTITY, entityId, entityManifest.getType(), e);
-            }
-        }
+                return entity;
+            },
+            (entry, entity) -> rebindContext.registerEntity(entry.getKey(), entity),
+            (entry, e) -> exceptionHandler.onCreateFailed(BrooklynObjectType.ENTITY, entry.getKey(), entry.getValue().getType(), e));
     }
 
     protected void instantiateMementos() throws IOException {
@@ -489,16 +495,13 @@ public abstract class RebindIteration {
         // Instantiate policies
         if (rebindManager.persistPoliciesEnabled) {
             logRebindingDebug("RebindManager instantiating policies: {}", memento.getPolicyIds());
-            for (PolicyMemento policyMemento : memento.getPolicyMementos().values()) {
-                logRebindingDebug("RebindManager instantiating policy {}", policyMemento);
-                
-                try {
-                    Policy policy = instantiator.newPolicy(policyMemento);
-                    rebindContext.registerPolicy(policyMemento.getId(), policy);
-                } catch (Exception e) {
-                    exceptionHandler.onCreateFailed(BrooklynObjectType.POLICY, policyMemento.getId(), policyMemento.getType(), e);
-                }
-            }
+            forEachPossiblyInParallel(memento.getPolicyMementos().values(),
+                policyMemento -> {
+                    logRebindingDebug("RebindManager instantiating policy {}", policyMemento);
+                    return instantiator.newPolicy(policyMemento);
+                },
+                (policyMemento, policy) -> rebindContext.registerPolicy(policyMemento.getId(), policy),
+                (policyMemento, e) -> exceptionHandler.onCreateFailed(BrooklynObjectType.POLICY, policyMemento.getId(), policyMemento.getType(), e));
         } else {
             logRebindingDebug("Not rebinding policies; feature disabled: {}", memento.getPolicyIds());
         }
@@ -506,16 +509,13 @@ public abstract class RebindIteration {
         // Instantiate enrichers
         if (rebindManager.persistEnrichersEnabled) {
             logRebindingDebug("RebindManager instantiating enrichers: {}", memento.getEnricherIds());
-            for (EnricherMemento enricherMemento : memento.getEnricherMementos().values()) {
-                logRebindingDebug("RebindManager instantiating enricher {}", enricherMemento);
-
-                try {
-                    Enricher enricher = instantiator.newEnricher(enricherMemento);
-                    rebindContext.registerEnricher(enricherMemento.getId(), enricher);
-                } catch (Exception e) {
-                    exceptionHandler.onCreateFailed(BrooklynObjectType.ENRICHER, enricherMemento.getId(), enricherMemento.getType(), e);
-                }
-            }
+            forEachPossiblyInParallel(memento.getEnricherMementos().values(),
+                enricherMemento -> {
+                    logRebindingDebug("RebindManager instantiating enricher {}", enricherMemento);
+                    return instantiator.newEnricher(enricherMemento);
+                },
+                (enricherMemento, enricher) -> rebindContext.registerEnricher(enricherMemento.getId(), enricher),
+                (enricherMemento, e) -> exceptionHandler.onCreateFailed(BrooklynObjectType.ENRICHER, enricherMemento.getId(), enricherMemento.getType(), e));
         } else {
             logRebindingDebug("Not rebinding enrichers; feature disabled: {}", memento.getEnricherIds());
         } 
@@ -523,16 +523,13 @@ public abstract class RebindIteration {
         // Instantiate feeds
         if (rebindManager.persistFeedsEnabled) {
             logRebindingDebug("RebindManager instantiating feeds: {}", memento.getFeedIds());
-            for (FeedMemento feedMemento : memento.getFeedMementos().values()) {
-                if (LOG.isDebugEnabled()) LOG.debug("RebindManager instantiating feed {}", feedMemento);
-
-                try {
-                    Feed feed = instantiator.newFeed(feedMemento);
-                    rebindContext.registerFeed(feedMemento.getId(), feed);
-                } catch (Exception e) {
-                    exceptionHandler.onCreateFailed(BrooklynObjectType.FEED, feedMemento.getId(), feedMemento.getType(), e);
-                }
-            }
+            forEachPossiblyInParallel(memento.getFeedMementos().values(),
+                feedMemento -> {
+                    if (LOG.isDebugEnabled()) LOG.debug("RebindManager instantiating feed {}", feedMemento);
+                    return instantiator.newFeed(feedMemento);
+                },
+                (feedMemento, feed) -> rebindContext.registerFeed(feedMemento.getId(), feed),
+                (feedMemento, e) -> exceptionHandler.onCreateFailed(BrooklynObjectType.FEED, feedMemento.getId(), feedMemento.getType(), e));
         } else {
             logRebindingDebug("Not rebinding feeds; feature disabled: {}", memento.getFeedIds());
         }
@@ -542,104 +539,123 @@ public abstract class RebindIteration {
         
         checkEnteringPhase(6);
         
-        // Reconstruct locations
+        // Reconstruct locations; those at the same depth in the hierarchy are independent of each other,
+        // so when rebinding in parallel we reconstruct a level at a time
         logRebindingDebug("RebindManager reconstructing locations");
-        for (LocationMemento locMemento : sortParentFirst(memento.getLocationMementos()).values()) {
-            Location location = rebindContext.getLocation(locMemento.getId());
-            logRebindingDebug("RebindManager reconstructing location {}", locMemento);
-            if (location == null) {
-                // usually because of creation-failure, when not using fail-fast
-                exceptionHandler.onNotFound(BrooklynObjectType.LOCATION, locMemento.getId());
-            } else {
-                try {
-                    ((LocationInternal)location).getRebindSupport().reconstruct(rebindContext, locMemento);
-                } catch (Exception e) {
-                    exceptionHandler.onRebindFailed(BrooklynObjectType.LOCATION, location, e);
-                }
-            }
+        for (Collection<LocationMemento> level : parentFirstLevels(memento.getLocationMementos())) {
+            forEachPossiblyInParallel(level,
+                locMemento -> {
+                    Location location = rebindContext.getLocation(locMemento.getId());
+                    logRebindingDebug("RebindManager reconstructing location {}", locMemento);
+                    if (location != null) {
+                        ((LocationInternal)location).getRebindSupport().reconstruct(rebindContext, locMemento);
+                    }
+                    return location;
+                },
+                (locMemento, location) -> {
+                    if (location == null) {
+                        // usually because of creation-failure, when not using fail-fast
+                        exceptionHandler.onNotFound(BrooklynObjectType.LOCATION, locMemento.getId());
+                    }
+                },
+                (locMemento, e) -> exceptionHandler.onRebindFailed(BrooklynObjectType.LOCATION, rebindContext.getLocation(locMemento.getId()), e));
         }
 
         // Reconstruct policies
         if (rebindManager.persistPoliciesEnabled) {
             logRebindingDebug("RebindManager reconstructing policies");
-            for (PolicyMemento policyMemento : memento.getPolicyMementos().values()) {
-                Policy policy = rebindContext.getPolicy(policyMemento.getId());
-                logRebindingDebug("RebindManager reconstructing policy {}", policyMemento);
-   
-                if (policy == null) {
-                    // usually because of creation-failure, when not using fail-fast
-                    exceptionHandler.onNotFound(BrooklynObjectType.POLICY, policyMemento.getId());
-                } else {
-                    try {
+            forEachPossiblyInParallel(memento.getPolicyMementos().values(),
+                policyMemento -> {
+                    Policy policy = rebindContext.getPolicy(policyMemento.getId());
+                    logRebindingDebug("RebindManager reconstructing policy {}", policyMemento);
+                    if (policy != null) {
                         policy.getRebindSupport().reconstruct(rebindContext, policyMemento);
-                    } catch (Exception e) {
-                        exceptionHandler.onRebindFailed(BrooklynObjectType.POLICY, policy, e);
-                        rebindContext.unregisterPolicy(policy);
                     }
-                }
-            }
+                    return policy;
+                },
+                (policyMemento, policy) -> {
+                    if (policy == null) {
+                        // usually because of creation-failure, when not using fail-fast
+                        exceptionHandler.onNotFound(BrooklynObjectType.POLICY, policyMemento.getId());
+                    }
+                },
+                (policyMemento, e) -> {
+                    Policy policy = rebindContext.getPolicy(policyMemento.getId());
+                    exceptionHandler.onRebindFailed(BrooklynObjectType.POLICY, policy, e);
+                    rebindContext.unregisterPolicy(policy);
+                });
         }
 
         // Reconstruct enrichers
         if (rebindManager.persistEnrichersEnabled) {
             logRebindingDebug("RebindManager reconstructing enrichers");
-            for (EnricherMemento enricherMemento : memento.getEnricherMementos().values()) {
-                Enricher enricher = rebindContext.getEnricher(enricherMemento.getId());
-                logRebindingDebug("RebindManager reconstructing enricher {}", enricherMemento);
-      
-                if (enricher == null) {
-                    // usually because of creation-failure, when not using fail-fast
-                    exceptionHandler.onNotFound(BrooklynObjectType.ENRICHER, enricherMemento.getId());
-                } else {
-                    try {
+            forEachPossiblyInParallel(memento.getEnricherMementos().values(),
+                enricherMemento -> {
+                    Enricher enricher = rebindContext.getEnricher(enricherMemento.getId());
+                    logRebindingDebug("RebindManager reconstructing enricher {}", enricherMemento);
+                    if (enricher != null) {
                         enricher.getRebindSupport().reconstruct(rebindContext, enricherMemento);
-                    } catch (Exception e) {
-                        exceptionHandler.onRebindFailed(BrooklynObjectType.ENRICHER, enricher, e);
-                        rebindContext.unregisterEnricher(enricher);
                     }
-                }
-            }
+                    return enricher;
+                },
+                (enricherMemento, enricher) -> {
+                    if (enricher == null) {
+                        // usually because of creation-failure, when not using fail-fast
+                        exceptionHandler.onNotFound(BrooklynObjectType.ENRICHER, enricherMemento.getId());
+                    }
+                },
+                (enricherMemento, e) -> {
+                    Enricher enricher = rebindContext.getEnricher(enricherMemento.getId());
+                    exceptionHandler.onRebindFailed(BrooklynObjectType.ENRICHER, enricher, e);
+                    rebindContext.unregisterEnricher(enricher);
+                });
         }
    
         // Reconstruct feeds
         if (rebindManager.persistFeedsEnabled) {
             logRebindingDebug("RebindManager reconstructing feeds");
-            for (FeedMemento feedMemento : memento.getFeedMementos().values()) {
-                Feed feed = rebindContext.getFeed(feedMemento.getId());
-                logRebindingDebug("RebindManager reconstructing feed {}", feedMemento);
-      
-                if (feed == null) {
-                    // usually because of creation-failure, when not using fail-fast
-                    exceptionHandler.onNotFound(BrooklynObjectType.FEED, feedMemento.getId());
-                } else {
-                    try {
+            forEachPossiblyInParallel(memento.getFeedMementos().values(),
+                feedMemento -> {
+                    Feed feed = rebindContext.getFeed(feedMemento.getId());
+                    logRebindingDebug("RebindManager reconstructing feed {}", feedMemento);
+                    if (feed != null) {
                         feed.getRebindSupport().reconstruct(rebindContext, feedMemento);
-                    } catch (Exception e) {
-                        exceptionHandler.onRebindFailed(BrooklynObjectType.FEED, feed, e);
-                        rebindContext.unregisterFeed(feed);
                     }
-                }
-
-            }
+                    return feed;
+                },
+                (feedMemento, feed) -> {
+                    if (feed == null) {
+                        // usually because of creation-failure, when not using fail-fast
+                        exceptionHandler.onNotFound(BrooklynObjectType.FEED, feedMemento.getId());
+                    }
+                },
+                (feedMemento, e) -> {
+                    Feed feed = rebindContext.getFeed(feedMemento.getId());
+                    exceptionHandler.onRebindFailed(BrooklynObjectType.FEED, feed, e);
+                    rebindContext.unregisterFeed(feed);
+                });
         }
    
-        // Reconstruct entities
+        // Reconstruct entities, again a level at a time (siblings only touch their own state and their parent's child list)
         logRebindingDebug("RebindManager reconstructing entities");
-        for (EntityMemento entityMemento : sortParentFirst(memento.getEntityMementos()).values()) {
-            Entity entity = rebindContext.lookup().lookupEntity(entityMemento.getId());
-            logRebindingDebug("RebindManager reconstructing entity {}", entityMemento);
-   
-            if (entity == null) {
-                // usually because of creation-failure, when not using fail-fast
-                exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityMemento.getId());
-            } else {
-                try {
-                    entityMemento.injectTypeClass(entity.getClass());
-                    ((EntityInternal)entity).getRebindSupport().reconstruct(rebindContext, entityMemento);
-                } catch (Exception e) {
-                    exceptionHandler.onRebindFailed(BrooklynObjectType.ENTITY, entity, e);
-                }
-            }
+        for (Collection<EntityMemento> level : parentFirstLevels(memento.getEntityMementos())) {
+            forEachPossiblyInParallel(level,
+                entityMemento -> {
+                    Entity entity = rebindContext.lookup().lookupEntity(entityMemento.getId());
+                    logRebindingDebug("RebindManager reconstructing entity {}", entityMemento);
+                    if (entity != null) {
+                        entityMemento.injectTypeClass(entity.getClass());
+                        ((EntityInternal)entity).getRebindSupport().reconstruct(rebindContext, entityMemento);
+                    }
+                    return entity;
+                },
+                (entityMemento, entity) -> {
+                    if (entity == null) {
+                        // usually because of creation-failure, when not using fail-fast
+                        exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityMemento.getId());
+                    }
+                },
+                (entityMemento, e) -> exceptionHandler.onRebindFailed(BrooklynObjectType.ENTITY, rebindContext.lookup().lookupEntity(entityMemento.getId()), e));
         }
     }
 
@@ -1339,6 +1355,93 @@ public abstract class RebindIteration {
         return RebindManagerImpl.sortParentFirst(nodes);
     }
 
+    /**
+     * Returns the nodes parent-first, grouped so that no node is in the same group as any of its ancestors.
+     * When rebinding in parallel this is one group per depth in the hierarchy; otherwise it is a single group
+     * in the order given by {@link #sortParentFirst(Map)}.
+     */
+    protected <T extends TreeNode> List<Collection<T>> parentFirstLevels(Map<String, T> nodes) {
+        Map<String, T> sorted = sortParentFirst(nodes);
+        if (parallelExecutor == null) {
+            return ImmutableList.<Collection<T>>of(sorted.values());
+        }
+        Map<String, Integer> depths = Maps.newHashMap();
+        List<Collection<T>> result = Lists.newArrayList();
+        for (T node : sorted.values()) {
+            Integer parentDepth = (node.getParent() == null) ? null : depths.get(node.getParent());
+            int depth = (parentDepth == null) ? 0 : parentDepth + 1;
+            depths.put(node.getId(), depth);
+            while (result.size() <= depth) result.add(Lists.<T>newArrayList());
+            result.get(depth).add(node);
+        }
+        return result;
+    }
+
+    /** a unit of rebind work applied to each item by {@link RebindIteration#forEachPossiblyInParallel(Iterable, RebindStep, BiConsumer, BiConsumer)} */
+    protected interface RebindStep<I, T> {
+        T apply(I item) throws Exception;
+    }
+
+    /**
+     * Applies the given step to each item, then passes the result to <code>onSuccess</code> or the exception
+     * to <code>onFailure</code>. The steps are run concurrently if rebinding in parallel, so must only depend on
+     * state set up by earlier phases (or earlier calls to this method); the callbacks, which typically register
+     * the result in the {@link #rebindContext} or notify the {@link #exceptionHandler}, are always called on this
+     * thread in the order of the items, so fail-fast and other exception handling behave as for a sequential rebind.
+     */
+    protected <I, T> void forEachPossiblyInParallel(Iterable<I> items, final RebindStep<? super I, T> step,
+            BiConsumer<? super I, ? super T> onSuccess, BiConsumer<? super I, ? super Exception> onFailure) {
+        if (parallelExecutor == null) {
+            for (I item : items) {
+                T result;
+                try {
+                    result = step.apply(item);
+                } catch (Exception e) {
+                    onFailure.accept(item, e);
+                    continue;
+                }
+                onSuccess.accept(item, result);
+            }
+            return;
+        }
+        
+        List<I> itemList = ImmutableList.copyOf(items);
+        List<Future<T>> futures = Lists.newArrayListWithCapacity(itemList.size());
+        try {
+            for (final I item : itemList) {
+                futures.add(parallelExecutor.submit(() -> {
+                    // flag is thread-local, consulted by adjuncts and entities being reconstructed
+                    RebindTracker.setRebinding();
+                    try {
+                        return step.apply(item);
+                    } finally {
+                        RebindTracker.reset();
+                    }
+                }));
+            }
+            for (int i = 0; i < itemList.size(); i++) {
+                T result;
+                try {
+                    result = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    Exceptions.propagateIfFatal(cause);
+                    if (!(cause instanceof Exception)) throw Exceptions.propagate(cause);
+                    onFailure.accept(itemList.get(i), (Exception) cause);
+                    continue;
+                }
+                onSuccess.accept(itemList.get(i), result);
+            }
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        } finally {
+            // if a callback failed fast (or we were interrupted), don't leave remaining steps running
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
     /** logs at debug, except during subsequent read-only rebinds, in which it logs trace */
     protected void logRebindingDebug(String message, Object... args) {
         if (shouldLogRebinding()) {
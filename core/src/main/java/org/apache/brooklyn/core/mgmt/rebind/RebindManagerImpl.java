@@ -110,6 +110,16 @@ public class RebindManagerImpl implements RebindManager {
                 + "then linear regression to allow max 5% at 100 items and above", 
                 QuorumChecks.newLinearRange("[[0,-2],[10,8],[100,95],[200,190]]"));
 
+    @Beta
+    public static final ConfigKey<Boolean> REBIND_PARALLEL =
+            ConfigKeys.newBooleanConfigKey("rebind.parallel",
+                    "Whether to instantiate and reconstruct independent items concurrently during rebind; "
+                    + "items are still registered, and failures reported to the exception handler, in the usual order", false);
+    @Beta
+    public static final ConfigKey<Integer> REBIND_PARALLEL_MAX_THREADS =
+            ConfigKeys.newIntegerConfigKey("rebind.parallel.maxThreads",
+                    "Maximum number of threads to use when rebinding in parallel", 8);
+
     public static final Logger LOG = LoggerFactory.getLogger(RebindManagerImpl.class);
 
     private final ManagementContextInternal managementContext;
@@ -139,6 +149,8 @@ public class RebindManagerImpl implements RebindManager {
     private RebindFailureMode addPolicyFailureMode;
     private RebindFailureMode loadPolicyFailureMode;
     private QuorumCheck danglingRefsQuorumRequiredHealthy;
+    final boolean rebindParallel;
+    final int rebindParallelMaxThreads;
     
     private boolean isAwaitingInitialRebind;
     
@@ -195,6 +207,8 @@ public class RebindManagerImpl implements RebindManager {
         loadPolicyFailureMode = managementContext.getConfig().getConfig(LOAD_POLICY_FAILURE_MODE);
         
         danglingRefsQuorumRequiredHealthy = managementContext.getConfig().getConfig(DANGLING_REFERENCES_MIN_REQUIRED_HEALTHY);
+        rebindParallel = managementContext.getConfig().getConfig(REBIND_PARALLEL);
+        rebindParallelMaxThreads = managementContext.getConfig().getConfig(REBIND_PARALLEL_MAX_THREADS);
 
         LOG.debug("{} initialized, settings: policies={}, enrichers={}, feeds={}, catalog={}",
                 new Object[]{this, persistPoliciesEnabled, persistEnrichersEnabled, persistFeedsEnabled, persistCatalogItemsEnabled});
@@ -21,9 +21,12 @@ package org.apache.brooklyn.core.sensor;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Collection;
-import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -42,11 +45,17 @@ import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
 /**
  * A {@link Map} of {@link Entity} attribute values.
+ * <p>
+ * Values are held in a {@link ConcurrentMap} keyed by sensor name, so reads do not lock
+ * and do not allocate; writers are serialized by {@link #getLockInternal()}.
+ * Iteration order, as in {@link #asMap()}, is the order in which sensors were first set.
  */
 public final class AttributeMap {
 
@@ -56,10 +65,16 @@ public final class AttributeMap {
         NULL;
     }
     
+    private static final Joiner PATH_JOINER = Joiner.on('.');
+    private static final Splitter PATH_SPLITTER = Splitter.on('.');
+
     private final AbstractEntity entity;
 
-    // Assumed to be something like a ConcurrentMap passed in.
-    private final Map<Collection<String>, Object> values;
+    // keyed by sensor name; null values are stored as Marker.NULL as the map does not accept nulls
+    private final ConcurrentMap<String, Object> values = new ConcurrentHashMap<String, Object>();
+    // insertion order of the keys of values; changes to both are made while synchronized on this,
+    // which is held only briefly and never while calling out, so cannot deadlock
+    private final Set<String> keyOrder = new LinkedHashSet<String>();
 
     /**
      * Creates a new AttributeMap.
@@ -68,21 +83,25 @@ public final class AttributeMap {
      * @throws NullPointerException if entity is null
      */
     public AttributeMap(AbstractEntity entity) {
-        // Not using ConcurrentMap, because want to (continue to) allow null values.
-        // Could use ConcurrentMapAcceptingNullVals (with the associated performance hit on entrySet() etc).
-        this(entity, Collections.synchronizedMap(Maps.<Collection<String>, Object>newLinkedHashMap()));
+        this.entity = checkNotNull(entity, "entity must be specified");
     }
 
     /**
-     * Creates a new AttributeMap.
+     * Creates a new AttributeMap, populated with the contents of the given map.
      *
      * @param entity  the Entity this AttributeMap belongs to.
-     * @param storage the Map in which to store the values - should be concurrent or synchronized.
+     * @param storage initial values, keyed by sensor name parts
      * @throws NullPointerException if entity is null
+     * 
+     * @deprecated since 1.0.0 values are always held in an internal concurrent map;
+     * the supplied map is only used for its initial contents, use {@link #AttributeMap(AbstractEntity)}
      */
+    @Deprecated
     public AttributeMap(AbstractEntity entity, Map<Collection<String>, Object> storage) {
-        this.entity = checkNotNull(entity, "entity must be specified");
-        this.values = checkNotNull(storage, "storage map must not be null");
+        this(entity);
+        for (Map.Entry<Collection<String>, Object> entry : checkNotNull(storage, "storage map must not be null").entrySet()) {
+            update(entry.getKey(), entry.getValue());
+        }
     }
 
     /** 
@@ -90,8 +109,7 @@ public final class AttributeMap {
      * any sensor value at a time.  Methods which set, modify, and publish values
      * acquire this lock.
      * <p>
-     * Reads are not blocked by this, although this synchs on {@link #values}
-     * when actually changing the low-level value to ensure consistency there.
+     * Reads are not blocked by this, and do not take any other lock.
      * <p>
      * See {@link #getLockInternal()}
      */
@@ -113,19 +131,30 @@ public final class AttributeMap {
         return writeLock;
     }
     
+    /** @deprecated since 1.0.0 use {@link #asMap()}, keyed by sensor name */
+    @Deprecated
     public Map<Collection<String>, Object> asRawMap() {
-        synchronized (values) {
-            return ImmutableMap.copyOf(values);
+        ImmutableMap.Builder<Collection<String>, Object> result = ImmutableMap.builder();
+        synchronized (keyOrder) {
+            for (String name : keyOrder) {
+                result.put(ImmutableList.copyOf(PATH_SPLITTER.split(name)), values.get(name));
+            }
         }
+        return result.build();
     }
 
+    /**
+     * Returns a copy of the current values, keyed by sensor name.
+     * <p>
+     * This does not take the write lock, so concurrent updates may or may not be reflected;
+     * hold {@link #getLockInternal()} if a consistent snapshot across several sensors is needed.
+     */
     public Map<String, Object> asMap() {
         Map<String, Object> result = Maps.newLinkedHashMap();
-        synchronized (values) {
-            for (Map.Entry<Collection<String>, Object> entry : values.entrySet()) {
-                String sensorName = Joiner.on('.').join(entry.getKey());
-                Object val = (isNull(entry.getValue())) ? null : entry.getValue();
-                result.put(sensorName, val);
+        synchronized (keyOrder) {
+            for (String name : keyOrder) {
+                Object val = values.get(name);
+                result.put(name, (isNull(val)) ? null : val);
             }
         }
         return result;
@@ -145,24 +174,31 @@ public final class AttributeMap {
     // TODO path must be ordered(and legal to contain duplicates like "a.b.a"; list would be better
     // (is there even any point to the path?  it was for returning maps by querying a prefix but that's ancient!)
     public <T> T update(Collection<String> path, T newValue) {
-        checkPath(path);
+        return updateByName(toName(path), newValue);
+    }
 
+    @SuppressWarnings("unchecked")
+    private <T> T updateByName(String name, T newValue) {
         if (newValue == null) {
             newValue = typedNull();
         }
 
         if (log.isTraceEnabled()) {
-            log.trace("setting sensor {}={} for {}", new Object[] {path, newValue, entity});
+            log.trace("setting sensor {}={} for {}", new Object[] {name, newValue, entity});
         }
 
-        @SuppressWarnings("unchecked")
-        T oldValue = (T) values.put(path, newValue);
+        T oldValue;
+        synchronized (keyOrder) {
+            oldValue = (T) values.put(name, newValue);
+            keyOrder.add(name);
+        }
         return (isNull(oldValue)) ? null : oldValue;
     }
 
-    private void checkPath(Collection<String> path) {
+    private String toName(Collection<String> path) {
         Preconditions.checkNotNull(path, "path can't be null");
         Preconditions.checkArgument(!path.isEmpty(), "path can't be empty");
+        return PATH_JOINER.join(path);
     }
 
     /**
@@ -195,19 +231,16 @@ public final class AttributeMap {
     
     @Beta
     public <T> T updateInternalWithoutLockOrPublish(AttributeSensor<T> attribute, T newValue) {
-        synchronized (values) {
-            if (log.isTraceEnabled()) {
-                Object oldValue = getValue(attribute);
-                if (!Objects.equal(oldValue, newValue != null)) {
-                    log.trace("setting attribute {} to {} (was {}) on {}", new Object[] {attribute.getName(), newValue, oldValue, entity});
-                } else {
-                    log.trace("setting attribute {} to {} (unchanged) on {}", new Object[] {attribute.getName(), newValue, this});
-                }
+        if (log.isTraceEnabled()) {
+            Object oldValue = getValue(attribute);
+            if (!Objects.equal(oldValue, newValue != null)) {
+                log.trace("setting attribute {} to {} (was {}) on {}", new Object[] {attribute.getName(), newValue, oldValue, entity});
+            } else {
+                log.trace("setting attribute {} to {} (unchanged) on {}", new Object[] {attribute.getName(), newValue, this});
             }
-    
-            T oldValue = update(attribute.getNameParts(), newValue);
-            return (isNull(oldValue)) ? null : oldValue;
         }
+
+        return updateByName(attribute.getName(), newValue);
     }
 
     private <T> T withLock(Callable<T> body) { return Locks.withLock(getLockInternal(), body); }
@@ -243,7 +276,7 @@ public final class AttributeMap {
     public void remove(AttributeSensor<?> attribute) {
         BrooklynLogging.log(log, BrooklynLogging.levelDebugOrTraceIfReadOnly(entity),
             "removing attribute {} on {}", attribute.getName(), entity);
-        withLock(() -> remove(attribute.getNameParts()) );
+        withLock(() -> removeByName(attribute.getName()) );
     }
 
     // TODO path must be ordered(and legal to contain duplicates like "a.b.a"; list would be better
@@ -251,13 +284,18 @@ public final class AttributeMap {
      */
     @Deprecated
     public void remove(Collection<String> path) {
-        checkPath(path);
+        removeByName(toName(path));
+    }
 
+    private void removeByName(String name) {
         if (log.isTraceEnabled()) {
-            log.trace("removing sensor {} for {}", new Object[] {path, entity});
+            log.trace("removing sensor {} for {}", new Object[] {name, entity});
         }
 
-        values.remove(path);
+        synchronized (keyOrder) {
+            values.remove(name);
+            keyOrder.remove(name);
+        }
     }
 
     /**
@@ -270,14 +308,22 @@ public final class AttributeMap {
      */
     @Deprecated
     public Object getValue(Collection<String> path) {
-        checkPath(path);
-        Object result = values.get(path);
+        return getValueByName(toName(path));
+    }
+
+    private Object getValueByName(String name) {
+        Object result = values.get(name);
         return (isNull(result)) ? null : result;
     }
 
     @SuppressWarnings("unchecked")
     public <T> T getValue(AttributeSensor<T> sensor) {
-        return (T) TypeCoercions.coerce(getValue(sensor.getNameParts()), sensor.getType());
+        Object result = getValueByName(sensor.getName());
+        if (result == null || sensor.getType().isInstance(result)) {
+            // avoid the coercion lookup in the common case
+            return (T) result;
+        }
+        return (T) TypeCoercions.coerce(result, sensor.getType());
     }
 
     @SuppressWarnings("unchecked")
@@ -19,13 +19,13 @@
 package org.apache.brooklyn.core.typereg;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
@@ -64,7 +64,11 @@ import com.google.common.annotations.Beta;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
 
 public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
@@ -83,6 +87,11 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
      * maps but coordinating that is tricky and does not seem worth it.
      */
     private ReadWriteLock localRegistryLock = new ReentrantReadWriteLock();
+    /**
+     * Sorted view of, and indexes into, {@link #localRegisteredTypesAndContainingBundles}, built on demand
+     * (under the read lock) and discarded (under the write lock) whenever that map is changed.
+     */
+    private volatile LocalTypeIndex localTypeIndex;
 
     private CatalogUpgrades catalogUpgrades;
 
@@ -95,12 +104,101 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
         return getMatching(Predicates.alwaysTrue());
     }
     
-    private Iterable<RegisteredType> getAllWithoutCatalog(Predicate<? super RegisteredType> filter) {
-        // TODO optimisation? make indexes and look up?
-        Ordering<RegisteredType> typeOrder = Ordering.from(RegisteredTypeNameThenBestFirstComparator.INSTANCE);
-        return Locks.withLock(localRegistryLock.readLock(), 
-            () -> localRegisteredTypesAndContainingBundles.values().stream().
-                flatMap(m -> { return typeOrder.sortedCopy(m.values()).stream(); }).filter(filter::apply).collect(Collectors.toList()) );
+    /** returns local types matching <code>filter</code>, looking up candidates in the index if <code>candidateFilter</code> (which 
+     * <code>filter</code> must imply) is a {@link RegisteredTypePredicates.IndexedPredicate} */
+    private Iterable<RegisteredType> getAllWithoutCatalog(Predicate<? super RegisteredType> candidateFilter, Predicate<? super RegisteredType> filter) {
+        LocalTypeIndex index = getLocalTypeIndex();
+        Iterable<RegisteredType> candidates = null;
+        if (candidateFilter instanceof RegisteredTypePredicates.IndexedPredicate) {
+            candidates = ((RegisteredTypePredicates.IndexedPredicate)candidateFilter).getCandidates(index);
+        }
+        if (candidates == null) {
+            candidates = index.getAll();
+        }
+        return Lists.newArrayList(Iterables.filter(candidates, filter));
+    }
+
+    private LocalTypeIndex getLocalTypeIndex() {
+        LocalTypeIndex result = localTypeIndex;
+        if (result != null) return result;
+        return Locks.withLock(localRegistryLock.readLock(), () -> {
+            // writers can't discard the index while we hold the read lock, so it is safe to publish what we build
+            LocalTypeIndex index = localTypeIndex;
+            if (index == null) {
+                index = new LocalTypeIndex(localRegisteredTypesAndContainingBundles);
+                localTypeIndex = index;
+            }
+            return index;
+        });
+    }
+
+    /** Callers must hold the write lock */
+    private void invalidateLocalTypeIndex() {
+        localTypeIndex = null;
+    }
+
+    /**
+     * Immutable snapshot of the local types, sorted as per {@link RegisteredTypeNameThenBestFirstComparator} within each ID,
+     * with indexes (preserving that order) by the keys used by {@link RegisteredTypePredicates.IndexedPredicate}s.
+     * Supertypes and kinds are not indexed, as the predicates for those test assignability or the loading context
+     * rather than for an exact key; they filter the sorted list.
+     */
+    @Beta
+    static class LocalTypeIndex {
+        private final List<RegisteredType> all;
+        private final ListMultimap<String, RegisteredType> bySymbolicName;
+        private final ListMultimap<String, RegisteredType> byAlias;
+        private final ListMultimap<Object, RegisteredType> byTag;
+        private final ListMultimap<VersionedName, RegisteredType> byContainingBundle;
+
+        LocalTypeIndex(Map<String,Map<String,RegisteredType>> typesAndContainingBundles) {
+            Ordering<RegisteredType> typeOrder = Ordering.from(RegisteredTypeNameThenBestFirstComparator.INSTANCE);
+            ImmutableList.Builder<RegisteredType> allBuilder = ImmutableList.builder();
+            ImmutableListMultimap.Builder<String, RegisteredType> bySymbolicNameBuilder = ImmutableListMultimap.builder();
+            ImmutableListMultimap.Builder<String, RegisteredType> byAliasBuilder = ImmutableListMultimap.builder();
+            ImmutableListMultimap.Builder<Object, RegisteredType> byTagBuilder = ImmutableListMultimap.builder();
+            ImmutableListMultimap.Builder<VersionedName, RegisteredType> byContainingBundleBuilder = ImmutableListMultimap.builder();
+            for (Map<String, RegisteredType> typesByBundle : typesAndContainingBundles.values()) {
+                for (RegisteredType type : typeOrder.sortedCopy(typesByBundle.values())) {
+                    allBuilder.add(type);
+                    bySymbolicNameBuilder.put(type.getSymbolicName(), type);
+                    if (type.getAliases() != null) {
+                        for (String alias : MutableSet.copyOf(type.getAliases())) {
+                            if (alias != null) byAliasBuilder.put(alias, type);
+                        }
+                    }
+                    if (type.getTags() != null) {
+                        for (Object tag : MutableSet.copyOf(type.getTags())) {
+                            if (tag != null) byTagBuilder.put(tag, type);
+                        }
+                    }
+                    VersionedName bundle = RegisteredTypePredicates.containingBundleKey(type.getContainingBundle());
+                    if (bundle != null) byContainingBundleBuilder.put(bundle, type);
+                }
+            }
+            all = allBuilder.build();
+            bySymbolicName = bySymbolicNameBuilder.build();
+            byAlias = byAliasBuilder.build();
+            byTag = byTagBuilder.build();
+            byContainingBundle = byContainingBundleBuilder.build();
+        }
+
+        List<RegisteredType> getAll() {
+            return all;
+        }
+        List<RegisteredType> getBySymbolicName(String symbolicName) {
+            return bySymbolicName.get(symbolicName);
+        }
+        List<RegisteredType> getByAlias(String alias) {
+            return byAlias.get(alias);
+        }
+        List<RegisteredType> getByTag(Object tag) {
+            return byTag.get(tag);
+        }
+        /** @param bundleKey as per {@link RegisteredTypePredicates#containingBundleKey(VersionedName)} */
+        List<RegisteredType> getByContainingBundle(VersionedName bundleKey) {
+            return byContainingBundle.get(bundleKey);
+        }
     }
 
     private Maybe<RegisteredType> getExactWithoutLegacyCatalog(String symbolicName, String version, RegisteredTypeLoadingContext constraint) {
@@ -117,13 +215,19 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
         return m.get( Ordering.from(VersionedNameStringComparator.INSTANCE).min(m.keySet()) );
     }
 
-    @SuppressWarnings("deprecation")
     @Override
     public Iterable<RegisteredType> getMatching(Predicate<? super RegisteredType> filter) {
+        return getMatching(filter, filter);
+    }
+
+    /** as {@link #getMatching(Predicate)}, with <code>candidateFilter</code> used to look up local candidates as per
+     * {@link #getAllWithoutCatalog(Predicate, Predicate)} */
+    @SuppressWarnings("deprecation")
+    private Iterable<RegisteredType> getMatching(Predicate<? super RegisteredType> candidateFilter, Predicate<? super RegisteredType> filter) {
         Set<RegisteredType> result = MutableSet.of();
         // keep name record also so we can remove legacy items that are superseded
         Set<String> typeNamesFound = MutableSet.of();
-        for (RegisteredType rt: getAllWithoutCatalog(filter)) {
+        for (RegisteredType rt: getAllWithoutCatalog(candidateFilter, filter)) {
             result.add(rt);
             typeNamesFound.add(rt.getId());
         }
@@ -170,15 +274,17 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
             versionCheck = RegisteredTypePredicates.versionOsgi(version);
         }
         
-        Iterable<RegisteredType> types = getMatching(Predicates.and(
-            RegisteredTypePredicates.symbolicName(symbolicNameOrAliasIfNoVersion),
+        Predicate<RegisteredType> nameCheck = RegisteredTypePredicates.symbolicName(symbolicNameOrAliasIfNoVersion);
+        Iterable<RegisteredType> types = getMatching(nameCheck, Predicates.and(
+            nameCheck,
             versionCheck,
             RegisteredTypePredicates.satisfies(context)));
         
         if (Iterables.isEmpty(types)) {
             // look for alias if no exact symbolic name match AND no version is specified
-            types = getMatching(Predicates.and(
-                RegisteredTypePredicates.alias(symbolicNameOrAliasIfNoVersion),
+            Predicate<RegisteredType> aliasCheck = RegisteredTypePredicates.alias(symbolicNameOrAliasIfNoVersion);
+            types = getMatching(aliasCheck, Predicates.and(
+                aliasCheck,
                 versionCheck,
                 RegisteredTypePredicates.satisfies(context) ) );
             // if there are multiple symbolic names then throw?
@@ -474,6 +580,7 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
                     knownMatchingTypesByBundles.remove(oldContainingBundle);
                 }
                 knownMatchingTypesByBundles.put(type.getContainingBundle(), type);
+                invalidateLocalTypeIndex();
             });
     }
 
@@ -585,6 +692,7 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
             () -> {
                 boolean changed = (localRegisteredTypesAndContainingBundles.remove(type.toString()) != null);
                 if (changed) {
+                    invalidateLocalTypeIndex();
                     CatalogUpgrades.clearTypeInStoredUpgrades(mgmt, type);
                 }
                 return changed;
@@ -617,6 +725,7 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
                 Map<String, RegisteredType> m = localRegisteredTypesAndContainingBundles.get(type.getId());
                 if (m==null) return false;
                 RegisteredType removedItem = m.remove(type.getContainingBundle());
+                if (removedItem!=null) invalidateLocalTypeIndex();
                 if (m.isEmpty()) {
                     localRegisteredTypesAndContainingBundles.remove(type.getId());
                     CatalogUpgrades.clearTypeInStoredUpgrades(mgmt, type.getVersionedName());
@@ -641,6 +750,7 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
         Locks.withLock(localRegistryLock.writeLock(), () -> {
             localRegisteredTypesAndContainingBundles.clear();
             catalogUpgrades = null;
+            invalidateLocalTypeIndex();
         });
     }
 
@@ -36,6 +36,7 @@ import org.apache.brooklyn.api.typereg.RegisteredTypeLoadingContext;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.util.collections.CollectionFunctionals;
 import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.guava.Maybe;
 import org.apache.brooklyn.util.osgi.VersionedName;
 import org.apache.brooklyn.util.text.BrooklynVersionSyntax;
 import org.slf4j.Logger;
@@ -50,6 +51,14 @@ public class RegisteredTypePredicates {
 
     private static final Logger log = LoggerFactory.getLogger(RegisteredTypePredicates.class);
     
+    /** Implemented by predicates which can only match types with a particular key in one of the
+     * {@link BasicBrooklynTypeRegistry} indexes, so that the registry can look up candidates
+     * rather than test every type. */
+    interface IndexedPredicate {
+        /** @return candidates from the index, in the index's order, or null if this instance can't use an index */
+        @Nullable Iterable<RegisteredType> getCandidates(BasicBrooklynTypeRegistry.LocalTypeIndex index);
+    }
+    
     public static Predicate<RegisteredType> deprecated(final boolean deprecated) {
         return new DeprecatedEqualTo(deprecated);
     }
@@ -122,22 +131,28 @@ public class RegisteredTypePredicates {
     }
 
     public static Predicate<RegisteredType> symbolicName(final String name) {
-        return symbolicName(Predicates.equalTo(name));
+        return new SymbolicNameMatches(Predicates.equalTo(name), name);
     }
     public static Predicate<RegisteredType> symbolicName(final Predicate<? super String> filter) {
-        return new SymbolicNameMatches(filter);
+        return new SymbolicNameMatches(filter, null);
     }
     
-    private static class SymbolicNameMatches implements Predicate<RegisteredType> {
+    private static class SymbolicNameMatches implements Predicate<RegisteredType>, IndexedPredicate {
         private final Predicate<? super String> filter;
+        private final transient String name;
         
-        public SymbolicNameMatches(Predicate<? super String> filter) {
+        public SymbolicNameMatches(Predicate<? super String> filter, @Nullable String name) {
             this.filter = filter;
+            this.name = name;
         }
         @Override
         public boolean apply(@Nullable RegisteredType item) {
             return (item != null) && filter.apply(item.getSymbolicName());
         }
+        @Override
+        public Iterable<RegisteredType> getCandidates(BasicBrooklynTypeRegistry.LocalTypeIndex index) {
+            return (name == null) ? null : index.getBySymbolicName(name);
+        }
     }
 
     public static Predicate<RegisteredType> version(final String name) {
@@ -177,22 +192,28 @@ public class RegisteredTypePredicates {
     }
 
     public static Predicate<RegisteredType> alias(final String alias) {
-        return aliases(CollectionFunctionals.any(Predicates.equalTo(alias)));
+        return new AliasesMatch(CollectionFunctionals.any(Predicates.equalTo(alias)), alias);
     }
     public static Predicate<RegisteredType> aliases(final Predicate<? super Iterable<String>> filter) {
-        return new AliasesMatch(filter);
+        return new AliasesMatch(filter, null);
     }
     
-    private static class AliasesMatch implements Predicate<RegisteredType> {
+    private static class AliasesMatch implements Predicate<RegisteredType>, IndexedPredicate {
         private final Predicate<? super Iterable<String>> filter;
+        private final transient String alias;
         
-        public AliasesMatch(Predicate<? super Iterable<String>> filter) {
+        public AliasesMatch(Predicate<? super Iterable<String>> filter, @Nullable String alias) {
             this.filter = filter;
+            this.alias = alias;
         }
         @Override
         public boolean apply(@Nullable RegisteredType item) {
             return (item != null) && filter.apply(item.getAliases());
         }
+        @Override
+        public Iterable<RegisteredType> getCandidates(BasicBrooklynTypeRegistry.LocalTypeIndex index) {
+            return (alias == null) ? null : index.getByAlias(alias);
+        }
     }
 
     /** Filters for the symbolic name or alias matching the given typeName. */
@@ -221,22 +242,28 @@ public class RegisteredTypePredicates {
     }
 
     public static Predicate<RegisteredType> tag(final Object tag) {
-        return tags(CollectionFunctionals.any(Predicates.equalTo(tag)));
+        return new TagsMatch(CollectionFunctionals.any(Predicates.equalTo(tag)), tag);
     }
     public static Predicate<RegisteredType> tags(final Predicate<? super Iterable<Object>> filter) {
-        return new TagsMatch(filter);
+        return new TagsMatch(filter, null);
     }
     
-    private static class TagsMatch implements Predicate<RegisteredType> {
+    private static class TagsMatch implements Predicate<RegisteredType>, IndexedPredicate {
         private final Predicate<? super Iterable<Object>> filter;
+        private final transient Object tag;
         
-        public TagsMatch(Predicate<? super Iterable<Object>> filter) {
+        public TagsMatch(Predicate<? super Iterable<Object>> filter, @Nullable Object tag) {
             this.filter = filter;
+            this.tag = tag;
         }
         @Override
         public boolean apply(@Nullable RegisteredType item) {
             return (item != null) && filter.apply(item.getTags());
         }
+        @Override
+        public Iterable<RegisteredType> getCandidates(BasicBrooklynTypeRegistry.LocalTypeIndex index) {
+            return (tag == null) ? null : index.getByTag(tag);
+        }
     }
 
     public static <T> Predicate<RegisteredType> anySuperType(final Predicate<Object> filter) {
@@ -390,7 +417,7 @@ public class RegisteredTypePredicates {
     public static Predicate<? super RegisteredType> containingBundle(String versionedName) {
         return containingBundle(VersionedName.fromString(versionedName));
     }
-    private static class ContainingBundle implements Predicate<RegisteredType> {
+    private static class ContainingBundle implements Predicate<RegisteredType>, IndexedPredicate {
         private final VersionedName bundle;
 
         public ContainingBundle(VersionedName bundle) {
@@ -398,10 +425,28 @@ public class RegisteredTypePredicates {
         }
         @Override
         public boolean apply(@Nullable RegisteredType item) {
-            return bundle.equalsOsgi(item.getContainingBundle());
+            return (item != null) && containingBundleKey(bundle).equals(containingBundleKey(item.getContainingBundle()));
+        }
+        @Override
+        public Iterable<RegisteredType> getCandidates(BasicBrooklynTypeRegistry.LocalTypeIndex index) {
+            return index.getByContainingBundle(containingBundleKey(bundle));
         }
     }
 
+    /** The bundle name as compared by {@link #containingBundle(VersionedName)}, and as keyed in the registry's index:
+     * with the version (if any) converted to OSGi syntax, as per {@link VersionedName#equalsOsgi(Object)}. */
+    static VersionedName containingBundleKey(VersionedName bundle) {
+        return VersionedName.toOsgiVersionedName(bundle);
+    }
+    /** As {@link #containingBundleKey(VersionedName)} for the {@link RegisteredType#getContainingBundle()} string;
+     * null if there is no containing bundle or it is not a valid bundle name */
+    @Nullable
+    static VersionedName containingBundleKey(@Nullable String bundle) {
+        if (bundle == null) return null;
+        Maybe<VersionedName> result = VersionedName.parseMaybe(bundle, false);
+        return result.isPresent() ? containingBundleKey(result.get()) : null;
+    }
+
     @Beta // expensive way to compare everything; API likely to change to be clearer
     public static Predicate<RegisteredType> stringRepresentationMatches(Predicate<? super String> filter) {
         return new StringRepresentationMatches<>(checkNotNull(filter, "filter"));
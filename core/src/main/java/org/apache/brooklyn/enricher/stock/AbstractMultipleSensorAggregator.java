@@ -64,7 +64,7 @@ public abstract class AbstractMultipleSensorAggregator<U> extends AbstractAggreg
     @Override
     protected void addProducerHardcoded(Entity producer) {
         for (Sensor<?> sourceSensor: getSourceSensors()) {
-            subscriptions().subscribe(producer, sourceSensor, this);
+            subscriptions().subscribe(getValueSubscriptionFlags(), producer, sourceSensor, this);
         }
         onProducerAdded(producer);
     }
@@ -117,7 +117,7 @@ public abstract class AbstractTransformer<T,U> extends AbstractEnricher implemen
         }
         
         if (sourceSensor != null) {
-            subscriptions().subscribe(MutableMap.of("notifyOfInitialValue", true), producer, sourceSensor, this);
+            subscriptions().subscribe(getValueSubscriptionFlags().add("notifyOfInitialValue", true), producer, sourceSensor, this);
         }
         
         if (triggerSensors.size() > 0) {
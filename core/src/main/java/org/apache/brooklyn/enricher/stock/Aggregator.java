@@ -24,9 +24,12 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.brooklyn.api.catalog.Catalog;
 import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.sensor.SensorEvent;
@@ -34,14 +37,21 @@ import org.apache.brooklyn.api.sensor.SensorEventListener;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.enricher.stock.MathAggregatorFunctions.Accumulator;
+import org.apache.brooklyn.enricher.stock.MathAggregatorFunctions.IncrementalComputingNumber;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.QuorumCheck.QuorumChecks;
 import org.apache.brooklyn.util.core.flags.SetFromFlag;
+import org.apache.brooklyn.util.core.task.ScheduledTask;
+import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
 import com.google.common.reflect.TypeToken;
@@ -83,8 +93,32 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
             "quorum.total.size", 
             "The total size to consider when determining if quorate (used with transformation of type 'isQuorate')", 1);
 
+    /**
+     * Whether to maintain the result incrementally as individual values change; only supported
+     * for transformations implementing {@link IncrementalComputingNumber}, such as the numeric ones
+     * from {@link MathAggregatorFunctions}, otherwise the result is recomputed on each change.
+     */
+    @Beta
+    public static final ConfigKey<Boolean> INCREMENTAL = ConfigKeys.newBooleanConfigKey(
+            "enricher.aggregating.incremental",
+            "Whether to update the result incrementally as values change, rather than recomputing over all values " +
+                    "(default false; only applies to 'sum', 'average', 'min' and 'max')",
+            false);
+
+    @Beta
+    public static final ConfigKey<Duration> PUBLISH_MIN_PERIOD = ConfigKeys.newConfigKey(Duration.class,
+            "enricher.aggregating.publishMinPeriod",
+            "Minimum period between publishing the result; changes within that period are combined into a single " +
+                    "update at the end of it (default none, publishing on every change)");
+
     protected Sensor<T> sourceSensor;
     protected Function<? super Collection<T>, ? extends U> transformation;
+
+    /** if non-null, kept in step with {@link #values} (guarded by it) and used for the result */
+    private Accumulator<?> accumulator;
+    private Duration publishMinPeriod;
+    private volatile long lastPublishTime;
+    private final AtomicBoolean publishPending = new AtomicBoolean();
     
     /**
      * Users of values should either on it synchronize when iterating over its entries or use
@@ -122,6 +156,20 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
         } else if (t1!=null && !Objects.equals(t2, this.transformation)) {
             throw new IllegalStateException("Cannot supply both "+TRANSFORMATION_UNTYPED+" and "+TRANSFORMATION+" unless they are equal.");
         }
+
+        if (Boolean.TRUE.equals(config().get(INCREMENTAL))) {
+            if (transformation instanceof IncrementalComputingNumber) {
+                synchronized (values) {
+                    accumulator = ((IncrementalComputingNumber<?>)(Object)transformation).newAccumulator();
+                    for (T v : values.values()) {
+                        accumulateAdd(v);
+                    }
+                }
+            } else {
+                LOG.debug("Transformation for {} does not support incremental aggregation; will recompute on each change", this);
+            }
+        }
+        this.publishMinPeriod = config().get(PUBLISH_MIN_PERIOD);
     }
         
     @SuppressWarnings({ "rawtypes", "unchecked" })
@@ -174,7 +222,7 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
 
     @Override
     protected void addProducerHardcoded(Entity producer) {
-        subscriptions().subscribe(producer, sourceSensor, this);
+        subscriptions().subscribe(getValueSubscriptionFlags(), producer, sourceSensor, this);
         onProducerAdded(producer);
     }
 
@@ -186,7 +234,7 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
 
     @Override
     protected void addProducerMember(Entity producer) {
-        subscriptions().subscribe(producer, sourceSensor, this);
+        subscriptions().subscribe(getValueSubscriptionFlags(), producer, sourceSensor, this);
         onProducerAdded(producer);
     }
 
@@ -203,7 +251,7 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
                 } else {
                     initialVal = null;
                 }
-                values.put(producer, initialVal != null ? initialVal : defaultMemberValue);
+                putValue(producer, initialVal != null ? initialVal : defaultMemberValue);
                 //we might skip in onEvent in the short window while !values.containsKey(producer)
                 //but that's okay because the put which would have been done there is done here now
             } else {
@@ -216,7 +264,12 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
     
     @Override
     protected void onProducerRemoved(Entity producer) {
-        values.remove(producer);
+        synchronized (values) {
+            if (values.containsKey(producer)) {
+                T oldVal = values.remove(producer);
+                if (accumulator!=null) accumulateRemove(oldVal);
+            }
+        }
         onUpdated();
     }
 
@@ -225,7 +278,7 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
         Entity e = event.getSource();
         synchronized (values) {
             if (values.containsKey(e)) {
-                values.put(e, event.getValue());
+                putValue(e, event.getValue());
             } else {
                 if (LOG.isDebugEnabled()) LOG.debug("{} received event for unknown producer ({}); presumably that producer has recently been removed", this, e);
             }
@@ -233,8 +286,58 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
         onUpdated();
     }
 
+    /** sets the value for a producer, keeping any {@link #accumulator} in step; caller must synchronize on {@link #values} */
+    private void putValue(Entity producer, T val) {
+        boolean known = values.containsKey(producer);
+        T oldVal = values.put(producer, val);
+        if (accumulator!=null) {
+            if (known) accumulateRemove(oldVal);
+            accumulateAdd(val);
+        }
+    }
+
+    private void accumulateAdd(T val) {
+        if (valueFilter.apply(val)) accumulator.add(val);
+    }
+
+    private void accumulateRemove(T val) {
+        if (valueFilter.apply(val)) accumulator.remove(val);
+    }
+
     @Override
     protected void onUpdated() {
+        if (publishMinPeriod!=null && getExecutionContext()!=null) {
+            long wait = lastPublishTime + publishMinPeriod.toMilliseconds() - System.currentTimeMillis();
+            if (wait > 0) {
+                schedulePublish(Duration.millis(wait));
+                return;
+            }
+        }
+        publish();
+    }
+
+    /** publishes once after the given delay, unless a publish is already scheduled (which will pick up this change) */
+    private void schedulePublish(Duration delay) {
+        if (!publishPending.compareAndSet(false, true)) return;
+        Callable<Task<?>> taskFactory = () -> Tasks.<Void>builder()
+                .dynamic(false)
+                .displayName("Publish aggregate")
+                .body(() -> {
+                    publishPending.set(false);
+                    if (isRunning()) publish();
+                })
+                .tag(BrooklynTaskTags.TRANSIENT_TASK_TAG)
+                .build();
+        getExecutionContext().submit(ScheduledTask.builder(taskFactory)
+                .displayName("scheduled:[publish aggregate]")
+                .delay(delay)
+                .maxIterations(1)
+                .tagTransient()
+                .build());
+    }
+
+    private void publish() {
+        lastPublishTime = System.currentTimeMillis();
         try {
             emit(targetSensor, compute());
         } catch (Throwable t) {
@@ -246,6 +349,7 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
     @Override
     protected Object compute() {
         synchronized (values) {
+            if (accumulator!=null) return accumulator.get();
             // TODO Could avoid copying when filter not needed
             List<T> vs = MutableList.copyOf(Iterables.filter(values.values(), valueFilter));
             if (transformation==null) return vs;
@@ -20,7 +20,10 @@ package org.apache.brooklyn.enricher.stock;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import javax.annotation.Nullable;
 
@@ -88,6 +91,25 @@ public class MathAggregatorFunctions {
         return new ComputingMax<T>(defaultValueForUnreportedSensors, valueToReportIfNoSensors, typeToken);
     }
 
+    /**
+     * A running aggregate over a changing collection of values, updated as individual values are added
+     * or removed rather than by recomputing over all values. Not thread-safe; callers must synchronize.
+     */
+    @Beta
+    public interface Accumulator<T> {
+        void add(@Nullable Object val);
+        /** removes a value previously passed to {@link #add(Object)} */
+        void remove(@Nullable Object val);
+        T get();
+    }
+
+    /** A numeric aggregation function whose result can also be maintained incrementally by an {@link Accumulator}. */
+    @Beta
+    public interface IncrementalComputingNumber<T extends Number> extends Function<Collection<? extends Number>, T> {
+        /** returns a new, empty accumulator giving the same results as {@link #apply(Object)} over the values added */
+        Accumulator<T> newAccumulator();
+    }
+
     @Beta
     protected abstract static class AbstractComputingNumber<T extends Number> implements Function<Collection<? extends Number>, T> {
         protected final Number defaultValueForUnreportedSensors;
@@ -162,11 +184,15 @@ public class MathAggregatorFunctions {
     }
 
     @Beta
-    protected static class ComputingSum<T extends Number> extends BasicComputingNumber<T> {
+    protected static class ComputingSum<T extends Number> extends BasicComputingNumber<T> implements IncrementalComputingNumber<T> {
         public ComputingSum(Number defaultValueForUnreportedSensors, Number valueToReportIfNoSensors, TypeToken<T> typeToken) {
             super(defaultValueForUnreportedSensors, valueToReportIfNoSensors, typeToken);
         }
         @Override
+        public Accumulator<T> newAccumulator() {
+            return new SumAccumulator<T>(this, false);
+        }
+        @Override
         public Number applyImpl(Collection<Number> vals) {
             double result = 0d;
             for (Number val : vals) {
@@ -177,11 +203,15 @@ public class MathAggregatorFunctions {
     }
 
     @Beta
-    protected static class ComputingAverage<T extends Number> extends BasicComputingNumber<T> {
+    protected static class ComputingAverage<T extends Number> extends BasicComputingNumber<T> implements IncrementalComputingNumber<T> {
         public ComputingAverage(Number defaultValueForUnreportedSensors, Number valueToReportIfNoSensors, TypeToken<T> typeToken) {
             super(defaultValueForUnreportedSensors, valueToReportIfNoSensors, typeToken);
         }
         @Override
+        public Accumulator<T> newAccumulator() {
+            return new SumAccumulator<T>(this, true);
+        }
+        @Override
         public Number applyImpl(Collection<Number> vals) {
             double sum = 0d;
             for (Number val : vals) {
@@ -192,11 +222,15 @@ public class MathAggregatorFunctions {
     }
 
     @Beta
-    protected static class ComputingMin<T extends Number> extends BasicComputingNumber<T> {
+    protected static class ComputingMin<T extends Number> extends BasicComputingNumber<T> implements IncrementalComputingNumber<T> {
         public ComputingMin(Number defaultValueForUnreportedSensors, Number valueToReportIfNoSensors, TypeToken<T> typeToken) {
             super(defaultValueForUnreportedSensors, valueToReportIfNoSensors, typeToken);
         }
         @Override
+        public Accumulator<T> newAccumulator() {
+            return new ExtremumAccumulator<T>(this, false);
+        }
+        @Override
         public Number applyImpl(Collection<Number> vals) {
             Double result = null;
             for (Number val : vals) { 
@@ -207,11 +241,15 @@ public class MathAggregatorFunctions {
     }
 
     @Beta
-    protected static class ComputingMax<T extends Number> extends BasicComputingNumber<T> {
+    protected static class ComputingMax<T extends Number> extends BasicComputingNumber<T> implements IncrementalComputingNumber<T> {
         public ComputingMax(Number defaultValueForUnreportedSensors, Number valueToReportIfNoSensors, TypeToken<T> typeToken) {
             super(defaultValueForUnreportedSensors, valueToReportIfNoSensors, typeToken);
         }
         @Override
+        public Accumulator<T> newAccumulator() {
+            return new ExtremumAccumulator<T>(this, true);
+        }
+        @Override
         public Number applyImpl(Collection<Number> vals) {
             Double result = null;
             for (Number val : vals) { 
@@ -221,6 +259,202 @@ public class MathAggregatorFunctions {
         }
     }
 
+    /**
+     * Base for accumulators of {@link BasicComputingNumber} functions, treating non-numbers and
+     * unreported values the same way as {@link BasicComputingNumber#apply(Collection)}.
+     */
+    @Beta
+    protected abstract static class BasicAccumulator<T extends Number> implements Accumulator<T> {
+        protected final Number defaultValueForUnreportedSensors;
+        protected final Number valueToReportIfNoSensors;
+        protected final TypeToken<T> typeToken;
+        private int count;
+        private boolean loggedNonNumber;
+
+        protected BasicAccumulator(AbstractComputingNumber<T> function) {
+            this.defaultValueForUnreportedSensors = function.defaultValueForUnreportedSensors;
+            this.valueToReportIfNoSensors = function.valueToReportIfNoSensors;
+            this.typeToken = function.typeToken;
+        }
+
+        @Override
+        public void add(@Nullable Object val) {
+            Number n = toNumber(val, true);
+            if (n != null) {
+                count++;
+                addImpl(n);
+            }
+        }
+
+        @Override
+        public void remove(@Nullable Object val) {
+            Number n = toNumber(val, false);
+            if (n != null) {
+                count--;
+                removeImpl(n);
+            }
+        }
+
+        @Override
+        public T get() {
+            if (count==0) return cast(valueToReportIfNoSensors, typeToken);
+            return cast(getImpl(count), typeToken);
+        }
+
+        protected Number toNumber(@Nullable Object val, boolean logIfNonNumber) {
+            Maybe<Number> coercedVal = TypeCoercions.tryCoerce(val, Number.class);
+            if (coercedVal.isPresentAndNonNull()) return coercedVal.get();
+            if (val != null && logIfNonNumber) {
+                if (loggedNonNumber) {
+                    if (LOG.isTraceEnabled()) LOG.trace("Input to numeric aggregator is not a number (again): "+val+" ("+val.getClass()+")");
+                } else {
+                    loggedNonNumber = true;
+                    LOG.warn("Input to numeric aggregator is not a number: "+val+" ("+val.getClass()+")");
+                }
+            }
+            return defaultValueForUnreportedSensors;
+        }
+
+        protected abstract void addImpl(Number val);
+        protected abstract void removeImpl(Number val);
+        /** returns the aggregate of the given (non-zero) number of values currently accumulated */
+        protected abstract Number getImpl(int count);
+    }
+
+    /**
+     * Running sum, or average; integral values are summed exactly so that removals do not accumulate rounding errors,
+     * and the fractional sum is periodically recomputed from the values held. Non-finite values are counted rather than
+     * summed, so that removing them restores a finite result.
+     */
+    @Beta
+    protected static class SumAccumulator<T extends Number> extends BasicAccumulator<T> {
+        private final boolean average;
+        private long integralSum;
+        private double fractionalSum;
+        private int fractionalCount;
+        /** count of each finite fractional value, for recomputing {@link #fractionalSum} */
+        private final Map<Double, Integer> fractionalValues = new HashMap<>();
+        private int removalsSinceRecompute;
+        private int nanCount;
+        private int positiveInfinityCount;
+        private int negativeInfinityCount;
+
+        public SumAccumulator(AbstractComputingNumber<T> function, boolean average) {
+            super(function);
+            this.average = average;
+        }
+        @Override
+        protected void addImpl(Number val) {
+            if (isIntegral(val)) {
+                integralSum += val.longValue();
+                return;
+            }
+            double d = val.doubleValue();
+            if (Double.isNaN(d)) {
+                nanCount++;
+            } else if (d == Double.POSITIVE_INFINITY) {
+                positiveInfinityCount++;
+            } else if (d == Double.NEGATIVE_INFINITY) {
+                negativeInfinityCount++;
+            } else {
+                fractionalSum += d;
+                fractionalCount++;
+                fractionalValues.merge(d, 1, Integer::sum);
+            }
+        }
+        @Override
+        protected void removeImpl(Number val) {
+            if (isIntegral(val)) {
+                integralSum -= val.longValue();
+                return;
+            }
+            double d = val.doubleValue();
+            if (Double.isNaN(d)) {
+                nanCount--;
+            } else if (d == Double.POSITIVE_INFINITY) {
+                positiveInfinityCount--;
+            } else if (d == Double.NEGATIVE_INFINITY) {
+                negativeInfinityCount--;
+            } else {
+                Integer count = fractionalValues.get(d);
+                if (count == null) return;
+                if (count <= 1) {
+                    fractionalValues.remove(d);
+                } else {
+                    fractionalValues.put(d, count - 1);
+                }
+                fractionalSum -= d;
+                fractionalCount--;
+                removalsSinceRecompute++;
+                if (fractionalCount==0) {
+                    fractionalSum = 0d;
+                    removalsSinceRecompute = 0;
+                } else if (removalsSinceRecompute > fractionalCount) {
+                    // avoid accumulating rounding errors; amortized over the removals
+                    recomputeFractionalSum();
+                }
+            }
+        }
+        @Override
+        protected Number getImpl(int count) {
+            double sum;
+            if (nanCount > 0 || (positiveInfinityCount > 0 && negativeInfinityCount > 0)) {
+                sum = Double.NaN;
+            } else if (positiveInfinityCount > 0) {
+                sum = Double.POSITIVE_INFINITY;
+            } else if (negativeInfinityCount > 0) {
+                sum = Double.NEGATIVE_INFINITY;
+            } else {
+                sum = integralSum + fractionalSum;
+            }
+            return average ? sum / count : sum;
+        }
+        private void recomputeFractionalSum() {
+            double sum = 0;
+            for (Map.Entry<Double, Integer> entry : fractionalValues.entrySet()) {
+                sum += entry.getKey() * entry.getValue();
+            }
+            fractionalSum = sum;
+            removalsSinceRecompute = 0;
+        }
+        private static boolean isIntegral(Number val) {
+            return val instanceof Integer || val instanceof Long || val instanceof Short || val instanceof Byte;
+        }
+    }
+
+    /** Running min or max, keeping a count of each distinct value so that the extremum can be removed. */
+    @Beta
+    protected static class ExtremumAccumulator<T extends Number> extends BasicAccumulator<T> {
+        private final boolean max;
+        private final TreeMap<Double, Integer> counts = new TreeMap<>();
+
+        public ExtremumAccumulator(AbstractComputingNumber<T> function, boolean max) {
+            super(function);
+            this.max = max;
+        }
+        @Override
+        protected void addImpl(Number val) {
+            counts.merge(val.doubleValue(), 1, Integer::sum);
+        }
+        @Override
+        protected void removeImpl(Number val) {
+            Double key = val.doubleValue();
+            Integer count = counts.get(key);
+            if (count == null || count <= 1) {
+                counts.remove(key);
+            } else {
+                counts.put(key, count - 1);
+            }
+        }
+        @Override
+        protected Number getImpl(int count) {
+            // as Math.min and Math.max, any NaN gives NaN (which the map otherwise sorts as greatest)
+            if (counts.containsKey(Double.NaN)) return Double.NaN;
+            Map.Entry<Double, Integer> result = max ? counts.lastEntry() : counts.firstEntry();
+            return (result == null) ? null : result.getKey();
+        }
+    }
+
     protected static <N extends Number> N cast(Number n, TypeToken<? extends N> numberType) {
         return (N) TypeCoercions.coerce(n, numberType);
     }
@@ -161,11 +161,11 @@ public class Propagator extends AbstractEnricher implements SensorEventListener<
                 "Nothing to propagate; detected: propagatingAll (%s, excluding %s), sensorMapping (%s)", propagatingAll, getConfig(PROPAGATING_ALL_BUT), sensorMapping);
 
         if (propagatingAll) {
-            subscriptions().subscribe(producer, null, this);
+            subscriptions().subscribe(getValueSubscriptionFlags(), producer, null, this);
             highlightTriggers("Listening for all sensors on "+producer);
         } else {
             for (Sensor<?> sensor : sensorMapping.keySet()) {
-                subscriptions().subscribe(producer, sensor, this);
+                subscriptions().subscribe(getValueSubscriptionFlags(), producer, sensor, this);
             }
             if (sensorMapping.keySet().size() > 3) {
                 highlightTriggers("Listening for "+sensorMapping.keySet()+" sensors on "+producer);
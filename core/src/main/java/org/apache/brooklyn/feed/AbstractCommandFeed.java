@@ -35,13 +35,18 @@ import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.feed.AbstractFeed;
 import org.apache.brooklyn.core.feed.AttributePollHandler;
 import org.apache.brooklyn.core.feed.DelegatingPollHandler;
+import org.apache.brooklyn.core.feed.PollHandler;
 import org.apache.brooklyn.core.feed.Poller;
 import org.apache.brooklyn.core.location.Locations;
 import org.apache.brooklyn.feed.ssh.SshPollValue;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.brooklyn.util.time.Duration;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
@@ -93,6 +98,14 @@ public abstract class AbstractCommandFeed extends AbstractFeed {
             "machine");
 
     public static final ConfigKey<Boolean> EXEC_AS_COMMAND = ConfigKeys.newBooleanConfigKey("execAsCommand");
+
+    /**
+     * Whether to combine the distinct commands of polls with the same period into a single remote execution,
+     * where the feed supports it (see {@link #isBatchingSupported()}).
+     */
+    @Beta
+    public static final ConfigKey<Boolean> BATCH_POLLS = ConfigKeys.newBooleanConfigKey("batchPolls",
+            "Whether to run the commands of polls with the same period together in one remote execution", false);
     
     @SuppressWarnings("serial")
     public static final ConfigKey<SetMultimap<CommandPollIdentifier, CommandPollConfig<?>>> POLLS = ConfigKeys.newConfigKey(
@@ -105,6 +118,7 @@ public abstract class AbstractCommandFeed extends AbstractFeed {
         private Supplier<MachineLocation> machine;
         private Duration period = Duration.of(500, TimeUnit.MILLISECONDS);
         private boolean execAsCommand = false;
+        private boolean batchPolls = false;
         private String uniqueTag;
         private volatile boolean built;
         
@@ -145,6 +159,14 @@ public abstract class AbstractCommandFeed extends AbstractFeed {
             execAsCommand = false;
             return self();
         }
+        /** runs the commands of polls with the same period in one remote execution, if supported by the feed */
+        @Beta
+        public B batchPolls() { return batchPolls(true); }
+        @Beta
+        public B batchPolls(boolean val) {
+            batchPolls = val;
+            return self();
+        }
         public B uniqueTag(String uniqueTag) {
             this.uniqueTag = uniqueTag;
             return self();
@@ -203,6 +225,7 @@ public abstract class AbstractCommandFeed extends AbstractFeed {
         config().set(ONLY_IF_SERVICE_UP, builder.onlyIfServiceUp);
         config().set(MACHINE, builder.machine);
         config().set(EXEC_AS_COMMAND, builder.execAsCommand);
+        config().set(BATCH_POLLS, builder.batchPolls);
         
         SetMultimap<CommandPollIdentifier, CommandPollConfig<?>> polls = HashMultimap.<CommandPollIdentifier,CommandPollConfig<?>>create();
         for (CommandPollConfig<?> config : (List<CommandPollConfig<?>>)builder.getPolls()) {
@@ -227,6 +250,9 @@ public abstract class AbstractCommandFeed extends AbstractFeed {
     @Override
     protected void preStart() {
         SetMultimap<CommandPollIdentifier, CommandPollConfig<?>> polls = config().get(POLLS);
+        boolean batch = Boolean.TRUE.equals(config().get(BATCH_POLLS)) && isBatchingSupported();
+        Map<Long, List<CommandPollIdentifier>> batchesByPeriod = MutableMap.of();
+        Map<CommandPollIdentifier, DelegatingPollHandler<SshPollValue>> handlersByPoll = MutableMap.of();
         
         for (final CommandPollIdentifier pollInfo : polls.keySet()) {
             Set<CommandPollConfig<?>> configs = polls.get(pollInfo);
@@ -237,15 +263,119 @@ public abstract class AbstractCommandFeed extends AbstractFeed {
                 handlers.add(new AttributePollHandler<SshPollValue>(config, entity, this));
                 if (config.getPeriod() > 0) minPeriod = Math.min(minPeriod, config.getPeriod());
             }
+            handlersByPoll.put(pollInfo, new DelegatingPollHandler<SshPollValue>(handlers));
             
-            getPoller().scheduleAtFixedRate(
-                    new Callable<SshPollValue>() {
-                        @Override
-                        public SshPollValue call() throws Exception {
-                            return exec(pollInfo.command.get(), pollInfo.env.get());
-                        }}, 
-                    new DelegatingPollHandler<SshPollValue>(handlers),
-                    minPeriod);
+            if (batch) {
+                List<CommandPollIdentifier> batchForPeriod = batchesByPeriod.get(minPeriod);
+                if (batchForPeriod == null) {
+                    batchForPeriod = MutableList.of();
+                    batchesByPeriod.put(minPeriod, batchForPeriod);
+                }
+                batchForPeriod.add(pollInfo);
+            } else {
+                schedulePoll(pollInfo, handlersByPoll.get(pollInfo), minPeriod);
+            }
+        }
+        
+        for (Map.Entry<Long, List<CommandPollIdentifier>> entry : batchesByPeriod.entrySet()) {
+            List<CommandPollIdentifier> pollInfos = entry.getValue();
+            if (pollInfos.size() == 1) {
+                schedulePoll(pollInfos.get(0), handlersByPoll.get(pollInfos.get(0)), entry.getKey());
+            } else {
+                List<PollHandler<? super SshPollValue>> handlers = MutableList.of();
+                for (CommandPollIdentifier pollInfo : pollInfos) {
+                    handlers.add(handlersByPoll.get(pollInfo));
+                }
+                scheduleBatchedPolls(pollInfos, handlers, entry.getKey());
+            }
+        }
+    }
+    
+    private void schedulePoll(final CommandPollIdentifier pollInfo, PollHandler<? super SshPollValue> handler, long period) {
+        getPoller().scheduleAtFixedRate(
+                new Callable<SshPollValue>() {
+                    @Override
+                    public SshPollValue call() throws Exception {
+                        return exec(pollInfo.command.get(), pollInfo.env.get());
+                    }}, 
+                handler,
+                period);
+    }
+    
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void scheduleBatchedPolls(final List<CommandPollIdentifier> pollInfos, List<PollHandler<? super SshPollValue>> handlers, long period) {
+        ((Poller<List<SshPollValue>>) (Poller) getPoller()).scheduleAtFixedRate(
+                new Callable<List<SshPollValue>>() {
+                    @Override
+                    public List<SshPollValue> call() throws Exception {
+                        List<String> commands = MutableList.of();
+                        List<Map<String, String>> envs = MutableList.of();
+                        for (CommandPollIdentifier pollInfo : pollInfos) {
+                            commands.add(pollInfo.command.get());
+                            envs.add(pollInfo.env.get());
+                        }
+                        return execBatch(commands, envs);
+                    }
+                    @Override
+                    public String toString() {
+                        return "batch of "+pollInfos.size()+" polls";
+                    }}, 
+                new BatchedPollHandler(handlers),
+                period);
+    }
+    
+    /**
+     * Passes each result of a batched execution to the handler of the corresponding poll;
+     * a missing result is reported as an exception to that poll's handler.
+     */
+    private static class BatchedPollHandler implements PollHandler<List<SshPollValue>> {
+        private final List<PollHandler<? super SshPollValue>> delegates;
+        
+        BatchedPollHandler(List<PollHandler<? super SshPollValue>> delegates) {
+            this.delegates = delegates;
+        }
+        
+        @Override
+        public boolean checkSuccess(List<SshPollValue> vals) {
+            // success/failure is decided per poll in onSuccess
+            return true;
+        }
+
+        @Override
+        public void onSuccess(List<SshPollValue> vals) {
+            for (int i = 0; i < delegates.size(); i++) {
+                PollHandler<? super SshPollValue> delegate = delegates.get(i);
+                SshPollValue val = (vals != null && i < vals.size()) ? vals.get(i) : null;
+                if (val == null) {
+                    delegate.onException(new IllegalStateException("No result for batched poll "+delegate.getDescription()));
+                } else if (delegate.checkSuccess(val)) {
+                    delegate.onSuccess(val);
+                } else {
+                    delegate.onFailure(val);
+                }
+            }
+        }
+
+        @Override
+        public void onFailure(List<SshPollValue> vals) {
+            onSuccess(vals);
+        }
+
+        @Override
+        public void onException(Exception exception) {
+            for (PollHandler<? super SshPollValue> delegate : delegates) {
+                delegate.onException(exception);
+            }
+        }
+
+        @Override
+        public String getDescription() {
+            StringBuilder sb = new StringBuilder("batch[");
+            for (int i = 0; i < delegates.size(); i++) {
+                if (i > 0) sb.append("; ");
+                sb.append(delegates.get(i).getDescription());
+            }
+            return sb.append("]").toString();
         }
     }
     
@@ -256,4 +386,35 @@ public abstract class AbstractCommandFeed extends AbstractFeed {
     }
     
     protected abstract SshPollValue exec(String command, Map<String,String> env) throws IOException;
+    
+    /**
+     * Whether this feed overrides {@link #execBatch(List, List)} to run several poll commands in one execution;
+     * false by default, in which case polls are not batched (as there would be no saving).
+     */
+    @Beta
+    protected boolean isBatchingSupported() {
+        return false;
+    }
+    
+    /**
+     * Runs the given commands, each with its corresponding env, returning a result for each;
+     * a result may be null if that command's outcome could not be determined.
+     * <p>
+     * By default this runs each command separately with {@link #exec(String, Map)}. Feeds which can run them
+     * in a single execution should override this and {@link #isBatchingSupported()}.
+     */
+    @Beta
+    protected List<SshPollValue> execBatch(List<String> commands, List<Map<String,String>> envs) throws IOException {
+        List<SshPollValue> result = MutableList.of();
+        for (int i = 0; i < commands.size(); i++) {
+            try {
+                result.add(exec(commands.get(i), envs.get(i)));
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                if (log.isDebugEnabled()) log.debug("Failed to run poll command for "+entity+" in batch, reporting no result: "+commands.get(i), e);
+                result.add(null);
+            }
+        }
+        return result;
+    }
 }
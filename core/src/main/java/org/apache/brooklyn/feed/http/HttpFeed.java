@@ -39,6 +39,7 @@ import org.apache.brooklyn.api.location.MachineLocation;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.feed.AbstractFeed;
 import org.apache.brooklyn.core.feed.AttributePollHandler;
 import org.apache.brooklyn.core.feed.DelegatingPollHandler;
@@ -47,6 +48,7 @@ import org.apache.brooklyn.core.location.Locations;
 import org.apache.brooklyn.core.location.Machines;
 import org.apache.brooklyn.core.location.internal.LocationInternal;
 import org.apache.brooklyn.util.executor.HttpExecutorFactory;
+import org.apache.brooklyn.util.executor.SharedHttpExecutor;
 import org.apache.brooklyn.util.guava.Maybe;
 import org.apache.brooklyn.util.http.HttpToolResponse;
 import org.apache.brooklyn.util.http.executor.HttpConfig;
@@ -324,6 +326,8 @@ public class HttpFeed extends AbstractFeed {
         }
     }
     
+    private transient HttpExecutor defaultHttpExecutor;
+
     /**
      * For rebind; do not call directly; use builder
      */
@@ -345,6 +349,9 @@ public class HttpFeed extends AbstractFeed {
                 httpExecutorFactory = location.get().getExtension(HttpExecutorFactory.class);
                 Map<String, Object> httpExecutorProps = ((LocationInternal)location.get()).config().getBag().getAllConfig();
                 httpExecutor = httpExecutorFactory.getHttpExecutor(httpExecutorProps);
+            } else if (SharedHttpExecutor.get(((EntityInternal)builder.entity).getManagementContext()).isPresent()) {
+                // resolved when polling (see getHttpExecutor), so that the shared executor is not persisted with the polls
+                httpExecutor = null;
             } else {
                 httpExecutor = HttpExecutorImpl.newInstance();
             }
@@ -416,7 +423,7 @@ public class HttpFeed extends AbstractFeed {
                                 pollInfo.credentials.get().getPassword());
                     }
 
-                    HttpResponse response =  pollInfo.httpExecutor.execute(new HttpRequest.Builder()
+                    HttpResponse response =  getHttpExecutor(pollInfo).execute(new HttpRequest.Builder()
                             .headers(pollInfo.headers)
                             .uri(pollInfo.uriProvider.get())
                             .credentials(creds)
@@ -434,6 +441,17 @@ public class HttpFeed extends AbstractFeed {
         }
     }
 
+    /** the poll's own executor, or otherwise the management context's shared executor (falling back to a new one if that is no longer enabled) */
+    private HttpExecutor getHttpExecutor(HttpPollIdentifier pollInfo) {
+        if (pollInfo.httpExecutor != null) return pollInfo.httpExecutor;
+        Maybe<HttpExecutor> shared = SharedHttpExecutor.get(getManagementContext());
+        if (shared.isPresent()) return shared.get();
+        synchronized (this) {
+            if (defaultHttpExecutor == null) defaultHttpExecutor = HttpExecutorImpl.newInstance();
+            return defaultHttpExecutor;
+        }
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     protected Poller<HttpToolResponse> getPoller() {
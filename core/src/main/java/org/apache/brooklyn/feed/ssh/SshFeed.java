@@ -18,12 +18,17 @@
  */
 package org.apache.brooklyn.feed.ssh;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import org.apache.brooklyn.feed.CommandPollConfig;
 import org.apache.brooklyn.location.ssh.SshMachineLocation;
+import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.core.config.ConfigBag;
 import org.apache.brooklyn.util.core.internal.ssh.SshTool;
+import org.apache.brooklyn.util.text.Identifiers;
+import org.apache.brooklyn.util.text.StringEscapes.BashStringEscapes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,6 +69,9 @@ import java.util.Map;
  * }
  * </pre>
  * 
+ * With {@link Builder#batchPolls()}, the distinct commands of polls sharing a period are run as one script
+ * per poll period, each in its own subshell, and the delimited output is split back into an {@link SshPollValue} per command.
+ * 
  * @author aled
  */
 public class SshFeed extends org.apache.brooklyn.feed.AbstractCommandFeed {
@@ -131,4 +139,79 @@ public class SshFeed extends org.apache.brooklyn.feed.AbstractCommandFeed {
 
         return new SshPollValue(machine, exitStatus, new String(stdout.toByteArray()), new String(stderr.toByteArray()));
     }
+
+    @Override
+    protected boolean isBatchingSupported() {
+        return true;
+    }
+
+    @Override
+    protected List<SshPollValue> execBatch(List<String> commands, List<Map<String,String>> envs) throws IOException {
+        String marker = "BROOKLYN_POLL_"+Identifiers.makeRandomId(8);
+        SshPollValue combined = exec(toBatchScript(marker, commands, envs), ImmutableMap.<String,String>of());
+        return fromBatchOutput(marker, commands.size(), combined);
+    }
+
+    /**
+     * Builds a script running each command in a subshell with its env, with each command's stdout and stderr
+     * delimited by lines containing the marker, and its exit status recorded after the end marker on stdout.
+     */
+    @VisibleForTesting
+    static String toBatchScript(String marker, List<String> commands, List<Map<String,String>> envs) {
+        StringBuilder result = new StringBuilder("set +e\n");
+        for (int i = 0; i < commands.size(); i++) {
+            String start = marker+"_"+i+"_START";
+            String end = marker+"_"+i+"_END";
+            result.append("echo ").append(start).append("; echo ").append(start).append(" >&2\n");
+            result.append("(\n");
+            Map<String,String> env = envs.get(i);
+            if (env != null) {
+                for (Map.Entry<String,String> entry : env.entrySet()) {
+                    result.append("export ").append(entry.getKey()).append("=").append(BashStringEscapes.wrapBash(entry.getValue())).append("\n");
+                }
+            }
+            result.append(commands.get(i)).append("\n");
+            result.append(")\n");
+            result.append("echo ").append(end).append(" $?; echo ").append(end).append(" >&2\n");
+        }
+        return result.toString();
+    }
+
+    /** Splits the output of a script from {@link #toBatchScript(String, List, List)}; null for any command with no complete output. */
+    @VisibleForTesting
+    static List<SshPollValue> fromBatchOutput(String marker, int count, SshPollValue combined) {
+        List<SshPollValue> result = MutableList.of();
+        for (int i = 0; i < count; i++) {
+            String start = marker+"_"+i+"_START\n";
+            String end = marker+"_"+i+"_END";
+            String stdout = extractBetween(combined.getStdout(), start, end+" ");
+            String stderr = extractBetween(combined.getStderr(), start, end);
+            Integer exitStatus = null;
+            if (stdout != null) {
+                String remainder = combined.getStdout().substring(combined.getStdout().indexOf(end+" ") + end.length() + 1);
+                int eol = remainder.indexOf('\n');
+                try {
+                    exitStatus = Integer.parseInt((eol >= 0 ? remainder.substring(0, eol) : remainder).trim());
+                } catch (NumberFormatException e) {
+                    if (log.isDebugEnabled()) log.debug("Unable to parse exit status of batched poll "+i+" on "+combined.getMachine()+": "+e);
+                }
+            }
+            if (stdout == null || exitStatus == null) {
+                result.add(null);
+            } else {
+                result.add(new SshPollValue(combined.getMachine(), exitStatus, stdout, stderr != null ? stderr : ""));
+            }
+        }
+        return result;
+    }
+
+    private static String extractBetween(String text, String start, String end) {
+        if (text == null) return null;
+        int startIndex = text.indexOf(start);
+        if (startIndex < 0) return null;
+        startIndex += start.length();
+        int endIndex = text.indexOf(end, startIndex);
+        if (endIndex < 0) return null;
+        return text.substring(startIndex, endIndex);
+    }
 }
@@ -0,0 +1,489 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.ssh;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.internal.ssh.SshTool;
+import org.apache.brooklyn.util.core.task.ScheduledTask;
+import org.apache.brooklyn.util.core.task.Tasks;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Pool of {@link SshTool} connections shared by all {@link SshMachineLocation}s in a management context
+ * (and so by everything which runs commands through them, such as ssh feeds and effector tasks).
+ * <p>
+ * Connections are keyed by the full set of properties used to create them, so locations which refer to
+ * the same host with the same credentials share connections. The total number of open connections,
+ * and the number per host, are capped; when a cap is reached the least recently used idle connection
+ * is closed to make room, or if none are idle the caller waits (up to {@link #MAX_WAIT}) for one to be returned.
+ * Idle connections are checked with {@link SshTool#isConnected()} before being reused, and are closed
+ * after {@link #IDLE_EXPIRY}.
+ * <p>
+ * Enabled with {@link #ENABLED} in brooklyn.properties; otherwise each location uses its own pools.
+ */
+@Beta
+public class SshConnectionManager implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SshConnectionManager.class);
+
+    public static final ConfigKey<Boolean> ENABLED = ConfigKeys.newBooleanConfigKey(
+            "brooklyn.ssh.connectionManager.enabled",
+            "Whether ssh connections should be pooled across all locations in the management context, "
+            + "rather than per location", false);
+
+    public static final ConfigKey<Integer> MAX_CONNECTIONS = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.ssh.connectionManager.maxConnections",
+            "Maximum number of ssh connections open at any one time (when the shared connection manager is enabled)", 256);
+
+    public static final ConfigKey<Integer> MAX_CONNECTIONS_PER_HOST = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.ssh.connectionManager.maxConnectionsPerHost",
+            "Maximum number of ssh connections open to any one host:port (when the shared connection manager is enabled)", 8);
+
+    public static final ConfigKey<Duration> IDLE_EXPIRY = ConfigKeys.newConfigKey(Duration.class,
+            "brooklyn.ssh.connectionManager.idleExpiry",
+            "Time after which unused ssh connections are closed (when the shared connection manager is enabled)", Duration.FIVE_MINUTES);
+
+    public static final ConfigKey<Duration> MAX_WAIT = ConfigKeys.newConfigKey(Duration.class,
+            "brooklyn.ssh.connectionManager.maxWait",
+            "Maximum time to wait for a connection when the limits have been reached and none are idle", Duration.TWO_MINUTES);
+
+    private static final ConfigKey<SshConnectionManager> SCRATCHPAD_KEY = ConfigKeys.newConfigKey(SshConnectionManager.class,
+            "brooklyn.ssh.connectionManager.instance");
+
+    /**
+     * Returns the connection manager for the given management context, creating it on first use,
+     * or absent if not {@link #ENABLED}.
+     */
+    public static Maybe<SshConnectionManager> get(ManagementContext mgmt) {
+        if (mgmt==null || !Boolean.TRUE.equals(mgmt.getConfig().getConfig(ENABLED))) {
+            return Maybe.absent("Shared ssh connection manager not enabled");
+        }
+        synchronized (mgmt.getScratchpad()) {
+            SshConnectionManager result = mgmt.getScratchpad().get(SCRATCHPAD_KEY);
+            if (result==null) {
+                result = new SshConnectionManager(
+                        mgmt.getConfig().getConfig(MAX_CONNECTIONS),
+                        mgmt.getConfig().getConfig(MAX_CONNECTIONS_PER_HOST),
+                        mgmt.getConfig().getConfig(IDLE_EXPIRY),
+                        mgmt.getConfig().getConfig(MAX_WAIT));
+                result.scheduleCleanup(mgmt);
+                mgmt.getScratchpad().put(SCRATCHPAD_KEY, result);
+            }
+            return Maybe.of(result);
+        }
+    }
+
+    /** closes the connection manager of the given management context, if one was created; e.g. on termination */
+    public static void closeIfPresent(ManagementContext mgmt) {
+        SshConnectionManager result;
+        synchronized (mgmt.getScratchpad()) {
+            result = mgmt.getScratchpad().get(SCRATCHPAD_KEY);
+            if (result!=null) mgmt.getScratchpad().put(SCRATCHPAD_KEY, null);
+        }
+        if (result!=null) result.close();
+    }
+
+    private static class Connection {
+        final ConnectionKey key;
+        final SshTool tool;
+        long lastReturnedTime;
+
+        Connection(ConnectionKey key, SshTool tool) {
+            this.key = key;
+            this.tool = tool;
+        }
+    }
+
+    private static class ConnectionKey {
+        final String hostAndPort;
+        final Map<String, ?> properties;
+
+        ConnectionKey(String hostAndPort, Map<String, ?> properties) {
+            this.hostAndPort = hostAndPort;
+            this.properties = properties;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ConnectionKey)) return false;
+            ConnectionKey o = (ConnectionKey) obj;
+            return hostAndPort.equals(o.hostAndPort) && properties.equals(o.properties);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(hostAndPort, properties);
+        }
+    }
+
+    private final int maxConnections;
+    private final int maxConnectionsPerHost;
+    private final Duration idleExpiry;
+    private final Duration maxWait;
+
+    // all guarded by "this"
+    private final Map<ConnectionKey, Deque<Connection>> idleByKey = MutableMap.of();
+    /** idle connections, least recently returned first */
+    private final LinkedHashSet<Connection> idleLru = new LinkedHashSet<Connection>();
+    /** number of connections open (or being opened) per host:port, whether leased or idle */
+    private final Map<String, Integer> openPerHost = MutableMap.of();
+    private int openCount;
+    private int leasedCount;
+    private boolean closed;
+    private Task<?> cleanupTask;
+
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong reusedCount = new AtomicLong();
+    private final AtomicLong unhealthyCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong waitCount = new AtomicLong();
+
+    public SshConnectionManager(int maxConnections, int maxConnectionsPerHost, Duration idleExpiry, Duration maxWait) {
+        checkArgument(maxConnections > 0, "maxConnections must be positive");
+        checkArgument(maxConnectionsPerHost > 0, "maxConnectionsPerHost must be positive");
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.idleExpiry = checkNotNull(idleExpiry, "idleExpiry");
+        this.maxWait = checkNotNull(maxWait, "maxWait");
+    }
+
+    /**
+     * Runs the given function with a connection to <code>hostAndPort</code> suitable for the given properties,
+     * reusing an idle connection if one is available, or else obtaining one from <code>connector</code>.
+     * If <code>closeAfterUse</code> the connection (and any other idle ones with the same properties) is closed afterwards.
+     */
+    public <T> T exec(String hostAndPort, Map<String, ?> properties, Supplier<? extends SshTool> connector,
+            Function<? super SshTool, T> task, boolean closeAfterUse) {
+        ConnectionKey key = new ConnectionKey(checkNotNull(hostAndPort, "hostAndPort"), MutableMap.copyOf(properties));
+        Connection connection = lease(key, connector);
+        boolean discard = closeAfterUse;
+        try {
+            return task.apply(connection.tool);
+        } catch (RuntimeException e) {
+            // don't put a connection which may be in a bad state back in the pool
+            discard = discard || !isViable(connection.tool);
+            throw e;
+        } finally {
+            release(connection, discard);
+            if (closeAfterUse) invalidate(key);
+        }
+    }
+
+    private Connection lease(ConnectionKey key, Supplier<? extends SshTool> connector) {
+        long deadline = System.currentTimeMillis() + maxWait.toMilliseconds();
+        while (true) {
+            Connection candidate = null;
+            boolean reserved = false;
+            List<Connection> toClose = MutableList.of();
+            synchronized (this) {
+                if (closed) throw new IllegalStateException("Ssh connection manager closed");
+                expireIdle(System.currentTimeMillis(), toClose);
+
+                Deque<Connection> idle = idleByKey.get(key);
+                if (idle!=null && !idle.isEmpty()) {
+                    candidate = removeIdle(idle.peekLast());
+                    leasedCount++;
+                } else if (openCount < maxConnections && getOpenCount(key.hostAndPort) < maxConnectionsPerHost) {
+                    // reserve the slot now; connect outside of the lock
+                    incrementOpen(key.hostAndPort);
+                    leasedCount++;
+                    reserved = true;
+                } else {
+                    Connection victim = findEvictionCandidate(key.hostAndPort);
+                    if (victim!=null) {
+                        removeIdle(victim);
+                        decrementOpen(victim.key.hostAndPort);
+                        toClose.add(victim);
+                        evictedCount.incrementAndGet();
+                        if (LOG.isDebugEnabled()) LOG.debug("{} evicting idle connection {} to make room for {}", new Object[] {this, victim.tool, key.hostAndPort});
+                    } else if (toClose.isEmpty()) {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            throw new IllegalStateException("Timeout after "+maxWait+" waiting for ssh connection to "+key.hostAndPort+" ("+this+")");
+                        }
+                        waitCount.incrementAndGet();
+                        try {
+                            wait(remaining);
+                        } catch (InterruptedException e) {
+                            throw Exceptions.propagate(e);
+                        }
+                    }
+                }
+            }
+            closeAll(toClose);
+
+            if (candidate!=null) {
+                if (isViable(candidate.tool)) {
+                    reusedCount.incrementAndGet();
+                    if (LOG.isTraceEnabled()) LOG.trace("{} reusing connection {} to {}", new Object[] {this, candidate.tool, key.hostAndPort});
+                    return candidate;
+                }
+                unhealthyCount.incrementAndGet();
+                if (LOG.isDebugEnabled()) LOG.debug("{} not reusing connection {} to {} as no longer connected", new Object[] {this, candidate.tool, key.hostAndPort});
+                release(candidate, true);
+                continue;
+            }
+            if (!reserved) continue;
+
+            try {
+                SshTool tool = connector.get();
+                createdCount.incrementAndGet();
+                if (LOG.isDebugEnabled()) LOG.debug("{} opened connection {} to {}", new Object[] {this, tool, key.hostAndPort});
+                return new Connection(key, tool);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    leasedCount--;
+                    decrementOpen(key.hostAndPort);
+                    notifyAll();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void release(Connection connection, boolean discard) {
+        boolean close;
+        synchronized (this) {
+            leasedCount--;
+            close = discard || closed;
+            if (close) {
+                decrementOpen(connection.key.hostAndPort);
+            } else {
+                connection.lastReturnedTime = System.currentTimeMillis();
+                Deque<Connection> idle = idleByKey.get(connection.key);
+                if (idle==null) {
+                    idle = new ArrayDeque<Connection>();
+                    idleByKey.put(connection.key, idle);
+                }
+                idle.addLast(connection);
+                idleLru.add(connection);
+            }
+            notifyAll();
+        }
+        if (close) closeQuietly(connection);
+    }
+
+    /** closes all idle connections for the given key */
+    private void invalidate(ConnectionKey key) {
+        List<Connection> toClose = MutableList.of();
+        synchronized (this) {
+            Deque<Connection> idle = idleByKey.remove(key);
+            if (idle!=null) {
+                for (Connection c : idle) {
+                    idleLru.remove(c);
+                    decrementOpen(c.key.hostAndPort);
+                    toClose.add(c);
+                }
+                notifyAll();
+            }
+        }
+        closeAll(toClose);
+    }
+
+    /** closes all idle connections unused for longer than the {@link #IDLE_EXPIRY} */
+    public void cleanUp() {
+        List<Connection> toClose = MutableList.of();
+        synchronized (this) {
+            expireIdle(System.currentTimeMillis(), toClose);
+        }
+        closeAll(toClose);
+    }
+
+    @Override
+    public void close() {
+        List<Connection> toClose;
+        Task<?> cleanupTaskRef;
+        synchronized (this) {
+            closed = true;
+            toClose = MutableList.copyOf(idleLru);
+            for (Connection c : toClose) decrementOpen(c.key.hostAndPort);
+            idleLru.clear();
+            idleByKey.clear();
+            cleanupTaskRef = cleanupTask;
+            cleanupTask = null;
+            notifyAll();
+        }
+        if (cleanupTaskRef!=null) cleanupTaskRef.cancel(false);
+        if (LOG.isDebugEnabled()) LOG.debug("{} closing, with {} idle connections", this, toClose.size());
+        closeAll(toClose);
+    }
+
+    /**
+     * Returns counts of connections currently open, leased and idle, and totals of those created,
+     * reused, found to be unhealthy when about to be reused, evicted to respect limits, and expired;
+     * and the number of times callers had to wait for a connection.
+     */
+    public synchronized Map<String, Long> getMetrics() {
+        return ImmutableMap.<String, Long>builder()
+                .put("open", (long) openCount)
+                .put("leased", (long) leasedCount)
+                .put("idle", (long) idleLru.size())
+                .put("created", createdCount.get())
+                .put("reused", reusedCount.get())
+                .put("unhealthy", unhealthyCount.get())
+                .put("evicted", evictedCount.get())
+                .put("expired", expiredCount.get())
+                .put("waits", waitCount.get())
+                .build();
+    }
+
+    @VisibleForTesting
+    synchronized int getOpenCount(String hostAndPort) {
+        Integer result = openPerHost.get(hostAndPort);
+        return (result == null) ? 0 : result;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"[max "+maxConnections+", max per host "+maxConnectionsPerHost+"]";
+    }
+
+    private void scheduleCleanup(ManagementContext mgmt) {
+        if (mgmt.getExecutionManager()==null) return;
+        Callable<Task<?>> cleanupTaskFactory = new Callable<Task<?>>() {
+            @Override public Task<Void> call() {
+                return Tasks.<Void>builder().dynamic(false).tag(BrooklynTaskTags.TRANSIENT_TASK_TAG)
+                    .displayName("ssh connection manager cleaner").body(new Callable<Void>() {
+                        @Override public Void call() {
+                            try {
+                                cleanUp();
+                            } catch (Exception e) {
+                                // don't rethrow, or the scheduled task will not be run again
+                                LOG.warn("Problem cleaning up ssh connections", e);
+                            }
+                            return null;
+                        }}).build();
+            }
+        };
+        Duration period = Duration.min(idleExpiry, Duration.ONE_MINUTE);
+        Task<?> task = mgmt.getExecutionManager().submit(ScheduledTask.builder(cleanupTaskFactory)
+                .displayName("scheduled:[ssh connection manager cleaner]").period(period).delay(period).build());
+        synchronized (this) {
+            cleanupTask = task;
+        }
+    }
+
+    // -------- the following must be called holding the lock on this
+
+    private void expireIdle(long now, List<Connection> toClose) {
+        Iterator<Connection> it = idleLru.iterator();
+        while (it.hasNext()) {
+            Connection c = it.next();
+            if (now - c.lastReturnedTime < idleExpiry.toMilliseconds()) break;
+            it.remove();
+            Deque<Connection> idle = idleByKey.get(c.key);
+            idle.remove(c);
+            if (idle.isEmpty()) idleByKey.remove(c.key);
+            decrementOpen(c.key.hostAndPort);
+            toClose.add(c);
+            expiredCount.incrementAndGet();
+        }
+        if (!toClose.isEmpty()) notifyAll();
+    }
+
+    /** least recently used idle connection to the given host if it is at its limit, or otherwise to any host */
+    private Connection findEvictionCandidate(String hostAndPort) {
+        boolean hostFull = getOpenCount(hostAndPort) >= maxConnectionsPerHost;
+        for (Connection c : idleLru) {
+            if (!hostFull || c.key.hostAndPort.equals(hostAndPort)) return c;
+        }
+        return null;
+    }
+
+    private Connection removeIdle(Connection c) {
+        idleLru.remove(c);
+        Deque<Connection> idle = idleByKey.get(c.key);
+        idle.remove(c);
+        if (idle.isEmpty()) idleByKey.remove(c.key);
+        return c;
+    }
+
+    private void incrementOpen(String hostAndPort) {
+        openCount++;
+        openPerHost.put(hostAndPort, getOpenCount(hostAndPort) + 1);
+    }
+
+    private void decrementOpen(String hostAndPort) {
+        openCount--;
+        int count = getOpenCount(hostAndPort) - 1;
+        if (count <= 0) {
+            openPerHost.remove(hostAndPort);
+        } else {
+            openPerHost.put(hostAndPort, count);
+        }
+    }
+
+    // -------- end of methods requiring the lock
+
+    private static boolean isViable(SshTool tool) {
+        try {
+            return tool != null && tool.isConnected();
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            return false;
+        }
+    }
+
+    private void closeAll(List<Connection> connections) {
+        for (Connection c : connections) {
+            closeQuietly(c);
+        }
+        connections.clear();
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            connection.tool.disconnect();
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            if (LOG.isDebugEnabled()) LOG.debug("Error disconnecting "+connection.tool+" from "+connection.key.hostAndPort+" (ignoring)", e);
+        }
+    }
+}
@@ -540,6 +540,11 @@ public class SshMachineLocation extends AbstractMachineLocation implements Machi
     }
 
     protected <T> T execSsh(final Map<String, ?> props, final Function<ShellTool, T> task) {
+        Maybe<SshConnectionManager> sharedConnections = SshConnectionManager.get(getManagementContext());
+        if (sharedConnections.isPresent()) {
+            return execSshShared(sharedConnections.get(), props, task);
+        }
+        
         final LoadingCache<Map<String, ?>, Pool<SshTool>> sshPoolCache = getSshPoolCache();
         Pool<SshTool> pool = sshPoolCache.getUnchecked(props);
         if (LOG.isTraceEnabled()) {
@@ -565,6 +570,22 @@ public class SshMachineLocation extends AbstractMachineLocation implements Machi
         }
     }
 
+    private <T> T execSshShared(SshConnectionManager connectionManager, final Map<String, ?> props, final Function<ShellTool, T> task) {
+        // key on everything used to create the tool, so machines with the same host and credentials share connections
+        ConfigBag args = getSshToolArgs(props);
+        Map<String, Object> connectionProps = MutableMap.copyOf(args.getAllConfig());
+        for (ConfigKey<?> k : REUSABLE_SSH_PROPS) {
+            connectionProps.remove(k.getName());
+        }
+        String hostAndPort = args.get(SshTool.PROP_HOST)+":"+args.get(SshTool.PROP_PORT);
+        return connectionManager.exec(hostAndPort, connectionProps, 
+                new Supplier<SshTool>() {
+                    @Override public SshTool get() {
+                        return connectSsh(props);
+                    }},
+                task, groovyTruth(props.get(CLOSE_CONNECTION.getName())));
+    }
+
     protected SshTool connectSsh() {
         return connectSsh(ImmutableMap.of());
     }
@@ -572,48 +593,7 @@ public class SshMachineLocation extends AbstractMachineLocation implements Machi
     protected boolean previouslyConnected = false;
     protected SshTool connectSsh(Map<?,?> props) {
         try {
-            if (!groovyTruth(user)) {
-                String newUser = getUser();
-                if (LOG.isTraceEnabled()) LOG.trace("For "+this+", setting user in connectSsh: oldUser="+user+"; newUser="+newUser);
-                user = newUser;
-            }
-
-            ConfigBag args = new ConfigBag()
-                .configure(SshTool.PROP_USER, user)
-                // default value of host, overridden if SSH_HOST is supplied
-                .configure(SshTool.PROP_HOST, address.getHostName());
-
-            for (Map.Entry<ConfigKey<?>, ?> entry: config().getBag().getAllConfigAsConfigKeyMap().entrySet()) {
-                boolean include = false;
-                String keyName = entry.getKey().getName();
-                if (keyName.startsWith(SshTool.BROOKLYN_CONFIG_KEY_PREFIX)) {
-                    keyName = Strings.removeFromStart(keyName, SshTool.BROOKLYN_CONFIG_KEY_PREFIX);
-                    include = true;
-                }
-                
-                if (keyName.startsWith(SSH_TOOL_CLASS_PROPERTIES_PREFIX)) {
-                    keyName = Strings.removeFromStart(keyName, SSH_TOOL_CLASS_PROPERTIES_PREFIX);
-                    include = true;
-                }
-                
-                if (ALL_SSH_CONFIG_KEY_NAMES.contains(keyName)) {
-                    // key should be included, and does not need to be changed
-
-                    // TODO make this config-setting mechanism more universal
-                    // currently e.g. it will not admit a tool-specific property.
-                    // thinking either we know about the tool here,
-                    // or we don't allow unadorned keys to be set
-                    // (require use of BROOKLYN_CONFIG_KEY_PREFIX)
-                    include = true;
-                }
-                
-                if (include) {
-                    args.putStringKey(keyName, config().get(entry.getKey()));
-                }
-            }
-
-            // Explicit props trump all.
-            args.putAll(props);
+            ConfigBag args = getSshToolArgs(props);
 
             if (LOG.isTraceEnabled()) LOG.trace("creating ssh session for "+Sanitizer.sanitize(args));
             if (!user.equals(args.get(SshTool.PROP_USER))) {
@@ -667,6 +647,53 @@ public class SshMachineLocation extends AbstractMachineLocation implements Machi
         }
     }
 
+    /** the properties (from this location's config, overridden by the given props) with which an {@link SshTool} is created */
+    protected ConfigBag getSshToolArgs(Map<?,?> props) {
+        if (!groovyTruth(user)) {
+            String newUser = getUser();
+            if (LOG.isTraceEnabled()) LOG.trace("For "+this+", setting user in connectSsh: oldUser="+user+"; newUser="+newUser);
+            user = newUser;
+        }
+
+        ConfigBag args = new ConfigBag()
+            .configure(SshTool.PROP_USER, user)
+            // default value of host, overridden if SSH_HOST is supplied
+            .configure(SshTool.PROP_HOST, address.getHostName());
+
+        for (Map.Entry<ConfigKey<?>, ?> entry: config().getBag().getAllConfigAsConfigKeyMap().entrySet()) {
+            boolean include = false;
+            String keyName = entry.getKey().getName();
+            if (keyName.startsWith(SshTool.BROOKLYN_CONFIG_KEY_PREFIX)) {
+                keyName = Strings.removeFromStart(keyName, SshTool.BROOKLYN_CONFIG_KEY_PREFIX);
+                include = true;
+            }
+            
+            if (keyName.startsWith(SSH_TOOL_CLASS_PROPERTIES_PREFIX)) {
+                keyName = Strings.removeFromStart(keyName, SSH_TOOL_CLASS_PROPERTIES_PREFIX);
+                include = true;
+            }
+            
+            if (ALL_SSH_CONFIG_KEY_NAMES.contains(keyName)) {
+                // key should be included, and does not need to be changed
+
+                // TODO make this config-setting mechanism more universal
+                // currently e.g. it will not admit a tool-specific property.
+                // thinking either we know about the tool here,
+                // or we don't allow unadorned keys to be set
+                // (require use of BROOKLYN_CONFIG_KEY_PREFIX)
+                include = true;
+            }
+            
+            if (include) {
+                args.putStringKey(keyName, config().get(entry.getKey()));
+            }
+        }
+
+        // Explicit props trump all.
+        args.putAll(props);
+        return args;
+    }
+
     // TODO submitCommands and submitScript which submit objects we can subsequently poll (cf JcloudsSshMachineLocation.submitRunScript)
 
     /**
@@ -864,8 +891,8 @@ public class SshMachineLocation extends AbstractMachineLocation implements Machi
         try {
             PipedInputStream insO = new PipedInputStream(); OutputStream outO = new PipedOutputStream(insO);
             PipedInputStream insE = new PipedInputStream(); OutputStream outE = new PipedOutputStream(insE);
-            StreamGobbler sgsO = new StreamGobbler(insO, null, LOG); sgsO.setLogPrefix("[curl @ "+address+":stdout] ").start();
-            StreamGobbler sgsE = new StreamGobbler(insE, null, LOG); sgsE.setLogPrefix("[curl @ "+address+":stdout] ").start();
+            StreamGobbler sgsO = new StreamGobbler(insO, null, LOG); sgsO.setLogPrefix("[curl @ "+address+":stdout] ").startOnSharedPool();
+            StreamGobbler sgsE = new StreamGobbler(insE, null, LOG); sgsE.setLogPrefix("[curl @ "+address+":stdout] ").startOnSharedPool();
             Map<String, ?> sshProps = MutableMap.<String, Object>builder().putAll(props).put("out", outO).put("err", outE).build();
             int result = execScript(sshProps, "copying remote resource "+url+" to server",  ImmutableList.of(
                     BashCommands.INSTALL_CURL, // TODO should hold the 'installing' mutex
@@ -155,12 +155,12 @@ public class ProcessTool extends ShellAbstractTool implements ShellTool {
             if (out != null) {
                 InputStream outstream = p.getInputStream();
                 outgobbler = new StreamGobbler(outstream, out, (Logger) null);
-                outgobbler.start();
+                outgobbler.startOnSharedPool();
             }
             if (err != null) {
                 InputStream errstream = p.getErrorStream();
                 errgobbler = new StreamGobbler(errstream, err, (Logger) null);
-                errgobbler.start();
+                errgobbler.startOnSharedPool();
             }
             
             int result = p.waitFor();
@@ -34,11 +34,14 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.BrooklynFeatureEnablement;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.util.core.internal.ssh.BackoffLimitedRetryHandler;
 import org.apache.brooklyn.util.core.internal.ssh.ShellTool;
 import org.apache.brooklyn.util.core.internal.ssh.SshAbstractTool;
@@ -48,6 +51,7 @@ import org.apache.brooklyn.util.exceptions.RuntimeTimeoutException;
 import org.apache.brooklyn.util.repeat.Repeater;
 import org.apache.brooklyn.util.stream.KnownSizeInputStream;
 import org.apache.brooklyn.util.stream.StreamGobbler;
+import org.apache.brooklyn.util.text.Identifiers;
 import org.apache.brooklyn.util.text.Strings;
 import org.apache.brooklyn.util.time.Duration;
 import org.apache.brooklyn.util.time.Time;
@@ -55,6 +59,7 @@ import org.apache.commons.io.input.ProxyInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
@@ -102,9 +107,35 @@ public class SshjTool extends SshAbstractTool implements SshTool {
 
     private static final Logger LOG = LoggerFactory.getLogger(SshjTool.class);
 
+    /*
+     * Tool-specific properties; when configured on a location these must be prefixed with
+     * SshTool.BROOKLYN_CONFIG_KEY_PREFIX (or the sshToolClass properties prefix).
+     */
+    @Beta
+    public static final ConfigKey<Boolean> PROP_MULTIPLEX_SESSIONS = ConfigKeys.newBooleanConfigKey("multiplexSessions",
+            "Whether this tool may be used concurrently, running each command in its own session channel on the one "
+            + "authenticated connection (and not disconnecting other sessions when a single command fails)", false);
+    @Beta
+    public static final ConfigKey<Integer> PROP_MAX_SESSIONS = ConfigKeys.newIntegerConfigKey("maxSessions",
+            "Maximum number of concurrent session channels when multiplexing; should not exceed the server's "
+            + "MaxSessions (10 by default for OpenSSH)", 10);
+    @Beta
+    public static final ConfigKey<Boolean> PROP_SCRIPT_VIA_STDIN = ConfigKeys.newBooleanConfigKey("scriptViaStdin",
+            "Whether execScript should send small scripts in the same shell session that runs them, "
+            + "rather than uploading them first using SFTP; ignored if allocatePTY is set", false);
+
+    /** scripts larger than this are always uploaded with SFTP */
+    public static final int SCRIPT_VIA_STDIN_MAX_SIZE = 64*1024;
+
     protected final int sshTries;
     protected final long sshTriesTimeout;
     protected final BackoffLimitedRetryHandler backoffLimitedRetryHandler;
+    protected final boolean multiplexSessions;
+    protected final int maxSessions;
+    protected final boolean scriptViaStdin;
+    /** limits concurrent channels when {@link #multiplexSessions}; otherwise null */
+    private final Semaphore sessionPermits;
+    private final Object connectionMutex = new Object();
 
     /** Terminal type name for {@code allocatePTY} option. */
     final static String TERM = "vt100"; // "dumb"
@@ -139,10 +170,16 @@ public class SshjTool extends SshAbstractTool implements SshTool {
         protected int sshTries = 4;  //allow 4 tries by default, much safer
         protected long sshTriesTimeout = 2*60*1000;  //allow 2 minutes by default (so if too slow trying sshTries times, abort anyway)
         protected long sshRetryDelay = 50L;
+        protected boolean multiplexSessions;
+        protected int maxSessions = PROP_MAX_SESSIONS.getDefaultValue();
+        protected boolean scriptViaStdin;
 
         @Override
         public B from(Map<String,?> props) {
             super.from(props);
+            multiplexSessions = getOptionalVal(props, PROP_MULTIPLEX_SESSIONS);
+            maxSessions = getOptionalVal(props, PROP_MAX_SESSIONS);
+            scriptViaStdin = getOptionalVal(props, PROP_SCRIPT_VIA_STDIN);
             sshTries = getOptionalVal(props, PROP_SSH_TRIES);
             sshTriesTimeout = getOptionalVal(props, PROP_SSH_TRIES_TIMEOUT);
             sshRetryDelay = getOptionalVal(props, PROP_SSH_RETRY_DELAY);
@@ -165,6 +202,15 @@ public class SshjTool extends SshAbstractTool implements SshTool {
         public B sshRetryDelay(long val) {
             this.sshRetryDelay = val; return self();
         }
+        public B multiplexSessions(boolean val) {
+            this.multiplexSessions = val; return self();
+        }
+        public B maxSessions(int val) {
+            this.maxSessions = val; return self();
+        }
+        public B scriptViaStdin(boolean val) {
+            this.scriptViaStdin = val; return self();
+        }
         @Override
         @SuppressWarnings("unchecked")
         public T build() {
@@ -182,6 +228,10 @@ public class SshjTool extends SshAbstractTool implements SshTool {
         sshTries = builder.sshTries;
         sshTriesTimeout = builder.sshTriesTimeout;
         backoffLimitedRetryHandler = new BackoffLimitedRetryHandler(sshTries, builder.sshRetryDelay);
+        multiplexSessions = builder.multiplexSessions;
+        maxSessions = builder.maxSessions;
+        sessionPermits = multiplexSessions ? new Semaphore(maxSessions, true) : null;
+        scriptViaStdin = builder.scriptViaStdin;
 
         sshClientConnection = SshjClientConnection.builder()
                 .hostAndPort(HostAndPort.fromParts(host, port))
@@ -202,6 +252,13 @@ public class SshjTool extends SshAbstractTool implements SshTool {
     public void connect() {
         try {
             if (LOG.isTraceEnabled()) LOG.trace("Connecting SshjTool {} ({})", this, System.identityHashCode(this));
+            if (multiplexSessions) {
+                // other threads may be using the connection, so don't replace it if it is still good
+                synchronized (connectionMutex) {
+                    if (!isConnected()) acquire(sshClientConnection);
+                }
+                return;
+            }
             acquire(sshClientConnection);
         } catch (Exception e) {
             if (LOG.isDebugEnabled()) LOG.debug(toString()+" failed to connect (rethrowing)", e);
@@ -226,6 +283,18 @@ public class SshjTool extends SshAbstractTool implements SshTool {
         return sshClientConnection.isConnected() && sshClientConnection.isAuthenticated();
     }
 
+    /** whether this tool can safely be used by several threads at once, each command using its own session channel */
+    @Beta
+    public boolean isMultiplexingSessions() {
+        return multiplexSessions;
+    }
+
+    /** maximum number of concurrent commands when {@link #isMultiplexingSessions() multiplexing} */
+    @Beta
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
     @Override
     public int copyToServer(java.util.Map<String,?> props, byte[] contents, String pathAndFileOnRemoteServer) {
         return copyToServer(props, newInputStreamSupplier(contents), contents.length, pathAndFileOnRemoteServer);
@@ -317,9 +386,28 @@ public class SshjTool extends SshAbstractTool implements SshTool {
                 public int run() {
                     String scriptContents = toScript(props, commands, env);
                     if (LOG.isTraceEnabled()) LOG.trace("Running shell command at {} as script: {}", host, scriptContents);
+                    if (isScriptViaStdin(props, scriptContents)) {
+                        return asInt(acquire(new ShellAction(buildWriteAndRunScriptCommand(scriptContents), out, err, execTimeout)), -1);
+                    }
                     copyToServer(ImmutableMap.of("permissions", "0700"), scriptContents.getBytes(), scriptPath);
                     return asInt(acquire(new ShellAction(buildRunScriptCommand(), out, err, execTimeout)), -1);
                 }
+
+                /** writes the script using a here-document in the same shell that then runs it, saving the SFTP round trips */
+                private List<String> buildWriteAndRunScriptCommand(String scriptContents) {
+                    String delimiter;
+                    do {
+                        // the script must not end the here-document early
+                        delimiter = newScriptDelimiter();
+                    } while (scriptContents.contains(delimiter));
+                    return ImmutableList.<String>builder()
+                            .add("( umask 077 && cat > "+scriptPath+" ) <<'"+delimiter+"'")
+                            .add(Strings.removeFromEnd(scriptContents, "\n"))
+                            .add(delimiter)
+                            .add("chmod 700 "+scriptPath)
+                            .addAll(buildRunScriptCommand())
+                            .build();
+                }
             }.run();
         }
     }
@@ -593,6 +681,26 @@ public class SshjTool extends SshAbstractTool implements SshTool {
         return asInt(result.getExitStatus(), -1);
     }
 
+    /** a candidate delimiter for the here-document used when {@link #PROP_SCRIPT_VIA_STDIN sending scripts via stdin} */
+    @VisibleForTesting
+    protected String newScriptDelimiter() {
+        return "BROOKLYN_SCRIPT_EOF_"+Identifiers.makeRandomId(8);
+    }
+
+    private boolean isScriptViaStdin(Map<String,?> props, String scriptContents) {
+        Boolean viaStdin = props.containsKey(PROP_SCRIPT_VIA_STDIN.getName()) ? getOptionalVal(props, PROP_SCRIPT_VIA_STDIN) : scriptViaStdin;
+        // with a PTY the terminal's line discipline may mangle or truncate long input lines
+        return Boolean.TRUE.equals(viaStdin) && !allocatePTY && scriptContents.length() <= SCRIPT_VIA_STDIN_MAX_SIZE;
+    }
+
+    private void acquireSessionPermit() throws InterruptedException {
+        if (sessionPermits != null) sessionPermits.acquire();
+    }
+
+    private void releaseSessionPermit() {
+        if (sessionPermits != null) sessionPermits.release();
+    }
+
     protected void checkConnected() {
         if (!isConnected()) {
             throw new IllegalStateException(String.format("(%s) ssh not connected!", toString()));
@@ -644,10 +752,13 @@ public class SshjTool extends SshAbstractTool implements SshTool {
                 String fullMessage = String.format("%s (attempt %s/%s, in time %s/%s)",
                         errorMessage, (i+1), sshTries, Time.makeTimeStringRounded(stopwatch.elapsed(TimeUnit.MILLISECONDS)),
                         (sshTriesTimeout.equals(Duration.PRACTICALLY_FOREVER) ? "unlimited" : Time.makeTimeStringRounded(sshTriesTimeout)));
-                try {
-                    disconnect();
-                } catch (Exception e2) {
-                    LOG.debug("<< ("+toString()+") error closing connection: "+e+" / "+e2, e);
+                // when multiplexing, only drop the connection if it has failed, as other sessions may be using it
+                if (!multiplexSessions || action == sshClientConnection || !isConnected()) {
+                    try {
+                        disconnect();
+                    } catch (Exception e2) {
+                        LOG.debug("<< ("+toString()+") error closing connection: "+e+" / "+e2, e);
+                    }
                 }
                 if (i + 1 == sshTries) {
                     LOG.debug("<< {} (rethrowing, out of retries): {}", fullMessage, e.getMessage());
@@ -668,28 +779,31 @@ public class SshjTool extends SshAbstractTool implements SshTool {
         return null;
     }
 
-    private final SshAction<SFTPClient> sftpConnection = new SshAction<SFTPClient>() {
+    /** a new action each time, so that concurrent transfers (when multiplexing) don't close each other's channels */
+    private SshAction<SFTPClient> newSftpConnectionAction() {
+        return new SshAction<SFTPClient>() {
 
-        private SFTPClient sftp;
+            private SFTPClient sftp;
 
-        @Override
-        public void clear() {
-            closeWhispering(sftp, this);
-            sftp = null;
-        }
+            @Override
+            public void clear() {
+                closeWhispering(sftp, this);
+                sftp = null;
+            }
 
-        @Override
-        public SFTPClient create() throws IOException {
-            checkConnected();
-            sftp = sshClientConnection.ssh.newSFTPClient();
-            return sftp;
-        }
+            @Override
+            public SFTPClient create() throws IOException {
+                checkConnected();
+                sftp = sshClientConnection.ssh.newSFTPClient();
+                return sftp;
+            }
 
-        @Override
-        public String toString() {
-            return "SFTPClient()";
-        }
-    };
+            @Override
+            public String toString() {
+                return "SFTPClient()";
+            }
+        };
+    }
 
     private class GetFileAction implements SshAction<LocalDestFile> {
         private final String path;
@@ -710,10 +824,15 @@ public class SshjTool extends SshAbstractTool implements SshTool {
 
         @Override
         public LocalDestFile create() throws Exception {
-            sftp = acquire(sftpConnection);
-            LocalDestFile localDestFile = new FileSystemFile(localFile);
-            sftp.get(path, localDestFile);
-            return localDestFile;
+            acquireSessionPermit();
+            try {
+                sftp = acquire(newSftpConnectionAction());
+                LocalDestFile localDestFile = new FileSystemFile(localFile);
+                sftp.get(path, localDestFile);
+                return localDestFile;
+            } finally {
+                releaseSessionPermit();
+            }
         }
 
         @Override
@@ -760,8 +879,9 @@ public class SshjTool extends SshAbstractTool implements SshTool {
         @Override
         public Void create() throws Exception {
             final AtomicReference<InputStream> inputStreamRef = new AtomicReference<InputStream>();
-            sftp = acquire(sftpConnection);
+            acquireSessionPermit();
             try {
+                sftp = acquire(newSftpConnectionAction());
                 sftp.put(new InMemorySourceFile() {
                     @Override public String getName() {
                         return path;
@@ -785,6 +905,7 @@ public class SshjTool extends SshAbstractTool implements SshTool {
                             .build());
                 }
             } finally {
+                releaseSessionPermit();
                 closeWhispering(inputStreamRef.get(), this);
             }
             return null;
@@ -876,6 +997,7 @@ public class SshjTool extends SshAbstractTool implements SshTool {
 
         @Override
         public Command create() throws Exception {
+            acquireSessionPermit();
             try {
                 session = acquire(newSessionAction());
 
@@ -883,11 +1005,11 @@ public class SshjTool extends SshAbstractTool implements SshTool {
 
                 if (out != null) {
                     outgobbler = new StreamGobbler(output.getInputStream(), out, (Logger)null);
-                    outgobbler.start();
+                    outgobbler.startOnSharedPool();
                 }
                 if (err != null) {
                     errgobbler = new StreamGobbler(output.getErrorStream(), err, (Logger)null);
-                    errgobbler.start();
+                    errgobbler.startOnSharedPool();
                 }
                 try {
                     output.join((int)Math.min(timeout.toMilliseconds(), Integer.MAX_VALUE), TimeUnit.MILLISECONDS);
@@ -898,8 +1020,8 @@ public class SshjTool extends SshAbstractTool implements SshTool {
                     try {
                         // Don't use forever (i.e. 0) because BROOKLYN-106: ssh hangs
                         long joinTimeout = 10*1000;
-                        if (outgobbler != null) outgobbler.join(joinTimeout);
-                        if (errgobbler != null) errgobbler.join(joinTimeout);
+                        if (outgobbler != null) outgobbler.blockUntilFinished(joinTimeout);
+                        if (errgobbler != null) errgobbler.blockUntilFinished(joinTimeout);
                     } catch (InterruptedException e) {
                         LOG.warn("Interrupted gobbling streams from ssh: "+command, e);
                         Thread.currentThread().interrupt();
@@ -908,6 +1030,7 @@ public class SshjTool extends SshAbstractTool implements SshTool {
 
             } finally {
                 clear();
+                releaseSessionPermit();
             }
         }
 
@@ -953,6 +1076,7 @@ public class SshjTool extends SshAbstractTool implements SshTool {
 
         @Override
         public Integer create() throws Exception {
+            acquireSessionPermit();
             try {
                 session = acquire(newSessionAction());
 
@@ -961,12 +1085,12 @@ public class SshjTool extends SshAbstractTool implements SshTool {
                 if (out != null) {
                     InputStream outstream = shell.getInputStream();
                     outgobbler = new StreamGobbler(outstream, out, (Logger)null);
-                    outgobbler.start();
+                    outgobbler.startOnSharedPool();
                 }
                 if (err != null) {
                     InputStream errstream = shell.getErrorStream();
                     errgobbler = new StreamGobbler(errstream, err, (Logger)null);
-                    errgobbler.start();
+                    errgobbler.startOnSharedPool();
                 }
 
                 OutputStream output = shell.getOutputStream();
@@ -1030,11 +1154,11 @@ public class SshjTool extends SshAbstractTool implements SshTool {
                         // Don't use forever (i.e. 0) because BROOKLYN-106: ssh hangs
                         long joinTimeout = (timedOut) ? 1000 : 10*1000;
                         if (outgobbler != null) {
-                            outgobbler.join(joinTimeout);
+                            outgobbler.blockUntilFinished(joinTimeout);
                             outgobbler.close();
                         }
                         if (errgobbler != null) {
-                            errgobbler.join(joinTimeout);
+                            errgobbler.blockUntilFinished(joinTimeout);
                             errgobbler.close();
                         }
                     } catch (InterruptedException e) {
@@ -1045,6 +1169,7 @@ public class SshjTool extends SshAbstractTool implements SshTool {
 
             } finally {
                 clear();
+                releaseSessionPermit();
             }
         }
 
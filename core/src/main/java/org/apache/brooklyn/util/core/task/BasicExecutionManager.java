@@ -22,7 +22,6 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -35,14 +34,12 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -52,7 +49,10 @@ import org.apache.brooklyn.api.mgmt.ExecutionManager;
 import org.apache.brooklyn.api.mgmt.HasTaskChildren;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.mgmt.TaskAdaptable;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.config.ConfigMap;
 import org.apache.brooklyn.core.BrooklynFeatureEnablement;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.config.Sanitizer;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
@@ -81,6 +81,7 @@ import com.google.common.util.concurrent.Callables;
 import com.google.common.util.concurrent.ExecutionList;
 import com.google.common.util.concurrent.ForwardingFuture.SimpleForwardingFuture;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import groovy.lang.Closure;
@@ -98,6 +99,58 @@ public class BasicExecutionManager implements ExecutionManager {
     private boolean jitterThreads = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_JITTER_THREADS);
     private int jitterThreadsMaxDelay = Integer.getInteger(JITTER_THREADS_MAX_DELAY_PROPERTY, 200);
 
+    /** how threads are allocated to run submitted tasks */
+    @Beta
+    public enum ExecutionMode {
+        /** a new thread is created for every task when no idle thread is available (the default) */
+        UNBOUNDED,
+        /** a fixed maximum number of threads, with work queued (nested tasks first) when all are busy */
+        BOUNDED,
+        /** a new virtual thread for every task, on JVMs which support them; otherwise as {@link #UNBOUNDED} */
+        VIRTUAL
+    }
+
+    @Beta
+    public static final ConfigKey<ExecutionMode> EXECUTION_MODE = ConfigKeys.newConfigKey(ExecutionMode.class,
+        "brooklyn.executionManager.mode",
+        "how threads are allocated to run tasks: UNBOUNDED (default), BOUNDED (see maxThreads and maxQueuedTasks), "
+        + "or VIRTUAL (where supported by the JVM)",
+        ExecutionMode.UNBOUNDED);
+
+    @Beta
+    public static final ConfigKey<Integer> MAX_THREADS = ConfigKeys.newIntegerConfigKey(
+        "brooklyn.executionManager.maxThreads",
+        "the maximum number of threads to run tasks, in BOUNDED mode; "
+        + "note tasks blocked waiting on other tasks hold a thread, so this should be generous",
+        1000);
+
+    @Beta
+    public static final ConfigKey<Integer> MAX_QUEUED_TASKS = ConfigKeys.newIntegerConfigKey(
+        "brooklyn.executionManager.maxQueuedTasks",
+        "the maximum number of tasks waiting for a thread, in BOUNDED mode, beyond which submissions are rejected "
+        + "(0 for no limit)",
+        100000);
+
+    @Beta
+    public static final ConfigKey<Duration> THREAD_KEEP_ALIVE = ConfigKeys.newDurationConfigKey(
+        "brooklyn.executionManager.threadKeepAlive",
+        "how long idle threads are kept before being discarded",
+        Duration.TEN_SECONDS);
+
+    @Beta
+    public static final ConfigKey<Boolean> COMPACT_COMPLETED_TASKS = ConfigKeys.newBooleanConfigKey(
+        "brooklyn.executionManager.compactCompletedTasks",
+        "whether to replace tasks, once they complete, with a compact summary (see CompletedTaskSummary) "
+        + "of their id, names, tags, timings, status and result or error, so that more history can be kept in memory; "
+        + "only simple results are kept, with others only available as text",
+        false);
+
+    @Beta
+    public static final ConfigKey<Integer> COMPACT_COMPLETED_TASKS_MAX_TEXT_LENGTH = ConfigKeys.newIntegerConfigKey(
+        "brooklyn.executionManager.compactCompletedTasks.maxTextLength",
+        "the length to which results, errors and status text are truncated in the summary of a completed task",
+        1000);
+
     private static class PerThreadCurrentTaskHolder {
         public static final ThreadLocal<Task<?>> perThreadCurrentTask = new ThreadLocal<Task<?>>();
     }
@@ -110,7 +163,7 @@ public class BasicExecutionManager implements ExecutionManager {
     
     private final ThreadFactory daemonThreadFactory;
     
-    private final ExecutorService runner;
+    private final MeteredThreadPoolExecutor runner;
         
     private final ScheduledExecutorService delayedRunner;
 
@@ -118,12 +171,12 @@ public class BasicExecutionManager implements ExecutionManager {
     // many things in here could be more efficient however (different types of lookup etc),
     // do that when we need to.
     
-    //access to this field AND to members in this field is synchronized, 
-    //to allow us to preserve order while guaranteeing thread-safe
-    //(but more testing is needed before we are completely sure it is thread-safe!)
-    //synch blocks are as finely grained as possible for efficiency;
-    //NB CopyOnWriteArraySet is a perf bottleneck, and the simple map makes it easier to remove when a tag is empty
-    private Map<Object,Set<Task<?>>> tasksByTag = new HashMap<Object,Set<Task<?>>>();
+    //reads of this field and of the sets in it are lock-free; 
+    //adds and removes go through compute methods so only contend on a single tag's bin,
+    //and so that a set is never removed (when empty) while a task is being added to it;
+    //the sets do not preserve submission order
+    //NB CopyOnWriteArraySet is a perf bottleneck, hence concurrent hash sets
+    private final ConcurrentMap<Object,Set<Task<?>>> tasksByTag = new ConcurrentHashMap<Object,Set<Task<?>>>();
     
     private ConcurrentMap<String,Task<?>> tasksById = new ConcurrentHashMap<String,Task<?>>();
 
@@ -140,6 +193,9 @@ public class BasicExecutionManager implements ExecutionManager {
     
     private final List<ExecutionListener> listeners = new CopyOnWriteArrayList<ExecutionListener>();
     
+    private final boolean compactCompletedTasks;
+    private final int compactCompletedTasksMaxTextLength;
+    
     private final static ThreadLocal<String> threadOriginalName = new ThreadLocal<String>() {
         @Override
         protected String initialValue() {
@@ -150,15 +206,23 @@ public class BasicExecutionManager implements ExecutionManager {
     };
     
     public BasicExecutionManager(String contextid) {
+        this(contextid, null);
+    }
+    
+    /** 
+     * @param config used to configure the {@link #EXECUTION_MODE} and related settings; 
+     * if null, defaults are used 
+     */
+    public BasicExecutionManager(String contextid, ConfigMap config) {
         threadFactory = newThreadFactory(contextid);
         daemonThreadFactory = new ThreadFactoryBuilder()
                 .setThreadFactory(threadFactory)
                 .setDaemon(true)
                 .build();
                 
-        // use Executors.newCachedThreadPool(daemonThreadFactory), but timeout of 1s rather than 60s for better shutdown!
-        runner = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), 
-                daemonThreadFactory);
+        runner = newRunner(contextid, config);
+        compactCompletedTasks = getConfig(config, COMPACT_COMPLETED_TASKS);
+        compactCompletedTasksMaxTextLength = getConfig(config, COMPACT_COMPLETED_TASKS_MAX_TEXT_LENGTH);
             
         delayedRunner = new ScheduledThreadPoolExecutor(1, daemonThreadFactory);
 
@@ -186,6 +250,45 @@ public class BasicExecutionManager implements ExecutionManager {
                 .build();
     }
     
+    private static <T> T getConfig(ConfigMap config, ConfigKey<T> key) {
+        T result = (config==null) ? null : config.getConfig(key);
+        return (result!=null) ? result : key.getDefaultValue();
+    }
+
+    /** 
+     * Creates the pool used to run tasks, according to the {@link #EXECUTION_MODE}.
+     * As with {@link #newThreadFactory(String)}, called by the constructor.
+     */
+    protected MeteredThreadPoolExecutor newRunner(String contextid, ConfigMap config) {
+        ExecutionMode mode = getConfig(config, EXECUTION_MODE);
+        // much shorter keep-alive than Executors.newCachedThreadPool (60s), for better shutdown
+        Duration keepAlive = getConfig(config, THREAD_KEEP_ALIVE);
+        switch (mode) {
+        case BOUNDED:
+            int maxThreads = getConfig(config, MAX_THREADS);
+            int maxQueued = getConfig(config, MAX_QUEUED_TASKS);
+            log.info("Execution manager "+contextid+" using bounded pool of "+maxThreads+" threads"
+                + (maxQueued>0 ? ", queueing at most "+maxQueued+" tasks" : ""));
+            return MeteredThreadPoolExecutor.newBounded(maxThreads, maxQueued, keepAlive, daemonThreadFactory);
+        case VIRTUAL:
+            Maybe<ThreadFactory> virtualThreadFactory = MeteredThreadPoolExecutor.newVirtualThreadFactory("brooklyn-execmanager-"+contextid+"-virtual-");
+            if (virtualThreadFactory.isPresent()) {
+                log.info("Execution manager "+contextid+" using virtual threads");
+                ThreadFactory factory = new ThreadFactoryBuilder()
+                    .setThreadFactory(virtualThreadFactory.get())
+                    .setUncaughtExceptionHandler(new UncaughtExceptionHandlerImplementation())
+                    .build();
+                return MeteredThreadPoolExecutor.newUnbounded(keepAlive, factory);
+            }
+            log.warn("Execution manager "+contextid+" cannot use virtual threads; using unbounded pool: "
+                + Maybe.getException(virtualThreadFactory));
+            return MeteredThreadPoolExecutor.newUnbounded(keepAlive, daemonThreadFactory);
+        case UNBOUNDED:
+        default:
+            return MeteredThreadPoolExecutor.newUnbounded(keepAlive, daemonThreadFactory);
+        }
+    }
+    
     public void shutdownNow() {
         shutdownNow(null);
     }
@@ -224,10 +327,7 @@ public class BasicExecutionManager implements ExecutionManager {
      * a reference to it as a tag.
      */
     public void deleteTag(Object tag) {
-        Set<Task<?>> tasks;
-        synchronized (tasksByTag) {
-            tasks = tasksByTag.remove(tag);
-        }
+        Set<Task<?>> tasks = tasksByTag.remove(tag);
         if (tasks != null) {
             for (Task<?> task : tasks) {
                 deleteTask(task);
@@ -250,15 +350,10 @@ public class BasicExecutionManager implements ExecutionManager {
     protected boolean deleteTaskNonRecursive(Task<?> task) {
         Set<?> tags = TaskTags.getTagsFast(checkNotNull(task, "task"));
         for (Object tag : tags) {
-            synchronized (tasksByTag) {
-                Set<Task<?>> tasks = tasksWithTagLiveOrNull(tag);
-                if (tasks != null) {
-                    tasks.remove(task);
-                    if (tasks.isEmpty()) {
-                        tasksByTag.remove(tag);
-                    }
-                }
-            }
+            tasksByTag.computeIfPresent(tag, (k, tasks) -> {
+                tasks.remove(task);
+                return tasks.isEmpty() ? null : tasks;
+            });
         }
         Task<?> removed = tasksById.remove(task.getId());
         incompleteTaskIds.remove(task.getId());
@@ -278,6 +373,29 @@ public class BasicExecutionManager implements ExecutionManager {
         return runner.isShutdown();
     }
     
+    /**
+     * Replaces the given task, if it is done and still remembered, with a {@link CompletedTaskSummary}
+     * everywhere this manager records it, so the task's job, result and other state can be garbage collected
+     * (unless referenced elsewhere).
+     */
+    protected void compactCompletedTask(final Task<?> task) {
+        if (!(task instanceof BasicTask) || task instanceof ScheduledTask || !task.isDone(true)) return;
+        if (tasksById.get(task.getId()) != task) return;
+        
+        final Task<?> summary = CompletedTaskSummary.of(task, this, compactCompletedTasksMaxTextLength);
+        if (!tasksById.replace(task.getId(), task, summary)) {
+            // deleted concurrently
+            return;
+        }
+        for (Object tag : TaskTags.getTagsFast(task)) {
+            // summary is equal to the task, so a concurrent deletion removes whichever is present
+            tasksByTag.computeIfPresent(tag, (k, tasks) -> {
+                if (tasks.remove(task)) tasks.add(summary);
+                return tasks;
+            });
+        }
+    }
+
     /** count of all tasks submitted */
     public long getTotalTasksSubmitted() {
         return totalTaskCount.get();
@@ -298,24 +416,39 @@ public class BasicExecutionManager implements ExecutionManager {
         return tasksById.size();
     }
 
-    private Set<Task<?>> tasksWithTagCreating(Object tag) {
+    /** count of threads in the pool used to run tasks */
+    public int getNumPoolThreads() {
+        return runner.getPoolSize();
+    }
+
+    /** count of tasks waiting for a thread, only ever non-zero in {@link ExecutionMode#BOUNDED} mode */
+    public int getNumQueuedTasks() {
+        return runner.getQueueSize();
+    }
+
+    /** count of submissions refused by the pool, because it is full or shut down */
+    public long getNumRejectedTasks() {
+        return runner.getRejectedCount();
+    }
+
+    /** the execution mode in effect, i.e. {@link ExecutionMode#BOUNDED} or else unbounded (possibly virtual) */
+    public boolean isBounded() {
+        return runner.isBounded();
+    }
+
+    private void addTaskWithTag(Object tag, final Task<?> task) {
         Preconditions.checkNotNull(tag);
-        synchronized (tasksByTag) {
-            Set<Task<?>> result = tasksWithTagLiveOrNull(tag);
-            if (result==null) {
-                result = Collections.synchronizedSet(new LinkedHashSet<Task<?>>());
-                tasksByTag.put(tag, result);
-            }
-            return result;
-        }
+        tasksByTag.compute(tag, (k, tasks) -> {
+            if (tasks==null) tasks = Sets.newConcurrentHashSet();
+            tasks.add(task);
+            return tasks;
+        });
     }
 
-    /** exposes live view, for internal use only */
+    /** exposes live view, for internal use only; the set is thread-safe, but may be replaced if it becomes empty */
     @Beta
     public Set<Task<?>> tasksWithTagLiveOrNull(Object tag) {
-        synchronized (tasksByTag) {
-            return tasksByTag.get(tag);
-        }
+        return tasksByTag.get(tag);
     }
 
     @Override
@@ -336,9 +469,7 @@ public class BasicExecutionManager implements ExecutionManager {
     public Set<Task<?>> getTasksWithTag(Object tag) {
         Set<Task<?>> result = tasksWithTagLiveOrNull(tag);
         if (result==null) return Collections.emptySet();
-        synchronized (result) {
-            return Collections.unmodifiableSet(new LinkedHashSet<Task<?>>(result));
-        }
+        return Collections.unmodifiableSet(new LinkedHashSet<Task<?>>(result));
     }
     
     @Override
@@ -348,9 +479,7 @@ public class BasicExecutionManager implements ExecutionManager {
         while (ti.hasNext()) {
             Set<Task<?>> tasksForTag = tasksWithTagLiveOrNull(ti.next());
             if (tasksForTag!=null) {
-                synchronized (tasksForTag) {
-                    result.addAll(tasksForTag);
-                }
+                result.addAll(tasksForTag);
             }
         }
         return Collections.unmodifiableSet(result);
@@ -359,20 +488,23 @@ public class BasicExecutionManager implements ExecutionManager {
     /** only works with at least one tag; returns empty if no tags */
     @Override
     public Set<Task<?>> getTasksWithAllTags(Iterable<?> tags) {
-        //NB: for this method retrieval for multiple tags could be made (much) more efficient (if/when it is used with multiple tags!)
-        //by first looking for the least-used tag, getting those tasks, and then for each of those tasks
-        //checking whether it contains the other tags (looking for second-least used, then third-least used, etc)
+        // copy only the tasks for the least-used tag, then filter on membership of the other (live) sets
+        List<Set<Task<?>>> tasksForTags = MutableList.of();
+        Set<Task<?>> smallest = null;
+        for (Object tag : tags) {
+            Set<Task<?>> tasksForTag = tasksWithTagLiveOrNull(tag);
+            if (tasksForTag==null) return Collections.emptySet();
+            tasksForTags.add(tasksForTag);
+            if (smallest==null || tasksForTag.size() < smallest.size()) smallest = tasksForTag;
+        }
+        if (smallest==null) return Collections.emptySet();
+        
         Set<Task<?>> result = new LinkedHashSet<Task<?>>();
-        boolean first = true;
-        Iterator<?> ti = tags.iterator();
-        while (ti.hasNext()) {
-            Object tag = ti.next();
-            if (first) { 
-                first = false;
-                result.addAll(getTasksWithTag(tag));
-            } else {
-                result.retainAll(getTasksWithTag(tag));
+        outer: for (Task<?> task : smallest) {
+            for (Set<Task<?>> tasksForTag : tasksForTags) {
+                if (tasksForTag!=smallest && !tasksForTag.contains(task)) continue outer;
             }
+            result.add(task);
         }
         return Collections.unmodifiableSet(result);
     }
@@ -383,9 +515,7 @@ public class BasicExecutionManager implements ExecutionManager {
     
     @Override
     public Set<Object> getTaskTags() { 
-        synchronized (tasksByTag) {
-            return Collections.unmodifiableSet(Sets.newLinkedHashSet(tasksByTag.keySet())); 
-        }
+        return Collections.unmodifiableSet(Sets.newLinkedHashSet(tasksByTag.keySet())); 
     }
 
     @Override @Deprecated public Task<?> submit(Runnable r) { return submit(new LinkedHashMap<Object,Object>(1), r); }
@@ -672,6 +802,10 @@ public class BasicExecutionManager implements ExecutionManager {
 
         @Override
         public void run() {
+            // compact first, so that listeners looking up the task (e.g. the GC) see the summary
+            if (compactCompletedTasks) {
+                compactCompletedTask(task);
+            }
             for (ExecutionListener listener : listeners) {
                 try {
                     listener.onTaskDone(task);
@@ -720,7 +854,13 @@ public class BasicExecutionManager implements ExecutionManager {
             if (schedulers.size()>1) log.warn("multiple schedulers detected, using only the first, for "+task+": "+schedulers);
             future = schedulers.iterator().next().submit(job);
         } else {
-            future = runner.submit(job);
+            try {
+                future = runner.submit(job);
+            } catch (RejectedExecutionException e) {
+                // never going to run, so forget it rather than leaving it incomplete
+                deleteTaskNonRecursive(task);
+                throw e;
+            }
         }
         afterSubmitRecordFuture(task, future);
         
@@ -733,8 +873,9 @@ public class BasicExecutionManager implements ExecutionManager {
         // (it does not notify the listeners; that's our job);
         // except on cancel we want to listen
         CancellingListenableForwardingFutureForTask<T> listenableFuture = new CancellingListenableForwardingFutureForTask<T>(this, future, ((TaskInternal<T>)task).getListeners(), task);
-        // and we want to make sure *our* (manager) listeners are given suitable callback 
-        ((TaskInternal<T>)task).addListener(new SubmissionListenerToCallManagerListeners<T>(task, listenableFuture), runner);
+        // and we want to make sure *our* (manager) listeners are given suitable callback;
+        // run inline on the completing thread, as a bounded runner may reject it when its queue is full
+        ((TaskInternal<T>)task).addListener(new SubmissionListenerToCallManagerListeners<T>(task, listenableFuture), MoreExecutors.sameThreadExecutor());
         // NB: can the above mean multiple callbacks to TaskInternal#runListeners?
         
         // finally expose the future to callers
@@ -767,7 +908,7 @@ public class BasicExecutionManager implements ExecutionManager {
         if (flags!=null && flags.get("tags")!=null) ((TaskInternal<?>)task).getMutableTags().addAll((Collection<?>)flags.remove("tags"));
 
         for (Object tag: BrooklynTaskTags.getTagsFast(task)) {
-            tasksWithTagCreating(tag).add(task);
+            addTaskWithTag(tag, task);
         }
         
         tasksById.put(task.getId(), task);
@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.mgmt.HasTaskChildren;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.time.Duration;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Compact immutable record of a completed task, kept by the {@link BasicExecutionManager} in place of the task
+ * when {@link BasicExecutionManager#COMPACT_COMPLETED_TASKS} is enabled.
+ * <p>
+ * Holds the id, names, tags, timings and status of the task, and its result or error; children and the submitter
+ * are looked up by id in the execution manager, so are only available while it remembers them.
+ * Only simple results are kept (numbers, booleans, enums, and strings no longer than the text limit); other results
+ * are discarded, keeping only their text (truncated) for display, and {@link #get()} then throws an
+ * {@link IllegalStateException} containing that text. Errors are similarly kept only as text.
+ */
+@Beta
+public class CompletedTaskSummary<T> implements Task<T>, HasTaskChildren {
+
+    private final String id;
+    private final String displayName;
+    private final String description;
+    private final Set<Object> tags;
+    private final long submitTimeUtc;
+    private final long startTimeUtc;
+    private final long endTimeUtc;
+    private final String submittedByTaskId;
+    private final List<String> childIds;
+    private final String statusSummary;
+    private final String statusDetail;
+    private final String statusDetailMultiline;
+    private final boolean cancelled;
+    private final Object result;
+    /** truncated text of the result, if it was discarded as not simple */
+    private final String discardedResult;
+    private final String error;
+    // this class is not meant to be serialized, but if it is, make sure exec mgr doesn't sneak in
+    private final transient BasicExecutionManager mgr;
+
+    /** creates a summary of the given task, which must be done, truncating text to the given length */
+    public static <T> CompletedTaskSummary<T> of(Task<T> task, BasicExecutionManager mgr, int maxTextLength) {
+        return new CompletedTaskSummary<T>(task, mgr, maxTextLength);
+    }
+
+    protected CompletedTaskSummary(Task<T> task, BasicExecutionManager mgr, int maxTextLength) {
+        this.mgr = mgr;
+        id = task.getId();
+        displayName = task.getDisplayName();
+        description = task.getDescription();
+        tags = ImmutableSet.copyOf(TaskTags.getTagsFast(task));
+        submitTimeUtc = task.getSubmitTimeUtc();
+        startTimeUtc = task.getStartTimeUtc();
+        endTimeUtc = task.getEndTimeUtc();
+        submittedByTaskId = task.getSubmittedByTaskId();
+        if (task instanceof HasTaskChildren) {
+            List<String> ids = MutableList.of();
+            for (Task<?> child : ((HasTaskChildren)task).getChildren()) {
+                ids.add(child.getId());
+            }
+            childIds = ImmutableList.copyOf(ids);
+        } else {
+            childIds = ImmutableList.of();
+        }
+        statusSummary = Strings.maxlenWithEllipsis(task.getStatusSummary(), maxTextLength);
+        statusDetail = Strings.maxlenWithEllipsis(task.getStatusDetail(false), maxTextLength);
+        statusDetailMultiline = Strings.maxlenWithEllipsis(task.getStatusDetail(true), maxTextLength);
+        cancelled = task.isCancelled();
+        
+        Object resultHere = null;
+        String discardedResultHere = null;
+        String errorHere = null;
+        if (!cancelled) {
+            try {
+                resultHere = task.get();
+                if (!isSimpleValue(resultHere, maxTextLength)) {
+                    discardedResultHere = Strings.maxlenWithEllipsis(resultHere.toString(), maxTextLength);
+                    resultHere = null;
+                }
+            } catch (Throwable t) {
+                Exceptions.propagateIfFatal(t);
+                errorHere = Strings.maxlenWithEllipsis(Exceptions.collapseText(Exceptions.getFirstInteresting(t)), maxTextLength);
+            }
+        }
+        result = resultHere;
+        discardedResult = discardedResultHere;
+        error = errorHere;
+    }
+
+    private static boolean isSimpleValue(Object value, int maxTextLength) {
+        return value == null || value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum
+            || (value instanceof String && ((String)value).length() <= maxTextLength);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public Set<Object> getTags() {
+        return tags;
+    }
+
+    @Override
+    public long getSubmitTimeUtc() {
+        return submitTimeUtc;
+    }
+
+    @Override
+    public long getStartTimeUtc() {
+        return startTimeUtc;
+    }
+
+    @Override
+    public long getEndTimeUtc() {
+        return endTimeUtc;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    /** the submitting task, if the execution manager still remembers it, otherwise null */
+    @Override
+    public Task<?> getSubmittedByTask() {
+        if (submittedByTaskId == null || mgr == null) return null;
+        return mgr.getTask(submittedByTaskId);
+    }
+
+    @Override
+    public String getSubmittedByTaskId() {
+        return submittedByTaskId;
+    }
+
+    /** those children which the execution manager still remembers */
+    @Override
+    public Iterable<Task<?>> getChildren() {
+        if (childIds.isEmpty() || mgr == null) return Collections.emptyList();
+        List<Task<?>> result = MutableList.of();
+        for (String childId : childIds) {
+            Task<?> child = mgr.getTask(childId);
+            if (child != null) result.add(child);
+        }
+        return result;
+    }
+
+    @Override
+    public Thread getThread() {
+        return null;
+    }
+
+    @Override
+    public boolean isSubmitted() {
+        return submitTimeUtc > 0;
+    }
+
+    @Override
+    public boolean isBegun() {
+        return startTimeUtc > 0;
+    }
+
+    @Override
+    public boolean isError() {
+        return cancelled || error != null;
+    }
+
+    @Override
+    public boolean isDone() {
+        return true;
+    }
+
+    @Override
+    public boolean isDone(boolean andTaskNotRunning) {
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public void blockUntilStarted() {
+    }
+
+    @Override
+    public void blockUntilEnded() {
+    }
+
+    @Override
+    public boolean blockUntilEnded(Duration timeout) {
+        return true;
+    }
+
+    @Override
+    public String getStatusSummary() {
+        return statusSummary;
+    }
+
+    @Override
+    public String getStatusDetail(boolean multiline) {
+        return multiline ? statusDetailMultiline : statusDetail;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get() throws ExecutionException {
+        if (cancelled) throw new CancellationException();
+        if (error != null) throw new ExecutionException(new CompletedTaskException(error));
+        if (discardedResult != null) throw new IllegalStateException("Result of "+this+" discarded by compaction: "+discardedResult);
+        return (T) result;
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws ExecutionException {
+        return get();
+    }
+
+    @Override
+    public T get(Duration duration) throws ExecutionException {
+        return get();
+    }
+
+    @Override
+    public T getUnchecked() {
+        try {
+            return get();
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    @Override
+    public T getUnchecked(Duration duration) {
+        return getUnchecked();
+    }
+
+    @Override
+    public void addListener(Runnable listener, Executor executor) {
+        executor.execute(listener);
+    }
+
+    @Override
+    public Task<T> asTask() {
+        return this;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+
+    /** equal to any task with the same id, as {@link BasicTask#equals(Object)}, so it can replace the original in sets */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof Task)
+            return ((Task<?>)obj).getId().equals(getId());
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "Task["+displayName+"]@"+id;
+    }
+
+    /** the error of a completed task, as text; thrown (wrapped) by {@link CompletedTaskSummary#get()} */
+    public static class CompletedTaskException extends RuntimeException {
+        private static final long serialVersionUID = -2870183398462375924L;
+
+        public CompletedTaskException(String message) {
+            // no stack trace, as this only stands in for the original error
+            super(message, null, false, false);
+        }
+    }
+}
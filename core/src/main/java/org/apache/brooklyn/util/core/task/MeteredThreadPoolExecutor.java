@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.time.Duration;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * The {@link ThreadPoolExecutor} used by {@link BasicExecutionManager} to run tasks,
+ * recording the number of rejected submissions alongside the usual pool statistics.
+ * <p>
+ * When {@link #newBounded(int, int, Duration, ThreadFactory) bounded}, work which cannot be
+ * given a thread immediately is queued in priority order: jobs submitted from within a running task
+ * (typically children and other work the submitter may block on) are run ahead of new top-level jobs,
+ * and otherwise in submission order. This reduces (but cannot eliminate) the risk of the pool being
+ * filled by parents waiting on queued children, so the maximum should still be sized generously.
+ */
+@Beta
+public class MeteredThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private final boolean prioritized;
+    private final int maxQueueSize;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /** as {@link java.util.concurrent.Executors#newCachedThreadPool(ThreadFactory)}, creating threads on demand with no limit */
+    public static MeteredThreadPoolExecutor newUnbounded(Duration keepAlive, ThreadFactory threadFactory) {
+        return new MeteredThreadPoolExecutor(0, Integer.MAX_VALUE, keepAlive, false, 0, threadFactory);
+    }
+
+    /** creates a pool of up to <code>maxThreads</code>, queueing in priority order up to <code>maxQueueSize</code> jobs beyond that */
+    public static MeteredThreadPoolExecutor newBounded(int maxThreads, int maxQueueSize, Duration keepAlive, ThreadFactory threadFactory) {
+        return new MeteredThreadPoolExecutor(maxThreads, maxThreads, keepAlive, true, maxQueueSize, threadFactory);
+    }
+
+    protected MeteredThreadPoolExecutor(int coreThreads, int maxThreads, Duration keepAlive, boolean prioritized, int maxQueueSize, ThreadFactory threadFactory) {
+        super(coreThreads, maxThreads, keepAlive.toMilliseconds(), TimeUnit.MILLISECONDS,
+            prioritized ? new PriorityBlockingQueue<Runnable>() : new SynchronousQueue<Runnable>(),
+            threadFactory);
+        this.prioritized = prioritized;
+        this.maxQueueSize = maxQueueSize;
+        // with a priority queue the pool never grows beyond core size, so let idle core threads expire instead
+        if (prioritized) allowCoreThreadTimeOut(true);
+        setRejectedExecutionHandler(new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                rejectedCount.incrementAndGet();
+                throw new RejectedExecutionException("Task "+r+" rejected from "+executor);
+            }
+        });
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        if (!prioritized) return super.newTaskFor(callable);
+        return new PrioritizedFutureTask<T>(callable, nextPriority());
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        if (!prioritized) return super.newTaskFor(runnable, value);
+        return new PrioritizedFutureTask<T>(runnable, value, nextPriority());
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (prioritized) {
+            if (!(command instanceof PrioritizedFutureTask)) {
+                // e.g. listeners run via execute(Runnable); these must be comparable to go in the queue
+                command = newTaskFor(command, null);
+            }
+            if (maxQueueSize>0 && getQueue().size() >= maxQueueSize && !isShutdown()) {
+                getRejectedExecutionHandler().rejectedExecution(command, this);
+                return;
+            }
+        }
+        super.execute(command);
+    }
+
+    private long nextPriority() {
+        long seq = sequence.incrementAndGet();
+        // nested work sorts ahead of all top-level work
+        return Tasks.current()!=null ? seq : Long.MAX_VALUE/2 + seq;
+    }
+
+    public boolean isBounded() {
+        return prioritized;
+    }
+
+    /** number of jobs waiting for a thread */
+    public int getQueueSize() {
+        return getQueue().size();
+    }
+
+    /** number of jobs rejected because the pool and queue were full (or the pool was shut down) */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"["+(prioritized ? "bounded "+getMaximumPoolSize() : "unbounded")+"; "
+            + getPoolSize()+" threads, "+getActiveCount()+" active, "+getQueueSize()+" queued, "+getRejectedCount()+" rejected]";
+    }
+
+    private static class PrioritizedFutureTask<T> extends FutureTask<T> implements Comparable<PrioritizedFutureTask<?>> {
+        private final long priority;
+
+        PrioritizedFutureTask(Callable<T> callable, long priority) {
+            super(callable);
+            this.priority = priority;
+        }
+
+        PrioritizedFutureTask(Runnable runnable, T value, long priority) {
+            super(runnable, value);
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(PrioritizedFutureTask<?> o) {
+            return Long.compare(priority, o.priority);
+        }
+    }
+
+    /**
+     * Returns a factory for virtual threads, if supported by this JVM (Java 21+);
+     * looked up reflectively as we compile against older Java versions.
+     */
+    public static Maybe<ThreadFactory> newVirtualThreadFactory(String namePrefix) {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = ofVirtual.invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return Maybe.of((ThreadFactory) builderClass.getMethod("factory").invoke(builder));
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            return Maybe.absent("Virtual threads not supported in this JVM ("+System.getProperty("java.version")+")", e);
+        }
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.xstream;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Reads selected fields -- direct children of the root element -- from an XML document in a single
+ * streaming pass, without building a DOM.
+ * <p>
+ * Results match the corresponding {@link XmlUtil#xpathHandlingIllegalChars(String, String) xpath} lookups:
+ * a field <code>f</code> gives the string value of <code>/root/f</code> (empty if absent), and a string-list field
+ * <code>l</code> gives the text of each element matching <code>/root/l//string</code>.
+ * This is much cheaper than evaluating several xpath expressions against the same document, each of which
+ * re-parses it, and stops reading as soon as all requested fields have been found
+ * (if no string-list fields are requested).
+ * <p>
+ * Instances are immutable and can be shared.
+ */
+@Beta
+public class XmlFieldsExtractor {
+
+    private static final XMLInputFactory FACTORY = newInputFactory();
+
+    private static XMLInputFactory newInputFactory() {
+        XMLInputFactory result = XMLInputFactory.newInstance();
+        result.setProperty(XMLInputFactory.IS_COALESCING, true);
+        result.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        result.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return result;
+    }
+
+    private final String rootElement;
+    private final Set<String> fields;
+    private final Set<String> stringListFields;
+
+    public static XmlFieldsExtractor forRoot(String rootElement) {
+        return new XmlFieldsExtractor(rootElement, ImmutableSet.<String>of(), ImmutableSet.<String>of());
+    }
+
+    private XmlFieldsExtractor(String rootElement, Set<String> fields, Set<String> stringListFields) {
+        this.rootElement = rootElement;
+        this.fields = fields;
+        this.stringListFields = stringListFields;
+    }
+
+    /** returns a copy of this extractor which also reads the string value of each of the given fields */
+    public XmlFieldsExtractor fields(String ...names) {
+        return new XmlFieldsExtractor(rootElement, ImmutableSet.<String>builder().addAll(fields).add(names).build(), stringListFields);
+    }
+
+    /** returns a copy of this extractor which also reads the nested <code>string</code> elements of each of the given fields */
+    public XmlFieldsExtractor stringListFields(String ...names) {
+        return new XmlFieldsExtractor(rootElement, fields, ImmutableSet.<String>builder().addAll(stringListFields).add(names).build());
+    }
+
+    /**
+     * Reads the fields from the given XML.
+     * <p>
+     * As with {@link XmlUtil#xpathHandlingIllegalChars(String, String)}, if the XML cannot be parsed because it contains
+     * character references which are not legal in XML (e.g. "&amp;#x1b;", as written by xstream), these are escaped and the
+     * parse retried; the escaped values are unescaped again in the result.
+     */
+    public Fields extract(String xml) {
+        try {
+            return extractOrThrow(xml);
+        } catch (XMLStreamException e) {
+            if (xml.contains("&#")) {
+                XmlUtil.Escaper escaper = new XmlUtil.Escaper();
+                try {
+                    return extractOrThrow(escaper.escape(xml)).unescaped(escaper);
+                } catch (Exception e2) {
+                    Exceptions.propagateIfFatal(e2);
+                }
+            }
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private Fields extractOrThrow(String xml) throws XMLStreamException {
+        Map<String, String> values = MutableMap.of();
+        Map<String, List<String>> lists = MutableMap.of();
+
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(new StringReader(xml));
+        try {
+            int depth = 0;
+            String field = null;
+            StringBuilder fieldText = null;
+            List<String> list = null;
+            StringBuilder listItemText = null;
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String name = reader.getLocalName();
+                    if (depth == 1) {
+                        if (!name.equals(rootElement)) break;
+                    } else if (fieldText == null && list == null) {
+                        // depth 2, i.e. a child of the root
+                        if (fields.contains(name) && !values.containsKey(name)) {
+                            field = name;
+                            fieldText = new StringBuilder();
+                        } else if (stringListFields.contains(name)) {
+                            list = lists.get(name);
+                            if (list == null) {
+                                list = MutableList.of();
+                                lists.put(name, list);
+                            }
+                        } else {
+                            skipElement(reader);
+                            depth--;
+                        }
+                    } else if (list != null && "string".equals(name)) {
+                        listItemText = new StringBuilder();
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    if (fieldText != null) fieldText.append(reader.getText());
+                    if (listItemText != null) listItemText.append(reader.getText());
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == 2) {
+                        if (fieldText != null) {
+                            values.put(field, fieldText.toString());
+                            field = null;
+                            fieldText = null;
+                            if (stringListFields.isEmpty() && values.size() == fields.size()) break;
+                        }
+                        list = null;
+                    } else if (listItemText != null && "string".equals(reader.getLocalName())) {
+                        list.add(listItemText.toString());
+                        listItemText = null;
+                    }
+                    depth--;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new Fields(values, lists);
+    }
+
+    /** advances the reader to the end of the element whose start it is currently on */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+
+    public static class Fields {
+        private final Map<String, String> values;
+        private final Map<String, List<String>> lists;
+
+        private Fields(Map<String, String> values, Map<String, List<String>> lists) {
+            this.values = values;
+            this.lists = lists;
+        }
+
+        /** the string value of the field, or the empty string if not present (as for xpath) */
+        public String get(String field) {
+            String result = values.get(field);
+            return result == null ? "" : result;
+        }
+
+        /** the text of the <code>string</code> elements nested in the field, or an empty list if not present */
+        public List<String> getStringList(String field) {
+            List<String> result = lists.get(field);
+            return result == null ? Collections.<String>emptyList() : Collections.unmodifiableList(result);
+        }
+
+        private Fields unescaped(XmlUtil.Escaper escaper) {
+            Map<String, String> newValues = MutableMap.of();
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                newValues.put(entry.getKey(), escaper.unescape(entry.getValue()));
+            }
+            Map<String, List<String>> newLists = MutableMap.of();
+            for (Map.Entry<String, List<String>> entry : lists.entrySet()) {
+                List<String> newList = MutableList.of();
+                for (String val : entry.getValue()) {
+                    newList.add(escaper.unescape(val));
+                }
+                newLists.put(entry.getKey(), newList);
+            }
+            return new Fields(newValues, newLists);
+        }
+
+        @Override
+        public String toString() {
+            return "Fields"+values+(lists.isEmpty() ? "" : lists);
+        }
+    }
+}
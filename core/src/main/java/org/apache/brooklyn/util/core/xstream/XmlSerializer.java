@@ -30,6 +30,7 @@ import java.util.Set;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.collections.PersistentMap;
 
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
@@ -85,6 +86,8 @@ public class XmlSerializer<T> {
         xstream.registerConverter(new ImmutableListConverter(xstream.getMapper()));
         xstream.registerConverter(new ImmutableSetConverter(xstream.getMapper()));
         xstream.registerConverter(new ImmutableMapConverter(xstream.getMapper()));
+        xstream.alias("PersistentMap", PersistentMap.class);
+        xstream.registerConverter(new PersistentMapConverter(xstream.getMapper()), /* priority */ 10);
 
         xstream.registerConverter(new EnumCaseForgivingConverter());
         xstream.registerConverter(new Inet4AddressConverter());
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.executor;
+
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.http.executor.HttpExecutor;
+import org.apache.brooklyn.util.http.executor.apacheclient.PoolingHttpExecutorImpl;
+import org.apache.brooklyn.util.time.Duration;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Gives access to a {@link PoolingHttpExecutorImpl} shared by everything in a management context
+ * (such as all {@link org.apache.brooklyn.feed.http.HttpFeed}s not given their own executor),
+ * so that connections to the same host:port are kept alive and reused across entities.
+ * <p>
+ * Enabled with {@link #ENABLED} in brooklyn.properties.
+ */
+@Beta
+public class SharedHttpExecutor {
+
+    public static final ConfigKey<Boolean> ENABLED = ConfigKeys.newBooleanConfigKey(
+            "brooklyn.http.sharedExecutor.enabled",
+            "Whether http feeds should share a pooled http executor across the management context, "
+            + "rather than creating new connections for each request", false);
+
+    public static final ConfigKey<Integer> MAX_CONNECTIONS = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.http.sharedExecutor.maxConnections",
+            "Maximum number of pooled http connections open at any one time (when the shared executor is enabled), "
+            + "for each trust mode used (trust all, trust self-signed, or neither)", 200);
+
+    public static final ConfigKey<Integer> MAX_CONNECTIONS_PER_ROUTE = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.http.sharedExecutor.maxConnectionsPerRoute",
+            "Maximum number of pooled http connections open to any one host:port (when the shared executor is enabled)", 10);
+
+    public static final ConfigKey<Duration> IDLE_EXPIRY = ConfigKeys.newConfigKey(Duration.class,
+            "brooklyn.http.sharedExecutor.idleExpiry",
+            "Time after which unused pooled http connections are closed (when the shared executor is enabled)", Duration.ONE_MINUTE);
+
+    public static final ConfigKey<Duration> LEASE_TIMEOUT = ConfigKeys.newConfigKey(Duration.class,
+            "brooklyn.http.sharedExecutor.leaseTimeout",
+            "Maximum time a request waits for a pooled http connection, e.g. when all connections to its host:port are in use "
+            + "(when the shared executor is enabled)", PoolingHttpExecutorImpl.DEFAULT_LEASE_TIMEOUT);
+
+    public static final ConfigKey<Duration> CONNECT_TIMEOUT = ConfigKeys.newConfigKey(Duration.class,
+            "brooklyn.http.sharedExecutor.connectTimeout",
+            "Timeout for opening a pooled http connection (when the shared executor is enabled)", PoolingHttpExecutorImpl.DEFAULT_CONNECT_TIMEOUT);
+
+    public static final ConfigKey<Duration> SOCKET_TIMEOUT = ConfigKeys.newConfigKey(Duration.class,
+            "brooklyn.http.sharedExecutor.socketTimeout",
+            "Maximum time waiting for data on a pooled http connection, so a stalled endpoint releases its connection "
+            + "(when the shared executor is enabled)", PoolingHttpExecutorImpl.DEFAULT_SOCKET_TIMEOUT);
+
+    private static final ConfigKey<PoolingHttpExecutorImpl> SCRATCHPAD_KEY = ConfigKeys.newConfigKey(PoolingHttpExecutorImpl.class,
+            "brooklyn.http.sharedExecutor.instance");
+
+    private SharedHttpExecutor() {}
+
+    /**
+     * Returns the shared http executor for the given management context, creating it on first use,
+     * or absent if not {@link #ENABLED}.
+     */
+    public static Maybe<HttpExecutor> get(ManagementContext mgmt) {
+        if (mgmt==null || !Boolean.TRUE.equals(mgmt.getConfig().getConfig(ENABLED))) {
+            return Maybe.absent("Shared http executor not enabled");
+        }
+        synchronized (mgmt.getScratchpad()) {
+            PoolingHttpExecutorImpl result = mgmt.getScratchpad().get(SCRATCHPAD_KEY);
+            if (result==null) {
+                result = new PoolingHttpExecutorImpl(
+                        mgmt.getConfig().getConfig(MAX_CONNECTIONS),
+                        mgmt.getConfig().getConfig(MAX_CONNECTIONS_PER_ROUTE),
+                        mgmt.getConfig().getConfig(IDLE_EXPIRY),
+                        mgmt.getConfig().getConfig(LEASE_TIMEOUT),
+                        mgmt.getConfig().getConfig(CONNECT_TIMEOUT),
+                        mgmt.getConfig().getConfig(SOCKET_TIMEOUT));
+                mgmt.getScratchpad().put(SCRATCHPAD_KEY, result);
+            }
+            return Maybe.<HttpExecutor>of(result);
+        }
+    }
+
+    /** closes the shared http executor of the given management context, if one was created; e.g. on termination */
+    public static void closeIfPresent(ManagementContext mgmt) {
+        PoolingHttpExecutorImpl result;
+        synchronized (mgmt.getScratchpad()) {
+            result = mgmt.getScratchpad().get(SCRATCHPAD_KEY);
+            if (result!=null) mgmt.getScratchpad().put(SCRATCHPAD_KEY, null);
+        }
+        if (result!=null) result.close();
+    }
+}
@@ -19,11 +19,13 @@
 package org.apache.brooklyn.core.entity;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -47,6 +49,7 @@ import org.testng.annotations.Test;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
@@ -184,6 +187,56 @@ public class AttributeMapTest {
         assertEquals(map.getValue(sensor), "parentValue");
     }
     
+    @Test
+    public void testNullValueStoredAndRemoved() throws Exception {
+        AttributeSensor<String> sensor = Sensors.newStringSensor("a", "");
+        
+        assertNull(map.update(sensor, null));
+        assertNull(map.getValue(sensor));
+        assertTrue(map.asMap().containsKey("a"), "map="+map.asMap());
+        assertNull(map.asMap().get("a"));
+        
+        map.remove(sensor);
+        assertEquals(map.asMap(), ImmutableMap.of());
+    }
+    
+    @Test
+    public void testAsMapKeyedBySensorName() throws Exception {
+        map.update(Sensors.newStringSensor("a", ""), "1val");
+        map.update(Sensors.newIntegerSensor("b.c", ""), 2);
+        
+        Map<String, Object> snapshot = map.asMap();
+        assertEquals(snapshot, ImmutableMap.of("a", "1val", "b.c", 2));
+        
+        // snapshot is unaffected by later changes
+        map.update(Sensors.newStringSensor("a", ""), "newval");
+        assertEquals(snapshot.get("a"), "1val");
+    }
+    
+    @Test
+    public void testAsMapInInsertionOrder() throws Exception {
+        map.update(Sensors.newStringSensor("z", ""), "1");
+        map.update(Sensors.newStringSensor("a", ""), "2");
+        map.update(Sensors.newStringSensor("m", ""), "3");
+        map.update(Sensors.newStringSensor("z", ""), "4");
+        
+        assertEquals(ImmutableList.copyOf(map.asMap().keySet()), ImmutableList.of("z", "a", "m"));
+        
+        map.remove(Sensors.newStringSensor("z", ""));
+        map.update(Sensors.newStringSensor("z", ""), "5");
+        assertEquals(ImmutableList.copyOf(map.asMap().keySet()), ImmutableList.of("a", "m", "z"));
+    }
+    
+    @Test
+    public void testConstructorWithoutStorage() throws Exception {
+        AttributeMap map2 = new AttributeMap(entityImpl);
+        AttributeSensor<String> sensor = Sensors.newStringSensor("a", "");
+        
+        map2.update(sensor, "myval");
+        assertEquals(map2.getValue(sensor), "myval");
+        assertEquals(map2.asMap(), ImmutableMap.of("a", "myval"));
+    }
+    
     @Test
     public void testConcurrentModifyAttributeCalls() throws Exception {
         AttributeSensor<Integer> sensor = Sensors.newIntegerSensor("a", "");
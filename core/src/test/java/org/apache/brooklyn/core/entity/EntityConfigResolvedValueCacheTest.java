@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.entity;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.config.internal.AbstractConfigMapImpl;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.core.task.DeferredSupplier;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class EntityConfigResolvedValueCacheTest extends BrooklynAppUnitTestSupport {
+
+    private static final ConfigKey<String> STR_KEY = ConfigKeys.newStringConfigKey("test.resolvedValueCache.str");
+    private static final ConfigKey<String> STR_KEY_WITH_DEFAULT = ConfigKeys.newStringConfigKey("test.resolvedValueCache.strWithDefault", "", "mydefault");
+
+    private boolean oldEnablement;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        oldEnablement = BrooklynFeatureEnablement.enable(BrooklynFeatureEnablement.FEATURE_CONFIG_RESOLVED_VALUE_CACHE);
+        super.setUp();
+    }
+
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() throws Exception {
+        try {
+            super.tearDown();
+        } finally {
+            BrooklynFeatureEnablement.setEnablement(BrooklynFeatureEnablement.FEATURE_CONFIG_RESOLVED_VALUE_CACHE, oldEnablement);
+        }
+    }
+
+    @Test
+    public void testRepeatedLookupIsCached() throws Exception {
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(STR_KEY, "myval"));
+
+        assertEquals(entity.getConfig(STR_KEY), "myval");
+        long hits = AbstractConfigMapImpl.getResolvedValueCacheHitCount();
+        assertEquals(entity.getConfig(STR_KEY), "myval");
+        assertEquals(entity.getConfig(STR_KEY), "myval");
+        assertTrue(AbstractConfigMapImpl.getResolvedValueCacheHitCount() >= hits+2);
+
+        assertEquals(entity.getConfig(STR_KEY_WITH_DEFAULT), "mydefault");
+        assertEquals(entity.getConfig(STR_KEY_WITH_DEFAULT), "mydefault");
+    }
+
+    @Test
+    public void testCacheClearedWhenOwnConfigChanges() throws Exception {
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(STR_KEY, "myval"));
+        assertEquals(entity.getConfig(STR_KEY), "myval");
+
+        entity.config().set(STR_KEY, "myval2");
+        assertEquals(entity.getConfig(STR_KEY), "myval2");
+
+        entity.config().removeKey(STR_KEY);
+        assertNull(entity.getConfig(STR_KEY));
+    }
+
+    @Test
+    public void testCacheClearedWhenInheritedConfigChanges() throws Exception {
+        app.config().set(STR_KEY, "parentval");
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        TestEntity grandchild = entity.addChild(EntitySpec.create(TestEntity.class));
+        assertEquals(grandchild.getConfig(STR_KEY), "parentval");
+        assertEquals(grandchild.getConfig(STR_KEY), "parentval");
+
+        app.config().set(STR_KEY, "parentval2");
+        assertEquals(grandchild.getConfig(STR_KEY), "parentval2");
+
+        entity.config().set(STR_KEY, "childval");
+        assertEquals(grandchild.getConfig(STR_KEY), "childval");
+    }
+
+    @Test
+    public void testDeferredValuesNotCached() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(STR_KEY.getName(), new DeferredSupplier<String>() {
+                    @Override public String get() {
+                        return "val"+count.incrementAndGet();
+                    }}));
+
+        entity.getConfig(STR_KEY);
+        int countAfterFirst = count.get();
+        assertEquals(entity.getConfig(STR_KEY), "val"+count.get());
+        assertTrue(count.get() > countAfterFirst, "count="+count);
+    }
+}
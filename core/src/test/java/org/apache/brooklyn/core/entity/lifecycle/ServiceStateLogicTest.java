@@ -21,6 +21,7 @@ package org.apache.brooklyn.core.entity.lifecycle;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.brooklyn.api.entity.Entity;
@@ -30,6 +31,7 @@ import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Enricher;
 import org.apache.brooklyn.api.sensor.EnricherSpec;
 import org.apache.brooklyn.api.sensor.SensorEvent;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.entity.Attributes;
 import org.apache.brooklyn.core.entity.Dumper;
 import org.apache.brooklyn.core.entity.Entities;
@@ -45,6 +47,7 @@ import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.core.test.entity.TestEntityImpl.TestEntityWithoutEnrichers;
 import org.apache.brooklyn.entity.group.DynamicCluster;
+import org.apache.brooklyn.util.collections.PersistentMap;
 import org.apache.brooklyn.util.collections.QuorumCheck.QuorumChecks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.time.Duration;
@@ -144,6 +147,27 @@ public class ServiceStateLogicTest extends BrooklynAppUnitTestSupport {
         assertAttributeEqualsEventually(entity, Attributes.SERVICE_STATE_ACTUAL, Lifecycle.STOPPED);
     }
 
+    public void testPersistentMapSensorsShareNoMutableState() {
+        boolean oldEnablement = BrooklynFeatureEnablement.enable(BrooklynFeatureEnablement.FEATURE_PERSISTENT_MAP_SENSORS);
+        try {
+            ServiceNotUpLogic.updateNotUpIndicator(entity, INDICATOR_KEY_1, "We're pretending to block service up");
+            Map<String, Object> indicators1 = entity.getAttribute(Attributes.SERVICE_NOT_UP_INDICATORS);
+            assertTrue(indicators1 instanceof PersistentMap, "indicators="+indicators1);
+
+            ServiceNotUpLogic.updateNotUpIndicator(entity, INDICATOR_KEY_2, "We're also pretending to block service up");
+            ServiceNotUpLogic.clearNotUpIndicator(entity, INDICATOR_KEY_1);
+            assertEquals(entity.getAttribute(Attributes.SERVICE_NOT_UP_INDICATORS), 
+                    ImmutableMap.of(INDICATOR_KEY_2, "We're also pretending to block service up"));
+            // earlier value, which may have been propagated elsewhere, is unaffected
+            assertEquals(indicators1, ImmutableMap.of(INDICATOR_KEY_1, "We're pretending to block service up"));
+
+            ServiceNotUpLogic.clearNotUpIndicator(entity, INDICATOR_KEY_2);
+            assertAttributeEqualsEventually(entity, Attributes.SERVICE_UP, true);
+        } finally {
+            BrooklynFeatureEnablement.setEnablement(BrooklynFeatureEnablement.FEATURE_PERSISTENT_MAP_SENSORS, oldEnablement);
+        }
+    }
+
     public void testTwoIndicatorsAreBetterThanOne() {        
         // if we set a not up indicator, entity service up should become false
         ServiceNotUpLogic.updateNotUpIndicator(entity, INDICATOR_KEY_1, "We're pretending to block service up");
@@ -35,6 +35,7 @@ import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.mgmt.EntityManager;
 import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.mgmt.internal.EntityManagerInternal;
 import org.apache.brooklyn.core.mgmt.internal.IdAlreadyExistsException;
 import org.apache.brooklyn.core.mgmt.internal.LocalEntityManager;
@@ -119,7 +120,51 @@ public class EntityManagerTest extends BrooklynAppUnitTestSupport {
         Asserts.assertEqualsIgnoringOrder(entityManager.findEntities(Predicates.instanceOf(TestApplication.class)), ImmutableList.of(app, app2));
         Asserts.assertEqualsIgnoringOrder(entityManager.findEntitiesInApplication(app, Predicates.instanceOf(TestApplication.class)), ImmutableList.of(app));
     }
-    
+
+    @Test
+    public void testGetEntitiesByIndexedValues() {
+        EntityManagerInternal entityManager = (EntityManagerInternal) this.entityManager;
+        TestApplication app2 = mgmt.getEntityManager().createEntity(EntitySpec.create(TestApplication.class));
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class).displayName("myname"));
+        TestEntity entity2 = app2.createAndManageChild(EntitySpec.create(TestEntity.class).displayName("myname"));
+
+        Asserts.assertEqualsIgnoringOrder(entityManager.getEntitiesInApplication(app2), ImmutableList.of(app2, entity2));
+        Asserts.assertEqualsIgnoringOrder(entityManager.getEntitiesByType(TestEntity.class.getName()), ImmutableList.of(entity, entity2));
+        Asserts.assertEqualsIgnoringOrder(entityManager.getEntitiesByDisplayName("myname"), ImmutableList.of(entity, entity2));
+
+        entity.setDisplayName("myothername");
+        Asserts.assertEqualsIgnoringOrder(entityManager.getEntitiesByDisplayName("myname"), ImmutableList.of(entity2));
+        Asserts.assertEqualsIgnoringOrder(entityManager.getEntitiesByDisplayName("myothername"), ImmutableList.of(entity));
+
+        ((EntityInternal)Entities.deproxy(entity)).setCatalogItemId("my.catalog.item:1.0");
+        Asserts.assertEqualsIgnoringOrder(entityManager.getEntitiesByCatalogItemId("my.catalog.item:1.0"), ImmutableList.of(entity));
+        ((EntityInternal)Entities.deproxy(entity)).setCatalogItemId("my.other.catalog.item:1.0");
+        assertEquals(entityManager.getEntitiesByCatalogItemId("my.catalog.item:1.0"), ImmutableList.of());
+        Asserts.assertEqualsIgnoringOrder(entityManager.getEntitiesByCatalogItemId("my.other.catalog.item:1.0"), ImmutableList.of(entity));
+
+        Entities.unmanage(entity2);
+        Asserts.assertEqualsIgnoringOrder(entityManager.getEntitiesInApplication(app2), ImmutableList.of(app2));
+        Asserts.assertEqualsIgnoringOrder(entityManager.getEntitiesByType(TestEntity.class.getName()), ImmutableList.of(entity));
+        assertEquals(entityManager.getEntitiesByDisplayName("myname"), ImmutableList.of());
+    }
+
+    @Test
+    public void testMembershipChangeCountPerApplication() {
+        EntityManagerInternal entityManager = (EntityManagerInternal) this.entityManager;
+        TestApplication app2 = mgmt.getEntityManager().createEntity(EntitySpec.create(TestApplication.class));
+        long appCount = entityManager.getMembershipChangeCount(app.getId());
+        long app2Count = entityManager.getMembershipChangeCount(app2.getId());
+
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        assertTrue(entityManager.getMembershipChangeCount(app.getId()) != appCount);
+        assertEquals(entityManager.getMembershipChangeCount(app2.getId()), app2Count);
+
+        appCount = entityManager.getMembershipChangeCount(app.getId());
+        Entities.unmanage(entity);
+        assertTrue(entityManager.getMembershipChangeCount(app.getId()) != appCount);
+        assertEquals(entityManager.getMembershipChangeCount(app2.getId()), app2Count);
+    }
+
     @Test
     public void testCreateEntitiesWithDuplicateIdFails() {
         TestApplication origApp = app;
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.feed;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.feed.function.FunctionFeed;
+import org.apache.brooklyn.feed.function.FunctionPollConfig;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.Test;
+
+public class PollSchedulerTest extends BrooklynAppUnitTestSupport {
+
+    private static final AttributeSensor<Integer> SENSOR_INT = Sensors.newIntegerSensor("aLong", "");
+
+    @Override
+    protected BrooklynProperties getBrooklynProperties() {
+        BrooklynProperties result = BrooklynProperties.Factory.newEmpty();
+        result.put(PollScheduler.PHASE_SPREAD, Duration.millis(50));
+        result.put(PollScheduler.JITTER, 0.5);
+        return result;
+    }
+
+    @Test
+    public void testInitialDelayIsStableAndWithinSpread() throws Exception {
+        PollScheduler scheduler = new PollScheduler(Duration.ONE_MINUTE, 0);
+        Set<Duration> delays = MutableSet.of();
+        for (int i = 0; i < 20; i++) {
+            Duration delay = scheduler.getInitialDelay("job"+i, Duration.ONE_SECOND);
+            assertEquals(scheduler.getInitialDelay("job"+i, Duration.ONE_SECOND), delay);
+            assertTrue(delay.compareTo(Duration.ZERO) >= 0 && delay.isShorterThan(Duration.ONE_SECOND), "delay="+delay);
+            delays.add(delay);
+        }
+        assertTrue(delays.size() > 1, "delays="+delays);
+        
+        assertEquals(new PollScheduler(Duration.ZERO, 0).getInitialDelay("job", Duration.ONE_SECOND), Duration.ZERO);
+        assertTrue(scheduler.getInitialDelay("job", Duration.PRACTICALLY_FOREVER).isShorterThan(Duration.ONE_MINUTE));
+    }
+
+    @Test
+    public void testJitterWithinBounds() throws Exception {
+        PollScheduler scheduler = new PollScheduler(Duration.ZERO, 0.1);
+        for (int i = 0; i < 100; i++) {
+            long next = scheduler.getNextPeriod(Duration.ONE_SECOND).toMilliseconds();
+            assertTrue(next >= 900 && next <= 1100, "next="+next);
+        }
+        assertEquals(scheduler.getNextPeriod(Duration.PRACTICALLY_FOREVER), Duration.PRACTICALLY_FOREVER);
+        assertEquals(new PollScheduler(Duration.ZERO, 0).getNextPeriod(Duration.ONE_SECOND), Duration.ONE_SECOND);
+    }
+
+    @Test
+    public void testRecordsLatenessAndOverruns() throws Exception {
+        PollScheduler scheduler = new PollScheduler(Duration.ZERO, 0);
+        scheduler.recordRun(1000, 1010, 1020, Duration.millis(100));
+        scheduler.recordRun(2000, 2030, 2200, Duration.millis(100));
+        
+        assertEquals(scheduler.getMetrics().get("runs"), (Long)2L);
+        assertEquals(scheduler.getMetrics().get("overruns"), (Long)1L);
+        assertEquals(scheduler.getMetrics().get("totalLatenessMillis"), (Long)40L);
+        assertEquals(scheduler.getMetrics().get("maxLatenessMillis"), (Long)30L);
+    }
+
+    @Test
+    public void testFeedPollsRepeatedlyWithSpreadAndJitter() throws Exception {
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final PollScheduler scheduler = PollScheduler.get(mgmt);
+        final long runsBefore = scheduler.getMetrics().get("runs");
+        
+        FunctionFeed feed = FunctionFeed.builder()
+                .entity(entity)
+                .poll(new FunctionPollConfig<Integer, Integer>(SENSOR_INT)
+                        .period(10)
+                        .callable(new Callable<Integer>() {
+                            private int counter = 0;
+                            @Override
+                            public Integer call() {
+                                return ++counter;
+                            }}))
+                .build();
+        try {
+            Asserts.succeedsEventually(new Runnable() {
+                @Override public void run() {
+                    assertTrue(scheduler.getMetrics().get("runs") >= runsBefore + 5, "metrics="+scheduler.getMetrics());
+                }});
+            assertNotNull(entity.getAttribute(SENSOR_INT));
+        } finally {
+            feed.stop();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import static org.testng.Assert.assertTrue;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.testng.annotations.Test;
+
+/** Runs the {@link BrooklynGarbageCollector} tests of the superclass with {@link BrooklynGarbageCollector#INCREMENTAL} enabled */
+@Test
+public class EntityExecutionManagerIncrementalGcTest extends EntityExecutionManagerTest {
+
+    @Override
+    protected BrooklynProperties getBrooklynProperties() {
+        BrooklynProperties result = BrooklynProperties.Factory.newEmpty();
+        result.put(BrooklynGarbageCollector.INCREMENTAL, true);
+        return result;
+    }
+
+    public void testGcOverGlobalLimitAndReportsMetrics() throws Exception {
+        TestEntity e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        BrooklynGarbageCollector gc = ((LocalManagementContext)mgmt).getGarbageCollector();
+        forceGc();
+        long deletedBefore = gc.getMetrics().get("tasksDeleted");
+
+        for (int count=0; count<5; count++)
+            runEmptyTaskWithNameAndTags(e, "task"+count, ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag");
+        ((BrooklynProperties)app.getManagementContext().getConfig()).put(
+            BrooklynGarbageCollector.MAX_TASKS_GLOBAL, 2);
+
+        assertTaskMaxCountForEntityEventually(e, 2);
+        assertTrue(gc.getMetrics().get("tasksDeleted") >= deletedBefore+3, "metrics="+gc.getMetrics());
+        assertTrue(gc.getUsageString().contains("(incremental)"), gc.getUsageString());
+        assertTrue(gc.getMetrics().get("iterations") > 1, "metrics="+gc.getMetrics());
+    }
+}
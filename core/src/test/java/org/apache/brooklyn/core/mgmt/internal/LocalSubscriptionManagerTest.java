@@ -19,6 +19,7 @@
 package org.apache.brooklyn.core.mgmt.internal;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.List;
@@ -49,6 +50,7 @@ import org.testng.annotations.Test;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 
 /**
  * testing the {@link SubscriptionManager} and associated classes.
@@ -275,4 +277,81 @@ public class LocalSubscriptionManagerTest extends BrooklynAppUnitTestSupport {
         }
         Assert.assertEquals(result.get(), app.getExecutionContext());
     }
+
+    @Test
+    public void testPublishWithNullSourceDeliversOnce() throws Exception {
+        RecordingSensorEventListener<Object> forSensor = new RecordingSensorEventListener<>();
+        RecordingSensorEventListener<Object> forAll = new RecordingSensorEventListener<>();
+        app.subscriptions().subscribe(null, TestEntity.SEQUENCE, forSensor);
+        app.subscriptions().subscribe(null, null, forAll);
+        
+        mgmt.getSubscriptionManager().publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, null, 1));
+        entity.sensors().set(TestEntity.SEQUENCE, 2);
+        
+        Asserts.succeedsEventually(() -> {
+            Asserts.assertEquals(ImmutableList.copyOf(forSensor.getEventValues()), ImmutableList.of(1, 2));
+            Asserts.assertTrue(Iterables.contains(forAll.getEventValues(), 2));
+        });
+        // the null-source event arrived before the later one, so any duplicate would have been delivered by now
+        Asserts.assertEquals(Iterables.frequency(forAll.getEventValues(), 1), 1);
+    }
+    
+    @Test
+    public void testBatchDeliveryPreservesOrderAndContext() throws Exception {
+        LocalSubscriptionManager subscriptionManager = (LocalSubscriptionManager) mgmt.getSubscriptionManager();
+        subscriptionManager.setBatchDelivery(true);
+        try {
+            final List<Integer> values = new CopyOnWriteArrayList<Integer>();
+            final AtomicReference<BasicExecutionContext> context = new AtomicReference<>();
+            app.subscriptions().subscribe(entity, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+                    @Override public void onEvent(SensorEvent<Integer> event) {
+                        context.set(BasicExecutionContext.getCurrentExecutionContext());
+                        values.add(event.getValue());
+                    }});
+            for (int i=0; i<100; i++) {
+                entity.sensors().set(TestEntity.SEQUENCE, i);
+            }
+            
+            Asserts.succeedsEventually(MutableMap.of("timeout", Duration.seconds(5)), () -> { 
+                Asserts.assertSize(values, 100); });
+            for (int i=0; i<100; i++) {
+                Assert.assertEquals(values.get(i), (Integer)i);
+            }
+            Assert.assertEquals(context.get(), app.getExecutionContext());
+        } finally {
+            subscriptionManager.setBatchDelivery(false);
+        }
+    }
+
+    @Test
+    public void testCoalescingSubscriptionDeliversLatestValue() throws Exception {
+        LocalSubscriptionManager subscriptionManager = (LocalSubscriptionManager) mgmt.getSubscriptionManager();
+        final CountDownLatch firstEventReceived = new CountDownLatch(1);
+        final CountDownLatch allowDelivery = new CountDownLatch(1);
+        final List<Integer> values = new CopyOnWriteArrayList<Integer>();
+        app.subscriptions().subscribe(MutableMap.of("coalesceEvents", true), entity, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+                @Override public void onEvent(SensorEvent<Integer> event) {
+                    values.add(event.getValue());
+                    firstEventReceived.countDown();
+                    try {
+                        allowDelivery.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }});
+        long coalescedBefore = subscriptionManager.getTotalEventsCoalesced();
+        
+        entity.sensors().set(TestEntity.SEQUENCE, 0);
+        assertTrue(firstEventReceived.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        for (int i=1; i<=100; i++) {
+            entity.sensors().set(TestEntity.SEQUENCE, i);
+        }
+        allowDelivery.countDown();
+        
+        Asserts.succeedsEventually(MutableMap.of("timeout", Duration.seconds(5)), () -> { 
+            Assert.assertEquals(Iterables.getLast(values), (Integer)100); });
+        // first event, then one delivery for all the events published while it was blocked
+        Assert.assertEquals(values, ImmutableList.of(0, 100));
+        Assert.assertEquals(subscriptionManager.getTotalEventsCoalesced() - coalescedBefore, 99);
+    }
 }
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.rebind.RebindTestUtils;
+import org.apache.brooklyn.util.javalang.JavaClassNames;
+import org.apache.brooklyn.util.os.Os;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.Test;
+
+import com.google.common.io.Files;
+
+/** As {@link BrooklynMementoPersisterFileBasedTest} but with {@link BrooklynMementoPersisterToObjectStore#PERSISTER_COMPRESS} set. */
+@Test
+public class BrooklynMementoPersisterCompressedTest extends BrooklynMementoPersisterFileBasedTest {
+
+    @Override
+    protected ManagementContext newPersistingManagementContext() {
+        mementoDir = Os.newTempDir(JavaClassNames.cleanSimpleClassName(this));
+        Os.deleteOnExitRecursively(mementoDir);
+        BrooklynProperties props = BrooklynProperties.Factory.newDefault();
+        props.put(BrooklynMementoPersisterToObjectStore.PERSISTER_COMPRESS, true);
+        return RebindTestUtils.managementContextBuilder(classLoader, new FileBasedObjectStore(mementoDir))
+            .properties(props)
+            .persistPeriod(Duration.millis(10)).buildStarted();
+    }
+
+    @Test
+    public void testWritesCompressedAndReadsPlainXml() throws Exception {
+        BrooklynMementoRawData rawMemento = loadRawMemento((BrooklynMementoPersisterToObjectStore)persister);
+        
+        File entityFile = new File(new File(mementoDir, "entities"), entity.getId());
+        assertTrue(PersistenceCompression.isCompressed(Files.toByteArray(entityFile)), "file="+entityFile);
+        assertTrue(rawMemento.getEntities().get(entity.getId()).startsWith("<entity>"), rawMemento.getEntities().get(entity.getId()));
+
+        // state written uncompressed (e.g. before this option was enabled) is still read
+        Files.write(rawMemento.getEntities().get(entity.getId()).getBytes("UTF-8"), entityFile);
+        BrooklynMementoRawData reloaded = loadRawMemento((BrooklynMementoPersisterToObjectStore)persister);
+        assertEquals(reloaded.getEntities().get(entity.getId()), rawMemento.getEntities().get(entity.getId()));
+    }
+
+    @Test
+    public void testCompressionRoundTrip() throws Exception {
+        String xml = "<entity><id>abc</id><displayName>caf\u00e9</displayName></entity>";
+        byte[] compressed = PersistenceCompression.compress(xml);
+        assertTrue(PersistenceCompression.isCompressed(compressed));
+        assertEquals(PersistenceCompression.decompress(compressed), xml);
+        
+        assertFalse(PersistenceCompression.isCompressed(xml.getBytes("UTF-8")));
+        assertEquals(PersistenceCompression.decompress(xml.getBytes("UTF-8")), xml);
+        assertNull(PersistenceCompression.decompress(null));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Map;
+
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.rebind.PersistenceExceptionHandlerImpl;
+import org.apache.brooklyn.core.mgmt.rebind.RebindTestUtils;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.javalang.JavaClassNames;
+import org.apache.brooklyn.util.os.Os;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.Test;
+
+/** As {@link BrooklynMementoPersisterFileBasedTest} but with {@link BrooklynMementoPersisterToObjectStore#PERSISTER_DELTA_LOG} enabled. */
+@Test
+public class BrooklynMementoPersisterDeltaLogTest extends BrooklynMementoPersisterFileBasedTest {
+
+    @Override
+    protected ManagementContext newPersistingManagementContext() {
+        mementoDir = Os.newTempDir(JavaClassNames.cleanSimpleClassName(this));
+        Os.deleteOnExitRecursively(mementoDir);
+        BrooklynProperties props = BrooklynProperties.Factory.newDefault();
+        props.put(BrooklynMementoPersisterToObjectStore.PERSISTER_DELTA_LOG, true);
+        return RebindTestUtils.managementContextBuilder(classLoader, new FileBasedObjectStore(mementoDir))
+            .properties(props)
+            .persistPeriod(Duration.millis(10)).buildStarted();
+    }
+
+    @Test
+    public void testChangesAppendedToLogAndReplayed() throws Exception {
+        entity.sensors().set(TestEntity.NAME, "mynewname");
+        BrooklynMementoRawData rawMemento = loadRawMemento((BrooklynMementoPersisterToObjectStore)persister);
+        
+        assertTrue(new File(mementoDir, BrooklynMementoPersisterToObjectStore.DELTA_LOG_FILE_NAME).exists());
+        assertFalse(new File(new File(mementoDir, "entities"), entity.getId()).exists());
+        assertTrue(rawMemento.getEntities().get(entity.getId()).contains("mynewname"), rawMemento.getEntities().get(entity.getId()));
+    }
+
+    @Test
+    public void testCheckpointCompactsLog() throws Exception {
+        BrooklynMementoRawData rawMemento = loadRawMemento((BrooklynMementoPersisterToObjectStore)persister);
+        ((BrooklynMementoPersisterToObjectStore) persister).checkpoint(rawMemento, PersistenceExceptionHandlerImpl.builder().build());
+        
+        assertFalse(new File(mementoDir, BrooklynMementoPersisterToObjectStore.DELTA_LOG_FILE_NAME).exists());
+        assertFalse(new File(mementoDir, BrooklynMementoPersisterToObjectStore.DELTA_LOG_COMPACTING_FILE_NAME).exists());
+        assertTrue(new File(new File(mementoDir, "entities"), entity.getId()).exists());
+        BrooklynMementoRawData reloaded = loadRawMemento((BrooklynMementoPersisterToObjectStore)persister);
+        assertEquals(reloaded.getEntities().keySet(), rawMemento.getEntities().keySet());
+    }
+
+    @Test
+    public void testReplayUsesLatestRecordAndIgnoresTruncatedTail() throws Exception {
+        StringBuilder log = new StringBuilder();
+        PersistenceDeltaLog.appendPut(log, BrooklynObjectType.ENTITY, "e1", "<entity>v1</entity>");
+        PersistenceDeltaLog.appendPut(log, BrooklynObjectType.ENTITY, "e2", "<entity>\nmulti\nline\n</entity>");
+        PersistenceDeltaLog.appendPut(log, BrooklynObjectType.ENTITY, "e1", "<entity>v2</entity>");
+        PersistenceDeltaLog.appendDelete(log, BrooklynObjectType.LOCATION, "l1");
+        PersistenceDeltaLog.appendPut(log, BrooklynObjectType.POLICY, "p1", "<policy>truncated</policy>");
+        String truncated = log.substring(0, log.length()-5);
+        
+        Map<BrooklynObjectType, Map<String, String>> replayed = PersistenceDeltaLog.replay(truncated);
+        assertEquals(replayed.get(BrooklynObjectType.ENTITY).get("e1"), "<entity>v2</entity>");
+        assertEquals(replayed.get(BrooklynObjectType.ENTITY).get("e2"), "<entity>\nmulti\nline\n</entity>");
+        assertTrue(replayed.get(BrooklynObjectType.LOCATION).containsKey("l1"));
+        assertNull(replayed.get(BrooklynObjectType.LOCATION).get("l1"));
+        assertFalse(replayed.get(BrooklynObjectType.POLICY).containsKey("p1"));
+    }
+
+    @Test
+    public void testReplaySkipsTornRecordInMiddleOfLog() throws Exception {
+        StringBuilder log = new StringBuilder();
+        PersistenceDeltaLog.appendPut(log, BrooklynObjectType.ENTITY, "e1", "<entity>v1</entity>");
+        // an append which failed part way through its contents, then one which failed in its header
+        StringBuilder torn = new StringBuilder();
+        PersistenceDeltaLog.appendPut(torn, BrooklynObjectType.ENTITY, "e1", "<entity>torn</entity>");
+        log.append(torn.substring(0, torn.length()-10));
+        log.append("#delta put ENT");
+        // later appends which succeeded
+        PersistenceDeltaLog.appendPut(log, BrooklynObjectType.ENTITY, "e2", "<entity>\nmulti\nline\n</entity>");
+        PersistenceDeltaLog.appendPut(log, BrooklynObjectType.ENTITY, "e1", "<entity>v2</entity>");
+        PersistenceDeltaLog.appendDelete(log, BrooklynObjectType.LOCATION, "l1");
+        
+        Map<BrooklynObjectType, Map<String, String>> replayed = PersistenceDeltaLog.replay(log.toString());
+        assertEquals(replayed.get(BrooklynObjectType.ENTITY).get("e1"), "<entity>v2</entity>");
+        assertEquals(replayed.get(BrooklynObjectType.ENTITY).get("e2"), "<entity>\nmulti\nline\n</entity>");
+        assertEquals(replayed.get(BrooklynObjectType.ENTITY).size(), 2);
+        assertTrue(replayed.get(BrooklynObjectType.LOCATION).containsKey("l1"));
+        assertNull(replayed.get(BrooklynObjectType.LOCATION).get("l1"));
+    }
+}
@@ -67,6 +67,59 @@ public class XmlMementoSerializerPerformanceTest extends AbstractPerformanceTest
          int numIterations = numIterations();
          double minRatePerSec = 10 * PERFORMANCE_EXPECTATION;
 
+         final Memento memento = newEntityMemento();
+         int serializedLength = serializeToString(memento).length();
+
+         // Run the performance test
+         measure(PerformanceTestDescriptor.create()
+                 .summary("mementoSerializer.serializeEntityMemento(size="+serializedLength+"chars)")
+                 .iterations(numIterations)
+                 .minAcceptablePerSecond(minRatePerSec)
+                 .job(new Runnable() {
+                     @Override public void run() {
+                         serializeToString(memento);
+                     }}));
+     }
+     
+     /** Compare with {@link #testSerializeEntityMemento()}, for the cost and size of {@link PersistenceCompression}. */
+     @Test(groups={"Live", "Acceptance"})
+     public void testSerializeAndCompressEntityMemento() throws Exception {
+         int numIterations = numIterations();
+         double minRatePerSec = 10 * PERFORMANCE_EXPECTATION;
+
+         final Memento memento = newEntityMemento();
+         int serializedLength = serializeToString(memento).length();
+         int compressedLength = PersistenceCompression.compress(serializeToString(memento)).length;
+
+         measure(PerformanceTestDescriptor.create()
+                 .summary("mementoSerializer.serializeAndCompressEntityMemento(size="+serializedLength+"chars, compressed="+compressedLength+"bytes)")
+                 .iterations(numIterations)
+                 .minAcceptablePerSecond(minRatePerSec)
+                 .job(new Runnable() {
+                     @Override public void run() {
+                         PersistenceCompression.compress(serializeToString(memento));
+                     }}));
+     }
+     
+     /** The additional cost on rebind of reading compressed state. */
+     @Test(groups={"Live", "Acceptance"})
+     public void testDecompressEntityMemento() throws Exception {
+         int numIterations = numIterations();
+         double minRatePerSec = 10 * PERFORMANCE_EXPECTATION;
+
+         final byte[] compressed = PersistenceCompression.compress(serializeToString(newEntityMemento()));
+
+         measure(PerformanceTestDescriptor.create()
+                 .summary("mementoSerializer.decompressEntityMemento(compressed="+compressed.length+"bytes)")
+                 .iterations(numIterations)
+                 .minAcceptablePerSecond(minRatePerSec)
+                 .job(new Runnable() {
+                     @Override public void run() {
+                         PersistenceCompression.decompress(compressed);
+                     }}));
+     }
+     
+     private Memento newEntityMemento() {
          // Create an entity with lots of config/parameters, and sensors
          Map<ConfigKey<?>, String> config = Maps.newLinkedHashMap();
          List<BasicSpecParameter<?>> params = Lists.newArrayList();
@@ -89,18 +142,7 @@ public class XmlMementoSerializerPerformanceTest extends AbstractPerformanceTest
          }
 
          // Create the memento for that entity (only once)
-         final Memento memento = MementosGenerators.newBasicMemento(Entities.deproxy(entity));
-         int serializedLength = serializeToString(memento).length();
-
-         // Run the performance test
-         measure(PerformanceTestDescriptor.create()
-                 .summary("mementoSerializer.serializeEntityMemento(size="+serializedLength+"chars)")
-                 .iterations(numIterations)
-                 .minAcceptablePerSecond(minRatePerSec)
-                 .job(new Runnable() {
-                     @Override public void run() {
-                         serializeToString(memento);
-                     }}));
+         return MementosGenerators.newBasicMemento(Entities.deproxy(entity));
      }
      
      private String serializeToString(Object val) {
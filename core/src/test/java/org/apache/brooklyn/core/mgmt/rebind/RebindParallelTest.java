@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+import java.util.Set;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.location.Location;
+import org.apache.brooklyn.api.location.LocationSpec;
+import org.apache.brooklyn.api.mgmt.rebind.RebindManager.RebindFailureMode;
+import org.apache.brooklyn.api.objs.Identifiable;
+import org.apache.brooklyn.api.policy.PolicySpec;
+import org.apache.brooklyn.api.sensor.EnricherSpec;
+import org.apache.brooklyn.core.entity.EntityFunctions;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.location.SimulatedLocation;
+import org.apache.brooklyn.core.mgmt.rebind.RebindEntityTest.MyEntity;
+import org.apache.brooklyn.core.mgmt.rebind.RebindFailuresTest.MyEntityFailingImpl;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.core.test.policy.TestEnricher;
+import org.apache.brooklyn.core.test.policy.TestPolicy;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+
+public class RebindParallelTest extends RebindTestFixtureWithApp {
+
+    @Override
+    protected BrooklynProperties createBrooklynProperties() {
+        BrooklynProperties result = super.createBrooklynProperties();
+        result.put(RebindManagerImpl.REBIND_PARALLEL, true);
+        result.put(RebindManagerImpl.REBIND_PARALLEL_MAX_THREADS, 4);
+        return result;
+    }
+
+    @Test
+    public void testRebindsHierarchyInParallel() throws Exception {
+        SimulatedLocation origLoc = origManagementContext.getLocationManager().createLocation(LocationSpec.create(SimulatedLocation.class));
+        List<Location> origChildLocs = MutableList.of();
+        for (int i = 0; i < 5; i++) {
+            origChildLocs.add(origManagementContext.getLocationManager().createLocation(LocationSpec.create(SimulatedLocation.class)
+                    .parent(origLoc)));
+        }
+
+        List<TestEntity> origChildren = MutableList.of();
+        for (int i = 0; i < 5; i++) {
+            TestEntity child = origApp.createAndManageChild(EntitySpec.create(TestEntity.class)
+                    .location(origChildLocs.get(i))
+                    .policy(PolicySpec.create(TestPolicy.class))
+                    .enricher(EnricherSpec.create(TestEnricher.class)));
+            for (int j = 0; j < 5; j++) {
+                child.addChild(EntitySpec.create(TestEntity.class));
+            }
+            origChildren.add(child);
+        }
+
+        newApp = rebind();
+
+        assertEquals(toIds(newApp.getChildren()), toIds(origChildren));
+        for (TestEntity origChild : origChildren) {
+            Entity newChild = newManagementContext.getEntityManager().getEntity(origChild.getId());
+            assertEquals(newChild.getParent(), newApp);
+            assertEquals(toIds(newChild.getChildren()), toIds(origChild.getChildren()));
+            assertEquals(Iterables.getOnlyElement(newChild.getLocations()).getId(), Iterables.getOnlyElement(origChild.getLocations()).getId());
+            assertEquals(Iterables.getOnlyElement(newChild.getLocations()).getParent().getId(), origLoc.getId());
+            assertTrue(Iterables.any(newChild.policies(), p -> p instanceof TestPolicy), "policies="+newChild.policies());
+            assertTrue(Iterables.any(newChild.enrichers(), e -> e instanceof TestEnricher), "enrichers="+newChild.enrichers());
+        }
+        assertEquals(toIds(newManagementContext.getLocationManager().getLocation(origLoc.getId()).getChildren()), toIds(origChildLocs));
+    }
+
+    @Test
+    public void testFailureRebindingEntityReportedToExceptionHandler() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            origApp.createAndManageChild(EntitySpec.create(MyEntity.class));
+        }
+        MyEntity origFailingE = origApp.createAndManageChild(EntitySpec.create(MyEntity.class)
+                .impl(MyEntityFailingImpl.class)
+                .configure(MyEntityFailingImpl.FAIL_ON_REBIND, true));
+
+        RecordingRebindExceptionHandler exceptionHandler = new RecordingRebindExceptionHandler(RebindFailureMode.CONTINUE, RebindFailureMode.FAIL_AT_END);
+        try {
+            newApp = rebind(RebindOptions.create().exceptionHandler(exceptionHandler));
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.toString().toLowerCase().contains("rebinding entity"), "Wrong error: "+e);
+        }
+
+        assertEquals(toIds(exceptionHandler.rebindFailures.keySet()), ImmutableSet.of(origFailingE.getId()));
+    }
+
+    private Set<String> toIds(Iterable<? extends Identifiable> instances) {
+        return ImmutableSet.copyOf(Iterables.transform(instances, EntityFunctions.id()));
+    }
+}
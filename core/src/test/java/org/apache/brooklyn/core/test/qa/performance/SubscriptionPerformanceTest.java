@@ -24,9 +24,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.SubscriptionHandle;
 import org.apache.brooklyn.api.mgmt.SubscriptionManager;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.core.mgmt.internal.LocalSubscriptionManager;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
 import org.apache.brooklyn.util.collections.MutableMap;
@@ -158,4 +160,60 @@ public class SubscriptionPerformanceTest extends AbstractPerformanceTest {
             throw exception.get();
         }
     }
+
+    /**
+     * Measures events delivered per second as the number of subscribers grows, 
+     * with a task per event and with batch delivery. Results are logged for each combination;
+     * the rate checked is of events published.
+     */
+    @Test(groups={"Integration", "Acceptance"})
+    public void testDeliveryThroughputByNumberOfSubscribers() throws Exception {
+        LocalSubscriptionManager localSubscriptionManager = (LocalSubscriptionManager) subscriptionManager;
+        try {
+            for (boolean batch : new boolean[] {false, true}) {
+                localSubscriptionManager.setBatchDelivery(batch);
+                for (int numSubscribers : new int[] {1, 10, 100}) {
+                    measureDeliveryThroughput(numSubscribers, batch);
+                }
+            }
+        } finally {
+            localSubscriptionManager.setBatchDelivery(false);
+        }
+    }
+    
+    private void measureDeliveryThroughput(int numSubscribers, boolean batch) {
+        int numIterations = NUM_ITERATIONS / numSubscribers;
+        double minRatePerSec = 100 * PERFORMANCE_EXPECTATION / numSubscribers;
+        final AtomicInteger iter = new AtomicInteger();
+        final int expectedCount = numIterations*numSubscribers;
+        
+        final AtomicInteger listenerCount = new AtomicInteger();
+        final CountDownLatch completionLatch = new CountDownLatch(1);
+        
+        List<SubscriptionHandle> handles = Lists.newArrayList();
+        for (int i = 0; i < numSubscribers; i++) {
+            handles.add(subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "throughput-"+i), entity, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+                @Override
+                public void onEvent(SensorEvent<Integer> event) {
+                    int count = listenerCount.incrementAndGet();
+                    if (count >= expectedCount) completionLatch.countDown();
+                }}));
+        }
+        
+        try {
+            measure(PerformanceTestDescriptor.create()
+                    .summary("SubscriptionPerformanceTest.testDeliveryThroughputByNumberOfSubscribers("+numSubscribers+" subscribers, "+(batch ? "batch" : "task per event")+")")
+                    .iterations(numIterations)
+                    .minAcceptablePerSecond(minRatePerSec)
+                    .job(new Runnable() {
+                        @Override public void run() {
+                            entity.sensors().set(TestEntity.SEQUENCE, (iter.getAndIncrement()));
+                        }})
+                    .completionLatch(completionLatch));
+        } finally {
+            for (SubscriptionHandle handle : handles) {
+                subscriptionManager.unsubscribe(handle);
+            }
+        }
+    }
 }
@@ -105,6 +105,42 @@ public class TaskPerformanceTest extends AbstractPerformanceTest {
                 .completionLatch(completionLatch));
     }
     
+    /**
+     * Submits from as many threads as there are cores, all sharing tags, while also querying by tag;
+     * compare against {@link #testExecuteRunnableWithTags()} to see how throughput scales with concurrency.
+     */
+    @Test(groups={"Integration", "Acceptance"})
+    public void testExecuteRunnableWithTagsConcurrently() {
+        double minRatePerSec = 1000 * PERFORMANCE_EXPECTATION;
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        
+        final AtomicInteger counter = new AtomicInteger();
+        final CountDownLatch completionLatch = new CountDownLatch(1);
+
+        final Runnable work = new Runnable() {
+            @Override public void run() {
+                int val = counter.incrementAndGet();
+                if (val >= numIterations) completionLatch.countDown();
+            }
+        };
+
+        final Map<String, ?> flags = MutableMap.of("tags", ImmutableList.of("a","b"));
+        
+        measure(PerformanceTestDescriptor.create()
+                .summary("TaskPerformanceTest.testExecuteRunnableWithTagsConcurrently("+numThreads+" threads)")
+                .iterations(numIterations)
+                .numConcurrentJobs(numThreads)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override public void run() {
+                        executionManager.submit(MutableMap.copyOf(flags), work);
+                        if (counter.get() % 100 == 0) {
+                            executionManager.getTasksWithAllTags(ImmutableList.of("a", "b"));
+                        }
+                    }})
+                .completionLatch(completionLatch));
+    }
+    
     @Test(groups={"Integration", "Acceptance"})
     public void testExecuteWithSingleThreadedScheduler() throws Exception {
         double minRatePerSec = 1000 * PERFORMANCE_EXPECTATION;
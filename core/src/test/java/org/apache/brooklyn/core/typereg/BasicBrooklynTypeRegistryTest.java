@@ -29,6 +29,7 @@ import org.apache.brooklyn.util.collections.MutableSet;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Iterables;
 
@@ -191,4 +192,50 @@ public class BasicBrooklynTypeRegistryTest extends BrooklynMgmtUnitTestSupport {
         
     }
 
+    @Test
+    public void testMatchingReflectsAddAndDelete() {
+        add(SAMPLE_TYPE);
+        Assert.assertEquals( registry().getMatching(RegisteredTypePredicates.symbolicName(SAMPLE_TYPE.getSymbolicName())),
+            MutableList.of(SAMPLE_TYPE) );
+        
+        add(SAMPLE_TYPE2);
+        Assert.assertEquals( registry().getMatching(RegisteredTypePredicates.symbolicName(SAMPLE_TYPE.getSymbolicName())),
+            MutableList.of(SAMPLE_TYPE, SAMPLE_TYPE2) );
+        
+        registry().delete(SAMPLE_TYPE);
+        Assert.assertEquals( registry().getMatching(RegisteredTypePredicates.symbolicName(SAMPLE_TYPE.getSymbolicName())),
+            MutableList.of(SAMPLE_TYPE2) );
+        Assert.assertFalse( Iterables.contains(registry().getAll(), SAMPLE_TYPE) );
+        Assert.assertEquals( registry().get(SAMPLE_TYPE.getSymbolicName()), SAMPLE_TYPE2 );
+    }
+
+    @Test
+    public void testContainingBundle() {
+        RegisteredType sampleTypeInBundle = RegisteredTypes.setContainingBundle(
+            beanWithSuper("item.B", "1", new BasicTypeImplementationPlan("ignore", null), String.class),
+            new BasicManagedBundle("org.example.bundle", "1.0-SNAPSHOT", null, null));
+        add(SAMPLE_TYPE);
+        add(sampleTypeInBundle);
+        
+        // matches on OSGi version, as for the unindexed predicate
+        Assert.assertEquals( registry().getMatching(RegisteredTypePredicates.containingBundle("org.example.bundle:1.0.0.SNAPSHOT")),
+            MutableList.of(sampleTypeInBundle) );
+        Assert.assertEquals( registry().getMatching(RegisteredTypePredicates.containingBundle("org.example.bundle:1.0-SNAPSHOT")),
+            MutableList.of(sampleTypeInBundle) );
+        Assert.assertTrue( Iterables.isEmpty(registry().getMatching(RegisteredTypePredicates.containingBundle("org.example.bundle:2.0.0"))) );
+    }
+
+    @Test
+    public void testContainingBundleWithoutVersion() {
+        RegisteredType sampleTypeInBundle = beanWithSuper("item.B", "1", new BasicTypeImplementationPlan("ignore", null), String.class);
+        ((BasicRegisteredType) sampleTypeInBundle).containingBundle = "org.example.unversioned";
+        add(SAMPLE_TYPE);
+        add(sampleTypeInBundle);
+        
+        Predicate<? super RegisteredType> unversioned = RegisteredTypePredicates.containingBundle("org.example.unversioned");
+        Assert.assertTrue( unversioned.apply(sampleTypeInBundle) );
+        Assert.assertEquals( registry().getMatching(unversioned), MutableList.of(sampleTypeInBundle) );
+        Assert.assertTrue( Iterables.isEmpty(registry().getMatching(RegisteredTypePredicates.containingBundle("org.example.unversioned:1.0.0"))) );
+    }
+
 }
@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.sensor.EnricherSpec;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Enricher;
 import org.apache.brooklyn.api.sensor.SensorEvent;
@@ -44,6 +45,7 @@ import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.guava.Functionals;
 import org.apache.brooklyn.util.text.StringFunctions;
+import org.apache.brooklyn.util.time.Duration;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -319,6 +321,48 @@ public class EnrichersTest extends BrooklynAppUnitTestSupport {
         EntityAsserts.assertAttributeEqualsEventually(group, NUM2, 5);
     }
 
+    @Test
+    public void testAggregatingIncrementally() {
+        group.addMember(entity);
+        group.addMember(entity2);
+        group.enrichers().add(EnricherSpec.create(Aggregator.class)
+                .configure(Aggregator.SOURCE_SENSOR, NUM1)
+                .configure(Aggregator.TARGET_SENSOR, NUM2)
+                .configure(Aggregator.TRANSFORMATION_UNTYPED, "sum")
+                .configure(Aggregator.INCREMENTAL, true));
+        
+        entity.sensors().set(NUM1, 2);
+        entity2.sensors().set(NUM1, 3);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM2, 5);
+        
+        entity.sensors().set(NUM1, 4);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM2, 7);
+        
+        group.removeMember(entity2);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM2, 4);
+        
+        group.addMember(entity2);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM2, 7);
+    }
+    
+    @Test
+    public void testAggregatingWithPublishMinPeriod() {
+        group.addMember(entity);
+        group.enrichers().add(EnricherSpec.create(Aggregator.class)
+                .configure(Aggregator.SOURCE_SENSOR, NUM1)
+                .configure(Aggregator.TARGET_SENSOR, NUM2)
+                .configure(Aggregator.TRANSFORMATION_UNTYPED, "sum")
+                .configure(Aggregator.PUBLISH_MIN_PERIOD, Duration.millis(100)));
+        
+        RecordingSensorEventListener<Integer> listener = new RecordingSensorEventListener<>();
+        app.subscriptions().subscribe(group, NUM2, listener);
+        for (int i = 1; i <= 50; i++) {
+            entity.sensors().set(NUM1, i);
+        }
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM2, 50);
+        Asserts.assertTrue(listener.getEvents().size() < 50, "events="+listener.getEventValues());
+    }
+    
     @Test
     public void testAggregatingExcludingBlankString() {
         group.addMember(entity);
@@ -25,7 +25,10 @@ import static org.testng.Assert.assertTrue;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 
+import org.apache.brooklyn.enricher.stock.MathAggregatorFunctions.Accumulator;
+import org.apache.brooklyn.enricher.stock.MathAggregatorFunctions.IncrementalComputingNumber;
 import org.apache.brooklyn.test.LogWatcher;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.slf4j.LoggerFactory;
@@ -160,4 +163,63 @@ public class MathAggregatorFunctionsTest {
         assertEquals(func.apply(MutableList.<Number>of(1, 3, 5)), (Integer)5);
         assertEquals(func.apply(MutableList.<Number>of(3, null, 1)), (Integer)3);
     }
+    
+    @Test
+    public void testAccumulatorsMatchRecomputed() throws Exception {
+        List<Function<Collection<? extends Number>, Double>> funcs = new ArrayList<>();
+        funcs.add(MathAggregatorFunctions.computingSum(null, -1, Double.class));
+        funcs.add(MathAggregatorFunctions.computingAverage(null, -1, Double.class));
+        funcs.add(MathAggregatorFunctions.computingMin(null, -1, Double.class));
+        funcs.add(MathAggregatorFunctions.computingMax(null, -1, Double.class));
+        funcs.add(MathAggregatorFunctions.computingSum(0, -1, Double.class));
+        funcs.add(MathAggregatorFunctions.computingMin(0, -1, Double.class));
+        
+        Random random = new Random(1234);
+        for (Function<Collection<? extends Number>, Double> func : funcs) {
+            Accumulator<Double> accumulator = ((IncrementalComputingNumber<Double>)func).newAccumulator();
+            List<Number> vals = new ArrayList<>();
+            assertEquals(accumulator.get(), func.apply(vals));
+            for (int i = 0; i < 1000; i++) {
+                if (!vals.isEmpty() && random.nextInt(3) == 0) {
+                    // remove non-finite values soon after adding them, so that most results are finite
+                    int index = indexOfNonFinite(vals);
+                    Number val = vals.remove(index >= 0 ? index : random.nextInt(vals.size()));
+                    accumulator.remove(val);
+                } else {
+                    Number val = randomValue(random);
+                    vals.add(val);
+                    accumulator.add(val);
+                }
+                assertSameResult(accumulator.get(), func.apply(vals), "func="+func+"; vals="+vals);
+            }
+        }
+    }
+
+    // includes non-dyadic fractions (which do not sum exactly) and occasional non-finite values
+    private static Number randomValue(Random random) {
+        int choice = random.nextInt(40);
+        if (choice < 10) return null;
+        if (choice < 20) return random.nextInt(100) / 4d;
+        if (choice < 27) return random.nextInt(100) / 3d;
+        if (choice == 27) return Double.NaN;
+        if (choice == 28) return Double.POSITIVE_INFINITY;
+        if (choice == 29) return Double.NEGATIVE_INFINITY;
+        return random.nextInt(100);
+    }
+
+    private static int indexOfNonFinite(List<Number> vals) {
+        for (int i = 0; i < vals.size(); i++) {
+            Number val = vals.get(i);
+            if (val != null && (Double.isNaN(val.doubleValue()) || Double.isInfinite(val.doubleValue()))) return i;
+        }
+        return -1;
+    }
+
+    private static void assertSameResult(Double actual, Double expected, String message) {
+        if (expected == null || expected.isNaN() || expected.isInfinite()) {
+            assertEquals(actual, expected, message);
+        } else {
+            assertEquals(actual, expected, 0.000001, message);
+        }
+    }
 }
@@ -43,6 +43,7 @@ import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.Assert;
@@ -259,8 +260,49 @@ public class FunctionFeedTest extends BrooklynAppUnitTestSupport {
                 .supplier(Suppliers.ofInstance(1))
                 .onFailureOrException(Functions.<Integer>constant(null));
     }
-    
-    
+
+    @Test
+    public void testAdaptivePeriodBacksOffWhileValueUnchanged() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        feed = FunctionFeed.builder()
+                .entity(entity)
+                .poll(new FunctionPollConfig<Integer,Integer>(SENSOR_INT)
+                        .period(10)
+                        .maxPeriod(500)
+                        .callable(new Callable<Integer>() {
+                            @Override public Integer call() {
+                                count.incrementAndGet();
+                                return 1;
+                            }}))
+                .build();
+
+        EntityAsserts.assertAttributeEqualsEventually(entity, SENSOR_INT, 1);
+        Thread.sleep(1000);
+
+        // with a fixed 10ms period this would be around 100
+        assertTrue(count.get() < 20, "count="+count);
+    }
+
+    @Test
+    public void testAdaptivePeriodDoesNotBackOffWhileValueChanges() throws Exception {
+        feed = FunctionFeed.builder()
+                .entity(entity)
+                .poll(new FunctionPollConfig<Integer,Integer>(SENSOR_INT)
+                        .period(1)
+                        .maxPeriod(Duration.ONE_MINUTE)
+                        .callable(new IncrementingCallable()))
+                .build();
+
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                Integer val = entity.getAttribute(SENSOR_INT);
+                assertTrue(val != null && val > 10, "val=" + val);
+            }
+        });
+    }
+
+
     private void assertFeedIsPolling() {
         final Integer val = entity.getAttribute(SENSOR_INT);
         Asserts.succeedsEventually(new Runnable() {
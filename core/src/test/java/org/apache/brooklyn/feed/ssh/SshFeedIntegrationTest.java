@@ -131,6 +131,26 @@ public class SshFeedIntegrationTest extends BrooklynAppUnitTestSupport {
         EntityAsserts.assertAttributeEqualsEventually(entity, SENSOR_INT, 123);
     }
     
+    @Test(groups="Integration")
+    public void testBatchedPollsReturnSeparateResults() throws Exception {
+        feed = SshFeed.builder()
+                .entity(entity)
+                .machine(machine)
+                .batchPolls()
+                .poll(new CommandPollConfig<String>(SENSOR_STRING)
+                        .command("echo hello")
+                        .onSuccess(SshValueFunctions.stdout()))
+                .poll(new CommandPollConfig<Integer>(SENSOR_INT)
+                        .command("echo goodbye; exit 123")
+                        .checkSuccess(Predicates.alwaysTrue())
+                        .onSuccess(SshValueFunctions.exitStatus()))
+                .build();
+
+        EntityAsserts.assertAttributeEqualsEventually(entity, SENSOR_INT, 123);
+        EntityAsserts.assertAttributeEventually(entity, SENSOR_STRING, StringPredicates.containsLiteral("hello"));
+        Assert.assertEquals(entity.getAttribute(SENSOR_STRING).trim(), "hello");
+    }
+    
     @Test(groups="Integration")
     public void testReturnsSshStdout() throws Exception {
         feed = SshFeed.builder()
@@ -19,6 +19,8 @@
 package org.apache.brooklyn.feed.ssh;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 import java.util.List;
 import java.util.Map;
@@ -45,6 +47,7 @@ import com.google.common.base.Functions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
 public class SshFeedTest extends BrooklynAppUnitTestSupport {
@@ -165,6 +168,57 @@ public class SshFeedTest extends BrooklynAppUnitTestSupport {
             }});
     }
 
+    @Test
+    public void testBatchesPollsWithSamePeriod() throws Exception {
+        final RecordingSshMachineLocation recordingMachine = mgmt.getLocationManager().createLocation(LocationSpec.create(RecordingSshMachineLocation.class));
+        app.start(ImmutableList.of(recordingMachine));
+        
+        feed = SshFeed.builder()
+                .period(Duration.PRACTICALLY_FOREVER)
+                .entity(entity)
+                .batchPolls()
+                .poll(new SshPollConfig<String>(SENSOR_STRING)
+                        .command("myCommand")
+                        .onSuccess(Functions.constant("success")))
+                .poll(new SshPollConfig<String>(SENSOR_STRING2)
+                        .env(ImmutableMap.of("mykey", "myval"))
+                        .command("myCommand2")
+                        .onSuccess(Functions.constant("success")))
+                .build();
+        
+        // Expect a single script containing both commands
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(RecordingSshMachineLocation.execScriptCalls.size(), 1);
+                String script = Iterables.getOnlyElement(RecordingSshMachineLocation.execScriptCalls.get(0));
+                assertTrue(script.contains("\nmyCommand\n"), script);
+                assertTrue(script.contains("\nmyCommand2\n"), script);
+                assertTrue(script.contains("export mykey="), script);
+            }});
+        Asserts.succeedsContinually(ImmutableMap.of("timeout", Duration.ONE_SECOND), new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(RecordingSshMachineLocation.execScriptCalls.size(), 1);
+            }});
+    }
+
+    @Test
+    public void testSplitsBatchedOutput() throws Exception {
+        String stdout = "M_0_START\nx a b\nM_0_END 3\nM_1_START\nnonewlineM_1_END 0\nM_2_START\n";
+        String stderr = "M_0_START\nerr\nM_0_END\nM_1_START\nM_1_END\nM_2_START\n";
+        List<SshPollValue> result = SshFeed.fromBatchOutput("M", 3, new SshPollValue(null, 0, stdout, stderr));
+        
+        assertEquals(result.size(), 3);
+        assertEquals(result.get(0).getExitStatus(), 3);
+        assertEquals(result.get(0).getStdout(), "x a b\n");
+        assertEquals(result.get(0).getStderr(), "err\n");
+        assertEquals(result.get(1).getExitStatus(), 0);
+        assertEquals(result.get(1).getStdout(), "nonewline");
+        assertEquals(result.get(1).getStderr(), "");
+        assertNull(result.get(2));
+    }
+
     public static class RecordingSshMachineLocation extends SshMachineLocation {
         public static List<List<String>> execScriptCalls = Lists.newCopyOnWriteArrayList();
 
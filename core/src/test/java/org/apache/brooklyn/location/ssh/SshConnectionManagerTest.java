@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.ssh;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.brooklyn.api.location.LocationSpec;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.test.BrooklynMgmtUnitTestSupport;
+import org.apache.brooklyn.util.core.internal.ssh.RecordingSshTool;
+import org.apache.brooklyn.util.core.internal.ssh.SshTool;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Functions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class SshConnectionManagerTest extends BrooklynMgmtUnitTestSupport {
+
+    private SshConnectionManager manager;
+
+    @Override
+    protected BrooklynProperties getBrooklynProperties() {
+        BrooklynProperties result = BrooklynProperties.Factory.newEmpty();
+        result.put(SshConnectionManager.ENABLED, true);
+        return result;
+    }
+
+    @Override
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        super.setUp();
+        RecordingSshTool.clear();
+    }
+
+    @Override
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        try {
+            if (manager != null) manager.close();
+            manager = null;
+            RecordingSshTool.clear();
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    @Test
+    public void testReusesConnectionForSameProperties() throws Exception {
+        manager = new SshConnectionManager(10, 10, Duration.ONE_MINUTE, Duration.ONE_SECOND);
+        SshTool tool1 = exec("host1:22", ImmutableMap.of("user", "me"));
+        SshTool tool2 = exec("host1:22", ImmutableMap.of("user", "me"));
+
+        assertTrue(tool1 == tool2);
+        assertEquals(RecordingSshTool.getTools().size(), 1);
+        assertEquals(manager.getMetrics().get("created"), (Long)1L);
+        assertEquals(manager.getMetrics().get("reused"), (Long)1L);
+        assertEquals(manager.getMetrics().get("idle"), (Long)1L);
+    }
+
+    @Test
+    public void testDifferentPropertiesUseDifferentConnections() throws Exception {
+        manager = new SshConnectionManager(10, 10, Duration.ONE_MINUTE, Duration.ONE_SECOND);
+        SshTool tool1 = exec("host1:22", ImmutableMap.of("user", "me"));
+        SshTool tool2 = exec("host1:22", ImmutableMap.of("user", "you"));
+
+        assertFalse(tool1 == tool2);
+        assertEquals(manager.getOpenCount("host1:22"), 2);
+    }
+
+    @Test
+    public void testDisconnectedConnectionNotReused() throws Exception {
+        manager = new SshConnectionManager(10, 10, Duration.ONE_MINUTE, Duration.ONE_SECOND);
+        SshTool tool1 = exec("host1:22", ImmutableMap.of("user", "me"));
+        tool1.disconnect();
+        SshTool tool2 = exec("host1:22", ImmutableMap.of("user", "me"));
+
+        assertFalse(tool1 == tool2);
+        assertEquals(manager.getMetrics().get("unhealthy"), (Long)1L);
+        assertEquals(manager.getMetrics().get("open"), (Long)1L);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedWhenAtLimit() throws Exception {
+        manager = new SshConnectionManager(2, 2, Duration.ONE_MINUTE, Duration.ONE_SECOND);
+        SshTool tool1 = exec("host1:22", ImmutableMap.of("user", "me"));
+        SshTool tool2 = exec("host2:22", ImmutableMap.of("user", "me"));
+        exec("host1:22", ImmutableMap.of("user", "me"));
+        SshTool tool3 = exec("host3:22", ImmutableMap.of("user", "me"));
+
+        assertTrue(tool1.isConnected());
+        assertFalse(tool2.isConnected());
+        assertTrue(tool3.isConnected());
+        assertEquals(manager.getMetrics().get("open"), (Long)2L);
+        assertEquals(manager.getMetrics().get("evicted"), (Long)1L);
+    }
+
+    @Test
+    public void testEvictsFromSameHostWhenAtPerHostLimit() throws Exception {
+        manager = new SshConnectionManager(10, 1, Duration.ONE_MINUTE, Duration.ONE_SECOND);
+        SshTool other = exec("host2:22", ImmutableMap.of("user", "me"));
+        SshTool tool1 = exec("host1:22", ImmutableMap.of("user", "me"));
+        SshTool tool2 = exec("host1:22", ImmutableMap.of("user", "you"));
+
+        assertTrue(other.isConnected());
+        assertFalse(tool1.isConnected());
+        assertTrue(tool2.isConnected());
+        assertEquals(manager.getOpenCount("host1:22"), 1);
+    }
+
+    @Test
+    public void testCloseAfterUse() throws Exception {
+        manager = new SshConnectionManager(10, 10, Duration.ONE_MINUTE, Duration.ONE_SECOND);
+        SshTool tool = manager.exec("host1:22", ImmutableMap.of("user", "me"), newConnector(ImmutableMap.of("user", "me")),
+                Functions.<SshTool>identity(), true);
+
+        assertFalse(tool.isConnected());
+        assertEquals(manager.getMetrics().get("open"), (Long)0L);
+    }
+
+    @Test
+    public void testSharedBetweenMachinesWithSameHostAndCredentials() throws Exception {
+        SshMachineLocation machine1 = newMachine();
+        SshMachineLocation machine2 = newMachine();
+
+        machine1.execCommands("cmd1", ImmutableList.of("echo 1"));
+        machine2.execCommands("cmd2", ImmutableList.of("echo 2"));
+
+        assertEquals(RecordingSshTool.getTools().size(), 1);
+        assertEquals(RecordingSshTool.getExecCmds().size(), 2);
+        assertEquals(SshConnectionManager.get(mgmt).get().getMetrics().get("reused"), (Long)1L);
+    }
+
+    private SshMachineLocation newMachine() {
+        return mgmt.getLocationManager().createLocation(LocationSpec.create(SshMachineLocation.class)
+                .configure("address", "localhost")
+                .configure("user", "me")
+                .configure(SshMachineLocation.SSH_TOOL_CLASS, RecordingSshTool.class.getName()));
+    }
+
+    private SshTool exec(String hostAndPort, Map<String, ?> props) {
+        return manager.exec(hostAndPort, props, newConnector(props), Functions.<SshTool>identity(), false);
+    }
+
+    private Supplier<SshTool> newConnector(final Map<String, ?> props) {
+        return new Supplier<SshTool>() {
+            @Override public SshTool get() {
+                RecordingSshTool result = new RecordingSshTool(props);
+                result.connect();
+                return result;
+            }};
+    }
+}
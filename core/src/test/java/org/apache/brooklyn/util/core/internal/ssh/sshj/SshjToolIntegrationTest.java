@@ -26,6 +26,7 @@ import static org.testng.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -47,6 +48,7 @@ import org.apache.brooklyn.util.os.Os;
 import org.apache.brooklyn.util.time.Duration;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -73,6 +75,47 @@ public class SshjToolIntegrationTest extends SshToolAbstractIntegrationTest {
         assertTrue(out.contains("file contents: blah blah"), "out="+out);
     }
 
+    @Test(groups = {"Integration"})
+    public void testExecScriptViaStdinPreservesScriptContents() throws Exception {
+        final List<String> delimiters = new ArrayList<String>(ImmutableList.of("MY_EOF", "MY_OTHER_EOF"));
+        final SshjTool localtool = new SshjTool(ImmutableMap.of("host", "localhost", "privateKeyFile", "~/.ssh/id_rsa", 
+                SshjTool.PROP_SCRIPT_VIA_STDIN.getName(), true)) {
+            @Override
+            protected String newScriptDelimiter() {
+                // first offer a delimiter which appears in the script, as the end of a nested here-document
+                return delimiters.isEmpty() ? super.newScriptDelimiter() : delimiters.remove(0);
+            }
+        };
+        tools.add(localtool);
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Map<String,Object> props = ImmutableMap.<String,Object>of("out", out, "err", err, SshTool.PROP_NO_EXTRA_OUTPUT.getName(), true);
+        int exitcode = localtool.execScript(props, ImmutableList.of(
+                "MY_VAR=expanded",
+                "echo $MY_VAR $MY_ENV_VAR",
+                "echo \"double $MY_VAR 'single'\"",
+                "echo 'single $MY_VAR \"double\"'",
+                "printf '%s\\n' 'back\\slash' \"back\\\\slash\"",
+                "cat <<'MY_EOF'",
+                "literal $MY_VAR `echo subshell` \"double\" 'single' \\",
+                "MY_EOF",
+                "echo done"),
+                ImmutableMap.of("MY_ENV_VAR", "from env"));
+        
+        assertEquals(exitcode, 0, "err="+err);
+        assertEquals(out.toString(), Joiner.on("\n").join(
+                "expanded from env",
+                "double expanded 'single'",
+                "single $MY_VAR \"double\"",
+                "back\\slash",
+                "back\\slash",
+                "literal $MY_VAR `echo subshell` \"double\" 'single' \\",
+                "done",
+                ""));
+        assertTrue(delimiters.isEmpty(), "delimiters="+delimiters);
+    }
+
     @Test(groups = {"Integration"})
     public void testGivesUpAfterMaxRetries() throws Exception {
         final AtomicInteger callCount = new AtomicInteger();
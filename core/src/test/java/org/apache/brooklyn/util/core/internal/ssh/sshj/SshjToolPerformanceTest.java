@@ -18,13 +18,30 @@
  */
 package org.apache.brooklyn.util.core.internal.ssh.sshj;
 
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.internal.ssh.SshTool;
 import org.apache.brooklyn.util.core.internal.ssh.SshToolAbstractPerformanceTest;
 import org.apache.brooklyn.util.core.internal.ssh.sshj.SshjTool;
+import org.apache.brooklyn.util.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
 /**
  * Test the performance of different variants of invoking the sshj tool.
  * 
@@ -32,6 +49,8 @@ import org.testng.annotations.Test;
  */
 public class SshjToolPerformanceTest extends SshToolAbstractPerformanceTest {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SshjToolPerformanceTest.class);
+
     @Override
     protected SshTool newSshTool(Map<String,?> flags) {
         return new SshjTool(flags);
@@ -41,4 +60,69 @@ public class SshjToolPerformanceTest extends SshToolAbstractPerformanceTest {
     @Test(enabled = false)
     public void testDummy() throws Exception {
     }
+
+    @Test(groups = {"Integration"})
+    public void testConcurrentSmallCommandsOnSingleConnection() throws Exception {
+        runConcurrentCommands(false, "concurrent-small-cmd-reconnecting", 10, 100);
+    }
+
+    @Test(groups = {"Integration"})
+    public void testConcurrentSmallCommandsMultiplexed() throws Exception {
+        runConcurrentCommands(true, "concurrent-small-cmd-multiplexed", 10, 100);
+    }
+
+    @Test(groups = {"Integration"})
+    public void testConsecutiveSmallScriptsViaSftp() throws Exception {
+        runConsecutiveScripts(false, "small-script-sftp", 50);
+    }
+
+    @Test(groups = {"Integration"})
+    public void testConsecutiveSmallScriptsViaStdin() throws Exception {
+        runConsecutiveScripts(true, "small-script-stdin", 50);
+    }
+
+    /**
+     * Runs the given number of commands against localhost from {@code numThreads} threads, all sharing
+     * one tool, and logs the throughput in commands/sec for that host.
+     */
+    private void runConcurrentCommands(boolean multiplex, String context, int numThreads, int numCommands) throws Exception {
+        final SshjTool tool = new SshjTool(MutableMap.of("host", "localhost", SshjTool.PROP_MULTIPLEX_SESSIONS.getName(), multiplex));
+        ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(numThreads));
+        try {
+            tool.connect();
+            List<ListenableFuture<Integer>> futures = Lists.newArrayList();
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            for (int i = 0; i < numCommands; i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override public Integer call() {
+                        return tool.execCommands(MutableMap.<String,Object>of(), ImmutableList.of("true"));
+                    }}));
+            }
+            for (ListenableFuture<Integer> future : futures) {
+                assertEquals(future.get(), (Integer)0);
+            }
+            long elapsed = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            LOG.info("Executing {}; {} commands from {} threads took {}; {} commands/sec/host", 
+                    new Object[] {context, numCommands, numThreads, Time.makeTimeStringRounded(elapsed), (elapsed > 0 ? (numCommands*1000d)/elapsed : -1)});
+        } finally {
+            executor.shutdownNow();
+            tool.disconnect();
+        }
+    }
+
+    private void runConsecutiveScripts(boolean viaStdin, String context, int numScripts) throws Exception {
+        SshjTool tool = new SshjTool(MutableMap.of("host", "localhost", SshjTool.PROP_SCRIPT_VIA_STDIN.getName(), viaStdin));
+        try {
+            tool.connect();
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            for (int i = 0; i < numScripts; i++) {
+                assertEquals(tool.execScript(MutableMap.<String,Object>of(), ImmutableList.of("echo hello", "true")), 0);
+            }
+            long elapsed = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            LOG.info("Executing {}; {} scripts took {}; {} scripts/sec/host", 
+                    new Object[] {context, numScripts, Time.makeTimeStringRounded(elapsed), (elapsed > 0 ? (numScripts*1000d)/elapsed : -1)});
+        } finally {
+            tool.disconnect();
+        }
+    }
 }
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager.ExecutionMode;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.Callables;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class BasicExecutionManagerModesTest {
+
+    private static final int TIMEOUT_MS = 10*1000;
+
+    private BasicExecutionManager em;
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (em != null) em.shutdownNow();
+        em = null;
+    }
+
+    private BasicExecutionManager newExecutionManager(ExecutionMode mode, int maxThreads, int maxQueued) {
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        props.put(BasicExecutionManager.EXECUTION_MODE, mode);
+        props.put(BasicExecutionManager.MAX_THREADS, maxThreads);
+        props.put(BasicExecutionManager.MAX_QUEUED_TASKS, maxQueued);
+        return new BasicExecutionManager("mycontext", props);
+    }
+
+    @Test
+    public void testDefaultIsUnbounded() throws Exception {
+        em = new BasicExecutionManager("mycontext");
+        assertFalse(em.isBounded());
+        assertEquals(em.submit(Tasks.create("t", Callables.returning("a"))).get(), "a");
+        assertEquals(em.getNumQueuedTasks(), 0);
+        assertEquals(em.getNumRejectedTasks(), 0);
+    }
+
+    @Test
+    public void testBoundedQueuesWhenAllThreadsBusy() throws Exception {
+        em = newExecutionManager(ExecutionMode.BOUNDED, 2, 0);
+        assertTrue(em.isBounded());
+
+        final CountDownLatch release = new CountDownLatch(1);
+        List<Task<?>> tasks = MutableList.of();
+        for (int i=0; i<5; i++) {
+            tasks.add(em.submit(Tasks.create("blocking-"+i, new Callable<Void>() {
+                @Override public Void call() throws Exception {
+                    release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    return null;
+                }})));
+        }
+        assertTrue(em.getNumPoolThreads() <= 2, "threads="+em.getNumPoolThreads());
+        assertTrue(em.getNumQueuedTasks() >= 3, "queued="+em.getNumQueuedTasks());
+
+        release.countDown();
+        for (Task<?> t : tasks) {
+            t.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(em.getNumQueuedTasks(), 0);
+    }
+
+    @Test
+    public void testBoundedRejectsWhenQueueFull() throws Exception {
+        em = newExecutionManager(ExecutionMode.BOUNDED, 1, 1);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        Callable<Void> blocking = new Callable<Void>() {
+            @Override public Void call() throws Exception {
+                release.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                return null;
+            }};
+        Task<?> t1 = em.submit(Tasks.create("running", blocking));
+        Task<?> t2 = em.submit(Tasks.create("queued", blocking));
+        try {
+            Task<?> t3 = em.submit(Tasks.create("rejected", blocking));
+            fail("Should have rejected "+t3);
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertEquals(em.getNumRejectedTasks(), 1);
+
+        release.countDown();
+        t1.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        t2.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertEquals(em.getNumIncompleteTasks(), 0);
+    }
+
+    @Test
+    public void testBoundedRunsCompletionListenersWhenQueueFull() throws Exception {
+        em = newExecutionManager(ExecutionMode.BOUNDED, 1, 1);
+        final List<Task<?>> done = new CopyOnWriteArrayList<Task<?>>();
+        em.addListener(new ExecutionListener() {
+            @Override public void onTaskDone(Task<?> task) {
+                done.add(task);
+            }});
+
+        final CountDownLatch releaseRunning = new CountDownLatch(1);
+        final CountDownLatch releaseQueued = new CountDownLatch(1);
+        Task<?> t1 = em.submit(Tasks.create("running", new Callable<Void>() {
+            @Override public Void call() throws Exception {
+                releaseRunning.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                return null;
+            }}));
+        Task<?> t2 = em.submit(Tasks.create("queued", new Callable<Void>() {
+            @Override public Void call() throws Exception {
+                releaseQueued.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                return null;
+            }}));
+        final CountDownLatch futureListenerRun = new CountDownLatch(1);
+        t1.addListener(new Runnable() {
+            @Override public void run() {
+                futureListenerRun.countDown();
+            }}, MoreExecutors.sameThreadExecutor());
+        final CountDownLatch queuedListenerRun = new CountDownLatch(1);
+        t2.addListener(new Runnable() {
+            @Override public void run() {
+                queuedListenerRun.countDown();
+            }}, MoreExecutors.sameThreadExecutor());
+        assertEquals(em.getNumQueuedTasks(), 1);
+
+        // t1 completes while t2 still fills the queue; its listeners must not be queued (and rejected)
+        releaseRunning.countDown();
+        t1.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertTrue(futureListenerRun.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertTrue(done.contains(t1), "done="+done);
+        assertEquals(em.getNumRejectedTasks(), 0);
+
+        releaseQueued.countDown();
+        t2.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertTrue(queuedListenerRun.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertTrue(done.contains(t2), "done="+done);
+        assertEquals(em.getNumRejectedTasks(), 0);
+    }
+
+    @Test
+    public void testVirtualRunsTasksOrFallsBack() throws Exception {
+        em = newExecutionManager(ExecutionMode.VIRTUAL, 1, 1);
+        assertFalse(em.isBounded());
+        assertEquals(em.submit(Tasks.create("t", Callables.returning("a"))).get(), "a");
+    }
+}
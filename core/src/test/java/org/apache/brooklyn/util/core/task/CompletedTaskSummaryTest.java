@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.text.Strings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Callables;
+
+public class CompletedTaskSummaryTest {
+
+    private BasicExecutionManager em;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        props.put(BasicExecutionManager.COMPACT_COMPLETED_TASKS, true);
+        props.put(BasicExecutionManager.COMPACT_COMPLETED_TASKS_MAX_TEXT_LENGTH, 20);
+        em = new BasicExecutionManager("mycontext", props);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (em != null) em.shutdownNow();
+        em = null;
+    }
+
+    @Test
+    public void testCompletedTaskReplacedBySummary() throws Exception {
+        Task<String> task = em.submit(Tasks.<String>builder().displayName("t").tag("mytag")
+                .body(Callables.returning("a")).build());
+        assertEquals(task.get(), "a");
+
+        Task<?> summary = assertCompactedEventually(task);
+        assertEquals(summary.get(), "a");
+        assertEquals(summary.getDisplayName(), "t");
+        assertEquals(summary.getTags(), task.getTags());
+        assertEquals(summary.getStartTimeUtc(), task.getStartTimeUtc());
+        assertEquals(summary.getEndTimeUtc(), task.getEndTimeUtc());
+        assertEquals(summary.getStatusSummary(), task.getStatusSummary());
+        assertTrue(summary.isDone() && !summary.isError());
+        assertTrue(em.getTasksWithTag("mytag").iterator().next() instanceof CompletedTaskSummary);
+    }
+
+    @Test
+    public void testResultDiscardedAndErrorKeptAsTruncatedText() throws Exception {
+        Task<String> longResult = em.submit(Tasks.<String>builder().displayName("long")
+                .body(Callables.returning(Strings.repeat("x", 100))).build());
+        longResult.get();
+        Task<?> longSummary = assertCompactedEventually(longResult);
+        assertFalse(longSummary.isError());
+        try {
+            longSummary.get();
+            fail("Should have failed: "+longSummary);
+        } catch (IllegalStateException e) {
+            Asserts.expectedFailureContains(e, "discarded by compaction", "xxx");
+        }
+
+        Task<List<String>> complexResult = em.submit(Tasks.<List<String>>builder().displayName("complex")
+                .body(Callables.returning((List<String>)ImmutableList.of("a"))).build());
+        complexResult.get();
+        Task<?> complexSummary = assertCompactedEventually(complexResult);
+        try {
+            complexSummary.get();
+            fail("Should have failed: "+complexSummary);
+        } catch (IllegalStateException e) {
+            Asserts.expectedFailureContains(e, "discarded by compaction", "[a]");
+        }
+
+        Task<Object> failing = em.submit(Tasks.builder().displayName("failing")
+                .body(() -> { throw new IllegalStateException("myerr"); }).build());
+        Asserts.assertFailsWith(() -> failing.get(), IllegalStateException.class);
+        Task<?> summary = assertCompactedEventually(failing);
+        assertTrue(summary.isError());
+        try {
+            summary.get();
+            fail("Should have failed: "+summary);
+        } catch (ExecutionException e) {
+            Asserts.expectedFailureContains(e, "myerr");
+        }
+    }
+
+    @Test
+    public void testSummaryDeletedWithTask() throws Exception {
+        Task<?> task = em.submit(Tasks.builder().displayName("t").tag("mytag").body(Callables.returning(null)).build());
+        task.get();
+        assertCompactedEventually(task);
+
+        em.deleteTask(task);
+        assertNull(em.getTask(task.getId()));
+        assertEquals(em.getTasksWithTag("mytag"), ImmutableSet.of());
+    }
+
+    private Task<?> assertCompactedEventually(Task<?> task) {
+        Asserts.succeedsEventually(() -> assertTrue(em.getTask(task.getId()) instanceof CompletedTaskSummary, "task="+em.getTask(task.getId())));
+        return em.getTask(task.getId());
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.xstream;
+
+import org.apache.brooklyn.util.collections.PersistentMap;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.thoughtworks.xstream.XStream;
+
+@Test
+public class PersistentMapConverterTest extends ConverterTestFixture {
+
+    @Override
+    protected void registerConverters(XStream xstream) {
+        super.registerConverters(xstream);
+        xstream.alias("PersistentMap", PersistentMap.class);
+        xstream.registerConverter(new PersistentMapConverter(xstream.getMapper()), /* priority */ 10);
+    }
+
+    @Test
+    public void testEmpty() {
+        Object x = assertX(PersistentMap.of(), "<PersistentMap/>");
+        Assert.assertTrue(x instanceof PersistentMap);
+    }
+
+    @Test
+    public void testWrittenAsEntries() {
+        Object x = assertX(PersistentMap.of("a", "v"), "<PersistentMap>\n  <a>v</a>\n</PersistentMap>");
+        Assert.assertTrue(x instanceof PersistentMap);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.xstream;
+
+import static org.testng.Assert.assertEquals;
+
+import org.apache.brooklyn.util.core.xstream.XmlFieldsExtractor.Fields;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class XmlFieldsExtractorTest {
+
+    private static final String ENTITY_XML = "<?xml version=\"1.0\" ?>\n"
+            + "<entity>\n"
+            + "  <brooklynVersion>1.0.0-SNAPSHOT</brooklynVersion>\n"
+            + "  <type>org.example.MyEntity</type>\n"
+            + "  <id>abc123</id>\n"
+            + "  <config>\n"
+            + "    <id>nested-id-ignored</id>\n"
+            + "  </config>\n"
+            + "  <searchPath>\n"
+            + "    <string>cat1:1.0</string>\n"
+            + "    <string><![CDATA[cat2:2.0]]></string>\n"
+            + "  </searchPath>\n"
+            + "  <parent>parent&amp;id</parent>\n"
+            + "</entity>\n";
+
+    private static final XmlFieldsExtractor EXTRACTOR = XmlFieldsExtractor.forRoot("entity")
+            .fields("id", "type", "parent", "catalogItemId").stringListFields("searchPath");
+
+    @Test
+    public void testExtractsFields() throws Exception {
+        Fields fields = EXTRACTOR.extract(ENTITY_XML);
+        assertEquals(fields.get("id"), "abc123");
+        assertEquals(fields.get("type"), "org.example.MyEntity");
+        assertEquals(fields.get("parent"), "parent&id");
+        assertEquals(fields.get("catalogItemId"), "");
+        assertEquals(fields.getStringList("searchPath"), ImmutableList.of("cat1:1.0", "cat2:2.0"));
+    }
+
+    @Test
+    public void testMatchesXpath() throws Exception {
+        Fields fields = EXTRACTOR.extract(ENTITY_XML);
+        for (String field : ImmutableList.of("id", "type", "parent", "catalogItemId")) {
+            assertEquals(fields.get(field), XmlUtil.xpathHandlingIllegalChars(ENTITY_XML, "/entity/"+field), "field="+field);
+        }
+    }
+
+    @Test
+    public void testOtherRootGivesEmptyValues() throws Exception {
+        Fields fields = EXTRACTOR.extract("<location><id>abc123</id></location>");
+        assertEquals(fields.get("id"), "");
+        assertEquals(fields.getStringList("searchPath"), ImmutableList.of());
+    }
+
+    @Test
+    public void testStopsAfterRequestedFields() throws Exception {
+        // the malformed tail is never read
+        Fields fields = XmlFieldsExtractor.forRoot("entity").fields("id").extract("<entity><id>abc123</id><broken></entity>");
+        assertEquals(fields.get("id"), "abc123");
+    }
+
+    @Test
+    public void testHandlesIllegalChars() throws Exception {
+        String xml = "<entity><id>abc123</id><type>my&#x1b;type</type></entity>";
+        Fields fields = XmlFieldsExtractor.forRoot("entity").fields("id", "type").extract(xml);
+        assertEquals(fields.get("id"), "abc123");
+        assertEquals(fields.get("type"), XmlUtil.xpathHandlingIllegalChars(xml, "/entity/type"));
+    }
+}
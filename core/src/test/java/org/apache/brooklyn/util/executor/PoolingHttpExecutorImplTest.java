@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.executor;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.core.http.BetterMockWebServer;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.http.HttpTool;
+import org.apache.brooklyn.util.http.executor.HttpConfig;
+import org.apache.brooklyn.util.http.executor.HttpExecutor;
+import org.apache.brooklyn.util.http.executor.HttpRequest;
+import org.apache.brooklyn.util.http.executor.HttpResponse;
+import org.apache.brooklyn.util.http.executor.apacheclient.PoolingHttpExecutorImpl;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.io.ByteStreams;
+import com.google.mockwebserver.Dispatcher;
+import com.google.mockwebserver.MockResponse;
+import com.google.mockwebserver.RecordedRequest;
+
+@SuppressWarnings("deprecation")
+public class PoolingHttpExecutorImplTest {
+    protected BetterMockWebServer server;
+    protected URL baseUrl;
+    protected PoolingHttpExecutorImpl executor;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        server = BetterMockWebServer.newInstanceLocalhost();
+        server.play();
+        baseUrl = server.getUrl("/");
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void afterMethod() throws Exception {
+        if (executor != null) executor.close();
+        if (server != null) server.shutdown();
+    }
+
+    @Test
+    public void testReusesConnection() throws Exception {
+        executor = new PoolingHttpExecutorImpl(10, 2, Duration.ONE_MINUTE);
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(200).setBody("body"+i));
+        }
+        
+        for (int i = 0; i < 3; i++) {
+            HttpResponse response = executor.execute(new HttpRequest.Builder()
+                    .method("GET")
+                    .uri(baseUrl.toURI())
+                    .build());
+            assertEquals(response.code(), 200);
+            assertEquals(new String(ByteStreams.toByteArray(response.getContent())), "body"+i);
+            response.close();
+        }
+        
+        assertEquals(server.takeRequest().getSequenceNumber(), 0);
+        assertEquals(server.takeRequest().getSequenceNumber(), 1);
+        assertEquals(server.takeRequest().getSequenceNumber(), 2);
+        assertEquals(executor.getLeasedConnectionCount(), 0);
+        assertEquals(executor.getAvailableConnectionCount(), 1);
+    }
+
+    @Test
+    public void testStalledEndpointDoesNotBlockOtherRequestsToRoute() throws Exception {
+        // one connection per route, so the fast request needs the connection held by the stalled one
+        executor = new PoolingHttpExecutorImpl(10, 1, Duration.ONE_MINUTE,
+                Duration.seconds(30), Duration.seconds(30), Duration.millis(500));
+        final CountDownLatch stalled = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        server.setDispatcher(new Dispatcher() {
+            @Override public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                if (request.getPath().startsWith("/stalled")) {
+                    stalled.countDown();
+                    release.await(30, TimeUnit.SECONDS);
+                }
+                return new MockResponse().setResponseCode(200).setBody("ok");
+            }});
+        
+        ExecutorService pollers = Executors.newSingleThreadExecutor();
+        try {
+            Future<HttpResponse> stalledResponse = pollers.submit(new Callable<HttpResponse>() {
+                @Override public HttpResponse call() throws Exception {
+                    return executor.execute(new HttpRequest.Builder().method("GET").uri(server.getUrl("/stalled").toURI()).build());
+                }});
+            assertTrue(stalled.await(30, TimeUnit.SECONDS));
+            
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            HttpResponse response = executor.execute(new HttpRequest.Builder().method("GET").uri(server.getUrl("/fast").toURI()).build());
+            assertEquals(response.code(), 200);
+            assertEquals(new String(ByteStreams.toByteArray(response.getContent())), "ok");
+            response.close();
+            assertTrue(stopwatch.elapsed(TimeUnit.SECONDS) < 10, "took "+stopwatch);
+            
+            try {
+                stalledResponse.get(30, TimeUnit.SECONDS);
+                Asserts.shouldHaveFailedPreviously();
+            } catch (ExecutionException e) {
+                if (Exceptions.getFirstThrowableOfType(e, SocketTimeoutException.class) == null) throw e;
+            }
+        } finally {
+            release.countDown();
+            pollers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testHttpsSchemeRegisteredPerTrustModeNotPerRequest() throws Exception {
+        ExposedPoolingHttpExecutorImpl executor = new ExposedPoolingHttpExecutorImpl();
+        this.executor = executor;
+        HttpConfig trustAll = HttpConfig.builder().trustAll(true).build();
+        Scheme https = executor.getConnectionManager(trustAll).getSchemeRegistry().getScheme("https");
+        assertEquals(https.getDefaultPort(), 443);
+        
+        executor.newHttpClientBuilder(trustAll).uri("https://localhost:8443/").trustAll().build();
+        assertSame(executor.getConnectionManager(trustAll).getSchemeRegistry().getScheme("https"), https);
+        
+        Scheme defaultHttps = executor.getConnectionManager(HttpConfig.builder().build()).getSchemeRegistry().getScheme("https");
+        assertNotSame(defaultHttps.getSchemeSocketFactory(), https.getSchemeSocketFactory());
+    }
+
+    private static class ExposedPoolingHttpExecutorImpl extends PoolingHttpExecutorImpl {
+        ExposedPoolingHttpExecutorImpl() {
+            super(10, 2, Duration.ONE_MINUTE);
+        }
+        @Override
+        public HttpTool.HttpClientBuilder newHttpClientBuilder(HttpConfig config) {
+            return super.newHttpClientBuilder(config);
+        }
+        @Override
+        public synchronized PoolingClientConnectionManager getConnectionManager(HttpConfig config) {
+            return super.getConnectionManager(config);
+        }
+    }
+
+    @Test
+    public void testSharedExecutorScopedToManagementContext() throws Exception {
+        LocalManagementContext mgmt = LocalManagementContextForTests.newInstance();
+        try {
+            assertFalse(SharedHttpExecutor.get(mgmt).isPresent());
+        } finally {
+            mgmt.terminate();
+        }
+        
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        props.put(SharedHttpExecutor.ENABLED, true);
+        mgmt = LocalManagementContextForTests.newInstance(props);
+        HttpExecutor shared;
+        try {
+            shared = SharedHttpExecutor.get(mgmt).get();
+            assertSame(SharedHttpExecutor.get(mgmt).get(), shared);
+        } finally {
+            mgmt.terminate();
+        }
+        try {
+            shared.execute(new HttpRequest.Builder().method("GET").uri(baseUrl.toURI()).build());
+            Asserts.shouldHaveFailedPreviously();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
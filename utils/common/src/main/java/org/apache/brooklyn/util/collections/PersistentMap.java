@@ -0,0 +1,388 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.collections;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Objects;
+
+/**
+ * An immutable map whose {@link #plus(Object, Object)} and {@link #minus(Object)} return a new map
+ * sharing most of its structure with the original, in time and space logarithmic in the size of the map
+ * (a hash array mapped trie), rather than copying it.
+ * <p>
+ * Suitable for map-valued attributes which are updated one entry at a time and shared between entities
+ * (e.g. by propagators), where a copy on every change would be costly for large maps.
+ * <p>
+ * Null keys and values are permitted. Iteration order is by hash, not insertion order.
+ * The mutating methods of {@link Map} throw {@link UnsupportedOperationException}.
+ */
+@Beta
+public final class PersistentMap<K,V> extends AbstractMap<K,V> implements Serializable {
+
+    private static final long serialVersionUID = 4373826420316459613L;
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    /** bitmap nodes at shifts 0, 5, ..., 30, then possibly a collision node */
+    private static final int MAX_DEPTH = 8;
+
+    private static final PersistentMap<Object,Object> EMPTY = new PersistentMap<Object,Object>(BitmapNode.EMPTY, 0);
+
+    private final BitmapNode root;
+    private final int size;
+
+    private PersistentMap(BitmapNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K,V> PersistentMap<K,V> of() {
+        return (PersistentMap<K,V>) EMPTY;
+    }
+
+    public static <K,V> PersistentMap<K,V> of(K k1, V v1) {
+        return PersistentMap.<K,V>of().plus(k1, v1);
+    }
+
+    public static <K,V> PersistentMap<K,V> of(K k1, V v1, K k2, V v2) {
+        return PersistentMap.<K,V>of().plus(k1, v1).plus(k2, v2);
+    }
+
+    /** returns the given map if it is a {@link PersistentMap}, otherwise a new one with the same entries */
+    @SuppressWarnings("unchecked")
+    public static <K,V> PersistentMap<K,V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentMap) return (PersistentMap<K,V>) map;
+        PersistentMap<K,V> result = of();
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            result = result.plus(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /** returns a map with the given key set to the given value; this map if it already had exactly that value */
+    public PersistentMap<K,V> plus(K key, V value) {
+        boolean[] added = new boolean[1];
+        BitmapNode newRoot = (BitmapNode) root.plus(new Leaf<K,V>(key, value, hash(key)), 0, added);
+        if (newRoot == root) return this;
+        return new PersistentMap<K,V>(newRoot, added[0] ? size+1 : size);
+    }
+
+    /** returns a map without the given key; this map if it did not contain the key */
+    public PersistentMap<K,V> minus(Object key) {
+        Node newRoot = root.minus(key, hash(key), 0);
+        if (newRoot == root) return this;
+        if (newRoot == null) return of();
+        return new PersistentMap<K,V>((BitmapNode) newRoot, size-1);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return root.find(key, hash(key), 0) != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Leaf<?,?> leaf = root.find(key, hash(key), 0);
+        return (leaf == null) ? null : (V) leaf.getValue();
+    }
+
+    @Override
+    public Set<Map.Entry<K,V>> entrySet() {
+        return new AbstractSet<Map.Entry<K,V>>() {
+            @Override public Iterator<Map.Entry<K,V>> iterator() {
+                return new EntryIterator<K,V>(root);
+            }
+            @Override public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        int h = Objects.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Leaf<K,V> extends AbstractMap.SimpleImmutableEntry<K,V> {
+        private static final long serialVersionUID = -1541420432386287443L;
+        final int hash;
+
+        Leaf(K key, V value, int hash) {
+            super(key, value);
+            this.hash = hash;
+        }
+    }
+
+    private abstract static class Node implements Serializable {
+        private static final long serialVersionUID = 1840467225373201498L;
+
+        /** the leaf for the given key, or null */
+        abstract Leaf<?,?> find(Object key, int hash, int shift);
+        /** a node with the given leaf, or this if it has that leaf already; sets added[0] if the key is new */
+        abstract Node plus(Leaf<?,?> leaf, int shift, boolean[] added);
+        /** a node without the given key, this if it does not contain the key, or null if it would be empty */
+        abstract Node minus(Object key, int hash, int shift);
+        /** the children, each a {@link Leaf} or a {@link Node} */
+        abstract Object[] children();
+
+        /** the only leaf of this node if it has no other children (so the parent can hold it directly), or null */
+        Leaf<?,?> singleLeaf() {
+            Object[] children = children();
+            return (children.length == 1 && children[0] instanceof Leaf) ? (Leaf<?,?>) children[0] : null;
+        }
+    }
+
+    /** a node whose children are in the slots indicated by the set bits of the bitmap, for the hash bits at its shift */
+    private static final class BitmapNode extends Node {
+        private static final long serialVersionUID = 3089196233838473412L;
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        @Override
+        Leaf<?,?> find(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) return null;
+            Object child = array[index(bit)];
+            if (child instanceof Node) return ((Node) child).find(key, hash, shift + BITS);
+            Leaf<?,?> leaf = (Leaf<?,?>) child;
+            return Objects.equal(leaf.getKey(), key) ? leaf : null;
+        }
+
+        @Override
+        Node plus(Leaf<?,?> leaf, int shift, boolean[] added) {
+            int bit = bit(leaf.hash, shift);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                added[0] = true;
+                Object[] newArray = new Object[array.length + 1];
+                System.arraycopy(array, 0, newArray, 0, index);
+                newArray[index] = leaf;
+                System.arraycopy(array, index, newArray, index + 1, array.length - index);
+                return new BitmapNode(bitmap | bit, newArray);
+            }
+            Object child = array[index];
+            if (child instanceof Node) {
+                Node newChild = ((Node) child).plus(leaf, shift + BITS, added);
+                return (newChild == child) ? this : withChild(index, newChild);
+            }
+            Leaf<?,?> existing = (Leaf<?,?>) child;
+            if (Objects.equal(existing.getKey(), leaf.getKey())) {
+                return (existing.getValue() == leaf.getValue()) ? this : withChild(index, leaf);
+            }
+            added[0] = true;
+            return withChild(index, merge(existing, leaf, shift + BITS));
+        }
+
+        @Override
+        Node minus(Object key, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) return this;
+            int index = index(bit);
+            Object child = array[index];
+            if (child instanceof Node) {
+                Node newChild = ((Node) child).minus(key, hash, shift + BITS);
+                if (newChild == child) return this;
+                if (newChild != null) {
+                    Leaf<?,?> single = newChild.singleLeaf();
+                    return withChild(index, single != null ? single : newChild);
+                }
+            } else if (!Objects.equal(((Leaf<?,?>) child).getKey(), key)) {
+                return this;
+            }
+            if (bitmap == bit) return null;
+            Object[] newArray = new Object[array.length - 1];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 1, newArray, index, array.length - index - 1);
+            return new BitmapNode(bitmap & ~bit, newArray);
+        }
+
+        @Override
+        Object[] children() {
+            return array;
+        }
+
+        private BitmapNode withChild(int index, Object child) {
+            Object[] newArray = array.clone();
+            newArray[index] = child;
+            return new BitmapNode(bitmap, newArray);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    /** leaves whose keys have the same hash */
+    private static final class CollisionNode extends Node {
+        private static final long serialVersionUID = -3620464651446785010L;
+
+        final int hash;
+        final Leaf<?,?>[] leaves;
+
+        CollisionNode(int hash, Leaf<?,?>[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        @Override
+        Leaf<?,?> find(Object key, int hash, int shift) {
+            if (hash != this.hash) return null;
+            for (Leaf<?,?> leaf : leaves) {
+                if (Objects.equal(leaf.getKey(), key)) return leaf;
+            }
+            return null;
+        }
+
+        @Override
+        Node plus(Leaf<?,?> leaf, int shift, boolean[] added) {
+            if (leaf.hash != hash) {
+                // differs from this hash at some level at or below this shift; push this node down
+                int thisBit = bit(hash, shift);
+                int leafBit = bit(leaf.hash, shift);
+                if (thisBit == leafBit) {
+                    return new BitmapNode(thisBit, new Object[] { plus(leaf, shift + BITS, added) });
+                }
+                added[0] = true;
+                return new BitmapNode(thisBit | leafBit, (Integer.compareUnsigned(thisBit, leafBit) < 0) ? new Object[] { this, leaf } : new Object[] { leaf, this });
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (Objects.equal(leaves[i].getKey(), leaf.getKey())) {
+                    if (leaves[i].getValue() == leaf.getValue()) return this;
+                    Leaf<?,?>[] newLeaves = leaves.clone();
+                    newLeaves[i] = leaf;
+                    return new CollisionNode(hash, newLeaves);
+                }
+            }
+            added[0] = true;
+            Leaf<?,?>[] newLeaves = new Leaf<?,?>[leaves.length + 1];
+            System.arraycopy(leaves, 0, newLeaves, 0, leaves.length);
+            newLeaves[leaves.length] = leaf;
+            return new CollisionNode(hash, newLeaves);
+        }
+
+        @Override
+        Node minus(Object key, int hash, int shift) {
+            if (hash != this.hash) return this;
+            for (int i = 0; i < leaves.length; i++) {
+                if (Objects.equal(leaves[i].getKey(), key)) {
+                    if (leaves.length == 1) return null;
+                    Leaf<?,?>[] newLeaves = new Leaf<?,?>[leaves.length - 1];
+                    System.arraycopy(leaves, 0, newLeaves, 0, i);
+                    System.arraycopy(leaves, i + 1, newLeaves, i, leaves.length - i - 1);
+                    return new CollisionNode(hash, newLeaves);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        Object[] children() {
+            return leaves;
+        }
+    }
+
+    /** a node holding both leaves, whose keys differ, for the hash bits at the given shift and below */
+    private static Node merge(Leaf<?,?> leaf1, Leaf<?,?> leaf2, int shift) {
+        if (leaf1.hash == leaf2.hash) {
+            return new CollisionNode(leaf1.hash, new Leaf<?,?>[] { leaf1, leaf2 });
+        }
+        int bit1 = bit(leaf1.hash, shift);
+        int bit2 = bit(leaf2.hash, shift);
+        if (bit1 == bit2) {
+            return new BitmapNode(bit1, new Object[] { merge(leaf1, leaf2, shift + BITS) });
+        }
+        return new BitmapNode(bit1 | bit2, (Integer.compareUnsigned(bit1, bit2) < 0) ? new Object[] { leaf1, leaf2 } : new Object[] { leaf2, leaf1 });
+    }
+
+    /** the bit for the hash at the given shift; note the top slot is 1<<31, so compare these unsigned */
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static final class EntryIterator<K,V> implements Iterator<Map.Entry<K,V>> {
+        private final Object[][] arrays = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private Leaf<?,?> next;
+
+        EntryIterator(BitmapNode root) {
+            arrays[0] = root.children();
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                if (positions[depth] < arrays[depth].length) {
+                    Object child = arrays[depth][positions[depth]++];
+                    if (child instanceof Leaf) {
+                        next = (Leaf<?,?>) child;
+                        return;
+                    }
+                    depth++;
+                    arrays[depth] = ((Node) child).children();
+                    positions[depth] = 0;
+                } else {
+                    depth--;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map.Entry<K,V> next() {
+            if (next == null) throw new NoSuchElementException();
+            Leaf<?,?> result = next;
+            advance();
+            return (Map.Entry<K,V>) result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("PersistentMap is immutable; use minus");
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.collections;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A time series of double values, in the order they were added, held in a ring buffer of primitive
+ * arrays so that adding and pruning values does not allocate (other than when the buffer grows).
+ * <p>
+ * As for {@link TimeWindowedList}, pruning keeps the most recent value from before the window's start,
+ * so that the start of the window is known. A running time-weighted sum is maintained as values are
+ * added and pruned, so that a rolling mean can be computed in constant time; see {@link #getTimeWeightedSum(long)}.
+ * <p>
+ * A {@link Double#NaN} value is recorded as "no value": it has a timestamp but contributes nothing to the sum.
+ */
+@Beta
+public class TimeWindowedDoubleList {
+
+    private long[] timestamps;
+    private double[] values;
+    /** for each value, the latest timestamp of any (non-NaN) value added before it */
+    private long[] starts;
+    private int head;
+    private int size;
+
+    private long maxTimestamp = Long.MIN_VALUE;
+    /** sum of {@link #contribution(int)} for all values except the first */
+    private double weightedSum;
+    private int removalsSinceRecompute;
+
+    public TimeWindowedDoubleList() {
+        this(16);
+    }
+
+    public TimeWindowedDoubleList(int initialCapacity) {
+        int capacity = Math.max(2, initialCapacity);
+        timestamps = new long[capacity];
+        values = new double[capacity];
+        starts = new long[capacity];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** the timestamp of the value at the given index, where 0 is the oldest value */
+    public synchronized long getTimestamp(int index) {
+        return timestamps[slot(checkIndex(index))];
+    }
+
+    /** the value at the given index, where 0 is the oldest value */
+    public synchronized double getValue(int index) {
+        return values[slot(checkIndex(index))];
+    }
+
+    /** the timestamp of the value most recently added */
+    public synchronized long getLastTimestamp() {
+        return getTimestamp(size - 1);
+    }
+
+    /** the value most recently added */
+    public synchronized double getLastValue() {
+        return getValue(size - 1);
+    }
+
+    public synchronized void add(double value, long timestamp) {
+        if (size == timestamps.length) grow();
+        int slot = slot(size);
+        timestamps[slot] = timestamp;
+        values[slot] = value;
+        starts[slot] = maxTimestamp;
+        size++;
+        if (size > 1) weightedSum += contribution(slot);
+        if (!Double.isNaN(value) && timestamp > maxTimestamp) maxTimestamp = timestamp;
+    }
+
+    /**
+     * Discards values older than the given time, but keeps the most recent of those
+     * (and always keeps at least one value).
+     */
+    public synchronized void pruneBefore(long startTime) {
+        while (size > 1 && timestamps[slot(1)] < startTime) {
+            // the new first value no longer contributes to the sum
+            weightedSum -= contribution(slot(1));
+            head = slot(1);
+            size--;
+            removalsSinceRecompute++;
+        }
+        if (size <= 1) {
+            weightedSum = 0;
+            removalsSinceRecompute = 0;
+        } else if (removalsSinceRecompute > size) {
+            // avoid accumulating rounding errors; amortized over the removals
+            recomputeWeightedSum();
+        }
+    }
+
+    public synchronized void clear() {
+        head = 0;
+        size = 0;
+        maxTimestamp = Long.MIN_VALUE;
+        weightedSum = 0;
+        removalsSinceRecompute = 0;
+    }
+
+    /**
+     * Returns the sum of each value multiplied by the time since the value before it (i.e. treating
+     * each value as having held since the preceding value was received), counting only time after
+     * {@code windowStart}. Values received out of order, or with no value, are ignored.
+     * <p>
+     * Dividing by the time covered gives the time-weighted mean. This is normally constant time,
+     * when the window start is no earlier than the timestamp of the first value.
+     */
+    public synchronized double getTimeWeightedSum(long windowStart) {
+        double result = weightedSum;
+        // values whose preceding value was before the window start only count from the window start
+        for (int i = 1; i < size; i++) {
+            int slot = slot(i);
+            if (starts[slot] >= windowStart) break;
+            double value = values[slot];
+            if (Double.isNaN(value)) continue;
+            result -= contribution(slot);
+            if (timestamps[slot] > windowStart) {
+                result += (timestamps[slot] - windowStart) * value;
+            }
+        }
+        return result;
+    }
+
+    private double contribution(int slot) {
+        double value = values[slot];
+        if (Double.isNaN(value) || timestamps[slot] <= starts[slot]) return 0;
+        return (timestamps[slot] - starts[slot]) * value;
+    }
+
+    private void recomputeWeightedSum() {
+        double sum = 0;
+        for (int i = 1; i < size; i++) {
+            sum += contribution(slot(i));
+        }
+        weightedSum = sum;
+        removalsSinceRecompute = 0;
+    }
+
+    private void grow() {
+        int capacity = timestamps.length * 2;
+        timestamps = unwrap(timestamps, capacity);
+        starts = unwrap(starts, capacity);
+        double[] newValues = new double[capacity];
+        int firstPart = Math.min(size, values.length - head);
+        System.arraycopy(values, head, newValues, 0, firstPart);
+        System.arraycopy(values, 0, newValues, firstPart, size - firstPart);
+        values = newValues;
+        head = 0;
+    }
+
+    private long[] unwrap(long[] array, int capacity) {
+        long[] result = new long[capacity];
+        int firstPart = Math.min(size, array.length - head);
+        System.arraycopy(array, head, result, 0, firstPart);
+        System.arraycopy(array, 0, result, firstPart, size - firstPart);
+        return result;
+    }
+
+    private int slot(int index) {
+        int slot = head + index;
+        return (slot < timestamps.length) ? slot : slot - timestamps.length;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("index="+index+"; size="+size);
+        return index;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder result = new StringBuilder("vals=[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) result.append(", ");
+            result.append(values[slot(i)]).append("@").append(timestamps[slot(i)]);
+        }
+        return result.append("]").toString();
+    }
+}
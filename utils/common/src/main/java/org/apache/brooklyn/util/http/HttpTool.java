@@ -87,6 +87,7 @@ import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
@@ -242,11 +243,35 @@ public class HttpTool {
     public static HttpClientBuilder httpClientBuilder() {
         return new HttpClientBuilder();
     }
+
+    /**
+     * Returns a socket factory for https trusting all certificates, or self-signed ones (and not verifying hostnames), 
+     * or null if neither is wanted.
+     */
+    @Beta
+    @SuppressWarnings("deprecation")
+    public static SSLSocketFactory newTrustingSocketFactory(boolean trustAll, boolean trustSelfSigned) {
+        TrustStrategy trustStrategy;
+        if (trustAll) {
+            trustStrategy = new TrustAllStrategy();
+        } else if (trustSelfSigned) {
+            trustStrategy = new TrustSelfSignedStrategy();
+        } else {
+            return null;
+        }
+        X509HostnameVerifier hostnameVerifier = SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER;
+        try {
+            return new SSLSocketFactory(trustStrategy, hostnameVerifier);
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+    }
     
     // TODO deprecate this and use the new Apache Commons HttpClientBuilder instead
     @SuppressWarnings("deprecation")
     public static class HttpClientBuilder {
         private ClientConnectionManager clientConnectionManager;
+        private boolean connectionManagerShared;
         private HttpParams httpParams;
         private URI uri;
         private Integer port;
@@ -261,6 +286,7 @@ public class HttpTool {
         public static HttpClientBuilder fromBuilder(HttpClientBuilder other) {
             HttpClientBuilder result = httpClientBuilder();
             result.clientConnectionManager = other.clientConnectionManager;
+            result.connectionManagerShared = other.connectionManagerShared;
             result.httpParams = other.httpParams;
             result.uri = other.uri;
             result.port = other.port;
@@ -275,6 +301,18 @@ public class HttpTool {
         }
         public HttpClientBuilder clientConnectionManager(ClientConnectionManager val) {
             this.clientConnectionManager = checkNotNull(val, "clientConnectionManager");
+            this.connectionManagerShared = false;
+            return this;
+        }
+        /**
+         * As {@link #clientConnectionManager(ClientConnectionManager)}, for a connection manager shared with other clients,
+         * whose https scheme is already registered as required (e.g. with {@link HttpTool#newTrustingSocketFactory(boolean, boolean)}).
+         * The client then does not register an https scheme, as that would change it for all the other clients.
+         */
+        @Beta
+        public HttpClientBuilder sharedClientConnectionManager(ClientConnectionManager val) {
+            clientConnectionManager(val);
+            this.connectionManagerShared = true;
             return this;
         }
         public HttpClientBuilder httpParams(HttpParams val) {
@@ -359,23 +397,14 @@ public class HttpTool {
             if (reuseStrategy != null) {
                 httpClient.setReuseStrategy(reuseStrategy);
             }
-            if (https == Boolean.TRUE || (uri!=null && uri.toString().startsWith("https:"))) {
+            if (!connectionManagerShared && (https == Boolean.TRUE || (uri!=null && uri.toString().startsWith("https:")))) {
                 try {
                     if (port == null) {
                         port = (uri != null && uri.getPort() >= 0) ? uri.getPort() : 443;
                     }
                     if (socketFactory == null) {
-                        if (trustAll) {
-                            TrustStrategy trustStrategy = new TrustAllStrategy();
-                            X509HostnameVerifier hostnameVerifier = SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER;
-                            socketFactory = new SSLSocketFactory(trustStrategy, hostnameVerifier);
-                        } else if (trustSelfSigned) {
-                            TrustStrategy trustStrategy = new TrustSelfSignedStrategy();
-                            X509HostnameVerifier hostnameVerifier = SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER;
-                            socketFactory = new SSLSocketFactory(trustStrategy, hostnameVerifier);
-                        } else {
-                            // Using default https scheme: based on default java truststore, which is pretty strict!
-                        }
+                        // if neither, using default https scheme: based on default java truststore, which is pretty strict!
+                        socketFactory = newTrustingSocketFactory(trustAll, trustSelfSigned);
                     }
                     if (socketFactory != null) {
                         Scheme sch = new Scheme("https", port, socketFactory);
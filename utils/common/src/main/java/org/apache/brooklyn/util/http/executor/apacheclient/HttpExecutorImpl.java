@@ -63,7 +63,7 @@ public class HttpExecutorImpl implements HttpExecutor {
     public HttpResponse execute(HttpRequest request) throws IOException {
         HttpConfig config = (request.config() != null) ? request.config() : DEFAULT_CONFIG;
         Credentials creds = (request.credentials() != null) ? new UsernamePasswordCredentials(request.credentials().getUser(), request.credentials().getPassword()) : null;
-        HttpClient httpClient = HttpTool.httpClientBuilder()
+        HttpClient httpClient = newHttpClientBuilder(config)
                 .uri(request.uri())
                 .credential(Optional.fromNullable(creds))
                 .laxRedirect(config.laxRedirect())
@@ -95,6 +95,11 @@ public class HttpExecutorImpl implements HttpExecutor {
         return new HttpResponseWrapper(response);
     }
     
+    /** the builder for the client used to execute a single request; subclasses may for example set a shared connection manager */
+    protected HttpTool.HttpClientBuilder newHttpClientBuilder(HttpConfig config) {
+        return HttpTool.httpClientBuilder();
+    }
+
     protected byte[] orEmpty(byte[] val) {
         return (val != null) ? val : EMPTY_BYTE_ARRAY;
     }
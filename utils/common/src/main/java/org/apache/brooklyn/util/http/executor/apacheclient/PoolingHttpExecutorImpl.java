@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.http.executor.apacheclient;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.http.HttpTool;
+import org.apache.brooklyn.util.http.executor.HttpConfig;
+import org.apache.brooklyn.util.http.executor.HttpRequest;
+import org.apache.brooklyn.util.http.executor.HttpResponse;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * An {@link HttpExecutorImpl} which keeps connections alive in a pool, shared by all requests made through it,
+ * so that repeated requests to the same host:port (route) reuse connections rather than opening a new one each time.
+ * <p>
+ * The pool is capped in total and per route; idle connections are closed after the given idle expiry.
+ * There is a separate pool for each trust mode in the request's {@link HttpConfig} (trust all, trust self-signed,
+ * or neither), as https connections are only reusable by requests wanting the same trust; the caps apply to
+ * each of these pools, so up to three times as many connections may be open in total if all modes are used.
+ * <p>
+ * Requests wait at most the lease timeout for a pooled connection, and connections use the given connect and
+ * socket (read) timeouts, so that a stalled endpoint cannot hold a connection (and so block other requests
+ * to the same route) indefinitely.
+ * <p>
+ * Must be {@link #close() closed} when no longer required.
+ */
+@Beta
+@SuppressWarnings("deprecation")
+public class PoolingHttpExecutorImpl extends HttpExecutorImpl implements Closeable {
+
+    public static final Duration DEFAULT_LEASE_TIMEOUT = Duration.seconds(30);
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.seconds(30);
+    public static final Duration DEFAULT_SOCKET_TIMEOUT = Duration.ONE_MINUTE;
+
+    private final int maxConnections;
+    private final int maxConnectionsPerRoute;
+    private final Duration idleExpiry;
+    private final Duration leaseTimeout;
+    private final Duration connectTimeout;
+    private final Duration socketTimeout;
+    
+    /** keyed by trust mode, see {@link #getTrustMode(HttpConfig)} */
+    private final Map<String, PoolingClientConnectionManager> connectionManagers = MutableMap.of();
+    private volatile long lastIdleCheck = System.currentTimeMillis();
+    private volatile boolean closed;
+
+    public PoolingHttpExecutorImpl(int maxConnections, int maxConnectionsPerRoute, Duration idleExpiry) {
+        this(maxConnections, maxConnectionsPerRoute, idleExpiry, DEFAULT_LEASE_TIMEOUT, DEFAULT_CONNECT_TIMEOUT, DEFAULT_SOCKET_TIMEOUT);
+    }
+
+    public PoolingHttpExecutorImpl(int maxConnections, int maxConnectionsPerRoute, Duration idleExpiry,
+            Duration leaseTimeout, Duration connectTimeout, Duration socketTimeout) {
+        checkArgument(maxConnections > 0, "maxConnections must be positive");
+        checkArgument(maxConnectionsPerRoute > 0, "maxConnectionsPerRoute must be positive");
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.idleExpiry = idleExpiry;
+        this.leaseTimeout = checkNotNull(leaseTimeout, "leaseTimeout");
+        this.connectTimeout = checkNotNull(connectTimeout, "connectTimeout");
+        this.socketTimeout = checkNotNull(socketTimeout, "socketTimeout");
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request) throws IOException {
+        if (closed) throw new IllegalStateException("Http executor "+this+" closed");
+        closeIdleConnectionsIfDue();
+        return super.execute(request);
+    }
+
+    @Override
+    protected HttpTool.HttpClientBuilder newHttpClientBuilder(HttpConfig config) {
+        HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setConnectionTimeout(params, toIntMillis(connectTimeout));
+        HttpConnectionParams.setSoTimeout(params, toIntMillis(socketTimeout));
+        // how long to wait for a connection from the pool, e.g. when all to the route are leased
+        HttpClientParams.setConnectionManagerTimeout(params, leaseTimeout.toMilliseconds());
+        return super.newHttpClientBuilder(config)
+                .sharedClientConnectionManager(getConnectionManager(config))
+                .httpParams(params);
+    }
+
+    private static int toIntMillis(Duration val) {
+        return (int) Math.min(val.toMilliseconds(), Integer.MAX_VALUE);
+    }
+
+    private static String getTrustMode(HttpConfig config) {
+        return config.trustAll() ? "trustAll" : config.trustSelfSigned() ? "trustSelfSigned" : "default";
+    }
+
+    protected synchronized PoolingClientConnectionManager getConnectionManager(HttpConfig config) {
+        String key = getTrustMode(config);
+        PoolingClientConnectionManager result = connectionManagers.get(key);
+        if (result == null) {
+            // register the https scheme for this trust mode once, as the clients sharing the manager do not
+            SchemeRegistry schemes = SchemeRegistryFactory.createDefault();
+            SSLSocketFactory socketFactory = HttpTool.newTrustingSocketFactory(config.trustAll(), config.trustSelfSigned());
+            if (socketFactory != null) {
+                schemes.register(new Scheme("https", 443, socketFactory));
+            }
+            result = new PoolingClientConnectionManager(schemes, idleExpiry.toMilliseconds(), TimeUnit.MILLISECONDS);
+            result.setMaxTotal(maxConnections);
+            result.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+            connectionManagers.put(key, result);
+        }
+        return result;
+    }
+
+    /** closes connections which have been idle for longer than the idle expiry, or have otherwise expired */
+    public synchronized void closeIdleConnections() {
+        lastIdleCheck = System.currentTimeMillis();
+        for (PoolingClientConnectionManager connectionManager : connectionManagers.values()) {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(idleExpiry.toMilliseconds(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void closeIdleConnectionsIfDue() {
+        if (System.currentTimeMillis() - lastIdleCheck > idleExpiry.toMilliseconds()/2) {
+            closeIdleConnections();
+        }
+    }
+
+    @VisibleForTesting
+    public synchronized int getLeasedConnectionCount() {
+        int result = 0;
+        for (PoolingClientConnectionManager connectionManager : connectionManagers.values()) {
+            result += connectionManager.getTotalStats().getLeased();
+        }
+        return result;
+    }
+
+    @VisibleForTesting
+    public synchronized int getAvailableConnectionCount() {
+        int result = 0;
+        for (PoolingClientConnectionManager connectionManager : connectionManagers.values()) {
+            result += connectionManager.getTotalStats().getAvailable();
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (PoolingClientConnectionManager connectionManager : connectionManagers.values()) {
+            connectionManager.shutdown();
+        }
+        connectionManagers.clear();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"[max "+maxConnections+", max per route "+maxConnectionsPerRoute+"]";
+    }
+}
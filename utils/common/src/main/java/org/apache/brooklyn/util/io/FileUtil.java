@@ -156,12 +156,12 @@ public class FileUtil {
             if (out != null) {
                 InputStream outstream = p.getInputStream();
                 outgobbler = new StreamGobbler(outstream, out, (Logger) null);
-                outgobbler.start();
+                outgobbler.startOnSharedPool();
             }
             if (err != null) {
                 InputStream errstream = p.getErrorStream();
                 errgobbler = new StreamGobbler(errstream, err, (Logger) null);
-                errgobbler.start();
+                errgobbler.startOnSharedPool();
             }
             
             int result = p.waitFor();
@@ -23,16 +23,55 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 
+import com.google.common.annotations.Beta;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Reads everything from a stream, writing each line to the given output (if any) and logging it (if a log is given).
+ * <p>
+ * The stream is read in chunks and split into lines directly from the buffer. It can either be run as a thread
+ * in its own right (with {@link #start()}) or, preferably for short-lived streams such as the stdout/stderr of a command,
+ * with {@link #startOnSharedPool()}, which reuses threads from a shared pool rather than creating two new threads
+ * per command. In the latter case use {@link #blockUntilFinished(long)} rather than {@link #join(long)}.
+ * <p>
+ * Subclasses wanting to see the raw input should override {@link #onChunk(byte[], int)}; overriding the
+ * deprecated {@link #onChar(int)} is still honoured, at the cost of a call per character.
+ */
 public class StreamGobbler extends Thread implements Closeable {
     
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Maximum number of threads in the shared pool. Each gobbler holds its thread until the stream ends,
+     * so gobblers are never queued (a queued gobbler would not drain its stream, which could block the
+     * process writing to it); beyond this many, a gobbler runs on its own thread instead.
+     */
+    private static final int SHARED_POOL_MAX_SIZE = 128;
+
+    private static final ExecutorService SHARED_EXECUTOR = newSharedExecutor();
+
+    private static ExecutorService newSharedExecutor() {
+        return new ThreadPoolExecutor(0, SHARED_POOL_MAX_SIZE, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat("brooklyn-stream-gobbler-%d").setDaemon(true).build());
+    }
+
     protected final InputStream stream;
     protected final PrintStream out;
     protected final Logger log;
     private final AtomicBoolean running = new AtomicBoolean(true);
+    /** the thread currently reading, either this thread or one from the shared pool */
+    private Thread reader;
+    /** whether a subclass overrides {@link #onChar(int)}, so chunks must be passed to it character by character */
+    private final boolean onCharOverridden = isOnCharOverridden();
     
     public StreamGobbler(InputStream stream, OutputStream out, Logger log) {
         this(stream, out != null ? new PrintStream(out) : null, log);
@@ -44,10 +83,36 @@ public class StreamGobbler extends Thread implements Closeable {
         this.log = log;
     }
     
+    /**
+     * Starts reading the stream on a thread from a pool shared by all gobblers, instead of starting this thread.
+     * Pool threads are reused once the stream is finished, and expire when idle. If all the pool's threads
+     * are busy, this thread is started instead.
+     */
+    @Beta
+    public StreamGobbler startOnSharedPool() {
+        try {
+            SHARED_EXECUTOR.execute(this);
+        } catch (RejectedExecutionException e) {
+            start();
+        }
+        return this;
+    }
+
+    private boolean isOnCharOverridden() {
+        try {
+            return getClass().getMethod("onChar", int.class).getDeclaringClass() != StreamGobbler.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
     @Override
     public void close() {
         running.set(false);
-        interrupt();
+        synchronized (this) {
+            if (reader != null) reader.interrupt();
+            else interrupt();
+        }
     }
 
     /**
@@ -76,10 +141,14 @@ public class StreamGobbler extends Thread implements Closeable {
     
     @Override
     public void run() {
-        int c = -1;
+        synchronized (this) {
+            reader = Thread.currentThread();
+        }
         try {
-            while (running.get() && (c=stream.read())>=0) {
-                onChar(c);
+            byte[] buf = new byte[BUFFER_SIZE];
+            int len;
+            while (running.get() && (len=stream.read(buf))>=0) {
+                onChunk(buf, len);
             }
             onClose();
         } catch (IOException e) {
@@ -88,10 +157,56 @@ public class StreamGobbler extends Thread implements Closeable {
             if (log!=null && log.isTraceEnabled()) log.trace(logPrefix+"exception reading from stream ("+e+")");
         } finally {
             if (out != null) out.flush();
+            synchronized (this) {
+                reader = null;
+                // don't leak an interrupt from close() into the next task of a pooled thread
+                if (Thread.currentThread() != this) Thread.interrupted();
+            }
         }
     }
     
     private final StringBuilder lineSoFar = new StringBuilder(16);
+    
+    /**
+     * Handles the bytes read into the buffer, splitting them into lines (passed to {@link #onLine(String)})
+     * without a per-character call. Each byte is treated as a single character.
+     * <p>
+     * This is the extension point for handling the raw input. If {@link #onChar(int)} is overridden,
+     * each byte is passed to it instead.
+     */
+    protected void onChunk(byte[] buf, int len) {
+        if (onCharOverridden) {
+            for (int i = 0; i < len; i++) {
+                onChar(buf[i] & 0xff);
+            }
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            byte c = buf[i];
+            if (c=='\n' || c=='\r') {
+                appendChars(buf, start, i);
+                if (lineSoFar.length()>0)
+                    //suppress blank lines, so that we can treat either newline char as a line separator
+                    //(eg to show curl updates frequently)
+                    onLine(lineSoFar.toString());
+                lineSoFar.setLength(0);
+                start = i+1;
+            }
+        }
+        appendChars(buf, start, len);
+    }
+
+    private void appendChars(byte[] buf, int from, int to) {
+        for (int i = from; i < to; i++) {
+            lineSoFar.append((char)(buf[i] & 0xff));
+        }
+    }
+
+    /**
+     * @deprecated since 1.0.0; override {@link #onChunk(byte[], int)} instead. Called for each character only if overridden.
+     */
+    @Deprecated
     public void onChar(int c) {
         if (c=='\n' || c=='\r') {
             if (lineSoFar.length()>0)
@@ -132,6 +247,24 @@ public class StreamGobbler extends Thread implements Closeable {
         synchronized (this) { while (!finished) wait(); }
     }
 
+    /**
+     * Waits at most the given number of millis for the stream to be finished;
+     * use instead of {@link #join(long)} when started with {@link #startOnSharedPool()}.
+     * 
+     * @return whether the stream is finished
+     */
+    public boolean blockUntilFinished(long timeoutMillis) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this) {
+            while (!finished) {
+                long remaining = end - System.currentTimeMillis();
+                if (remaining <= 0) return false;
+                wait(remaining);
+            }
+        }
+        return true;
+    }
+
     /** convenience -- similar to !Thread.isAlive() */
     public boolean isFinished() {
         return finished;
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.collections;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+@Test
+public class PersistentMapTest {
+
+    public void testPlusAndMinusLeaveOriginalUnchanged() {
+        PersistentMap<String,Integer> m1 = PersistentMap.of("a", 1);
+        PersistentMap<String,Integer> m2 = m1.plus("b", 2);
+        PersistentMap<String,Integer> m3 = m2.minus("a");
+
+        Assert.assertEquals(m1, ImmutableMap.of("a", 1));
+        Assert.assertEquals(m2, ImmutableMap.of("a", 1, "b", 2));
+        Assert.assertEquals(m3, ImmutableMap.of("b", 2));
+        Assert.assertEquals(m2.size(), 2);
+        Assert.assertEquals(m3.size(), 1);
+    }
+
+    public void testUnchangedReturnsSameInstance() {
+        Integer one = 1;
+        PersistentMap<String,Integer> m = PersistentMap.of("a", one);
+        Assert.assertSame(m.plus("a", one), m);
+        Assert.assertSame(m.minus("b"), m);
+    }
+
+    public void testNullKeysAndValues() {
+        PersistentMap<String,Integer> m = PersistentMap.<String,Integer>of().plus(null, 1).plus("b", null);
+        Assert.assertEquals(m.get(null), (Integer)1);
+        Assert.assertTrue(m.containsKey("b"));
+        Assert.assertNull(m.get("b"));
+        Assert.assertFalse(m.containsKey("c"));
+        Assert.assertEquals(m.size(), 2);
+        Assert.assertEquals(m.minus(null).minus("b").size(), 0);
+    }
+
+    public void testHashCollisions() {
+        // "Aa" and "BB" have the same hash code
+        PersistentMap<String,Integer> m = PersistentMap.of("Aa", 1, "BB", 2).plus("C", 3);
+        Assert.assertEquals(m, ImmutableMap.of("Aa", 1, "BB", 2, "C", 3));
+        Assert.assertEquals(m.plus("BB", 4).get("BB"), (Integer)4);
+        Assert.assertEquals(m.minus("Aa"), ImmutableMap.of("BB", 2, "C", 3));
+        Assert.assertEquals(m.minus("Aa").minus("BB"), ImmutableMap.of("C", 3));
+    }
+
+    public void testMatchesHashMapForRandomUpdates() {
+        Random random = new Random(1234);
+        Map<Integer,Integer> expected = Maps.newHashMap();
+        PersistentMap<Integer,Integer> actual = PersistentMap.of();
+        for (int i = 0; i < 20000; i++) {
+            Integer key = random.nextInt(2000) * (random.nextBoolean() ? 1 : 65536);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                actual = actual.minus(key);
+            } else {
+                expected.put(key, i);
+                actual = actual.plus(key, i);
+            }
+        }
+        Assert.assertEquals(actual.size(), expected.size());
+        Assert.assertEquals(actual, expected);
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals(actual.hashCode(), expected.hashCode());
+        Assert.assertEquals(PersistentMap.copyOf(expected), actual);
+    }
+
+    public void testMutatorsUnsupported() {
+        PersistentMap<String,Integer> m = PersistentMap.of("a", 1);
+        try {
+            m.put("b", 2);
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            m.remove("a");
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        Assert.assertEquals(m, ImmutableMap.of("a", 1));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.collections;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+@Test
+public class TimeWindowedDoubleListTest {
+
+    public void testPruneKeepsMostRecentExpiredValue() {
+        TimeWindowedDoubleList list = new TimeWindowedDoubleList(2);
+        list.add(1, 0L);
+        list.add(2, 100L);
+        list.add(3, 200L);
+        
+        list.pruneBefore(150L);
+        assertEquals(list.size(), 2);
+        assertEquals(list.getTimestamp(0), 100L);
+        assertEquals(list.getValue(0), 2d);
+        assertEquals(list.getLastValue(), 3d);
+        assertEquals(list.getLastTimestamp(), 200L);
+        
+        list.pruneBefore(1000L);
+        assertEquals(list.size(), 1);
+        assertEquals(list.getLastValue(), 3d);
+    }
+    
+    public void testTimeWeightedSum() {
+        TimeWindowedDoubleList list = new TimeWindowedDoubleList();
+        list.add(10, 1000L);
+        list.add(20, 1100L);
+        list.add(30, 1300L);
+        list.add(40, 1600L);
+        list.add(50, 2000L);
+        assertEquals(list.getTimeWeightedSum(1000L), 20*100d + 30*200d + 40*300d + 50*400d);
+        assertEquals(list.getTimeWeightedSum(1200L), 30*100d + 40*300d + 50*400d);
+        
+        list.pruneBefore(1200L);
+        assertEquals(list.size(), 4);
+        assertEquals(list.getTimeWeightedSum(1200L), 30*100d + 40*300d + 50*400d);
+    }
+    
+    public void testNaNIsIgnoredInSum() {
+        TimeWindowedDoubleList list = new TimeWindowedDoubleList();
+        list.add(10, 1000L);
+        list.add(Double.NaN, 1500L);
+        list.add(20, 2000L);
+        assertEquals(list.getTimeWeightedSum(1000L), 20*1000d);
+        assertEquals(list.getTimeWeightedSum(1800L), 20*200d);
+    }
+    
+    public void testMatchesRecomputedSumForRandomValues() {
+        Random random = new Random(1234);
+        TimeWindowedDoubleList list = new TimeWindowedDoubleList(4);
+        MutableList<long[]> expected = MutableList.of();
+        long now = 0;
+        long period = 500;
+        for (int i = 0; i < 10000; i++) {
+            now += random.nextInt(100);
+            long value = random.nextInt(1000);
+            list.add(value, now);
+            expected.add(new long[] {now, value});
+            
+            list.pruneBefore(now - period);
+            while (expected.size() > 1 && expected.get(1)[0] < now - period) {
+                expected.remove(0);
+            }
+            assertEquals(list.size(), expected.size());
+            
+            long windowStart = Math.max(now - period, expected.get(0)[0]);
+            long start = windowStart;
+            double sum = 0;
+            for (long[] entry : expected) {
+                if (entry[0] >= start) {
+                    sum += (entry[0] - start) * entry[1];
+                    start = entry[0];
+                }
+            }
+            assertEquals(list.getTimeWeightedSum(windowStart), sum, 0.0001);
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.brooklyn.util.stream;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -84,6 +85,75 @@ public class StreamGobblerTest {
         }
     }
     
+    @Test
+    public void testGobbleMultipleLinesInOneChunk() throws Exception {
+        byte[] bytes = "line1\r\nline2\n\nline3\rline4".getBytes();
+        InputStream stream = new ByteArrayInputStream(bytes);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamGobbler gobbler = new StreamGobbler(stream, out, null);
+        gobbler.setPrintPrefix("[p] ");
+        gobbler.run();
+        assertTrue(gobbler.isFinished());
+        assertEquals(new String(out.toByteArray()), "[p] line1" + NL + "[p] line2" + NL + "[p] line3" + NL + "[p] line4" + NL);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testOverriddenOnCharIsCalled() throws Exception {
+        InputStream stream = new ByteArrayInputStream("ab\nc".getBytes());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final StringBuilder chars = new StringBuilder();
+        StreamGobbler gobbler = new StreamGobbler(stream, out, null) {
+            @Override
+            public void onChar(int c) {
+                chars.append((char)c);
+                super.onChar(c);
+            }
+        };
+        gobbler.run();
+        assertEquals(chars.toString(), "ab\nc");
+        assertEquals(new String(out.toByteArray()), "ab" + NL + "c" + NL);
+    }
+
+    @Test
+    public void testGobbleMultiLineBlockingStreamOnSharedPool() throws Exception {
+        PipedOutputStream pipedOutputStream = new PipedOutputStream();
+        PipedInputStream stream = new PipedInputStream(pipedOutputStream);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamGobbler gobbler = new StreamGobbler(stream, out, null);
+        gobbler.startOnSharedPool();
+        try {
+            pipedOutputStream.write("line1\n".getBytes());
+            pipedOutputStream.flush();
+            assertEqualsEventually(out, "line1" + NL);
+
+            pipedOutputStream.write("line".getBytes());
+            pipedOutputStream.write("2\n".getBytes());
+            pipedOutputStream.close();
+
+            assertTrue(gobbler.blockUntilFinished(10*1000));
+            assertFalse(gobbler.isAlive());
+            assertEquals(new String(out.toByteArray()), "line1" + NL + "line2" + NL);
+        } finally {
+            gobbler.close();
+        }
+    }
+
+    @Test
+    public void testCloseStopsGobblerOnSharedPool() throws Exception {
+        PipedOutputStream pipedOutputStream = new PipedOutputStream();
+        PipedInputStream stream = new PipedInputStream(pipedOutputStream);
+        StreamGobbler gobbler = new StreamGobbler(stream, new ByteArrayOutputStream(), null);
+        gobbler.startOnSharedPool();
+        try {
+            assertFalse(gobbler.blockUntilFinished(10));
+            gobbler.close();
+            assertTrue(gobbler.blockUntilFinished(10*1000));
+        } finally {
+            pipedOutputStream.close();
+        }
+    }
+
     private void assertEqualsEventually(final ByteArrayOutputStream out, final String expected) {
         Asserts.succeedsEventually(new Runnable() {
             @Override